@@ -0,0 +1,10 @@
+package com.example.pafbackendversionthree.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+// Enables @Async service methods, run on the application task executor
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
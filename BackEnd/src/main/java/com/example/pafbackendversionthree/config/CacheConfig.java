@@ -0,0 +1,28 @@
+package com.example.pafbackendversionthree.config;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.services.EntityCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Single-entity read caches, invalidated by every mutation path of their entity and, on other
+// instances, by EntityCacheEventHandlers; the TTL bounds how stale a like or view count can be
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public EntityCache<LearningPlanDTO.LearningPlanResponse> learningPlanCache(
+            @Value("${app.cache.learning-plans.max-size:10000}") int maximumSize,
+            @Value("${app.cache.learning-plans.ttl-seconds:300}") long ttlSeconds) {
+        return new EntityCache<>("learningPlans", maximumSize, ttlSeconds * 1000);
+    }
+
+    @Bean
+    public EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache(
+            @Value("${app.cache.progress-updates.max-size:10000}") int maximumSize,
+            @Value("${app.cache.progress-updates.ttl-seconds:120}") long ttlSeconds) {
+        return new EntityCache<>("progressUpdates", maximumSize, ttlSeconds * 1000);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.pafbackendversionthree.config;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Explains every query shape the repositories and feeds issue and reports any that would run as a
+ * collection scan or an in-memory sort. app.mongodb.index-verification selects what happens:
+ * "report" (default) logs a warning, "fail" aborts startup, "off" skips the check.
+ *
+ * Every query method declared on a repository has a shape of the same name. The inherited
+ * CrudRepository methods look up by _id and are not listed. The title searches are an unanchored
+ * case-insensitive regex, which no index can bound: the check only proves they scan the public plans
+ * through an index instead of the whole collection.
+ */
+@Component
+public class IndexVerifier implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexVerifier.class);
+
+    private static final Set<String> REJECTED_STAGES = Set.of("COLLSCAN", "SORT");
+
+    private final MongoTemplate mongoTemplate;
+    private final String mode;
+
+    private record QueryShape(String name, String collection, Document filter, Document sort) {
+    }
+
+    @Autowired
+    public IndexVerifier(MongoTemplate mongoTemplate,
+                         @Value("${app.mongodb.index-verification:report}") String mode) {
+        this.mongoTemplate = mongoTemplate;
+        this.mode = mode;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if ("off".equalsIgnoreCase(mode)) {
+            return;
+        }
+
+        List<QueryShape> shapes = queryShapes();
+        List<String> problems = new ArrayList<>();
+        for (QueryShape shape : shapes) {
+            Document explain = mongoTemplate.getCollection(shape.collection())
+                    .find(shape.filter())
+                    .sort(shape.sort())
+                    .limit(10)
+                    .explain();
+
+            Set<String> stages = new TreeSet<>();
+            Object queryPlanner = explain.get("queryPlanner");
+            if (queryPlanner instanceof Document planner) {
+                collectStages(planner.get("winningPlan"), stages);
+            }
+            stages.retainAll(REJECTED_STAGES);
+            if (!stages.isEmpty()) {
+                problems.add(shape.name() + " " + stages);
+            }
+        }
+
+        if (problems.isEmpty()) {
+            log.info("Index verification passed for {} query shapes", shapes.size());
+        } else if ("fail".equalsIgnoreCase(mode)) {
+            throw new IllegalStateException("Unindexed query shapes: " + problems);
+        } else {
+            problems.forEach(problem -> log.warn("Unindexed query shape: {}", problem));
+        }
+    }
+
+    private List<QueryShape> queryShapes() {
+        ObjectId sampleId = new ObjectId();
+        Document none = new Document();
+        Document newest = new Document("_id", -1);
+
+        return List.of(
+                // LearningPlanRepository
+                plans("findByOwnerId", new Document("owner.$id", sampleId), none),
+                plans("countByOwnerId", new Document("owner.$id", sampleId), none),
+                plans("findByOwnerIdAndIsCompletedTrue",
+                        new Document("owner.$id", sampleId).append("isCompleted", true), none),
+                plans("nearlyFinished", new Document("owner.$id", sampleId).append("isCompleted", false)
+                                .append("completionPercentage", new Document("$gte", 50.0)),
+                        new Document("completionPercentage", -1)),
+                plans("forksOf", new Document("forkedFromId", sampleId.toHexString()), none),
+                plans("forksNotInHomeFeeds", new Document("forkedFromId", new Document("$exists", true))
+                        .append("homeFeedLinkedAt", new Document("$exists", false)), none),
+                plans("findByIsPublicTrue", publicOnly(), newest),
+                plans("findByIsPublicTrueAndTitleContainingIgnoreCase", publicOnly().append("title", titleRegex()), none),
+                plans("findByIsPublicTrueAndTitleContainingIgnoreCaseAndCategory",
+                        publicOnly().append("title", titleRegex()).append("category", "sample"), none),
+                plans("findByIsPublicTrueAndTitleContainingIgnoreCaseAndSkillLevel",
+                        publicOnly().append("title", titleRegex()).append("skillLevel", "sample"), none),
+                plans("findByIsPublicTrueAndTitleContainingIgnoreCaseAndCategoryAndSkillLevel",
+                        publicOnly().append("title", titleRegex()).append("category", "sample")
+                                .append("skillLevel", "sample"), none),
+                plans("findByIsPublicTrueOrderByViewCountDesc", publicOnly(),
+                        new Document("viewCount", -1).append("_id", -1)),
+                plans("findByIsPublicTrueOrderByForkCountDesc", publicOnly(),
+                        new Document("forkCount", -1).append("_id", -1)),
+                plans("findByIsPublicTrueOrderByUpdatedAtDesc", publicOnly(), new Document("updatedAt", -1)),
+                plans("findLargestPlans", publicOnly(), new Document("estimatedHours", -1)),
+                plans("findByCategoryAndIsPublicTrue", publicOnly().append("category", "sample"), none),
+                plans("findBySkillLevelAndIsPublicTrue", publicOnly().append("skillLevel", "sample"), none),
+                plans("findByCategoryInAndIsPublicTrue",
+                        publicOnly().append("category", new Document("$in", List.of("a", "b"))), none),
+                plans("findByTagsInAndIsPublicTrue",
+                        new Document("tags", new Document("$in", List.of("a", "b"))).append("isPublic", true), none),
+                plans("browseByTags",
+                        new Document("tags", new Document("$in", List.of("a", "b"))).append("isPublic", true),
+                        new Document("viewCount", -1).append("_id", -1)),
+
+                // Keyset feeds from page 2 on (CursorCodec.after)
+                plans("publicFeedNextPage", after(publicOnly(), null, sampleId), newest),
+                plans("popularFeedNextPage", after(publicOnly(), "viewCount", sampleId),
+                        new Document("viewCount", -1).append("_id", -1)),
+                plans("mostForkedFeedNextPage", after(publicOnly(), "forkCount", sampleId),
+                        new Document("forkCount", -1).append("_id", -1)),
+                plans("searchByCategoryNextPage", after(publicOnly().append("category", "sample"), "viewCount", sampleId),
+                        new Document("viewCount", -1).append("_id", -1)),
+                plans("searchBySkillLevelNextPage", after(publicOnly().append("skillLevel", "sample"), "viewCount", sampleId),
+                        new Document("viewCount", -1).append("_id", -1)),
+                plans("searchByCategoryAndSkillLevelNextPage", after(publicOnly().append("category", "sample")
+                                .append("skillLevel", "sample"), "viewCount", sampleId),
+                        new Document("viewCount", -1).append("_id", -1)),
+                plans("browseByTagsNextPage", after(
+                                new Document("tags", new Document("$in", List.of("a", "b"))).append("isPublic", true),
+                                "viewCount", sampleId),
+                        new Document("viewCount", -1).append("_id", -1)),
+
+                // ProgressUpdateRepository
+                updates("findByUserId", new Document("user.$id", sampleId), newest),
+                updates("findByRelatedPlanId", new Document("relatedPlan.$id", sampleId), newest),
+                updates("findByUserIdAndRelatedPlanId",
+                        new Document("user.$id", sampleId).append("relatedPlan.$id", sampleId), none),
+                updates("findByLearningUnitId", new Document("learningUnitId", "sample"), none),
+                updates("findByIsPublicTrue", publicOnly(), newest),
+                updates("findByType", new Document("type", "MILESTONE"), none),
+                updates("findByUserIdAndType", new Document("user.$id", sampleId).append("type", "MILESTONE"), none),
+                updates("findAll", none, newest),
+                updates("allFeedNextPage", after(none, null, sampleId), newest),
+                updates("publicFeedNextPage", after(publicOnly(), null, sampleId), newest),
+                updates("byUserNextPage", after(new Document("user.$id", sampleId), null, sampleId), newest),
+                updates("byPlanNextPage", after(new Document("relatedPlan.$id", sampleId), null, sampleId), newest),
+                updates("homeFeedPull", new Document("relatedPlan.$id", new Document("$in", List.of(sampleId)))
+                        .append("isPublic", true), newest),
+
+                // Shared fork snapshots (LearningPlanForkService.sweepOrphanedSnapshots)
+                plans("snapshotReferences",
+                        new Document("contentSnapshotId", new Document("$in", List.of("a", "b"))), none),
+                new QueryShape("orphanedSnapshots", "plan_content_snapshots",
+                        new Document("lastUsedAt", new Document("$not", new Document("$gte", new Date())))
+                                .append("_id", new Document("$gt", "sample")), new Document("_id", 1)),
+
+                new QueryShape("progressUpdateViews", "progress_update_views",
+                        new Document("progressUpdateId", sampleId.toHexString()), none),
+                new QueryShape("homeFeedBucketsByUpdate", "home_feed_buckets",
+                        new Document("entries.updateId", sampleId.toHexString()), none),
+                new QueryShape("outboxPending", "outbox_events",
+                        new Document("dispatched", false).append("aggregateId",
+                                new Document("$nin", List.of(sampleId.toHexString()))), new Document("_id", 1)),
+                new QueryShape("outboxLeased", "outbox_events",
+                        new Document("dispatched", false).append("leaseUntil", new Document("$gt", new Date())), none),
+                new QueryShape("trendingScores", "trending_scores",
+                        new Document("epoch", 0L), new Document("score", -1))
+        );
+    }
+
+    private static QueryShape plans(String name, Document filter, Document sort) {
+        return new QueryShape("LearningPlan." + name, "learning_plans", filter, sort);
+    }
+
+    private static QueryShape updates(String name, Document filter, Document sort) {
+        return new QueryShape("ProgressUpdate." + name, "progress_updates", filter, sort);
+    }
+
+    private static Document publicOnly() {
+        return new Document("isPublic", true);
+    }
+
+    // What TitleContainingIgnoreCase derives
+    private static Document titleRegex() {
+        return new Document("$regex", "sample").append("$options", "i");
+    }
+
+    // The filter CursorCodec.after adds to a page-one filter: _id below the cursor, or past it on (sortField, _id)
+    private static Document after(Document filter, String sortField, ObjectId lastId) {
+        Document continued = new Document(filter);
+        if (sortField == null) {
+            return continued.append("_id", new Document("$lt", lastId));
+        }
+        return continued.append("$or", List.of(
+                new Document(sortField, new Document("$lt", 100L)),
+                new Document("$and", List.of(
+                        new Document(sortField, 100L),
+                        new Document("_id", new Document("$lt", lastId))))));
+    }
+
+    // Walks a (classic or SBE) plan tree and collects every stage name
+    private static void collectStages(Object node, Set<String> stages) {
+        if (node instanceof Document document) {
+            Object stage = document.get("stage");
+            if (stage instanceof String name) {
+                stages.add(name);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.pafbackendversionthree.config;
+
+import com.example.pafbackendversionthree.services.EntityCache;
+import com.example.pafbackendversionthree.services.LearningPlanViewCounter;
+import com.example.pafbackendversionthree.services.OutboxDispatcher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer metrics, served by actuator at /actuator/metrics (and /actuator/prometheus when
+ * that registry is present). Boot's auto-configuration times requests (http.server.requests),
+ * repository calls (spring.data.repository.invocations) and every MongoDB command, including
+ * those issued through MongoTemplate (mongodb.driver.commands, via MongoMetricsCommandListener).
+ * Those timers publish percentile histograms here so p95/p99 can be aggregated across instances.
+ *
+ * The entity caches are bound through CaffeineCacheMetrics (cache.gets, cache.evictions, ...,
+ * tagged with the cache name), plus app.cache.invalidations. The in-process stats of the view
+ * counter, the outbox and pinning diagnostics are bound as gauges under app.*.
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final List<String> HISTOGRAM_TIMERS = List.of(
+            "http.server.requests", "spring.data.repository.invocations", "mongodb.driver.commands");
+
+    @Bean
+    public MeterFilter percentileHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!HISTOGRAM_TIMERS.contains(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder applicationStats(List<EntityCache<?>> caches,
+                                        LearningPlanViewCounter learningPlanViewCounter,
+                                        OutboxDispatcher outboxDispatcher,
+                                        ObjectProvider<PinningDiagnostics> pinningDiagnostics) {
+        return registry -> {
+            caches.forEach(cache -> {
+                CaffeineCacheMetrics.monitor(registry, cache.nativeCache(), cache.getName());
+                Gauge.builder("app.cache.invalidations", cache, EntityCache::invalidations)
+                        .tags(Tags.of("cache", cache.getName()))
+                        .register(registry);
+            });
+            gauges(registry, "app.learning-plan.views", learningPlanViewCounter::stats, Tags.empty());
+            gauges(registry, "app.outbox", outboxDispatcher::stats, Tags.empty());
+            pinningDiagnostics.ifAvailable(diagnostics ->
+                    gauges(registry, "app.virtual-threads.pinning", diagnostics::stats, Tags.empty()));
+        };
+    }
+
+    // One gauge per stat, each reading the current value when the registry is sampled
+    private static void gauges(MeterRegistry registry, String prefix, Supplier<Map<String, Number>> stats, Tags tags) {
+        for (String stat : stats.get().keySet()) {
+            Gauge.builder(prefix + "." + stat, stats, current -> {
+                        Number value = current.get().get(stat);
+                        return value == null ? Double.NaN : value.doubleValue();
+                    })
+                    .tags(tags)
+                    .strongReference(true)  // The method reference is held by nothing else
+                    .register(registry);
+        }
+    }
+}
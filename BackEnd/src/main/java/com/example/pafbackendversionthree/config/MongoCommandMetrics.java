@@ -0,0 +1,91 @@
+package com.example.pafbackendversionthree.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adds what MongoMetricsCommandListener (mongodb.driver.commands, registered by actuator) does
+ * not record: the documents returned by reads per command and collection (mongodb.driver.documents)
+ * and a count of single-document _id lookups (mongodb.driver.lookups.by-id). Lazy @DBRef resolution
+ * issues one such lookup per reference, so a growing by-id count next to a flat request rate points
+ * at an N+1 read. Both cover repositories and MongoTemplate alike.
+ */
+@Configuration
+public class MongoCommandMetrics {
+
+    private static final Set<String> READS = Set.of("find", "getMore", "aggregate");
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer commandMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        return settings -> settings.addCommandListener(new CommandListener() {
+
+            // Collection of each command in flight; the completion events do not carry it
+            private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                BsonDocument command = event.getCommand();
+                String name = event.getCommandName();
+                BsonValue target = "getMore".equals(name) ? command.get("collection") : command.get(name);
+                String collection = target != null && target.isString() ? target.asString().getValue() : "none";
+                collections.put(event.getRequestId(), collection);
+
+                if ("find".equals(name) && isByIdLookup(command.get("filter"))) {
+                    Counter.builder("mongodb.driver.lookups.by-id")
+                            .tag("collection", collection)
+                            .register(meterRegistry.getObject())
+                            .increment();
+                }
+            }
+
+            @Override
+            public void commandSucceeded(CommandSucceededEvent event) {
+                String collection = Objects.requireNonNullElse(collections.remove(event.getRequestId()), "none");
+                String name = event.getCommandName();
+                if (READS.contains(name) && event.getResponse().get("cursor") instanceof BsonDocument cursor) {
+                    BsonValue batch = cursor.containsKey("firstBatch") ? cursor.get("firstBatch") : cursor.get("nextBatch");
+                    if (batch instanceof BsonArray documents) {
+                        DistributionSummary.builder("mongodb.driver.documents")
+                                .baseUnit("documents")
+                                .tag("command", name)
+                                .tag("collection", collection)
+                                .publishPercentileHistogram()
+                                .register(meterRegistry.getObject())
+                                .record(documents.size());
+                    }
+                }
+            }
+
+            @Override
+            public void commandFailed(CommandFailedEvent event) {
+                collections.remove(event.getRequestId());
+            }
+        });
+    }
+
+    // {_id: value} with a plain value, the shape of findById and of resolving one DBRef
+    private static boolean isByIdLookup(BsonValue filter) {
+        if (!(filter instanceof BsonDocument document) || document.size() != 1) {
+            return false;
+        }
+        BsonValue id = document.get("_id");
+        return id != null && !id.isDocument();
+    }
+}
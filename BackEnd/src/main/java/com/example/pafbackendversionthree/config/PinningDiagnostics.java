@@ -0,0 +1,81 @@
+package com.example.pafbackendversionthree.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * In virtual-thread mode, listens for the JFR jdk.VirtualThreadPinned event and logs the top
+ * frames of every virtual thread that stayed pinned to its carrier longer than
+ * app.threads.pinning-threshold-ms (blocking inside synchronized or a native frame).
+ *
+ * The application's own shared state uses ReentrantLock or lock-free concurrent collections
+ * rather than synchronized (including synchronized collection wrappers) for this reason;
+ * anything reported here comes from a library. For ad-hoc runs the JVM flag
+ * -Djdk.tracePinnedThreads=short prints the same information to stdout.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class PinningDiagnostics {
+
+    private static final Logger log = LoggerFactory.getLogger(PinningDiagnostics.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Duration threshold;
+    private final LongAdder pinnedEvents = new LongAdder();
+    private RecordingStream recording;
+
+    public PinningDiagnostics(@Value("${app.threads.pinning-threshold-ms:20}") long thresholdMillis) {
+        this.threshold = Duration.ofMillis(thresholdMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::report);
+        recording.startAsync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    public Map<String, Number> stats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("pinnedEvents", pinnedEvents.sum());
+        stats.put("thresholdMillis", threshold.toMillis());
+        return stats;
+    }
+
+    private void report(RecordedEvent event) {
+        pinnedEvents.increment();
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        String stack = frames.stream()
+                .limit(LOGGED_FRAMES)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n    at ", "\n    at ", ""));
+        log.warn("Virtual thread pinned for {} ms{}", event.getDuration().toMillis(), stack);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.pafbackendversionthree.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Enables the periodic flush/maintenance jobs declared with @Scheduled in the services
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,34 @@
+package com.example.pafbackendversionthree.config;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Load-testing aid: app.mongodb.simulated-latency-ms delays every MongoDB command on the calling
+ * thread, reproducing a slow database so the platform and virtual thread modes can be compared
+ * under the same latency. Never set outside test environments.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.mongodb.simulated-latency-ms")
+public class SimulatedLatencyConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer simulatedLatency(
+            @Value("${app.mongodb.simulated-latency-ms}") long latencyMillis) {
+        return settings -> settings.addCommandListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+}
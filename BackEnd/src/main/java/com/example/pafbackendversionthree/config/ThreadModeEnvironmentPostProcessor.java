@@ -0,0 +1,28 @@
+package com.example.pafbackendversionthree.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Maps app.threads.mode onto Boot's own switch. app.threads.mode=virtual (JDK 21+) sets
+ * spring.threads.virtual.enabled=true, so Boot runs Tomcat's requests, the applicationTaskExecutor
+ * behind @Async and streaming (NDJSON) bodies, and @Scheduled jobs on virtual threads; handlers
+ * blocked on MongoDB park a cheap virtual thread instead of holding a pooled worker. The default,
+ * "platform", keeps the regular pools. An explicit spring.threads.virtual.enabled still wins.
+ */
+public class ThreadModeEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String PROPERTY_SOURCE_NAME = "appThreadsMode";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if ("virtual".equalsIgnoreCase(environment.getProperty("app.threads.mode"))) {
+            environment.getPropertySources().addLast(new MapPropertySource(PROPERTY_SOURCE_NAME,
+                    Map.of("spring.threads.virtual.enabled", "true")));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.pafbackendversionthree.controllers;
+
+import com.example.pafbackendversionthree.dtos.LearningAnalyticsDTO;
+import com.example.pafbackendversionthree.services.LearningAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class LearningAnalyticsController {
+
+    private static final int MAX_DAYS = 366;
+    private static final int MAX_WEEKS = 104;
+
+    private final LearningAnalyticsService learningAnalyticsService;
+
+    @Autowired
+    public LearningAnalyticsController(LearningAnalyticsService learningAnalyticsService) {
+        this.learningAnalyticsService = learningAnalyticsService;
+    }
+
+    /**
+     * Get a user's learning totals with their newest daily and weekly buckets
+     */
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<LearningAnalyticsDTO.UserLearningStatsResponse> getUserStats(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "30") int days,
+            @RequestParam(defaultValue = "12") int weeks) {
+        LearningAnalyticsDTO.UserLearningStatsResponse stats = learningAnalyticsService.getUserStats(userId,
+                Math.max(0, Math.min(days, MAX_DAYS)), Math.max(0, Math.min(weeks, MAX_WEEKS)));
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Recompute all learning rollups from scratch
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Number>> rebuild() {
+        return ResponseEntity.ok(learningAnalyticsService.rebuild());
+    }
+}
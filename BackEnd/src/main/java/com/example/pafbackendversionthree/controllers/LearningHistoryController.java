@@ -0,0 +1,32 @@
+package com.example.pafbackendversionthree.controllers;
+
+import com.example.pafbackendversionthree.services.LearningHistoryExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/learning-history")
+public class LearningHistoryController {
+
+    private final LearningHistoryExportService learningHistoryExportService;
+
+    @Autowired
+    public LearningHistoryController(LearningHistoryExportService learningHistoryExportService) {
+        this.learningHistoryExportService = learningHistoryExportService;
+    }
+
+    /**
+     * Export a user's learning plans and progress updates as gzipped NDJSON or CSV
+     */
+    @GetMapping("/{userId}/export")
+    public void exportLearningHistory(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        learningHistoryExportService.exportLearningHistory(userId, LearningHistoryExportService.Format.of(format),
+                response);
+    }
+}
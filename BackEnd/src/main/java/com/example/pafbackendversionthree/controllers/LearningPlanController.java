@@ -1,15 +1,31 @@
 package com.example.pafbackendversionthree.controllers;
 
+import com.example.pafbackendversionthree.dtos.BulkImportReport;
+import com.example.pafbackendversionthree.dtos.CursorPage;
 import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.services.BulkImportService;
+import com.example.pafbackendversionthree.services.EntityCache;
+import com.example.pafbackendversionthree.services.EntityTags;
+import com.example.pafbackendversionthree.services.LearningPlanFeedService;
+import com.example.pafbackendversionthree.services.LearningPlanForkService;
+import com.example.pafbackendversionthree.services.LearningPlanSearchIndex;
 import com.example.pafbackendversionthree.services.LearningPlanService;
+import com.example.pafbackendversionthree.services.LearningPlanViewCounter;
+import com.example.pafbackendversionthree.services.LearningPlanWriteService;
+import com.example.pafbackendversionthree.services.LearningUnitCompletionService;
+import com.example.pafbackendversionthree.services.TrendingLearningPlans;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -17,29 +33,90 @@ import java.util.List;
 public class LearningPlanController {
 
     private final LearningPlanService learningPlanService;
+    private final LearningPlanFeedService learningPlanFeedService;
+    private final LearningPlanForkService learningPlanForkService;
+    private final LearningPlanSearchIndex learningPlanSearchIndex;
+    private final LearningUnitCompletionService learningUnitCompletionService;
+    private final LearningPlanViewCounter learningPlanViewCounter;
+    private final TrendingLearningPlans trendingLearningPlans;
+    private final LearningPlanWriteService learningPlanWriteService;
+    private final BulkImportService bulkImportService;
+    private final EntityCache<LearningPlanDTO.LearningPlanResponse> learningPlanCache;
+    private final EntityTags entityTags;
 
     @Autowired
-    public LearningPlanController(LearningPlanService learningPlanService) {
+    public LearningPlanController(LearningPlanService learningPlanService,
+                                  LearningPlanFeedService learningPlanFeedService,
+                                  LearningPlanForkService learningPlanForkService,
+                                  LearningPlanSearchIndex learningPlanSearchIndex,
+                                  LearningUnitCompletionService learningUnitCompletionService,
+                                  LearningPlanViewCounter learningPlanViewCounter,
+                                  TrendingLearningPlans trendingLearningPlans,
+                                  LearningPlanWriteService learningPlanWriteService,
+                                  BulkImportService bulkImportService,
+                                  EntityCache<LearningPlanDTO.LearningPlanResponse> learningPlanCache,
+                                  EntityTags entityTags) {
         this.learningPlanService = learningPlanService;
+        this.learningPlanFeedService = learningPlanFeedService;
+        this.learningPlanForkService = learningPlanForkService;
+        this.learningPlanSearchIndex = learningPlanSearchIndex;
+        this.learningUnitCompletionService = learningUnitCompletionService;
+        this.learningPlanViewCounter = learningPlanViewCounter;
+        this.trendingLearningPlans = trendingLearningPlans;
+        this.learningPlanWriteService = learningPlanWriteService;
+        this.bulkImportService = bulkImportService;
+        this.learningPlanCache = learningPlanCache;
+        this.entityTags = entityTags;
     }
 
     @PostMapping
     public ResponseEntity<LearningPlanDTO.LearningPlanResponse> createLearningPlan(
             @RequestBody LearningPlanDTO.CreateLearningPlanRequest request) {
-        LearningPlanDTO.LearningPlanResponse response = learningPlanService.createLearningPlan(request);
+        LearningPlanDTO.LearningPlanResponse response = learningPlanWriteService.createLearningPlan(request);
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkImportReport> importLearningPlans(InputStream body) {
+        return ResponseEntity.ok(bulkImportService.importLearningPlans(body));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<LearningPlanDTO.LearningPlanResponse> getLearningPlanById(@PathVariable String id) {
-        LearningPlanDTO.LearningPlanResponse response = learningPlanService.getLearningPlanById(id);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<LearningPlanDTO.LearningPlanResponse> getLearningPlanById(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Every answered GET is a view, a revalidation included (see EntityTags)
+        EntityTags.PlanTag current = ifNoneMatch == null ? null : entityTags.learningPlan(id);
+        if (current != null && EntityTags.matches(ifNoneMatch, current.tag())) {
+            recordView(id, current.isPublic());
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current.tag()).build();
+        }
+        LearningPlanDTO.LearningPlanResponse response =
+                learningPlanCache.get(id, () -> learningPlanFeedService.getLearningPlanById(id));
+        recordView(id, response.isPublic());
+        return ResponseEntity.ok().eTag(EntityTags.of(response)).body(response);
     }
 
     @GetMapping("/owner/{ownerId}")
     public ResponseEntity<List<LearningPlanDTO.LearningPlanResponse>> getLearningPlansByOwnerId(
-            @PathVariable String ownerId) {
-        List<LearningPlanDTO.LearningPlanResponse> responses = learningPlanService.getLearningPlansByOwnerId(ownerId);
+            @PathVariable String ownerId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Read before the list, see EntityTags
+        String current = entityTags.ownerLearningPlans(ownerId);
+        if (EntityTags.matches(ifNoneMatch, current)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+        }
+        List<LearningPlanDTO.LearningPlanResponse> responses = learningPlanFeedService.getLearningPlansByOwnerId(ownerId);
+        return ResponseEntity.ok().eTag(current).body(responses);
+    }
+
+    @GetMapping("/owner/{ownerId}/nearly-finished")
+    public ResponseEntity<List<LearningPlanDTO.LearningPlanSummary>> getNearlyFinishedLearningPlans(
+            @PathVariable String ownerId,
+            @RequestParam(defaultValue = "50") double minPercentage,
+            @RequestParam(defaultValue = "10") int size) {
+        List<LearningPlanDTO.LearningPlanSummary> responses =
+                learningPlanFeedService.getNearlyFinishedPlans(ownerId, minPercentage, size);
         return ResponseEntity.ok(responses);
     }
 
@@ -50,14 +127,40 @@ public class LearningPlanController {
         return ResponseEntity.ok(responses);
     }
 
+    @GetMapping(value = "/public", params = "cursor")
+    public ResponseEntity<CursorPage<LearningPlanDTO.LearningPlanSummary>> getPublicLearningPlansByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<LearningPlanDTO.LearningPlanSummary> responses =
+                learningPlanFeedService.getPublicLearningPlans(cursor, size);
+        return ResponseEntity.ok(responses);
+    }
+
     @GetMapping("/search")
     public ResponseEntity<Page<LearningPlanDTO.LearningPlanResponse>> searchLearningPlans(
             @RequestParam(required = false) String query,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String skillLevel,
             @PageableDefault(size = 10) Pageable pageable) {
-        Page<LearningPlanDTO.LearningPlanResponse> responses = learningPlanService.searchLearningPlans(
-                query, category, skillLevel, pageable);
+        // Falls back to the repository search until the index has finished its startup build
+        Page<LearningPlanDTO.LearningPlanResponse> responses = learningPlanSearchIndex.isReady()
+                ? learningPlanSearchIndex.search(query, category, skillLevel, pageable)
+                : learningPlanService.searchLearningPlans(query, category, skillLevel, pageable);
+        return ResponseEntity.ok(responses);
+    }
+
+    @GetMapping(value = "/search", params = "cursor")
+    public ResponseEntity<CursorPage<LearningPlanDTO.LearningPlanResponse>> searchLearningPlansByCursor(
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String skillLevel,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        if (!learningPlanSearchIndex.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Search index is still being built");
+        }
+        CursorPage<LearningPlanDTO.LearningPlanResponse> responses =
+                learningPlanSearchIndex.search(query, category, skillLevel, cursor, size);
         return ResponseEntity.ok(responses);
     }
 
@@ -65,13 +168,15 @@ public class LearningPlanController {
     public ResponseEntity<LearningPlanDTO.LearningPlanResponse> updateLearningPlan(
             @PathVariable String id,
             @RequestBody LearningPlanDTO.UpdateLearningPlanRequest request) {
-        LearningPlanDTO.LearningPlanResponse response = learningPlanService.updateLearningPlan(id, request);
+        LearningPlanDTO.LearningPlanResponse response = learningPlanWriteService.updateLearningPlan(id, request);
+        learningPlanCache.invalidate(id);
         return ResponseEntity.ok(response);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteLearningPlan(@PathVariable String id) {
-        learningPlanService.deleteLearningPlan(id);
+        learningPlanWriteService.deleteLearningPlan(id);
+        learningPlanCache.invalidate(id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -79,7 +184,8 @@ public class LearningPlanController {
     public ResponseEntity<LearningPlanDTO.LearningPlanResponse> completeLearningUnit(
             @PathVariable String planId,
             @PathVariable String unitId) {
-        LearningPlanDTO.LearningPlanResponse response = learningPlanService.completeLearningUnit(planId, unitId);
+        LearningPlanDTO.LearningPlanResponse response = learningUnitCompletionService.completeLearningUnit(planId, unitId);
+        learningPlanCache.invalidate(planId);
         return ResponseEntity.ok(response);
     }
 
@@ -87,15 +193,18 @@ public class LearningPlanController {
     public ResponseEntity<LearningPlanDTO.LearningPlanResponse> forkLearningPlan(
             @PathVariable String planId,
             @RequestParam String userId) {
-        LearningPlanDTO.LearningPlanResponse response = learningPlanService.forkLearningPlan(planId, userId);
+        LearningPlanDTO.LearningPlanResponse response = learningPlanForkService.forkLearningPlan(planId, userId);
+        learningPlanCache.invalidate(planId);
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
     @GetMapping("/by-tags")
-    public ResponseEntity<List<LearningPlanDTO.LearningPlanResponse>> getLearningPlansByTags(
-            @RequestParam List<String> tags) {
-        List<LearningPlanDTO.LearningPlanResponse> responses = learningPlanService.getLearningPlansByTags(tags);
-        return ResponseEntity.ok(responses);
+    public ResponseEntity<LearningPlanDTO.TagBrowseResponse> getLearningPlansByTags(
+            @RequestParam List<String> tags,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        LearningPlanDTO.TagBrowseResponse response = learningPlanFeedService.browseByTags(tags, cursor, size);
+        return ResponseEntity.ok(response);
     }
 
     @GetMapping("/popular")
@@ -105,6 +214,22 @@ public class LearningPlanController {
         return ResponseEntity.ok(responses);
     }
 
+    @GetMapping("/trending")
+    public ResponseEntity<List<LearningPlanDTO.LearningPlanSummary>> getTrendingLearningPlans(
+            @RequestParam(defaultValue = "10") int size) {
+        List<LearningPlanDTO.LearningPlanSummary> responses = trendingLearningPlans.getTrending(size);
+        return ResponseEntity.ok(responses);
+    }
+
+    @GetMapping(value = "/popular", params = "cursor")
+    public ResponseEntity<CursorPage<LearningPlanDTO.LearningPlanSummary>> getMostPopularLearningPlansByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<LearningPlanDTO.LearningPlanSummary> responses =
+                learningPlanFeedService.getMostPopularLearningPlans(cursor, size);
+        return ResponseEntity.ok(responses);
+    }
+
     @GetMapping("/most-forked")
     public ResponseEntity<Page<LearningPlanDTO.LearningPlanResponse>> getMostForkedLearningPlans(
             @PageableDefault(size = 10) Pageable pageable) {
@@ -112,9 +237,25 @@ public class LearningPlanController {
         return ResponseEntity.ok(responses);
     }
 
+    @GetMapping(value = "/most-forked", params = "cursor")
+    public ResponseEntity<CursorPage<LearningPlanDTO.LearningPlanSummary>> getMostForkedLearningPlansByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<LearningPlanDTO.LearningPlanSummary> responses =
+                learningPlanFeedService.getMostForkedLearningPlans(cursor, size);
+        return ResponseEntity.ok(responses);
+    }
+
     @GetMapping("/count")
     public ResponseEntity<Long> countLearningPlansByOwner(@RequestParam String ownerId) {
         long count = learningPlanService.countLearningPlansByOwner(ownerId);
         return ResponseEntity.ok(count);
     }
-}
\ No newline at end of file
+
+    private void recordView(String planId, boolean isPublic) {
+        learningPlanViewCounter.recordView(planId);
+        if (isPublic) {
+            trendingLearningPlans.recordView(planId);
+        }
+    }
+}
@@ -1,12 +1,26 @@
 package com.example.pafbackendversionthree.controllers;
 
+import com.example.pafbackendversionthree.dtos.BulkImportReport;
+import com.example.pafbackendversionthree.dtos.CursorPage;
 import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.services.BulkImportService;
+import com.example.pafbackendversionthree.services.EntityCache;
+import com.example.pafbackendversionthree.services.EntityTags;
+import com.example.pafbackendversionthree.services.HomeFeedService;
+import com.example.pafbackendversionthree.services.ProgressUpdateCounterService;
+import com.example.pafbackendversionthree.services.ProgressUpdateFeedService;
 import com.example.pafbackendversionthree.services.ProgressUpdateService;
+import com.example.pafbackendversionthree.services.ProgressUpdateViewService;
+import com.example.pafbackendversionthree.services.ProgressUpdateWriteService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -14,10 +28,34 @@ import java.util.List;
 public class ProgressUpdateController {
 
     private final ProgressUpdateService progressUpdateService;
+    private final ProgressUpdateFeedService progressUpdateFeedService;
+    private final ProgressUpdateViewService progressUpdateViewService;
+    private final ProgressUpdateCounterService progressUpdateCounterService;
+    private final HomeFeedService homeFeedService;
+    private final ProgressUpdateWriteService progressUpdateWriteService;
+    private final BulkImportService bulkImportService;
+    private final EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache;
+    private final EntityTags entityTags;
 
     @Autowired
-    public ProgressUpdateController(ProgressUpdateService progressUpdateService) {
+    public ProgressUpdateController(ProgressUpdateService progressUpdateService,
+                                    ProgressUpdateFeedService progressUpdateFeedService,
+                                    ProgressUpdateViewService progressUpdateViewService,
+                                    ProgressUpdateCounterService progressUpdateCounterService,
+                                    HomeFeedService homeFeedService,
+                                    ProgressUpdateWriteService progressUpdateWriteService,
+                                    BulkImportService bulkImportService,
+                                    EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache,
+                                    EntityTags entityTags) {
         this.progressUpdateService = progressUpdateService;
+        this.progressUpdateFeedService = progressUpdateFeedService;
+        this.progressUpdateViewService = progressUpdateViewService;
+        this.progressUpdateCounterService = progressUpdateCounterService;
+        this.homeFeedService = homeFeedService;
+        this.progressUpdateWriteService = progressUpdateWriteService;
+        this.bulkImportService = bulkImportService;
+        this.progressUpdateCache = progressUpdateCache;
+        this.entityTags = entityTags;
     }
 
     /**
@@ -26,10 +64,29 @@ public class ProgressUpdateController {
     @PostMapping
     public ResponseEntity<ProgressUpdateDTO.ProgressUpdateResponse> createProgressUpdate(
             @RequestBody ProgressUpdateDTO.CreateProgressUpdateRequest request) {
-        ProgressUpdateDTO.ProgressUpdateResponse response = progressUpdateService.createProgressUpdate(request);
+        ProgressUpdateDTO.ProgressUpdateResponse response = progressUpdateWriteService.createProgressUpdate(request);
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    /**
+     * Import progress updates from a JSON array or NDJSON body, reporting the result of each item
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkImportReport> importProgressUpdates(InputStream body) {
+        return ResponseEntity.ok(bulkImportService.importProgressUpdates(body));
+    }
+
+    /**
+     * Get a user's home feed: updates on plans they own or forked from, newest first
+     */
+    @GetMapping("/feed/{userId}")
+    public ResponseEntity<List<ProgressUpdateDTO.ProgressUpdateResponse>> getHomeFeed(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "20") int size) {
+        List<ProgressUpdateDTO.ProgressUpdateResponse> updates = homeFeedService.getFeed(userId, size);
+        return ResponseEntity.ok(updates);
+    }
+
     /**
      * Get all progress updates
      */
@@ -39,13 +96,40 @@ public class ProgressUpdateController {
         return ResponseEntity.ok(updates);
     }
 
+    /**
+     * Get all progress updates, one cursor page at a time (newest first)
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPage<ProgressUpdateDTO.ProgressUpdateResponse>> getAllProgressUpdatesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> updates =
+                progressUpdateFeedService.getAllProgressUpdates(cursor, size);
+        return ResponseEntity.ok(updates);
+    }
+
+    /**
+     * Stream all progress updates as NDJSON
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllProgressUpdates() {
+        return ndjson(progressUpdateFeedService::streamAllProgressUpdates);
+    }
+
     /**
      * Get a progress update by ID
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ProgressUpdateDTO.ProgressUpdateResponse> getProgressUpdateById(@PathVariable String id) {
-        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateService.getProgressUpdateById(id);
-        return ResponseEntity.ok(update);
+    public ResponseEntity<ProgressUpdateDTO.ProgressUpdateResponse> getProgressUpdateById(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String current = ifNoneMatch == null ? null : entityTags.progressUpdate(id);
+        if (EntityTags.matches(ifNoneMatch, current)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+        }
+        ProgressUpdateDTO.ProgressUpdateResponse update =
+                progressUpdateCache.get(id, () -> progressUpdateService.getProgressUpdateById(id));
+        return ResponseEntity.ok().eTag(EntityTags.of(update)).body(update);
     }
 
     /**
@@ -53,11 +137,38 @@ public class ProgressUpdateController {
      */
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<ProgressUpdateDTO.ProgressUpdateResponse>> getProgressUpdatesByUserId(
-            @PathVariable String userId) {
+            @PathVariable String userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Read before the list, see EntityTags
+        String current = entityTags.userProgressUpdates(userId);
+        if (EntityTags.matches(ifNoneMatch, current)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).build();
+        }
         List<ProgressUpdateDTO.ProgressUpdateResponse> updates = progressUpdateService.getProgressUpdatesByUserId(userId);
+        return ResponseEntity.ok().eTag(current).body(updates);
+    }
+
+    /**
+     * Get progress updates by user ID, one cursor page at a time
+     */
+    @GetMapping(value = "/user/{userId}", params = "cursor")
+    public ResponseEntity<CursorPage<ProgressUpdateDTO.ProgressUpdateResponse>> getProgressUpdatesByUserIdByCursor(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> updates =
+                progressUpdateFeedService.getProgressUpdatesByUserId(userId, cursor, size);
         return ResponseEntity.ok(updates);
     }
 
+    /**
+     * Stream progress updates by user ID as NDJSON
+     */
+    @GetMapping("/user/{userId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamProgressUpdatesByUserId(@PathVariable String userId) {
+        return ndjson(out -> progressUpdateFeedService.streamProgressUpdatesByUserId(userId, out));
+    }
+
     /**
      * Get progress updates by learning plan ID
      */
@@ -68,6 +179,27 @@ public class ProgressUpdateController {
         return ResponseEntity.ok(updates);
     }
 
+    /**
+     * Get progress updates by learning plan ID, one cursor page at a time
+     */
+    @GetMapping(value = "/plan/{planId}", params = "cursor")
+    public ResponseEntity<CursorPage<ProgressUpdateDTO.ProgressUpdateResponse>> getProgressUpdatesByPlanIdByCursor(
+            @PathVariable String planId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> updates =
+                progressUpdateFeedService.getProgressUpdatesByPlanId(planId, cursor, size);
+        return ResponseEntity.ok(updates);
+    }
+
+    /**
+     * Stream progress updates by learning plan ID as NDJSON
+     */
+    @GetMapping("/plan/{planId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamProgressUpdatesByPlanId(@PathVariable String planId) {
+        return ndjson(out -> progressUpdateFeedService.streamProgressUpdatesByPlanId(planId, out));
+    }
+
     /**
      * Get progress updates by learning unit ID
      */
@@ -87,6 +219,26 @@ public class ProgressUpdateController {
         return ResponseEntity.ok(updates);
     }
 
+    /**
+     * Get public progress updates, one cursor page at a time
+     */
+    @GetMapping(value = "/public", params = "cursor")
+    public ResponseEntity<CursorPage<ProgressUpdateDTO.ProgressUpdateResponse>> getPublicProgressUpdatesByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> updates =
+                progressUpdateFeedService.getPublicProgressUpdates(cursor, size);
+        return ResponseEntity.ok(updates);
+    }
+
+    /**
+     * Stream public progress updates as NDJSON
+     */
+    @GetMapping("/public/stream")
+    public ResponseEntity<StreamingResponseBody> streamPublicProgressUpdates() {
+        return ndjson(progressUpdateFeedService::streamPublicProgressUpdates);
+    }
+
     /**
      * Update a progress update
      */
@@ -94,7 +246,8 @@ public class ProgressUpdateController {
     public ResponseEntity<ProgressUpdateDTO.ProgressUpdateResponse> updateProgressUpdate(
             @PathVariable String id,
             @RequestBody ProgressUpdateDTO.UpdateProgressUpdateRequest request) {
-        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateService.updateProgressUpdate(id, request);
+        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateWriteService.updateProgressUpdate(id, request);
+        progressUpdateCache.invalidate(id);
         return ResponseEntity.ok(update);
     }
 
@@ -103,7 +256,8 @@ public class ProgressUpdateController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteProgressUpdate(@PathVariable String id) {
-        progressUpdateService.deleteProgressUpdate(id);
+        progressUpdateWriteService.deleteProgressUpdate(id);
+        progressUpdateCache.invalidate(id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -112,7 +266,7 @@ public class ProgressUpdateController {
      */
     @PostMapping("/{id}/like")
     public ResponseEntity<ProgressUpdateDTO.ProgressUpdateResponse> likeProgressUpdate(@PathVariable String id) {
-        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateService.likeProgressUpdate(id);
+        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateCounterService.likeProgressUpdate(id);
         return ResponseEntity.ok(update);
     }
 
@@ -121,7 +275,7 @@ public class ProgressUpdateController {
      */
     @PostMapping("/{id}/unlike")
     public ResponseEntity<ProgressUpdateDTO.ProgressUpdateResponse> unlikeProgressUpdate(@PathVariable String id) {
-        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateService.unlikeProgressUpdate(id);
+        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateCounterService.unlikeProgressUpdate(id);
         return ResponseEntity.ok(update);
     }
 
@@ -132,7 +286,7 @@ public class ProgressUpdateController {
     public ResponseEntity<ProgressUpdateDTO.ProgressUpdateResponse> markAsViewed(
             @PathVariable String id,
             @RequestBody String userId) {
-        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateService.markAsViewed(id, userId);
+        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateViewService.markAsViewed(id, userId);
         return ResponseEntity.ok(update);
     }
 
@@ -144,7 +298,14 @@ public class ProgressUpdateController {
             @RequestParam String userId,
             @RequestParam(required = false) String planId,
             @RequestParam String templateType) {
-        ProgressUpdateDTO.ProgressUpdateResponse update = progressUpdateService.createFromTemplate(userId, planId, templateType);
+        ProgressUpdateDTO.ProgressUpdateResponse update =
+                progressUpdateWriteService.createFromTemplate(userId, planId, templateType);
         return new ResponseEntity<>(update, HttpStatus.CREATED);
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<StreamingResponseBody> ndjson(StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.pafbackendversionthree.dtos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk import: totals plus one result per submitted item, in submission order
+public class BulkImportReport {
+    private int received;
+    private int created;
+    private int rejected;
+    private String error;       // Set when the body could not be read to the end
+    private List<ItemResult> results = new ArrayList<>();
+
+    public static class ItemResult {
+        private int index;
+        private String status;  // CREATED, INVALID or FAILED
+        private String id;
+        private String message;
+
+        public ItemResult(int index, String status, String id, String message) {
+            this.index = index;
+            this.status = status;
+            this.id = id;
+            this.message = message;
+        }
+
+        // Getters and Setters
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+
+    public void created(int index, String id) {
+        results.add(new ItemResult(index, "CREATED", id, null));
+        received++;
+        created++;
+    }
+
+    public void invalid(int index, String message) {
+        results.add(new ItemResult(index, "INVALID", null, message));
+        received++;
+        rejected++;
+    }
+
+    public void failed(int index, String id, String message) {
+        results.add(new ItemResult(index, "FAILED", id, message));
+        received++;
+        rejected++;
+    }
+
+    // Getters and Setters
+    public int getReceived() {
+        return received;
+    }
+
+    public void setReceived(int received) {
+        this.received = received;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public List<ItemResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ItemResult> results) {
+        this.results = results;
+    }
+}
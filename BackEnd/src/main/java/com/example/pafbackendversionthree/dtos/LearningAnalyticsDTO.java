@@ -0,0 +1,184 @@
+package com.example.pafbackendversionthree.dtos;
+
+import com.example.pafbackendversionthree.models.UserLearningStats;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class LearningAnalyticsDTO {
+
+    // Response DTO for a user's learning rollup
+    public static class UserLearningStatsResponse {
+        private String userId;
+        private long updateCount;
+        private long hoursSpent;
+        private Double averageRating;
+        private Map<String, Long> byType;
+        private Map<String, Long> bySentiment;
+        private Map<String, Long> planHoursSpent;
+        private Map<String, Long> planCompletedHours;
+        private Map<String, BucketDTO> daily;
+        private Map<String, BucketDTO> weekly;
+        private Date updatedAt;
+
+        // Only the newest `days` daily and `weeks` weekly buckets are returned, oldest first
+        public UserLearningStatsResponse(String userId, UserLearningStats stats, int days, int weeks) {
+            this.userId = userId;
+            this.updateCount = stats.getUpdateCount();
+            this.hoursSpent = stats.getHoursSpent();
+            this.averageRating = stats.getRatingCount() > 0
+                    ? (double) stats.getRatingSum() / stats.getRatingCount()
+                    : null;
+            this.byType = nonZero(stats.getByType());
+            this.bySentiment = nonZero(stats.getBySentiment());
+            this.planHoursSpent = nonZero(stats.getPlanHoursSpent());
+            this.planCompletedHours = new LinkedHashMap<>(stats.getPlanCompletedHours());
+            this.daily = newest(stats.getDaily(), days);
+            this.weekly = newest(stats.getWeekly(), weeks);
+            this.updatedAt = stats.getUpdatedAt();
+        }
+
+        // Counters of deleted or re-typed updates drop to zero rather than disappearing
+        private static Map<String, Long> nonZero(Map<String, Long> counts) {
+            Map<String, Long> result = new LinkedHashMap<>();
+            counts.forEach((key, count) -> {
+                if (count != null && count != 0) {
+                    result.put(key, count);
+                }
+            });
+            return result;
+        }
+
+        private static Map<String, BucketDTO> newest(Map<String, UserLearningStats.Bucket> buckets, int limit) {
+            TreeMap<String, BucketDTO> sorted = new TreeMap<>();
+            buckets.forEach((key, bucket) -> {
+                if (bucket.getCount() != 0) {
+                    sorted.put(key, new BucketDTO(bucket));
+                }
+            });
+            while (sorted.size() > limit) {
+                sorted.pollFirstEntry();
+            }
+            return sorted;
+        }
+
+        // Getters and Setters
+        public String getUserId() {
+            return userId;
+        }
+
+        public void setUserId(String userId) {
+            this.userId = userId;
+        }
+
+        public long getUpdateCount() {
+            return updateCount;
+        }
+
+        public void setUpdateCount(long updateCount) {
+            this.updateCount = updateCount;
+        }
+
+        public long getHoursSpent() {
+            return hoursSpent;
+        }
+
+        public void setHoursSpent(long hoursSpent) {
+            this.hoursSpent = hoursSpent;
+        }
+
+        public Double getAverageRating() {
+            return averageRating;
+        }
+
+        public void setAverageRating(Double averageRating) {
+            this.averageRating = averageRating;
+        }
+
+        public Map<String, Long> getByType() {
+            return byType;
+        }
+
+        public void setByType(Map<String, Long> byType) {
+            this.byType = byType;
+        }
+
+        public Map<String, Long> getBySentiment() {
+            return bySentiment;
+        }
+
+        public void setBySentiment(Map<String, Long> bySentiment) {
+            this.bySentiment = bySentiment;
+        }
+
+        public Map<String, Long> getPlanHoursSpent() {
+            return planHoursSpent;
+        }
+
+        public void setPlanHoursSpent(Map<String, Long> planHoursSpent) {
+            this.planHoursSpent = planHoursSpent;
+        }
+
+        public Map<String, Long> getPlanCompletedHours() {
+            return planCompletedHours;
+        }
+
+        public void setPlanCompletedHours(Map<String, Long> planCompletedHours) {
+            this.planCompletedHours = planCompletedHours;
+        }
+
+        public Map<String, BucketDTO> getDaily() {
+            return daily;
+        }
+
+        public void setDaily(Map<String, BucketDTO> daily) {
+            this.daily = daily;
+        }
+
+        public Map<String, BucketDTO> getWeekly() {
+            return weekly;
+        }
+
+        public void setWeekly(Map<String, BucketDTO> weekly) {
+            this.weekly = weekly;
+        }
+
+        public Date getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public void setUpdatedAt(Date updatedAt) {
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    // Updates and hours in one day or week
+    public static class BucketDTO {
+        private long count;
+        private long hours;
+
+        public BucketDTO(UserLearningStats.Bucket bucket) {
+            this.count = bucket.getCount();
+            this.hours = bucket.getHours();
+        }
+
+        // Getters and Setters
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public long getHours() {
+            return hours;
+        }
+
+        public void setHours(long hours) {
+            this.hours = hours;
+        }
+    }
+}
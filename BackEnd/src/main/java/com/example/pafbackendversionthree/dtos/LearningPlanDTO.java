@@ -1,9 +1,11 @@
 package com.example.pafbackendversionthree.dtos;
 
+import com.example.pafbackendversionthree.models.AppUser;
 import com.example.pafbackendversionthree.models.LearningPlan;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class LearningPlanDTO {
@@ -319,6 +321,11 @@ public class LearningPlanDTO {
         private double completionPercentage;
 
         public LearningPlanResponse(LearningPlan learningPlan) {
+            this(learningPlan, learningPlan.getOwner());
+        }
+
+        // Owner passed in separately when it was already resolved in a batch
+        public LearningPlanResponse(LearningPlan learningPlan, AppUser owner) {
             this.id = learningPlan.getId();
             this.title = learningPlan.getTitle();
             this.description = learningPlan.getDescription();
@@ -333,8 +340,8 @@ public class LearningPlanDTO {
             this.estimatedHours = learningPlan.getEstimatedHours();
             this.completedHours = learningPlan.getCompletedHours();
 
-            if (learningPlan.getOwner() != null) {
-                this.owner = new AppUserDTO.AppUserBasicInfo(learningPlan.getOwner());
+            if (owner != null) {
+                this.owner = new AppUserDTO.AppUserBasicInfo(owner);
             }
 
             this.learningUnits = learningPlan.getLearningUnits().stream()
@@ -509,4 +516,201 @@ public class LearningPlanDTO {
             this.completionPercentage = completionPercentage;
         }
     }
-}
\ No newline at end of file
+
+    // Feed card view of a plan, built from a field projection without the unit/resource arrays
+    public static class LearningPlanSummary {
+        private String id;
+        private String title;
+        private String category;
+        private String skillLevel;
+        private boolean isCompleted;
+        private Date updatedAt;
+        private int estimatedHours;
+        private int completedHours;
+        private AppUserDTO.AppUserBasicInfo owner;
+        private int viewCount;
+        private int forkCount;
+        private int unitCount;
+        private int completedUnitCount;
+        private double completionPercentage;
+
+        public LearningPlanSummary(LearningPlan learningPlan, AppUser owner) {
+            this.id = learningPlan.getId();
+            this.title = learningPlan.getTitle();
+            this.category = learningPlan.getCategory();
+            this.skillLevel = learningPlan.getSkillLevel();
+            this.isCompleted = learningPlan.isCompleted();
+            this.updatedAt = learningPlan.getUpdatedAt();
+            this.estimatedHours = learningPlan.getEstimatedHours();
+            this.completedHours = learningPlan.getCompletedHours();
+
+            if (owner != null) {
+                this.owner = new AppUserDTO.AppUserBasicInfo(owner);
+            }
+
+            this.viewCount = learningPlan.getViewCount();
+            this.forkCount = learningPlan.getForkCount();
+            this.unitCount = learningPlan.getUnitCount();
+            this.completedUnitCount = learningPlan.getCompletedUnitCount();
+            this.completionPercentage = learningPlan.getCompletionPercentage();
+        }
+
+        // Getters and Setters
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public void setCategory(String category) {
+            this.category = category;
+        }
+
+        public String getSkillLevel() {
+            return skillLevel;
+        }
+
+        public void setSkillLevel(String skillLevel) {
+            this.skillLevel = skillLevel;
+        }
+
+        public boolean isCompleted() {
+            return isCompleted;
+        }
+
+        public void setCompleted(boolean completed) {
+            isCompleted = completed;
+        }
+
+        public Date getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public void setUpdatedAt(Date updatedAt) {
+            this.updatedAt = updatedAt;
+        }
+
+        public int getEstimatedHours() {
+            return estimatedHours;
+        }
+
+        public void setEstimatedHours(int estimatedHours) {
+            this.estimatedHours = estimatedHours;
+        }
+
+        public int getCompletedHours() {
+            return completedHours;
+        }
+
+        public void setCompletedHours(int completedHours) {
+            this.completedHours = completedHours;
+        }
+
+        public AppUserDTO.AppUserBasicInfo getOwner() {
+            return owner;
+        }
+
+        public void setOwner(AppUserDTO.AppUserBasicInfo owner) {
+            this.owner = owner;
+        }
+
+        public int getViewCount() {
+            return viewCount;
+        }
+
+        public void setViewCount(int viewCount) {
+            this.viewCount = viewCount;
+        }
+
+        public int getForkCount() {
+            return forkCount;
+        }
+
+        public void setForkCount(int forkCount) {
+            this.forkCount = forkCount;
+        }
+
+        public int getUnitCount() {
+            return unitCount;
+        }
+
+        public void setUnitCount(int unitCount) {
+            this.unitCount = unitCount;
+        }
+
+        public int getCompletedUnitCount() {
+            return completedUnitCount;
+        }
+
+        public void setCompletedUnitCount(int completedUnitCount) {
+            this.completedUnitCount = completedUnitCount;
+        }
+
+        public double getCompletionPercentage() {
+            return completionPercentage;
+        }
+
+        public void setCompletionPercentage(double completionPercentage) {
+            this.completionPercentage = completionPercentage;
+        }
+    }
+
+    // One page of plans for a tag selection plus facet counts over the whole selection
+    public static class TagBrowseResponse {
+        private CursorPage<LearningPlanSummary> plans;
+        private Map<String, Long> tags;         // Only filled in on the first page
+        private Map<String, Long> categories;
+        private Map<String, Long> skillLevels;
+
+        public TagBrowseResponse(CursorPage<LearningPlanSummary> plans) {
+            this.plans = plans;
+        }
+
+        // Getters and Setters
+        public CursorPage<LearningPlanSummary> getPlans() {
+            return plans;
+        }
+
+        public void setPlans(CursorPage<LearningPlanSummary> plans) {
+            this.plans = plans;
+        }
+
+        public Map<String, Long> getTags() {
+            return tags;
+        }
+
+        public void setTags(Map<String, Long> tags) {
+            this.tags = tags;
+        }
+
+        public Map<String, Long> getCategories() {
+            return categories;
+        }
+
+        public void setCategories(Map<String, Long> categories) {
+            this.categories = categories;
+        }
+
+        public Map<String, Long> getSkillLevels() {
+            return skillLevels;
+        }
+
+        public void setSkillLevels(Map<String, Long> skillLevels) {
+            this.skillLevels = skillLevels;
+        }
+    }
+}
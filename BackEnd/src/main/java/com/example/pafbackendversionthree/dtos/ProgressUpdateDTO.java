@@ -1,5 +1,6 @@
 package com.example.pafbackendversionthree.dtos;
 
+import com.example.pafbackendversionthree.models.AppUser;
 import com.example.pafbackendversionthree.models.ProgressUpdate;
 
 import java.util.ArrayList;
@@ -268,6 +269,11 @@ public class ProgressUpdateDTO {
 
         // Constructor to map from entity to DTO
         public ProgressUpdateResponse(ProgressUpdate update) {
+            this(update, update.getUser(), update.getRelatedPlan() != null ? update.getRelatedPlan().getId() : null);
+        }
+
+        // References passed in separately when they were already resolved in a batch
+        public ProgressUpdateResponse(ProgressUpdate update, AppUser user, String relatedPlanId) {
             this.id = update.getId();
             this.title = update.getTitle();
             this.content = update.getContent();
@@ -282,14 +288,11 @@ public class ProgressUpdateDTO {
             this.challenges = update.getChallenges();
             this.achievements = update.getAchievements();
 
-            if (update.getUser() != null) {
-                this.user = new UserDTO(update.getUser());
-            }
-
-            if (update.getRelatedPlan() != null) {
-                this.relatedPlanId = update.getRelatedPlan().getId();
+            if (user != null) {
+                this.user = new UserDTO(user);
             }
 
+            this.relatedPlanId = relatedPlanId;
             this.learningUnitId = update.getLearningUnitId();
 
             // Convert Media entities to DTOs
@@ -307,7 +310,7 @@ public class ProgressUpdateDTO {
 
             this.likeCount = update.getLikeCount();
             this.commentCount = update.getCommentCount();
-            this.viewCount = update.getViewedBy() != null ? update.getViewedBy().size() : 0;
+            this.viewCount = update.getViewCount();
         }
 
         // Getters and Setters
@@ -519,7 +522,7 @@ public class ProgressUpdateDTO {
         private String username;
         private String profileImageUrl;
 
-        public UserDTO(com.example.pafbackendversionthree.models.AppUser user) {
+        public UserDTO(AppUser user) {
             this.id = user.getId();
             this.username = user.getUsername();
             this.profileImageUrl = user.getProfileImageUrl();
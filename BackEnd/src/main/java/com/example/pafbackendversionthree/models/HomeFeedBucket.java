@@ -0,0 +1,95 @@
+package com.example.pafbackendversionthree.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// One bounded document per user (_id = user id) holding the newest pushed home-feed entries
+@Document(collection = "home_feed_buckets")
+@CompoundIndex(name = "entries_update", def = "{'entries.updateId': 1}")
+public class HomeFeedBucket {
+
+    @Id
+    private String id;
+
+    private List<Entry> entries = new ArrayList<>();     // Newest first
+    private List<String> forkedPlanIds = new ArrayList<>();  // Plans the user forked from
+    private Date updatedAt;
+
+    public static class Entry {
+        private String updateId;
+        private String planId;
+        private Date createdAt;
+
+        public Entry() {
+        }
+
+        public Entry(String updateId, String planId, Date createdAt) {
+            this.updateId = updateId;
+            this.planId = planId;
+            this.createdAt = createdAt;
+        }
+
+        // Getters and Setters
+        public String getUpdateId() {
+            return updateId;
+        }
+
+        public void setUpdateId(String updateId) {
+            this.updateId = updateId;
+        }
+
+        public String getPlanId() {
+            return planId;
+        }
+
+        public void setPlanId(String planId) {
+            this.planId = planId;
+        }
+
+        public Date getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(Date createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public List<String> getForkedPlanIds() {
+        return forkedPlanIds;
+    }
+
+    public void setForkedPlanIds(List<String> forkedPlanIds) {
+        this.forkedPlanIds = forkedPlanIds;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
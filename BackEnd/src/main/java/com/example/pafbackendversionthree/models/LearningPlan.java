@@ -1,14 +1,31 @@
 package com.example.pafbackendversionthree.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+// One index per query shape in LearningPlanRepository and the cursor feeds (verified at startup by IndexVerifier)
 @Document(collection = "learning_plans")
+@CompoundIndexes({
+        @CompoundIndex(name = "owner_completed", def = "{'owner.$id': 1, 'isCompleted': 1}"),
+        @CompoundIndex(name = "public_newest", def = "{'isPublic': 1, '_id': -1}"),
+        @CompoundIndex(name = "public_views", def = "{'isPublic': 1, 'viewCount': -1, '_id': -1}"),
+        @CompoundIndex(name = "public_forks", def = "{'isPublic': 1, 'forkCount': -1, '_id': -1}"),
+        @CompoundIndex(name = "public_updated", def = "{'isPublic': 1, 'updatedAt': -1}"),
+        @CompoundIndex(name = "public_estimated_hours", def = "{'isPublic': 1, 'estimatedHours': -1}"),
+        @CompoundIndex(name = "public_category_views", def = "{'isPublic': 1, 'category': 1, 'viewCount': -1, '_id': -1}"),
+        @CompoundIndex(name = "public_skill_level_views", def = "{'isPublic': 1, 'skillLevel': 1, 'viewCount': -1, '_id': -1}"),
+        @CompoundIndex(name = "tags_public_views", def = "{'tags': 1, 'isPublic': 1, 'viewCount': -1, '_id': -1}"),
+        @CompoundIndex(name = "owner_open_completion", def = "{'owner.$id': 1, 'isCompleted': 1, 'completionPercentage': -1}")
+})
 public class LearningPlan {
 
     @Id
@@ -27,8 +44,8 @@ public class LearningPlan {
     private int estimatedHours;     // Estimated time to complete the plan
     private int completedHours;     // Actual hours spent so far
 
-    // References
-    @DBRef
+    // References (lazy so list reads can resolve owners in one batch, see ReferenceResolver)
+    @DBRef(lazy = true)
     private AppUser owner;          // One-to-many relation with AppUser
 
     // Plan components
@@ -40,6 +57,24 @@ public class LearningPlan {
     private int viewCount;
     private int forkCount;          // How many users have copied this plan
 
+    // Completion stats kept in step with learningUnits so feeds can project, sort and filter on them
+    private int unitCount;
+    private int completedUnitCount;
+    private double completionPercentage;
+
+    // Shared forks: units and resources live in a PlanContentSnapshot, only completion is stored here
+    @Indexed
+    private String forkedFromId;
+    @Indexed(sparse = true)
+    private String contentSnapshotId;
+    private Map<String, Date> unitCompletions;  // unitId -> completedAt
+
+    // Snapshot of this plan's own content, stored by its first shared fork; removed when the content is edited
+    private String forkSnapshotId;
+
+    // Set on forks once their owner's home feed follows the parent plan
+    private Date homeFeedLinkedAt;
+
     public LearningPlan() {
         this.createdAt = new Date();
         this.updatedAt = new Date();
@@ -130,34 +165,62 @@ public class LearningPlan {
         public void setObjectives(List<String> objectives) {
             this.objectives = objectives;
         }
+
+        // Same content, not completed
+        public LearningUnit copyContent() {
+            LearningUnit copy = new LearningUnit();
+            copy.setUnitId(this.unitId);
+            copy.setTitle(this.title);
+            copy.setDescription(this.description);
+            copy.setOrderIndex(this.orderIndex);
+            copy.setEstimatedHours(this.estimatedHours);
+            copy.setObjectives(this.objectives == null ? new ArrayList<>() : new ArrayList<>(this.objectives));
+            return copy;
+        }
     }
 
     // Helper methods
     public void addLearningUnit(LearningUnit unit) {
         this.learningUnits.add(unit);
+        refreshCompletionStats();
         this.updatedAt = new Date();
     }
 
+    // Recounts the stats from the units, completedHours included; call it wherever the units are replaced
+    public void refreshCompletionStats() {
+        if (this.learningUnits == null) {
+            this.learningUnits = new ArrayList<>();
+        }
+        int completed = 0;
+        int hours = 0;
+        for (LearningUnit unit : this.learningUnits) {
+            if (unit.isCompleted()) {
+                completed++;
+                hours += unit.getEstimatedHours();
+            }
+        }
+        this.unitCount = this.learningUnits.size();
+        this.completedUnitCount = completed;
+        this.completedHours = hours;
+        this.completionPercentage = percentage(completed, this.unitCount);
+    }
+
     public void completeLearningUnit(String unitId) {
         for (LearningUnit unit : this.learningUnits) {
             if (unit.getUnitId().equals(unitId)) {
+                if (unit.isCompleted()) {
+                    break;
+                }
                 unit.setCompleted(true);
                 unit.setCompletedAt(new Date());
+                this.completedUnitCount++;
+                this.completionPercentage = percentage(this.completedUnitCount, this.unitCount);
                 this.updatedAt = new Date();
 
                 // Update completed hours
                 this.completedHours += unit.getEstimatedHours();
 
-                // Check if all units are completed
-                boolean allCompleted = true;
-                for (LearningUnit u : this.learningUnits) {
-                    if (!u.isCompleted()) {
-                        allCompleted = false;
-                        break;
-                    }
-                }
-
-                if (allCompleted) {
+                if (this.completedUnitCount >= this.unitCount) {
                     this.isCompleted = true;
                     this.actualCompletionDate = new Date();
                 }
@@ -167,19 +230,30 @@ public class LearningPlan {
         }
     }
 
-    public double calculateCompletionPercentage() {
-        if (learningUnits.isEmpty()) {
-            return 0.0;
-        }
+    public boolean hasSharedContent() {
+        return contentSnapshotId != null;
+    }
 
-        int completed = 0;
-        for (LearningUnit unit : learningUnits) {
-            if (unit.isCompleted()) {
-                completed++;
-            }
+    // Fills in snapshot content for reading; completion comes from unitCompletions and the stored stats are kept
+    public void applySharedContent(PlanContentSnapshot snapshot) {
+        List<LearningUnit> units = new ArrayList<>(snapshot.getLearningUnits().size());
+        for (LearningUnit shared : snapshot.getLearningUnits()) {
+            LearningUnit unit = shared.copyContent();
+            Date completedAt = unitCompletions == null ? null : unitCompletions.get(unit.getUnitId());
+            unit.setCompleted(completedAt != null);
+            unit.setCompletedAt(completedAt);
+            units.add(unit);
         }
+        this.learningUnits = units;
+        this.resources = new ArrayList<>(snapshot.getResources());
+    }
 
-        return (double) completed / learningUnits.size() * 100;
+    public double calculateCompletionPercentage() {
+        return completionPercentage;
+    }
+
+    private static double percentage(int completed, int total) {
+        return total == 0 ? 0.0 : (double) completed / total * 100;
     }
 
     // Getters and Setters
@@ -334,4 +408,68 @@ public class LearningPlan {
     public void setForkCount(int forkCount) {
         this.forkCount = forkCount;
     }
+
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    public void setUnitCount(int unitCount) {
+        this.unitCount = unitCount;
+    }
+
+    public int getCompletedUnitCount() {
+        return completedUnitCount;
+    }
+
+    public void setCompletedUnitCount(int completedUnitCount) {
+        this.completedUnitCount = completedUnitCount;
+    }
+
+    public double getCompletionPercentage() {
+        return completionPercentage;
+    }
+
+    public void setCompletionPercentage(double completionPercentage) {
+        this.completionPercentage = completionPercentage;
+    }
+
+    public String getForkedFromId() {
+        return forkedFromId;
+    }
+
+    public void setForkedFromId(String forkedFromId) {
+        this.forkedFromId = forkedFromId;
+    }
+
+    public String getContentSnapshotId() {
+        return contentSnapshotId;
+    }
+
+    public void setContentSnapshotId(String contentSnapshotId) {
+        this.contentSnapshotId = contentSnapshotId;
+    }
+
+    public String getForkSnapshotId() {
+        return forkSnapshotId;
+    }
+
+    public void setForkSnapshotId(String forkSnapshotId) {
+        this.forkSnapshotId = forkSnapshotId;
+    }
+
+    public Date getHomeFeedLinkedAt() {
+        return homeFeedLinkedAt;
+    }
+
+    public void setHomeFeedLinkedAt(Date homeFeedLinkedAt) {
+        this.homeFeedLinkedAt = homeFeedLinkedAt;
+    }
+
+    public Map<String, Date> getUnitCompletions() {
+        return unitCompletions;
+    }
+
+    public void setUnitCompletions(Map<String, Date> unitCompletions) {
+        this.unitCompletions = unitCompletions;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.example.pafbackendversionthree.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A domain event recorded with its mutation, drained in _id order by OutboxDispatcher
+@Document(collection = "outbox_events")
+@CompoundIndex(name = "pending", def = "{'dispatched': 1, '_id': 1}")
+public class OutboxEvent {
+
+    public enum Type {
+        LEARNING_PLAN_CREATED,
+        LEARNING_PLAN_UPDATED,
+        LEARNING_PLAN_DELETED,
+        LEARNING_UNIT_COMPLETED,
+        LEARNING_PLAN_FORKED,
+        PROGRESS_UPDATE_CREATED,
+        PROGRESS_UPDATE_UPDATED,
+        PROGRESS_UPDATE_DELETED
+    }
+
+    @Id
+    private String id;
+
+    private Type type;
+    private String aggregateId;      // Events of one aggregate are delivered in order
+    private Map<String, Object> payload = new LinkedHashMap<>();
+    private Date createdAt;
+
+    private boolean dispatched;
+    private int attempts;
+    private String lastError;
+
+    // Claim of the instance delivering it; other instances skip the aggregate until leaseUntil passes
+    private String leaseOwner;
+    private Date leaseUntil;
+
+    // Delivered events expire after a week
+    @Indexed(name = "dispatched_ttl", expireAfter = "7d")
+    private Date dispatchedAt;
+
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(Type type, String aggregateId, Map<String, Object> payload) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = new Date();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public Map<String, Object> getPayload() {
+        return payload;
+    }
+
+    public void setPayload(Map<String, Object> payload) {
+        this.payload = payload;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public boolean isDispatched() {
+        return dispatched;
+    }
+
+    public void setDispatched(boolean dispatched) {
+        this.dispatched = dispatched;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public Date getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Date leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public Date getDispatchedAt() {
+        return dispatchedAt;
+    }
+
+    public void setDispatchedAt(Date dispatchedAt) {
+        this.dispatchedAt = dispatchedAt;
+    }
+
+    public String getString(String key) {
+        Object value = payload == null ? null : payload.get(key);
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.pafbackendversionthree.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Immutable unit/resource content shared by forks; the _id is a hash of the content, so equal content is stored once.
+// lastUsedAt is set by every fork that points at it, so the orphan sweep leaves recently used snapshots alone
+@Document(collection = "plan_content_snapshots")
+public class PlanContentSnapshot {
+
+    @Id
+    private String id;
+
+    private List<LearningPlan.LearningUnit> learningUnits = new ArrayList<>();
+    private List<String> resources = new ArrayList<>();
+    private Date createdAt;
+    private Date lastUsedAt;
+
+    public PlanContentSnapshot() {
+    }
+
+    public PlanContentSnapshot(String id, List<LearningPlan.LearningUnit> learningUnits, List<String> resources) {
+        this.id = id;
+        this.learningUnits = learningUnits;
+        this.resources = resources;
+        this.createdAt = new Date();
+        this.lastUsedAt = this.createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public List<LearningPlan.LearningUnit> getLearningUnits() {
+        return learningUnits;
+    }
+
+    public void setLearningUnits(List<LearningPlan.LearningUnit> learningUnits) {
+        this.learningUnits = learningUnits;
+    }
+
+    public List<String> getResources() {
+        return resources;
+    }
+
+    public void setResources(List<String> resources) {
+        this.resources = resources;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    public void setLastUsedAt(Date lastUsedAt) {
+        this.lastUsedAt = lastUsedAt;
+    }
+}
@@ -1,6 +1,10 @@
 package com.example.pafbackendversionthree.models;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -8,7 +12,15 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+// One index per query shape in ProgressUpdateRepository and the cursor feeds (verified at startup by IndexVerifier)
 @Document(collection = "progress_updates")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_newest", def = "{'user.$id': 1, '_id': -1}"),
+        @CompoundIndex(name = "user_type", def = "{'user.$id': 1, 'type': 1}"),
+        @CompoundIndex(name = "user_plan", def = "{'user.$id': 1, 'relatedPlan.$id': 1}"),
+        @CompoundIndex(name = "plan_newest", def = "{'relatedPlan.$id': 1, '_id': -1}"),
+        @CompoundIndex(name = "public_newest", def = "{'isPublic': 1, '_id': -1}")
+})
 public class ProgressUpdate {
 
     @Id
@@ -20,6 +32,7 @@ public class ProgressUpdate {
     private Date createdAt;
     private Date updatedAt;
     private int hoursSpent;          // Hours spent on this learning session
+    @Indexed
     private ProgressType type;       // Type of progress update
     private Integer rating;          // Self-assessment rating (1-5)
     private String templateType;     // If using a predefined template, which one
@@ -33,14 +46,15 @@ public class ProgressUpdate {
     // Learning achievements in this update
     private List<String> achievements = new ArrayList<>();
 
-    // References
-    @DBRef
+    // References (lazy so list reads can resolve them in one batch, see ReferenceResolver)
+    @DBRef(lazy = true)
     private AppUser user;            // One-to-many relation with AppUser
 
-    @DBRef
+    @DBRef(lazy = true)
     private LearningPlan relatedPlan; // Optional - can be null if not linked to a plan
 
     // For specific unit progress within a plan
+    @Indexed
     private String learningUnitId;    // Reference to a specific unit in the plan
 
     // For attaching evidence of learning
@@ -50,8 +64,11 @@ public class ProgressUpdate {
     private int likeCount;
     private int commentCount;
 
-    // Social features - tracks who has viewed this update
-    @DBRef
+    // Distinct viewers; who viewed is tracked in ProgressUpdateView, not on this document
+    private int viewCount;
+
+    // Only viewers marked on this instance through the deprecated markAsViewed; never stored
+    @Transient
     private List<AppUser> viewedBy = new ArrayList<>();
 
     // Enums
@@ -132,6 +149,7 @@ public class ProgressUpdate {
         this.isPublic = false;
         this.likeCount = 0;
         this.commentCount = 0;
+        this.viewCount = 0;
     }
 
     // Template creator methods
@@ -321,10 +339,27 @@ public class ProgressUpdate {
         this.commentCount = commentCount;
     }
 
+    public int getViewCount() {
+        return viewCount;
+    }
+
+    public void setViewCount(int viewCount) {
+        this.viewCount = viewCount;
+    }
+
+    /**
+     * @deprecated viewers are no longer stored on the update; use
+     * ProgressUpdateViewService#hasViewed. Only holds viewers marked on this instance.
+     */
+    @Deprecated
     public List<AppUser> getViewedBy() {
         return viewedBy;
     }
 
+    /**
+     * @deprecated viewers are no longer stored on the update; see ProgressUpdateViewService
+     */
+    @Deprecated
     public void setViewedBy(List<AppUser> viewedBy) {
         this.viewedBy = viewedBy;
     }
@@ -365,9 +400,13 @@ public class ProgressUpdate {
         }
     }
 
+    /**
+     * @deprecated use ProgressUpdateViewService#markAsViewed, which records the viewer in
+     * progress_update_views and bumps viewCount atomically. Counting here and saving the update
+     * would overwrite views recorded concurrently, so this always throws.
+     */
+    @Deprecated(forRemoval = true)
     public void markAsViewed(AppUser viewer) {
-        if (!this.viewedBy.contains(viewer)) {
-            this.viewedBy.add(viewer);
-        }
+        throw new UnsupportedOperationException("Views are recorded by ProgressUpdateViewService#markAsViewed");
     }
 }
\ No newline at end of file
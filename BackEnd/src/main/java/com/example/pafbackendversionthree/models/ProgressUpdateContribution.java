@@ -0,0 +1,134 @@
+package com.example.pafbackendversionthree.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * What one progress update (_id = update id) currently adds to its user's UserLearningStats.
+ * Swapping it on every change gives the exact delta to apply; eventId orders the swaps so a
+ * redelivered or older event never overwrites a newer one. A deleted update leaves a tombstone.
+ */
+@Document(collection = "progress_update_contributions")
+public class ProgressUpdateContribution {
+
+    @Id
+    private String id;
+
+    private String eventId;
+    private String userId;
+    private String planId;
+    private String day;
+    private String week;
+    private long hours;
+    private String type;
+    private String sentiment;
+    private Integer rating;
+    private boolean deleted;
+
+    // Tombstones are only needed while late events for the update can still arrive
+    @Indexed(name = "tombstone_ttl", expireAfter = "30d")
+    private Date deletedAt;
+
+    public ProgressUpdateContribution() {
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(String planId) {
+        this.planId = planId;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    public String getWeek() {
+        return week;
+    }
+
+    public void setWeek(String week) {
+        this.week = week;
+    }
+
+    public long getHours() {
+        return hours;
+    }
+
+    public void setHours(long hours) {
+        this.hours = hours;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getSentiment() {
+        return sentiment;
+    }
+
+    public void setSentiment(String sentiment) {
+        this.sentiment = sentiment;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public void setRating(Integer rating) {
+        this.rating = rating;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public Date getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Date deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
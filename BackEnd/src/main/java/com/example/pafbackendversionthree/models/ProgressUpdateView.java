@@ -0,0 +1,68 @@
+package com.example.pafbackendversionthree.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// One document per (progress update, viewer) pair; the composite _id makes recording a view idempotent
+@Document(collection = "progress_update_views")
+public class ProgressUpdateView {
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String progressUpdateId;
+
+    private String viewerId;
+    private Date viewedAt;
+
+    public ProgressUpdateView() {
+    }
+
+    public ProgressUpdateView(String progressUpdateId, String viewerId) {
+        this.id = idFor(progressUpdateId, viewerId);
+        this.progressUpdateId = progressUpdateId;
+        this.viewerId = viewerId;
+        this.viewedAt = new Date();
+    }
+
+    public static String idFor(String progressUpdateId, String viewerId) {
+        return progressUpdateId + ":" + viewerId;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getProgressUpdateId() {
+        return progressUpdateId;
+    }
+
+    public void setProgressUpdateId(String progressUpdateId) {
+        this.progressUpdateId = progressUpdateId;
+    }
+
+    public String getViewerId() {
+        return viewerId;
+    }
+
+    public void setViewerId(String viewerId) {
+        this.viewerId = viewerId;
+    }
+
+    public Date getViewedAt() {
+        return viewedAt;
+    }
+
+    public void setViewedAt(Date viewedAt) {
+        this.viewedAt = viewedAt;
+    }
+}
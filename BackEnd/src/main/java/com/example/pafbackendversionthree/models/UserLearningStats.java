@@ -0,0 +1,154 @@
+package com.example.pafbackendversionthree.models;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Per-user learning rollup (_id = user id), kept current by LearningAnalyticsService
+@Document(collection = "user_learning_stats")
+public class UserLearningStats {
+
+    @Id
+    private String id;
+
+    private long updateCount;
+    private long hoursSpent;
+    private long ratingSum;
+    private long ratingCount;
+
+    private Map<String, Long> byType = new LinkedHashMap<>();            // ProgressType -> updates
+    private Map<String, Long> bySentiment = new LinkedHashMap<>();       // Sentiment -> updates
+    private Map<String, Long> planHoursSpent = new LinkedHashMap<>();    // Plan id -> hours logged in updates
+    private Map<String, Long> planCompletedHours = new LinkedHashMap<>(); // Owned plan id -> completed unit hours
+    private Map<String, Bucket> daily = new LinkedHashMap<>();           // yyyy-MM-dd (UTC)
+    private Map<String, Bucket> weekly = new LinkedHashMap<>();          // ISO week, e.g. 2026-W42
+    private Date updatedAt;
+
+    public static class Bucket {
+        private long count;
+        private long hours;
+
+        public Bucket() {
+        }
+
+        // Getters and Setters
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public long getHours() {
+            return hours;
+        }
+
+        public void setHours(long hours) {
+            this.hours = hours;
+        }
+    }
+
+    public UserLearningStats() {
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    public void setUpdateCount(long updateCount) {
+        this.updateCount = updateCount;
+    }
+
+    public long getHoursSpent() {
+        return hoursSpent;
+    }
+
+    public void setHoursSpent(long hoursSpent) {
+        this.hoursSpent = hoursSpent;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public long getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(long ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public Map<String, Long> getByType() {
+        return byType;
+    }
+
+    public void setByType(Map<String, Long> byType) {
+        this.byType = byType;
+    }
+
+    public Map<String, Long> getBySentiment() {
+        return bySentiment;
+    }
+
+    public void setBySentiment(Map<String, Long> bySentiment) {
+        this.bySentiment = bySentiment;
+    }
+
+    public Map<String, Long> getPlanHoursSpent() {
+        return planHoursSpent;
+    }
+
+    public void setPlanHoursSpent(Map<String, Long> planHoursSpent) {
+        this.planHoursSpent = planHoursSpent;
+    }
+
+    public Map<String, Long> getPlanCompletedHours() {
+        return planCompletedHours;
+    }
+
+    public void setPlanCompletedHours(Map<String, Long> planCompletedHours) {
+        this.planCompletedHours = planCompletedHours;
+    }
+
+    public Map<String, Bucket> getDaily() {
+        return daily;
+    }
+
+    public void setDaily(Map<String, Bucket> daily) {
+        this.daily = daily;
+    }
+
+    public Map<String, Bucket> getWeekly() {
+        return weekly;
+    }
+
+    public void setWeekly(Map<String, Bucket> weekly) {
+        this.weekly = weekly;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
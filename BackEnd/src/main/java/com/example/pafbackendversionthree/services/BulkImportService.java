@@ -0,0 +1,375 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.BulkImportReport;
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk import of learning plans and progress updates from a JSON array or NDJSON body.
+ *
+ * The body is read element by element and handled in chunks of CHUNK_SIZE: referenced users and
+ * plans are checked with one _id-only query per chunk, items are converted and validated in
+ * parallel, and the valid ones are written with a single unordered bulk insert. The creation
+ * events of the stored items are inserted into the outbox in the same transaction, so search,
+ * trending and home feeds pick imports up like any other new plan or update. Every item gets a
+ * result in the report, so one bad row never fails the rest of the import.
+ */
+@Service
+public class BulkImportService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final DomainEventPublisher domainEventPublisher;
+    private final TransactionOperations transactionOperations;
+
+    // A converted item, or the reason it was rejected
+    private record Prepared<E>(E entity, String error) {
+    }
+
+    private interface ChunkImporter {
+        void importChunk(int offset, List<JsonNode> items, BulkImportReport report);
+    }
+
+    @Autowired
+    public BulkImportService(MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                             DomainEventPublisher domainEventPublisher,
+                             TransactionOperations transactionOperations) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.domainEventPublisher = domainEventPublisher;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public BulkImportReport importLearningPlans(InputStream body) {
+        return importAll(body, this::importLearningPlans);
+    }
+
+    public BulkImportReport importProgressUpdates(InputStream body) {
+        return importAll(body, this::importProgressUpdates);
+    }
+
+    // Accepts a top-level array or a sequence of root-level objects (NDJSON)
+    private BulkImportReport importAll(InputStream body, ChunkImporter importer) {
+        BulkImportReport report = new BulkImportReport();
+        List<JsonNode> chunk = new ArrayList<>(CHUNK_SIZE);
+        int offset = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                chunk.add(objectMapper.readTree(parser));
+                if (chunk.size() == CHUNK_SIZE) {
+                    importer.importChunk(offset, chunk, report);
+                    offset += chunk.size();
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+                token = parser.nextToken();
+            }
+        } catch (IOException e) {
+            report.setError("Malformed input after item " + (offset + chunk.size()) + ": "
+                    + (e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage()));
+        }
+
+        // Items read before a malformed tail are still imported
+        if (!chunk.isEmpty()) {
+            importer.importChunk(offset, chunk, report);
+        }
+        return report;
+    }
+
+    private void importLearningPlans(int offset, List<JsonNode> items, BulkImportReport report) {
+        Map<String, AppUser> owners = existing(referencedIds(items, "ownerId"), AppUser.class, AppUser::getId);
+
+        List<Prepared<LearningPlan>> prepared = IntStream.range(0, items.size()).parallel()
+                .mapToObj(i -> prepareLearningPlan(items.get(i), owners))
+                .collect(Collectors.toList());
+
+        write(offset, prepared, LearningPlan.class, LearningPlan::getId, domainEventPublisher::learningPlansImported,
+                report);
+    }
+
+    private void importProgressUpdates(int offset, List<JsonNode> items, BulkImportReport report) {
+        Map<String, AppUser> users = existing(referencedIds(items, "userId"), AppUser.class, AppUser::getId);
+        Map<String, LearningPlan> plans = existing(referencedIds(items, "relatedPlanId"), LearningPlan.class,
+                LearningPlan::getId);
+
+        List<Prepared<ProgressUpdate>> prepared = IntStream.range(0, items.size()).parallel()
+                .mapToObj(i -> prepareProgressUpdate(items.get(i), users, plans))
+                .collect(Collectors.toList());
+
+        write(offset, prepared, ProgressUpdate.class, ProgressUpdate::getId,
+                domainEventPublisher::progressUpdatesImported, report);
+    }
+
+    private Prepared<LearningPlan> prepareLearningPlan(JsonNode item, Map<String, AppUser> owners) {
+        LearningPlanDTO.CreateLearningPlanRequest request;
+        try {
+            request = objectMapper.treeToValue(item, LearningPlanDTO.CreateLearningPlanRequest.class);
+        } catch (JsonProcessingException e) {
+            return new Prepared<>(null, "Invalid learning plan: " + e.getOriginalMessage());
+        }
+
+        if (isBlank(request.getTitle())) {
+            return new Prepared<>(null, "Title is required");
+        }
+        if (request.getEstimatedHours() < 0) {
+            return new Prepared<>(null, "Estimated hours must not be negative");
+        }
+        AppUser owner = request.getOwnerId() == null ? null : owners.get(request.getOwnerId());
+        if (owner == null) {
+            return new Prepared<>(null, "User not found with id: " + request.getOwnerId());
+        }
+
+        List<LearningPlan.LearningUnit> units = new ArrayList<>();
+        if (request.getLearningUnits() != null) {
+            for (LearningPlanDTO.LearningUnitDTO unitRequest : request.getLearningUnits()) {
+                if (isBlank(unitRequest.getTitle())) {
+                    return new Prepared<>(null, "Learning unit title is required");
+                }
+                LearningPlan.LearningUnit unit = new LearningPlan.LearningUnit();
+                if (unitRequest.getUnitId() != null) {
+                    unit.setUnitId(unitRequest.getUnitId());
+                }
+                unit.setTitle(unitRequest.getTitle());
+                unit.setDescription(unitRequest.getDescription());
+                unit.setOrderIndex(unitRequest.getOrderIndex());
+                unit.setEstimatedHours(unitRequest.getEstimatedHours());
+                unit.setCompleted(unitRequest.isCompleted());
+                unit.setCompletedAt(unitRequest.getCompletedAt());
+                if (unitRequest.getObjectives() != null) {
+                    unit.setObjectives(new ArrayList<>(unitRequest.getObjectives()));
+                }
+                units.add(unit);
+            }
+        }
+
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setTitle(request.getTitle());
+        plan.setDescription(request.getDescription());
+        plan.setCategory(request.getCategory());
+        plan.setSkillLevel(request.getSkillLevel());
+        plan.setPublic(request.isPublic());
+        plan.setTargetCompletionDate(request.getTargetCompletionDate());
+        plan.setEstimatedHours(request.getEstimatedHours());
+        plan.setOwner(owner);
+        plan.setLearningUnits(units);
+        plan.refreshCompletionStats();
+        // As the completion pipeline derives it: complete once every unit is, as of the last unit completed
+        if (plan.getUnitCount() > 0 && plan.getCompletedUnitCount() >= plan.getUnitCount()) {
+            plan.setCompleted(true);
+            plan.setActualCompletionDate(units.stream()
+                    .map(LearningPlan.LearningUnit::getCompletedAt)
+                    .filter(Objects::nonNull)
+                    .max(Comparator.naturalOrder())
+                    .orElseGet(Date::new));
+        }
+        if (request.getResources() != null) {
+            plan.setResources(new ArrayList<>(request.getResources()));
+        }
+        if (request.getTags() != null) {
+            plan.setTags(new ArrayList<>(request.getTags()));
+        }
+        return new Prepared<>(plan, null);
+    }
+
+    private Prepared<ProgressUpdate> prepareProgressUpdate(JsonNode item, Map<String, AppUser> users,
+                                                           Map<String, LearningPlan> plans) {
+        ProgressUpdateDTO.CreateProgressUpdateRequest request;
+        try {
+            request = objectMapper.treeToValue(item, ProgressUpdateDTO.CreateProgressUpdateRequest.class);
+        } catch (JsonProcessingException e) {
+            return new Prepared<>(null, "Invalid progress update: " + e.getOriginalMessage());
+        }
+
+        if (isBlank(request.getTitle())) {
+            return new Prepared<>(null, "Title is required");
+        }
+        if (request.getHoursSpent() < 0) {
+            return new Prepared<>(null, "Hours spent must not be negative");
+        }
+        if (request.getRating() != null && (request.getRating() < 1 || request.getRating() > 5)) {
+            return new Prepared<>(null, "Rating must be between 1 and 5");
+        }
+        AppUser user = request.getUserId() == null ? null : users.get(request.getUserId());
+        if (user == null) {
+            return new Prepared<>(null, "User not found with id: " + request.getUserId());
+        }
+        LearningPlan plan = null;
+        if (request.getRelatedPlanId() != null) {
+            plan = plans.get(request.getRelatedPlanId());
+            if (plan == null) {
+                return new Prepared<>(null, "Learning plan not found with id: " + request.getRelatedPlanId());
+            }
+        }
+
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(new ObjectId().toHexString());
+        update.setTitle(request.getTitle());
+        update.setContent(request.getContent());
+        update.setPublic(request.isPublic());
+        update.setHoursSpent(request.getHoursSpent());
+        update.setType(request.getType());
+        update.setRating(request.getRating());
+        update.setTemplateType(request.getTemplateType());
+        update.setSentiment(request.getSentiment());
+        update.setUser(user);
+        update.setRelatedPlan(plan);
+        update.setLearningUnitId(request.getLearningUnitId());
+        if (request.getChallenges() != null) {
+            update.setChallenges(new ArrayList<>(request.getChallenges()));
+        }
+        if (request.getAchievements() != null) {
+            update.setAchievements(new ArrayList<>(request.getAchievements()));
+        }
+        if (request.getAttachedMedia() != null) {
+            for (ProgressUpdateDTO.MediaDTO mediaRequest : request.getAttachedMedia()) {
+                ProgressUpdate.Media media = new ProgressUpdate.Media();
+                if (mediaRequest.getMediaId() != null) {
+                    media.setMediaId(mediaRequest.getMediaId());
+                }
+                media.setUrl(mediaRequest.getUrl());
+                media.setCaption(mediaRequest.getCaption());
+                media.setType(mediaRequest.getType());
+                update.addMedia(media);
+            }
+        }
+        return new Prepared<>(update, null);
+    }
+
+    /**
+     * Inserts the valid items of a chunk with one unordered bulk write, publishes their creation
+     * events in the same transaction and records a result for every item in order.
+     */
+    private <E> void write(int offset, List<Prepared<E>> prepared, Class<E> entityClass,
+                           Function<E, String> id, Consumer<List<E>> publish, BulkImportReport report) {
+        List<E> valid = prepared.stream()
+                .map(Prepared::entity)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        // Positions in the insert batch that the server rejected (duplicate ids and the like)
+        Map<Integer, String> failures = insert(valid, entityClass, publish);
+
+        int batchIndex = 0;
+        for (int i = 0; i < prepared.size(); i++) {
+            Prepared<E> item = prepared.get(i);
+            if (item.entity() == null) {
+                report.invalid(offset + i, item.error());
+                continue;
+            }
+            String failure = failures.get(batchIndex++);
+            if (failure != null) {
+                report.failed(offset + i, id.apply(item.entity()), failure);
+            } else {
+                report.created(offset + i, id.apply(item.entity()));
+            }
+        }
+    }
+
+    /**
+     * A rejected row aborts the whole transaction and only the first rejection is reported, so
+     * the rejected rows are set aside and the rest is inserted again until a batch commits.
+     * Returns the rejected batch positions with their errors.
+     */
+    private <E> Map<Integer, String> insert(List<E> valid, Class<E> entityClass, Consumer<List<E>> publish) {
+        Map<Integer, String> failures = new HashMap<>();
+        List<Integer> remaining = IntStream.range(0, valid.size()).boxed().collect(Collectors.toList());
+        while (!remaining.isEmpty()) {
+            List<E> batch = remaining.stream().map(valid::get).collect(Collectors.toList());
+            try {
+                Transactions.run(transactionOperations, () -> {
+                    mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityClass).insert(batch).execute();
+                    publish.accept(batch);
+                });
+                return failures;
+            } catch (BulkOperationException e) {
+                if (e.getErrors().isEmpty()) {
+                    throw e;
+                }
+                Set<Integer> rejected = new HashSet<>();
+                for (BulkWriteError error : e.getErrors()) {
+                    rejected.add(error.getIndex());
+                    failures.put(remaining.get(error.getIndex()), error.getMessage());
+                }
+                List<Integer> kept = new ArrayList<>(remaining.size() - rejected.size());
+                for (int i = 0; i < remaining.size(); i++) {
+                    if (!rejected.contains(i)) {
+                        kept.add(remaining.get(i));
+                    }
+                }
+                remaining = kept;
+            }
+        }
+        return failures;
+    }
+
+    private static List<String> referencedIds(List<JsonNode> items, String field) {
+        return items.stream()
+                .map(item -> item.path(field))
+                .filter(JsonNode::isTextual)
+                .map(JsonNode::asText)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    // Existing ids of the given entity type, read with an _id-only projection
+    private <T> Map<String, T> existing(Collection<String> ids, Class<T> entityClass, Function<T, String> id) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Query query = new Query(Criteria.where("id").in(ids.stream().map(ReferenceResolver::refId).toList()));
+        query.fields().include("id");
+
+        Map<String, T> found = new HashMap<>();
+        for (T entity : mongoTemplate.find(query, entityClass)) {
+            found.put(id.apply(entity), entity);
+        }
+        return found;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
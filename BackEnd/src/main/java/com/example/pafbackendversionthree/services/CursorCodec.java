@@ -0,0 +1,116 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.CursorPage;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset (cursor) pagination over a descending sort key with _id as tie-breaker.
+ * The cursor is an opaque token holding the sort value and _id of the last row returned,
+ * so every page is an index range scan of the same cost no matter how deep the client goes.
+ */
+public final class CursorCodec {
+
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private CursorCodec() {
+    }
+
+    public static class Position {
+        private final Long sortValue;
+        private final ObjectId id;
+
+        public Position(Long sortValue, ObjectId id) {
+            this.sortValue = sortValue;
+            this.id = id;
+        }
+
+        public Long getSortValue() {
+            return sortValue;
+        }
+
+        public ObjectId getId() {
+            return id;
+        }
+    }
+
+    public static String encode(Long sortValue, String id) {
+        String raw = (sortValue == null ? "" : sortValue.toString()) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Position decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            String value = raw.substring(0, separator);
+            String id = raw.substring(separator + 1);
+            return new Position(value.isEmpty() ? null : Long.parseLong(value), new ObjectId(id));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    public static int pageSize(int requested) {
+        if (requested <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    // Sort matching the keyset: sortField descending (when present), then _id descending
+    public static Sort sort(String sortField) {
+        Sort byId = Sort.by(Sort.Direction.DESC, "id");
+        return sortField == null ? byId : Sort.by(Sort.Direction.DESC, sortField).and(byId);
+    }
+
+    // Rows strictly after the given position in sort(sortField) order
+    public static Criteria after(String sortField, Position position) {
+        if (sortField == null) {
+            return Criteria.where("id").lt(position.getId());
+        }
+        if (position.getSortValue() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+        return new Criteria().orOperator(
+                Criteria.where(sortField).lt(position.getSortValue()),
+                new Criteria().andOperator(
+                        Criteria.where(sortField).is(position.getSortValue()),
+                        Criteria.where("id").lt(position.getId())));
+    }
+
+    /**
+     * Runs one keyset page of the given query. Fetches a single extra row to learn whether
+     * another page exists, so no count query is ever issued.
+     */
+    public static <T> CursorPage<T> fetch(MongoTemplate mongoTemplate, Query query, Class<T> entityClass,
+                                          String sortField, Function<T, Long> sortValue, Function<T, String> id,
+                                          String cursor, int size) {
+        int limit = pageSize(size);
+        if (cursor != null && !cursor.isEmpty()) {
+            query.addCriteria(after(sortField, decode(cursor)));
+        }
+        query.with(sort(sortField)).limit(limit + 1);
+
+        List<T> rows = mongoTemplate.find(query, entityClass);
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+
+        List<T> page = rows.subList(0, limit);
+        T last = page.get(limit - 1);
+        Long lastValue = sortField == null ? null : sortValue.apply(last);
+        return new CursorPage<>(page, encode(lastValue, id.apply(last)));
+    }
+}
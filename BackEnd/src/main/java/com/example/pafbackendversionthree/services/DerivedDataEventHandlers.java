@@ -0,0 +1,117 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps derived data in step with domain events. Home feeds and trending scores live in MongoDB
+ * and are updated once per event through OutboxDispatcher; the search index lives in each instance
+ * and is updated on every instance through OutboxChangeStream.
+ *
+ * Index and feed writes are idempotent; trending scores are not, so events already counted are
+ * remembered (bounded to RECENT_EVENTS) and skipped when redelivered.
+ */
+@Service
+public class DerivedDataEventHandlers {
+
+    private static final int RECENT_EVENTS = 10_000;
+
+    private final DomainEventBus domainEventBus;
+    private final OutboxChangeStream outboxChangeStream;
+    private final LearningPlanSearchIndex learningPlanSearchIndex;
+    private final TrendingLearningPlans trendingLearningPlans;
+    private final HomeFeedService homeFeedService;
+
+    // Lock-free, so a handler on a virtual thread is never pinned; the queue evicts oldest first
+    private final Set<String> countedEvents = ConcurrentHashMap.newKeySet();
+    private final Queue<String> countedOrder = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public DerivedDataEventHandlers(DomainEventBus domainEventBus,
+                                    OutboxChangeStream outboxChangeStream,
+                                    LearningPlanSearchIndex learningPlanSearchIndex,
+                                    TrendingLearningPlans trendingLearningPlans,
+                                    HomeFeedService homeFeedService) {
+        this.domainEventBus = domainEventBus;
+        this.outboxChangeStream = outboxChangeStream;
+        this.learningPlanSearchIndex = learningPlanSearchIndex;
+        this.trendingLearningPlans = trendingLearningPlans;
+        this.homeFeedService = homeFeedService;
+    }
+
+    // Registered before the scheduler starts draining the outbox
+    @PostConstruct
+    public void register() {
+        domainEventBus.subscribe(this::handle);
+        domainEventBus.subscribeLocal(this::handleLocal);
+        outboxChangeStream.onResync(learningPlanSearchIndex::rebuild);
+    }
+
+    private void handle(OutboxEvent event) {
+        String id = event.getAggregateId();
+        switch (event.getType()) {
+            case LEARNING_UNIT_COMPLETED -> {
+                if (firstDelivery(event)) {
+                    trendingLearningPlans.recordCompletion(id);
+                }
+            }
+            case LEARNING_PLAN_FORKED -> {
+                homeFeedService.onFork(id, event.getString("userId"));
+                if (firstDelivery(event)) {
+                    trendingLearningPlans.recordFork(id);
+                }
+            }
+            case PROGRESS_UPDATE_CREATED -> homeFeedService.fanOut(id, event.getString("relatedPlanId"),
+                    Boolean.TRUE.equals(event.getPayload().get("isPublic")),
+                    (Date) event.getPayload().get("createdAt"));
+            case PROGRESS_UPDATE_UPDATED -> {
+                // Made private leaves the feeds; public again is pushed back, a no-op where still present
+                if (Boolean.TRUE.equals(event.getPayload().get("isPublic"))) {
+                    homeFeedService.fanOut(id, event.getString("relatedPlanId"), true,
+                            (Date) event.getPayload().get("createdAt"));
+                } else {
+                    homeFeedService.remove(id);
+                }
+            }
+            case PROGRESS_UPDATE_DELETED -> homeFeedService.remove(id);
+            default -> {
+                // No feed or score depends on it
+            }
+        }
+    }
+
+    private void handleLocal(OutboxEvent event) {
+        String id = event.getAggregateId();
+        switch (event.getType()) {
+            case LEARNING_PLAN_CREATED, LEARNING_PLAN_UPDATED -> learningPlanSearchIndex.indexById(id);
+            case LEARNING_PLAN_DELETED -> learningPlanSearchIndex.remove(id);
+            case LEARNING_PLAN_FORKED -> learningPlanSearchIndex.indexById(event.getString("forkId"));
+            default -> {
+                // Nothing kept in this instance depends on it
+            }
+        }
+    }
+
+    private boolean firstDelivery(OutboxEvent event) {
+        if (!countedEvents.add(event.getId())) {
+            return false;
+        }
+        countedOrder.add(event.getId());
+        while (countedEvents.size() > RECENT_EVENTS) {
+            String eldest = countedOrder.poll();
+            if (eldest == null) {
+                break;
+            }
+            countedEvents.remove(eldest);
+        }
+        return true;
+    }
+}
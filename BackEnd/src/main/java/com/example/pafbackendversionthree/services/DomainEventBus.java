@@ -0,0 +1,78 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus for domain events drained from the outbox. Events are partitioned by aggregate
+ * id over app.events.partitions single-threaded lanes, so events of one plan or update reach every
+ * subscriber in the order they were recorded while different aggregates are handled in parallel.
+ *
+ * Subscribers that write derived data to MongoDB subscribe(): OutboxDispatcher delivers each
+ * event to them on one instance only. Subscribers that keep state in this JVM (search index,
+ * trending scores, caches) subscribeLocal(): OutboxChangeStream delivers every event to them on
+ * every instance.
+ */
+@Service
+public class DomainEventBus {
+
+    private final List<Consumer<OutboxEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<Consumer<OutboxEvent>> localSubscribers = new CopyOnWriteArrayList<>();
+    private final List<ExecutorService> lanes;
+
+    @Autowired
+    public DomainEventBus(@Value("${app.events.partitions:4}") int partitions) {
+        this.lanes = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            String name = "events-" + (i + 1);
+            lanes.add(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+    }
+
+    public void subscribe(Consumer<OutboxEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void subscribeLocal(Consumer<OutboxEvent> subscriber) {
+        localSubscribers.add(subscriber);
+    }
+
+    // Completes once every subscriber has handled the event, or exceptionally with the first failure
+    public CompletableFuture<Void> deliver(OutboxEvent event) {
+        return deliver(event, subscribers);
+    }
+
+    public CompletableFuture<Void> deliverLocal(OutboxEvent event) {
+        return deliver(event, localSubscribers);
+    }
+
+    private CompletableFuture<Void> deliver(OutboxEvent event, List<Consumer<OutboxEvent>> to) {
+        return CompletableFuture.runAsync(() -> to.forEach(subscriber -> subscriber.accept(event)),
+                lane(event.getAggregateId()));
+    }
+
+    private ExecutorService lane(String aggregateId) {
+        int hash = aggregateId == null ? 0 : aggregateId.hashCode();
+        return lanes.get((hash & Integer.MAX_VALUE) % lanes.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.forEach(ExecutorService::shutdown);
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records domain events in the outbox_events collection. Callers publish inside the transaction
+ * of the mutation an event describes, so the two commit or roll back together. Nothing is
+ * delivered here; OutboxDispatcher drains the outbox into the DomainEventBus, so derived data
+ * (search index, trending, home feeds) is updated off the request path and an event survives a
+ * crash between the write and its delivery. The owner list version of the plan owner or update
+ * author is bumped with each event, in the same transaction, which is what keeps list ETags current.
+ */
+@Service
+public class DomainEventPublisher {
+
+    private final MongoTemplate mongoTemplate;
+    private final OwnerListVersions ownerListVersions;
+
+    @Autowired
+    public DomainEventPublisher(MongoTemplate mongoTemplate, OwnerListVersions ownerListVersions) {
+        this.mongoTemplate = mongoTemplate;
+        this.ownerListVersions = ownerListVersions;
+    }
+
+    public void learningPlanCreated(LearningPlanDTO.LearningPlanResponse plan) {
+        publish(OutboxEvent.Type.LEARNING_PLAN_CREATED, plan.getId(), planPayload(plan));
+    }
+
+    public void learningPlanUpdated(LearningPlanDTO.LearningPlanResponse plan) {
+        publish(OutboxEvent.Type.LEARNING_PLAN_UPDATED, plan.getId(), planPayload(plan));
+    }
+
+    // The owner has to be read before the plan is deleted, see ownerId
+    public void learningPlanDeleted(String planId, String ownerId) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("ownerId", ownerId);
+        publish(OutboxEvent.Type.LEARNING_PLAN_DELETED, planId, payload);
+    }
+
+    public void learningUnitCompleted(LearningPlanDTO.LearningPlanResponse plan, String unitId) {
+        Map<String, Object> payload = planPayload(plan);
+        payload.put("unitId", unitId);
+        publish(OutboxEvent.Type.LEARNING_UNIT_COMPLETED, plan.getId(), payload);
+    }
+
+    // Keyed by the parent, whose fork count changed
+    public void learningPlanForked(String parentPlanId, LearningPlanDTO.LearningPlanResponse fork, String userId) {
+        Map<String, Object> payload = planPayload(fork);
+        payload.put("forkId", fork.getId());
+        payload.put("userId", userId);
+        publish(OutboxEvent.Type.LEARNING_PLAN_FORKED, parentPlanId, payload);
+        // The parent's fork count shows in its owner's list too
+        ownerListVersions.learningPlansChanged(Collections.singletonList(ownerId(parentPlanId)));
+    }
+
+    public void progressUpdateCreated(ProgressUpdateDTO.ProgressUpdateResponse update) {
+        publish(OutboxEvent.Type.PROGRESS_UPDATE_CREATED, update.getId(), updatePayload(update));
+    }
+
+    public void progressUpdateUpdated(ProgressUpdateDTO.ProgressUpdateResponse update) {
+        publish(OutboxEvent.Type.PROGRESS_UPDATE_UPDATED, update.getId(), updatePayload(update));
+    }
+
+    // The user has to be read before the update is deleted, see userId
+    public void progressUpdateDeleted(String progressUpdateId, String userId) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", userId);
+        publish(OutboxEvent.Type.PROGRESS_UPDATE_DELETED, progressUpdateId, payload);
+    }
+
+    // Bulk imports record the creation events of a whole chunk with one insert
+    public void learningPlansImported(List<LearningPlan> plans) {
+        List<OutboxEvent> events = new ArrayList<>(plans.size());
+        for (LearningPlan plan : plans) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("ownerId", ReferenceResolver.idOf(plan.getOwner()));
+            payload.put("isPublic", plan.isPublic());
+            payload.put("isCompleted", plan.isCompleted());
+            payload.put("estimatedHours", plan.getEstimatedHours());
+            payload.put("completedHours", plan.getCompletedHours());
+            events.add(new OutboxEvent(OutboxEvent.Type.LEARNING_PLAN_CREATED, plan.getId(), payload));
+        }
+        publishAll(events);
+    }
+
+    public void progressUpdatesImported(List<ProgressUpdate> updates) {
+        List<OutboxEvent> events = new ArrayList<>(updates.size());
+        for (ProgressUpdate update : updates) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("userId", ReferenceResolver.idOf(update.getUser()));
+            payload.put("relatedPlanId", ReferenceResolver.idOf(update.getRelatedPlan()));
+            payload.put("isPublic", update.isPublic());
+            payload.put("createdAt", update.getCreatedAt());
+            payload.put("type", update.getType() == null ? null : update.getType().name());
+            payload.put("sentiment", update.getSentiment() == null ? null : update.getSentiment().name());
+            payload.put("rating", update.getRating());
+            payload.put("hoursSpent", update.getHoursSpent());
+            events.add(new OutboxEvent(OutboxEvent.Type.PROGRESS_UPDATE_CREATED, update.getId(), payload));
+        }
+        publishAll(events);
+    }
+
+    private void publish(OutboxEvent.Type type, String aggregateId, Map<String, Object> payload) {
+        publishAll(List.of(new OutboxEvent(type, aggregateId, payload)));
+    }
+
+    // Every event changes its owner's list, so the owner's list version is bumped with it
+    private void publishAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        mongoTemplate.insert(events, OutboxEvent.class);
+
+        Set<String> planOwners = new LinkedHashSet<>();
+        Set<String> updateUsers = new LinkedHashSet<>();
+        for (OutboxEvent event : events) {
+            switch (event.getType()) {
+                case PROGRESS_UPDATE_CREATED, PROGRESS_UPDATE_UPDATED, PROGRESS_UPDATE_DELETED ->
+                        updateUsers.add(event.getString("userId"));
+                default -> planOwners.add(event.getString("ownerId"));
+            }
+        }
+        ownerListVersions.learningPlansChanged(planOwners);
+        ownerListVersions.progressUpdatesChanged(updateUsers);
+    }
+
+    private Map<String, Object> planPayload(LearningPlanDTO.LearningPlanResponse plan) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("ownerId", ownerId(plan.getId()));
+        payload.put("isPublic", plan.isPublic());
+        payload.put("isCompleted", plan.isCompleted());
+        payload.put("estimatedHours", plan.getEstimatedHours());
+        payload.put("completedHours", plan.getCompletedHours());
+        return payload;
+    }
+
+    // Read from the stored reference, which the response only carries as display info
+    public String ownerId(String planId) {
+        Query query = new Query(Criteria.where("id").is(planId));
+        query.fields().include("owner");
+        LearningPlan plan = mongoTemplate.findOne(query, LearningPlan.class);
+        return plan == null ? null : ReferenceResolver.idOf(plan.getOwner());
+    }
+
+    public String userId(String progressUpdateId) {
+        Query query = new Query(Criteria.where("id").is(progressUpdateId));
+        query.fields().include("user");
+        ProgressUpdate update = mongoTemplate.findOne(query, ProgressUpdate.class);
+        return update == null ? null : ReferenceResolver.idOf(update.getUser());
+    }
+
+    private static Map<String, Object> updatePayload(ProgressUpdateDTO.ProgressUpdateResponse update) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", update.getUser() == null ? null : update.getUser().getId());
+        payload.put("relatedPlanId", update.getRelatedPlanId());
+        payload.put("isPublic", update.isPublic());
+        payload.put("createdAt", update.getCreatedAt());
+        payload.put("type", update.getType() == null ? null : update.getType().name());
+        payload.put("sentiment", update.getSentiment() == null ? null : update.getSentiment().name());
+        payload.put("rating", update.getRating());
+        payload.put("hoursSpent", update.getHoursSpent());
+        return payload;
+    }
+}
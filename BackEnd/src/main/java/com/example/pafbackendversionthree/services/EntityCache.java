@@ -0,0 +1,185 @@
+package com.example.pafbackendversionthree.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache keyed by entity id, backed by Caffeine: entries are evicted by size and
+ * expire ttlMillis after they were loaded. Hits take no lock.
+ *
+ * Invalidation is precise: a value loaded while its own key was invalidated is returned to its
+ * caller but not stored, so a read racing a write can never put the pre-write value back.
+ * Invalidating one key never affects loads of other keys.
+ *
+ * Each instance has its own cache. Writes invalidate it locally, and EntityCacheEventHandlers
+ * invalidates the other instances from the outbox broadcast. Counter-only changes (likes, views)
+ * publish no event, so on other instances those fields can lag by up to ttlMillis; the TTL is the
+ * consistency bound for them.
+ */
+public class EntityCache<V> {
+
+    private final String name;
+    private final int maximumSize;
+    private final Cache<String, V> cache;
+
+    // Keys with a load in flight; bounded by concurrent misses, not by the key space
+    private final ConcurrentHashMap<String, Loading> loading = new ConcurrentHashMap<>();
+    private final LongAdder invalidations = new LongAdder();
+
+    // Bumped by every invalidation of the key while loads of it are running; only changed inside
+    // a compute of its key in loading
+    private static final class Loading {
+        private long version;
+        private int loaders;
+    }
+
+    public EntityCache(String name, int maximumSize, long ttlMillis) {
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .build();
+    }
+
+    public V get(String key, Supplier<V> loader) {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long[] loadVersion = new long[1];
+        loading.compute(key, (k, load) -> {
+            Loading started = load != null ? load : new Loading();
+            started.loaders++;
+            loadVersion[0] = started.version;
+            return started;
+        });
+
+        V value = null;
+        try {
+            value = loader.get();
+        } finally {
+            V loaded = value;
+            loading.compute(key, (k, load) -> {
+                if (loaded != null && load.version == loadVersion[0]) {
+                    cache.put(key, loaded);
+                }
+                return --load.loaders == 0 ? null : load;
+            });
+        }
+        return value;
+    }
+
+    /**
+     * Values of the given keys: cached ones as they are, the rest from one call of loader with the
+     * missing keys. Keys the loader returns no value for are left out. Loaded values are stored
+     * under the same rule as get.
+     */
+    public Map<String, V> getAll(Collection<String> keys, Function<Set<String>, Map<String, V>> loader) {
+        Map<String, V> values = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String key : keys) {
+            V cached = cache.getIfPresent(key);
+            if (cached != null) {
+                values.put(key, cached);
+            } else {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        Map<String, Long> loadVersions = new HashMap<>();
+        for (String key : missing) {
+            loading.compute(key, (k, load) -> {
+                Loading started = load != null ? load : new Loading();
+                started.loaders++;
+                loadVersions.put(key, started.version);
+                return started;
+            });
+        }
+
+        Map<String, V> loaded = Map.of();
+        try {
+            loaded = loader.apply(missing);
+        } finally {
+            for (String key : missing) {
+                V value = loaded.get(key);
+                loading.compute(key, (k, load) -> {
+                    if (value != null && load.version == loadVersions.get(key)) {
+                        cache.put(key, value);
+                    }
+                    return --load.loaders == 0 ? null : load;
+                });
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        }
+        return values;
+    }
+
+    public void invalidate(String key) {
+        // Under the key's compute, so no load of it can store between the bump and the removal
+        loading.compute(key, (k, load) -> {
+            if (load != null) {
+                load.version++;
+            }
+            cache.invalidate(key);
+            return load;
+        });
+        invalidations.increment();
+    }
+
+    public void invalidateAll() {
+        loading.replaceAll((key, load) -> {
+            load.version++;
+            return load;
+        });
+        cache.invalidateAll();
+        invalidations.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    // For CaffeineCacheMetrics
+    public Cache<String, V> nativeCache() {
+        return cache;
+    }
+
+    public Map<String, Number> stats() {
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("size", cache.estimatedSize());
+        values.put("maximumSize", maximumSize);
+        values.put("hits", stats.hitCount());
+        values.put("misses", stats.missCount());
+        values.put("hitRatio", stats.requestCount() == 0 ? 0.0 : stats.hitRate());
+        values.put("evictions", stats.evictionCount());
+        values.put("invalidations", invalidations());
+        return values;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Invalidates the entity caches of this instance for every change recorded in the outbox,
+ * whichever instance made it. The writing instance has already invalidated its own cache; the
+ * broadcast reaches the others once the change has committed. When the broadcast lost events,
+ * both caches are dropped whole.
+ */
+@Service
+public class EntityCacheEventHandlers {
+
+    private final DomainEventBus domainEventBus;
+    private final OutboxChangeStream outboxChangeStream;
+    private final EntityCache<LearningPlanDTO.LearningPlanResponse> learningPlanCache;
+    private final EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache;
+
+    @Autowired
+    public EntityCacheEventHandlers(DomainEventBus domainEventBus,
+                                    OutboxChangeStream outboxChangeStream,
+                                    EntityCache<LearningPlanDTO.LearningPlanResponse> learningPlanCache,
+                                    EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache) {
+        this.domainEventBus = domainEventBus;
+        this.outboxChangeStream = outboxChangeStream;
+        this.learningPlanCache = learningPlanCache;
+        this.progressUpdateCache = progressUpdateCache;
+    }
+
+    @PostConstruct
+    public void register() {
+        domainEventBus.subscribeLocal(this::handle);
+        outboxChangeStream.onResync(() -> {
+            learningPlanCache.invalidateAll();
+            progressUpdateCache.invalidateAll();
+        });
+    }
+
+    private void handle(OutboxEvent event) {
+        switch (event.getType()) {
+            // A fork's aggregate is its parent, whose fork count changed
+            case LEARNING_PLAN_CREATED, LEARNING_PLAN_UPDATED, LEARNING_PLAN_DELETED,
+                    LEARNING_UNIT_COMPLETED, LEARNING_PLAN_FORKED -> learningPlanCache.invalidate(event.getAggregateId());
+            case PROGRESS_UPDATE_CREATED, PROGRESS_UPDATE_UPDATED, PROGRESS_UPDATE_DELETED ->
+                    progressUpdateCache.invalidate(event.getAggregateId());
+        }
+    }
+}
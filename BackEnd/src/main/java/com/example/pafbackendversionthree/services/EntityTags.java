@@ -0,0 +1,155 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * ETags for learning plans, progress updates and the per-owner lists of both.
+ *
+ * A single document's tag is hashed from the fields that change whenever its JSON does: updatedAt
+ * plus the counters that are bumped in place without touching it. The same tag is computed from a
+ * response about to be sent and from a projection of just those fields, one lookup on an indexed
+ * key, so a 304 never touches a cache, DBRef resolution or mapping. Tagging the response itself
+ * keeps a cached response that lags a counter from being pinned on the client.
+ *
+ * A learning plan view is every GET of the plan the server answers, a 304 revalidation included.
+ * viewCount therefore moves with reads alone and is left out of plan tags, which are weak: two
+ * responses that differ only in their view count are the same plan, and the count a client shows
+ * is refreshed with the next real change.
+ *
+ * List tags come from the owner's counter in OwnerListVersions, so checking one never reads the
+ * owner's documents. Every write that changes a list bumps the counter in its own transaction,
+ * counter flushes and backfills included, so a committed change always comes with a new tag; plan
+ * views reach it with each view flush. The tag is read before the list itself: a write committing
+ * between the two reads pairs the new body with the old tag, which costs one extra 200 on the next
+ * request and never a 304 for a body the client has not seen.
+ *
+ * Owner display info (username, profile image) is not part of the tags; a profile change
+ * shows up on the next change to the plan or update itself.
+ */
+@Service
+public class EntityTags {
+
+    // A plan's current tag and whether it is public, which is all a 304 needs to record the view
+    public record PlanTag(String tag, boolean isPublic) {
+    }
+
+    private static final String[] PLAN_VERSION_FIELDS = {
+            "updatedAt", "forkCount", "completionPercentage"
+    };
+    private static final String[] UPDATE_VERSION_FIELDS = {
+            "updatedAt", "likeCount", "commentCount", "viewCount"
+    };
+
+    private final MongoTemplate mongoTemplate;
+    private final OwnerListVersions ownerListVersions;
+
+    @Autowired
+    public EntityTags(MongoTemplate mongoTemplate, OwnerListVersions ownerListVersions) {
+        this.mongoTemplate = mongoTemplate;
+        this.ownerListVersions = ownerListVersions;
+    }
+
+    // Current tags, null when the document does not exist so the caller falls through to its 404
+    public PlanTag learningPlan(String id) {
+        Query query = new Query(Criteria.where("id").is(id));
+        query.fields().include(PLAN_VERSION_FIELDS).include("isPublic");
+        LearningPlan plan = mongoTemplate.findOne(query, LearningPlan.class);
+        return plan == null ? null : new PlanTag(weak(tag(version(plan))), plan.isPublic());
+    }
+
+    public String progressUpdate(String id) {
+        Query query = new Query(Criteria.where("id").is(id));
+        query.fields().include(UPDATE_VERSION_FIELDS);
+        ProgressUpdate update = mongoTemplate.findOne(query, ProgressUpdate.class);
+        return update == null ? null : tag(version(update));
+    }
+
+    public String ownerLearningPlans(String ownerId) {
+        return weak(tag("plans:" + ownerId + ':' + ownerListVersions.learningPlans(ownerId)));
+    }
+
+    public String userProgressUpdates(String userId) {
+        return tag("updates:" + userId + ':' + ownerListVersions.progressUpdates(userId));
+    }
+
+    // Tags of responses about to be sent
+    public static String of(LearningPlanDTO.LearningPlanResponse plan) {
+        return weak(tag(version(plan)));
+    }
+
+    public static String of(ProgressUpdateDTO.ProgressUpdateResponse update) {
+        return tag(version(update));
+    }
+
+    /**
+     * Whether an If-None-Match header matches the current tag. Comparison is weak, as RFC 9110
+     * requires for If-None-Match, so a tag a proxy marked W/ still revalidates.
+     */
+    public static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || tag == null) {
+            return false;
+        }
+        String current = opaque(tag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = opaque(candidate.trim());
+            if (value.equals("*") || value.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String version(LearningPlan plan) {
+        return planVersion(plan.getId(), plan.getUpdatedAt(), plan.getForkCount(), plan.getCompletionPercentage());
+    }
+
+    private static String version(LearningPlanDTO.LearningPlanResponse plan) {
+        return planVersion(plan.getId(), plan.getUpdatedAt(), plan.getForkCount(), plan.getCompletionPercentage());
+    }
+
+    private static String version(ProgressUpdate update) {
+        return updateVersion(update.getId(), update.getUpdatedAt(), update.getLikeCount(),
+                update.getCommentCount(), update.getViewCount());
+    }
+
+    private static String version(ProgressUpdateDTO.ProgressUpdateResponse update) {
+        return updateVersion(update.getId(), update.getUpdatedAt(), update.getLikeCount(),
+                update.getCommentCount(), update.getViewCount());
+    }
+
+    private static String planVersion(String id, Date updatedAt, int forkCount, double completionPercentage) {
+        return id + ':' + millis(updatedAt) + ':' + forkCount + ':' + completionPercentage;
+    }
+
+    private static String updateVersion(String id, Date updatedAt, int likeCount, int commentCount, int viewCount) {
+        return id + ':' + millis(updatedAt) + ':' + likeCount + ':' + commentCount + ':' + viewCount;
+    }
+
+    private static long millis(Date date) {
+        return date == null ? 0 : date.getTime();
+    }
+
+    private static String tag(String version) {
+        return '"' + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+
+    private static String weak(String tag) {
+        return "W/" + tag;
+    }
+}
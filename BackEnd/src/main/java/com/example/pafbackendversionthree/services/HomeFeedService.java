@@ -0,0 +1,288 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.HomeFeedBucket;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user home feed of progress updates on plans the user owns or has forked from.
+ *
+ * Public updates are pushed, when their creation event is delivered, into one bounded bucket
+ * document per user in home_feed_buckets ($push with $sort/$slice keeps the newest
+ * app.home-feed.bucket-size entries),
+ * so opening the feed is a read of that bucket by _id. The updates come from the progress update
+ * cache; only those missing from it are fetched, with one $in query.
+ * Plans forked more than app.home-feed.fan-out-threshold times only push to their owner; their
+ * forkers pull those updates at read time instead, through the plan ids recorded in the bucket.
+ * Updates that are deleted or made private are pulled from every bucket, and the read only
+ * returns updates that are still public.
+ *
+ * Forks made before the home feed existed are linked once at startup (see backfillForkLinks).
+ */
+@Service
+public class HomeFeedService {
+
+    private static final Logger log = LoggerFactory.getLogger(HomeFeedService.class);
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache;
+    private final int bucketSize;
+    private final int fanOutThreshold;
+
+    // Public plans past the fan-out threshold, served by fan-out-on-read
+    private volatile Set<String> popularPlanIds = Set.of();
+
+    @Autowired
+    public HomeFeedService(MongoTemplate mongoTemplate,
+                           ReferenceResolver referenceResolver,
+                           EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache,
+                           @Value("${app.home-feed.bucket-size:200}") int bucketSize,
+                           @Value("${app.home-feed.fan-out-threshold:1000}") int fanOutThreshold) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.progressUpdateCache = progressUpdateCache;
+        this.bucketSize = bucketSize;
+        this.fanOutThreshold = fanOutThreshold;
+    }
+
+    public List<ProgressUpdateDTO.ProgressUpdateResponse> getFeed(String userId, int size) {
+        int limit = Math.min(CursorCodec.pageSize(size), bucketSize);
+        HomeFeedBucket bucket = mongoTemplate.findById(userId, HomeFeedBucket.class);
+        if (bucket == null) {
+            return List.of();
+        }
+
+        Map<String, HomeFeedBucket.Entry> entries = new LinkedHashMap<>();
+        for (HomeFeedBucket.Entry entry : bucket.getEntries()) {
+            entries.put(entry.getUpdateId(), entry);
+        }
+
+        // Fan-out-on-read for popular plans this user forked from
+        Set<Object> pulledPlans = bucket.getForkedPlanIds().stream()
+                .filter(popularPlanIds::contains)
+                .map(ReferenceResolver::refId)
+                .collect(Collectors.toSet());
+        if (!pulledPlans.isEmpty()) {
+            Query pulled = new Query(Criteria.where("relatedPlan.$id").in(pulledPlans).and("isPublic").is(true))
+                    .with(Sort.by(Sort.Direction.DESC, "id"))
+                    .limit(limit);
+            pulled.fields().include("createdAt");
+            for (ProgressUpdate update : mongoTemplate.find(pulled, ProgressUpdate.class)) {
+                entries.putIfAbsent(update.getId(), new HomeFeedBucket.Entry(update.getId(), null, update.getCreatedAt()));
+            }
+        }
+
+        List<String> ids = entries.values().stream()
+                .sorted(Comparator.comparing(HomeFeedBucket.Entry::getCreatedAt,
+                        Comparator.nullsLast(Comparator.reverseOrder())))
+                .limit(limit)
+                .map(HomeFeedBucket.Entry::getUpdateId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Entries can outlive a switch to private until its event is delivered, so visibility is checked here too
+        Map<String, ProgressUpdateDTO.ProgressUpdateResponse> updates = progressUpdateCache.getAll(ids, this::load);
+        return ids.stream()
+                .map(updates::get)
+                .filter(update -> update != null && update.isPublic())
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, ProgressUpdateDTO.ProgressUpdateResponse> load(Set<String> ids) {
+        List<ProgressUpdate> found = mongoTemplate.find(new Query(Criteria.where("id").in(ids)), ProgressUpdate.class);
+        return referenceResolver.toProgressUpdateResponses(found).stream()
+                .collect(Collectors.toMap(ProgressUpdateDTO.ProgressUpdateResponse::getId, Function.identity()));
+    }
+
+    /**
+     * Pushes a new public update into the buckets of its recipients. Called from the domain event
+     * bus and safe to repeat: a bucket already holding the entry is left alone.
+     */
+    public void fanOut(String updateId, String planId, boolean isPublic, Date createdAt) {
+        if (!isPublic || planId == null) {
+            return;
+        }
+        Set<String> recipients = recipients(planId);
+        if (recipients.isEmpty()) {
+            return;
+        }
+
+        HomeFeedBucket.Entry entry = new HomeFeedBucket.Entry(updateId, planId, createdAt);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HomeFeedBucket.class);
+        for (String recipient : recipients) {
+            Update push = new Update().set("updatedAt", new Date());
+            push.push("entries").sort(Sort.by(Sort.Direction.DESC, "createdAt")).slice(bucketSize).each(entry);
+            bulk.upsert(new Query(Criteria.where("_id").is(recipient).and("entries.updateId").ne(updateId)), push);
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // A bucket that already has the entry fails the filter and the upsert hits its _id
+            boolean onlyRepeats = e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY);
+            if (!onlyRepeats) {
+                throw e;
+            }
+        }
+    }
+
+    // Remembers the parent so updates on it reach the forker, pushed or pulled
+    public void onFork(String parentPlanId, String userId) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(userId)),
+                new Update().addToSet("forkedPlanIds", parentPlanId).set("updatedAt", new Date()), HomeFeedBucket.class);
+    }
+
+    // Drops an update that was deleted or made private from every bucket holding it
+    public void remove(String progressUpdateId) {
+        mongoTemplate.updateMulti(new Query(Criteria.where("entries.updateId").is(progressUpdateId)),
+                new Update().pull("entries", new Document("updateId", progressUpdateId)), HomeFeedBucket.class);
+    }
+
+    // Plan owner, plus the owners of its forks unless the plan is served by fan-out-on-read
+    private Set<String> recipients(String planId) {
+        Query planQuery = new Query(Criteria.where("id").is(planId));
+        planQuery.fields().include("owner", "isPublic", "forkCount");
+        LearningPlan plan = mongoTemplate.findOne(planQuery, LearningPlan.class);
+        if (plan == null) {
+            return Set.of();
+        }
+
+        Set<String> recipients = new LinkedHashSet<>();
+        String ownerId = ReferenceResolver.idOf(plan.getOwner());
+        if (ownerId != null) {
+            recipients.add(ownerId);
+        }
+        if (plan.isPublic() && plan.getForkCount() > fanOutThreshold) {
+            if (!popularPlanIds.contains(planId)) {
+                Set<String> popular = new HashSet<>(popularPlanIds);
+                popular.add(planId);
+                popularPlanIds = Set.copyOf(popular);
+            }
+            return recipients;
+        }
+
+        Query forks = new Query(Criteria.where("forkedFromId").is(planId));
+        forks.fields().include("owner");
+        for (LearningPlan fork : mongoTemplate.find(forks, LearningPlan.class)) {
+            String forkOwnerId = ReferenceResolver.idOf(fork.getOwner());
+            if (forkOwnerId != null) {
+                recipients.add(forkOwnerId);
+            }
+        }
+        return recipients;
+    }
+
+    @Scheduled(fixedDelayString = "${app.home-feed.popular-refresh-interval-ms:60000}")
+    public void refreshPopularPlans() {
+        Query query = new Query(Criteria.where("isPublic").is(true).and("forkCount").gt(fanOutThreshold));
+        query.fields().include("id");
+        List<String> ids = new ArrayList<>();
+        for (LearningPlan plan : mongoTemplate.find(query, LearningPlan.class)) {
+            ids.add(plan.getId());
+        }
+        popularPlanIds = Set.copyOf(ids);
+    }
+
+    /**
+     * Links forks made before the home feed existed: each forker's bucket records the parent plans
+     * and gets their newest public updates. Forks made since are linked by onFork from their event
+     * and marked when created, so only unmarked forks are read and this does its work once.
+     */
+    public void backfillForkLinks() {
+        Query unlinked = new Query(Criteria.where("forkedFromId").exists(true).and("homeFeedLinkedAt").exists(false));
+        unlinked.fields().include("owner", "forkedFromId");
+        Map<String, Set<String>> parentsByForker = new HashMap<>();
+        List<String> forkIds = new ArrayList<>();
+        for (LearningPlan fork : mongoTemplate.find(unlinked, LearningPlan.class)) {
+            String ownerId = ReferenceResolver.idOf(fork.getOwner());
+            if (ownerId != null) {
+                parentsByForker.computeIfAbsent(ownerId, id -> new LinkedHashSet<>()).add(fork.getForkedFromId());
+            }
+            forkIds.add(fork.getId());
+        }
+        if (forkIds.isEmpty()) {
+            return;
+        }
+
+        parentsByForker.forEach(this::link);
+        mongoTemplate.updateMulti(new Query(Criteria.where("id").in(forkIds)),
+                new Update().set("homeFeedLinkedAt", new Date()), LearningPlan.class);
+        log.info("Linked {} forks made before the home feed into {} buckets", forkIds.size(), parentsByForker.size());
+    }
+
+    private void link(String userId, Set<String> parentPlanIds) {
+        HomeFeedBucket bucket = mongoTemplate.findById(userId, HomeFeedBucket.class);
+        Set<String> present = new HashSet<>();
+        Set<String> newParents = new LinkedHashSet<>(parentPlanIds);
+        if (bucket != null) {
+            bucket.getEntries().forEach(entry -> present.add(entry.getUpdateId()));
+            newParents.removeAll(bucket.getForkedPlanIds());
+        }
+
+        Update update = new Update().set("updatedAt", new Date());
+        update.addToSet("forkedPlanIds").each(parentPlanIds.toArray());
+        // Popular parents are pulled at read time
+        Set<Object> pushed = newParents.stream()
+                .filter(planId -> !popularPlanIds.contains(planId))
+                .map(ReferenceResolver::refId)
+                .collect(Collectors.toSet());
+        if (!pushed.isEmpty()) {
+            Query recent = new Query(Criteria.where("relatedPlan.$id").in(pushed).and("isPublic").is(true))
+                    .with(Sort.by(Sort.Direction.DESC, "id"))
+                    .limit(bucketSize);
+            recent.fields().include("relatedPlan", "createdAt");
+            List<HomeFeedBucket.Entry> entries = new ArrayList<>();
+            for (ProgressUpdate recentUpdate : mongoTemplate.find(recent, ProgressUpdate.class)) {
+                if (!present.contains(recentUpdate.getId())) {
+                    entries.add(new HomeFeedBucket.Entry(recentUpdate.getId(),
+                            ReferenceResolver.idOf(recentUpdate.getRelatedPlan()), recentUpdate.getCreatedAt()));
+                }
+            }
+            if (!entries.isEmpty()) {
+                update.push("entries").sort(Sort.by(Sort.Direction.DESC, "createdAt")).slice(bucketSize)
+                        .each(entries.toArray());
+            }
+        }
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(userId)), update, HomeFeedBucket.class);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        refreshPopularPlans();
+        backfillForkLinks();
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningAnalyticsDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import com.example.pafbackendversionthree.models.ProgressUpdateContribution;
+import com.example.pafbackendversionthree.models.UserLearningStats;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Per-user learning rollups in user_learning_stats: update counts and hours, counts by type and
+ * sentiment, rating sum and count, hours per plan, and daily and weekly buckets. A dashboard reads
+ * one document by _id.
+ *
+ * Rollups are maintained from domain events. Each progress update's current contribution is
+ * swapped in progress_update_contributions and the difference is applied with $inc, so creates,
+ * edits and deletes are exact and a redelivered event changes nothing. rebuild() recomputes all
+ * rollups from the source collections, one aggregation per partition of users, run in parallel.
+ */
+@Service
+public class LearningAnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(LearningAnalyticsService.class);
+
+    private static final String PROGRESS_UPDATES = "progress_updates";
+    private static final String STATS = "user_learning_stats";
+    private static final String CONTRIBUTIONS = "progress_update_contributions";
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final DomainEventBus domainEventBus;
+    private final int rebuildPartitions;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    @Autowired
+    public LearningAnalyticsService(MongoTemplate mongoTemplate,
+                                    DomainEventBus domainEventBus,
+                                    @Value("${app.analytics.rebuild-partitions:4}") int rebuildPartitions) {
+        this.mongoTemplate = mongoTemplate;
+        this.domainEventBus = domainEventBus;
+        this.rebuildPartitions = rebuildPartitions;
+    }
+
+    @PostConstruct
+    public void register() {
+        domainEventBus.subscribe(this::handle);
+    }
+
+    public LearningAnalyticsDTO.UserLearningStatsResponse getUserStats(String userId, int days, int weeks) {
+        UserLearningStats stats = mongoTemplate.findById(userId, UserLearningStats.class);
+        return new LearningAnalyticsDTO.UserLearningStatsResponse(userId,
+                stats != null ? stats : new UserLearningStats(), days, weeks);
+    }
+
+    private void handle(OutboxEvent event) {
+        switch (event.getType()) {
+            case PROGRESS_UPDATE_CREATED, PROGRESS_UPDATE_UPDATED -> apply(event, contribution(event));
+            case PROGRESS_UPDATE_DELETED -> apply(event, tombstone());
+            case LEARNING_PLAN_CREATED, LEARNING_PLAN_UPDATED, LEARNING_UNIT_COMPLETED ->
+                    setPlanCompletedHours(event, event.getAggregateId());
+            case LEARNING_PLAN_FORKED -> setPlanCompletedHours(event, event.getString("forkId"));
+            case LEARNING_PLAN_DELETED -> {
+                String ownerId = event.getString("ownerId");
+                if (ownerId != null && isKey(event.getAggregateId())) {
+                    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(ownerId)),
+                            new Update().unset("planCompletedHours." + event.getAggregateId()), UserLearningStats.class);
+                }
+            }
+            default -> {
+                // Not part of the rollups
+            }
+        }
+    }
+
+    // Swaps in the update's new contribution and applies the difference to the affected rollups
+    private void apply(OutboxEvent event, ProgressUpdateContribution next) {
+        next.setId(event.getAggregateId());
+        next.setEventId(event.getId());
+
+        Query olderOnly = new Query(Criteria.where("id").is(next.getId()).and("eventId").lt(event.getId()));
+        ProgressUpdateContribution previous;
+        try {
+            previous = mongoTemplate.findAndReplace(olderOnly, next, FindAndReplaceOptions.options().upsert());
+        } catch (DuplicateKeyException e) {
+            // This event, or a newer one for the same update, is already counted
+            return;
+        }
+
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        contribute(deltas, previous, -1);
+        contribute(deltas, next, 1);
+        deltas.forEach((userId, fields) -> {
+            Update update = new Update();
+            fields.forEach((field, delta) -> {
+                if (delta != 0) {
+                    update.inc(field, delta);
+                }
+            });
+            if (!update.getUpdateObject().isEmpty()) {
+                mongoTemplate.upsert(new Query(Criteria.where("_id").is(userId)),
+                        update.set("updatedAt", new Date()), UserLearningStats.class);
+            }
+        });
+    }
+
+    private void setPlanCompletedHours(OutboxEvent event, String planId) {
+        String ownerId = event.getString("ownerId");
+        Object completedHours = event.getPayload().get("completedHours");
+        if (ownerId == null || !isKey(planId) || !(completedHours instanceof Number hours)) {
+            return;
+        }
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(ownerId)),
+                new Update().set("planCompletedHours." + planId, hours.longValue()).set("updatedAt", new Date()),
+                UserLearningStats.class);
+    }
+
+    private static ProgressUpdateContribution contribution(OutboxEvent event) {
+        Map<String, Object> payload = event.getPayload();
+        Date createdAt = payload.get("createdAt") instanceof Date date ? date : event.getCreatedAt();
+
+        ProgressUpdateContribution contribution = new ProgressUpdateContribution();
+        contribution.setUserId(event.getString("userId"));
+        contribution.setPlanId(event.getString("relatedPlanId"));
+        contribution.setDay(day(createdAt));
+        contribution.setWeek(week(createdAt));
+        contribution.setHours(payload.get("hoursSpent") instanceof Number hours ? hours.longValue() : 0);
+        contribution.setType(event.getString("type"));
+        contribution.setSentiment(event.getString("sentiment"));
+        contribution.setRating(payload.get("rating") instanceof Number rating ? rating.intValue() : null);
+        return contribution;
+    }
+
+    private static ProgressUpdateContribution tombstone() {
+        ProgressUpdateContribution tombstone = new ProgressUpdateContribution();
+        tombstone.setDeleted(true);
+        tombstone.setDeletedAt(new Date());
+        return tombstone;
+    }
+
+    // Adds sign * contribution to the per-user field deltas, keyed by dotted rollup field
+    private static void contribute(Map<String, Map<String, Long>> deltas, ProgressUpdateContribution contribution,
+                                   long sign) {
+        if (contribution == null || contribution.isDeleted() || contribution.getUserId() == null) {
+            return;
+        }
+        Map<String, Long> fields = deltas.computeIfAbsent(contribution.getUserId(), userId -> new LinkedHashMap<>());
+        long hours = contribution.getHours() * sign;
+
+        fields.merge("updateCount", sign, Long::sum);
+        fields.merge("hoursSpent", hours, Long::sum);
+        if (contribution.getRating() != null) {
+            fields.merge("ratingSum", contribution.getRating() * sign, Long::sum);
+            fields.merge("ratingCount", sign, Long::sum);
+        }
+        if (isKey(contribution.getType())) {
+            fields.merge("byType." + contribution.getType(), sign, Long::sum);
+        }
+        if (isKey(contribution.getSentiment())) {
+            fields.merge("bySentiment." + contribution.getSentiment(), sign, Long::sum);
+        }
+        if (isKey(contribution.getPlanId())) {
+            fields.merge("planHoursSpent." + contribution.getPlanId(), hours, Long::sum);
+        }
+        if (isKey(contribution.getDay())) {
+            fields.merge("daily." + contribution.getDay() + ".count", sign, Long::sum);
+            fields.merge("daily." + contribution.getDay() + ".hours", hours, Long::sum);
+        }
+        if (isKey(contribution.getWeek())) {
+            fields.merge("weekly." + contribution.getWeek() + ".count", sign, Long::sum);
+            fields.merge("weekly." + contribution.getWeek() + ".hours", hours, Long::sum);
+        }
+    }
+
+    // Values used as field names must not be able to address other fields
+    private static boolean isKey(String value) {
+        return value != null && !value.isEmpty() && value.indexOf('.') < 0 && !value.startsWith("$");
+    }
+
+    private static String day(Date date) {
+        return date == null ? null : DateTimeFormatter.ISO_LOCAL_DATE.format(date.toInstant().atZone(ZoneOffset.UTC));
+    }
+
+    // ISO week, matching $dateToString's %G-W%V
+    private static String week(Date date) {
+        if (date == null) {
+            return null;
+        }
+        ZonedDateTime utc = date.toInstant().atZone(ZoneOffset.UTC);
+        return String.format("%d-W%02d", utc.get(IsoFields.WEEK_BASED_YEAR), utc.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    /**
+     * Recomputes every rollup and contribution from progress_updates and learning_plans. Users
+     * are split into app.analytics.rebuild-partitions groups, each aggregated on its own thread.
+     * Changes made while a partition is being rebuilt may need another rebuild to show up.
+     */
+    public Map<String, Number> rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A learning analytics rebuild is already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            Date startedAt = new Date(started);
+            // Events recorded before this id are covered by the rebuild and skipped if they arrive later
+            String rebuildEventId = new ObjectId().toHexString();
+
+            List<Object> userIds = mongoTemplate.getCollection(PROGRESS_UPDATES)
+                    .distinct("user.$id", Object.class)
+                    .into(new ArrayList<>());
+            int partitionCount = Math.max(1, Math.min(rebuildPartitions, userIds.size()));
+            List<List<Object>> partitions = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                partitions.add(new ArrayList<>());
+            }
+            for (int i = 0; i < userIds.size(); i++) {
+                partitions.get(i % partitionCount).add(userIds.get(i));
+            }
+
+            long updates = 0;
+            ExecutorService pool = Executors.newFixedThreadPool(partitionCount);
+            try {
+                List<Future<Long>> results = new ArrayList<>(partitionCount);
+                for (List<Object> partition : partitions) {
+                    results.add(pool.submit(() -> rebuildPartition(partition, rebuildEventId)));
+                }
+                for (Future<Long> result : results) {
+                    updates += result.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Learning analytics rebuild failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Learning analytics rebuild interrupted", e);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            long plans = rebuildPlanCompletedHours();
+            // Rollups nothing wrote to belong to users with no updates or plans left
+            long removed = mongoTemplate.remove(new Query(Criteria.where("updatedAt").lt(startedAt)),
+                    UserLearningStats.class).getDeletedCount();
+
+            Map<String, Number> summary = new LinkedHashMap<>();
+            summary.put("users", userIds.size());
+            summary.put("progressUpdates", updates);
+            summary.put("learningPlans", plans);
+            summary.put("removedRollups", removed);
+            summary.put("partitions", partitionCount);
+            summary.put("millis", System.currentTimeMillis() - started);
+            log.info("Rebuilt learning analytics: {}", summary);
+            return summary;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private long rebuildPartition(List<Object> userIds, String rebuildEventId) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("user.$id", new Document("$in", userIds))),
+                new Document("$project", new Document("userId", new Document("$toString", refField("$user")))
+                        .append("planId", new Document("$toString", refField("$relatedPlan")))
+                        .append("hoursSpent", 1)
+                        .append("type", 1)
+                        .append("sentiment", 1)
+                        .append("rating", 1)
+                        .append("day", new Document("$dateToString",
+                                new Document("format", "%Y-%m-%d").append("date", "$createdAt")))
+                        .append("week", new Document("$dateToString",
+                                new Document("format", "%G-W%V").append("date", "$createdAt")))));
+
+        Map<String, Map<String, Long>> rollups = new HashMap<>();
+        List<ReplaceOneModel<Document>> contributions = new ArrayList<>(WRITE_BATCH_SIZE);
+        long count = 0;
+        for (Document row : mongoTemplate.getCollection(PROGRESS_UPDATES).aggregate(pipeline)
+                .allowDiskUse(true)
+                .batchSize(WRITE_BATCH_SIZE)) {
+            ProgressUpdateContribution contribution = new ProgressUpdateContribution();
+            contribution.setId(row.get("_id").toString());
+            contribution.setEventId(rebuildEventId);
+            contribution.setUserId(row.getString("userId"));
+            contribution.setPlanId(row.getString("planId"));
+            contribution.setDay(row.getString("day"));
+            contribution.setWeek(row.getString("week"));
+            contribution.setHours(row.get("hoursSpent") instanceof Number hours ? hours.longValue() : 0);
+            contribution.setType(row.getString("type"));
+            contribution.setSentiment(row.getString("sentiment"));
+            contribution.setRating(row.get("rating") instanceof Number rating ? rating.intValue() : null);
+            contribute(rollups, contribution, 1);
+
+            Document stored = new Document();
+            mongoTemplate.getConverter().write(contribution, stored);
+            contributions.add(new ReplaceOneModel<>(Filters.eq("_id", stored.get("_id")), stored,
+                    new ReplaceOptions().upsert(true)));
+            if (contributions.size() == WRITE_BATCH_SIZE) {
+                writeContributions(contributions);
+            }
+            count++;
+        }
+        writeContributions(contributions);
+
+        List<ReplaceOneModel<Document>> writes = new ArrayList<>(WRITE_BATCH_SIZE);
+        for (Map.Entry<String, Map<String, Long>> rollup : rollups.entrySet()) {
+            Object id = ReferenceResolver.refId(rollup.getKey());
+            Document stats = nest(rollup.getValue()).append("_id", id).append("updatedAt", new Date());
+            writes.add(new ReplaceOneModel<>(Filters.eq("_id", id), stats, new ReplaceOptions().upsert(true)));
+            if (writes.size() == WRITE_BATCH_SIZE) {
+                mongoTemplate.getCollection(STATS).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                writes.clear();
+            }
+        }
+        if (!writes.isEmpty()) {
+            mongoTemplate.getCollection(STATS).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        }
+        return count;
+    }
+
+    private long rebuildPlanCompletedHours() {
+        Map<String, Document> byOwner = new HashMap<>();
+        Query query = new Query().cursorBatchSize(WRITE_BATCH_SIZE);
+        query.fields().include("owner", "completedHours");
+        long count = 0;
+        try (Stream<LearningPlan> plans = mongoTemplate.stream(query, LearningPlan.class)) {
+            for (LearningPlan plan : (Iterable<LearningPlan>) plans::iterator) {
+                String ownerId = ReferenceResolver.idOf(plan.getOwner());
+                if (ownerId != null && isKey(plan.getId())) {
+                    byOwner.computeIfAbsent(ownerId, id -> new Document())
+                            .append(plan.getId(), (long) plan.getCompletedHours());
+                    count++;
+                }
+            }
+        }
+
+        List<UpdateOneModel<Document>> writes = new ArrayList<>(WRITE_BATCH_SIZE);
+        for (Map.Entry<String, Document> owner : byOwner.entrySet()) {
+            writes.add(new UpdateOneModel<>(Filters.eq("_id", ReferenceResolver.refId(owner.getKey())),
+                    Updates.combine(Updates.set("planCompletedHours", owner.getValue()),
+                            Updates.set("updatedAt", new Date())),
+                    new UpdateOptions().upsert(true)));
+            if (writes.size() == WRITE_BATCH_SIZE) {
+                mongoTemplate.getCollection(STATS).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                writes.clear();
+            }
+        }
+        if (!writes.isEmpty()) {
+            mongoTemplate.getCollection(STATS).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        }
+        return count;
+    }
+
+    private void writeContributions(List<ReplaceOneModel<Document>> contributions) {
+        if (!contributions.isEmpty()) {
+            mongoTemplate.getCollection(CONTRIBUTIONS).bulkWrite(contributions, new BulkWriteOptions().ordered(false));
+            contributions.clear();
+        }
+    }
+
+    // The id inside a DBRef field; "$id" cannot be addressed with a plain field path
+    private static Document refField(String reference) {
+        return new Document("$getField", new Document("field", new Document("$literal", "$id"))
+                .append("input", reference));
+    }
+
+    // Turns dotted field names into nested documents
+    private static Document nest(Map<String, Long> fields) {
+        Document root = new Document();
+        fields.forEach((path, value) -> {
+            String[] parts = path.split("\\.");
+            Document parent = root;
+            for (int i = 0; i < parts.length - 1; i++) {
+                Object child = parent.get(parts[i]);
+                if (!(child instanceof Document)) {
+                    child = new Document();
+                    parent.put(parts[i], child);
+                }
+                parent = (Document) child;
+            }
+            parent.put(parts[parts.length - 1], value);
+        });
+        return root;
+    }
+
+    // First start with analytics: build the rollups for existing data
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (mongoTemplate.getCollection(STATS).estimatedDocumentCount() == 0
+                && mongoTemplate.getCollection(PROGRESS_UPDATES).estimatedDocumentCount() > 0) {
+            rebuild();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports a user's learning history (their learning plans, then their progress updates) as
+ * gzipped NDJSON or CSV.
+ *
+ * A producer thread reads both collections through MongoDB cursors and turns each document into a
+ * flat row; the response thread takes rows from a bounded queue, serializes them and writes them
+ * through gzip. The queue caps how far the reader can run ahead of a slow client, so memory use
+ * does not depend on the size of the history. At most app.export.max-concurrent exports run at once.
+ *
+ * The body is written on the request thread rather than as an async StreamingResponseBody: the
+ * export slot is held exactly as long as the write, and the MVC async timeout, sized for short
+ * requests, never cuts a large export. Exports instead stop at their own deadline,
+ * app.export.timeout-ms.
+ */
+@Service
+public class LearningHistoryExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(LearningHistoryExportService.class);
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + name);
+        }
+    }
+
+    private static final String GZIP_CONTENT_TYPE = "application/gzip";
+    private static final int CURSOR_BATCH_SIZE = 200;
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    // Marks the end of the rows; compared by identity
+    private static final Map<String, Object> END = new LinkedHashMap<>();
+
+    // Union of plan and update columns, so both record types fit one CSV header
+    private static final List<String> COLUMNS = List.of(
+            "recordType", "id", "title", "description", "content", "category", "skillLevel", "type",
+            "sentiment", "rating", "isPublic", "isCompleted", "estimatedHours", "completedHours",
+            "hoursSpent", "unitCount", "completedUnitCount", "completionPercentage", "relatedPlanId",
+            "learningUnitId", "forkedFromId", "tags", "challenges", "achievements", "likeCount",
+            "commentCount", "viewCount", "forkCount", "targetCompletionDate", "actualCompletionDate",
+            "createdAt", "updatedAt");
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final int queueCapacity;
+    private final Semaphore permits;
+    private final long timeoutMillis;
+    private final ExecutorService producers;
+
+    @Autowired
+    public LearningHistoryExportService(MongoTemplate mongoTemplate,
+                                        ObjectMapper objectMapper,
+                                        @Value("${app.export.queue-capacity:500}") int queueCapacity,
+                                        @Value("${app.export.max-concurrent:4}") int maxConcurrent,
+                                        @Value("${app.export.timeout-ms:1800000}") long timeoutMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.queueCapacity = queueCapacity;
+        this.permits = new Semaphore(maxConcurrent);
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.producers = Executors.newFixedThreadPool(maxConcurrent, runnable -> {
+            Thread thread = new Thread(runnable, "export-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks the user and reserves an export slot before anything is written, so errors are still
+     * plain HTTP statuses, then writes the export and releases the slot however the write ends.
+     */
+    public void exportLearningHistory(String userId, Format format, HttpServletResponse response) throws IOException {
+        if (!mongoTemplate.exists(new Query(Criteria.where("id").is(userId)), AppUser.class)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + userId);
+        }
+        if (!permits.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many exports in progress");
+        }
+        try {
+            String filename = "learning-history-" + userId + "." + format.name().toLowerCase(Locale.ROOT) + ".gz";
+            response.setContentType(GZIP_CONTENT_TYPE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+            export(userId, format, response.getOutputStream());
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void export(String userId, Format format, OutputStream out) throws IOException {
+        BlockingQueue<Map<String, Object>> rows = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        producers.execute(() -> {
+            try {
+                produce(userId, rows, cancelled);
+            } catch (CancellationException e) {
+                // The client went away; nothing left to do
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                try {
+                    enqueue(rows, END, cancelled);
+                } catch (CancellationException e) {
+                    // Writer already stopped
+                }
+            }
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        GZIPOutputStream gzip = new GZIPOutputStream(out, true);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+        try {
+            if (format == Format.CSV) {
+                writeCsvLine(writer, COLUMNS);
+            }
+            while (true) {
+                Map<String, Object> row = rows.poll();
+                if (row == null) {
+                    // Nothing buffered: push what has been written so far before waiting
+                    writer.flush();
+                    row = rows.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+                if (row == END) {
+                    break;
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    failure.compareAndSet(null, new TimeoutException("Export exceeded " + timeoutMillis + " ms"));
+                    break;
+                }
+                if (format == Format.CSV) {
+                    List<Object> values = new ArrayList<>(COLUMNS.size());
+                    for (String column : COLUMNS) {
+                        values.add(row.get(column));
+                    }
+                    writeCsvLine(writer, values);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted for user " + userId, e);
+        } finally {
+            cancelled.set(true);
+        }
+
+        // Leaving the gzip trailer off makes a failed read show up as a truncated archive, not a short history
+        if (failure.get() != null) {
+            log.warn("Learning history export failed for user {}", userId, failure.get());
+            writer.flush();
+            throw new IOException("Learning history export failed for user " + userId, failure.get());
+        }
+        writer.flush();
+        gzip.finish();
+        out.flush();
+    }
+
+    private void produce(String userId, BlockingQueue<Map<String, Object>> rows, AtomicBoolean cancelled) {
+        Query plans = new Query(Criteria.where("owner.$id").is(ReferenceResolver.refId(userId)))
+                .with(CursorCodec.sort(null))
+                .cursorBatchSize(CURSOR_BATCH_SIZE);
+        plans.fields().exclude("learningUnits", "resources", "unitCompletions");
+        try (Stream<LearningPlan> stream = mongoTemplate.stream(plans, LearningPlan.class)) {
+            stream.forEach(plan -> enqueue(rows, planRow(plan), cancelled));
+        }
+
+        Query updates = new Query(Criteria.where("user.$id").is(ReferenceResolver.refId(userId)))
+                .with(CursorCodec.sort(null))
+                .cursorBatchSize(CURSOR_BATCH_SIZE);
+        updates.fields().exclude("attachedMedia");
+        try (Stream<ProgressUpdate> stream = mongoTemplate.stream(updates, ProgressUpdate.class)) {
+            stream.forEach(update -> enqueue(rows, updateRow(update), cancelled));
+        }
+    }
+
+    // Waits for room in the queue, giving up once the writer has stopped reading
+    private static void enqueue(BlockingQueue<Map<String, Object>> rows, Map<String, Object> row,
+                                AtomicBoolean cancelled) {
+        try {
+            while (!rows.offer(row, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled.get()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private static Map<String, Object> planRow(LearningPlan plan) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("recordType", "learningPlan");
+        row.put("id", plan.getId());
+        row.put("title", plan.getTitle());
+        row.put("description", plan.getDescription());
+        row.put("category", plan.getCategory());
+        row.put("skillLevel", plan.getSkillLevel());
+        row.put("isPublic", plan.isPublic());
+        row.put("isCompleted", plan.isCompleted());
+        row.put("estimatedHours", plan.getEstimatedHours());
+        row.put("completedHours", plan.getCompletedHours());
+        row.put("unitCount", plan.getUnitCount());
+        row.put("completedUnitCount", plan.getCompletedUnitCount());
+        row.put("completionPercentage", plan.getCompletionPercentage());
+        row.put("forkedFromId", plan.getForkedFromId());
+        row.put("tags", joined(plan.getTags()));
+        row.put("viewCount", plan.getViewCount());
+        row.put("forkCount", plan.getForkCount());
+        row.put("targetCompletionDate", iso(plan.getTargetCompletionDate()));
+        row.put("actualCompletionDate", iso(plan.getActualCompletionDate()));
+        row.put("createdAt", iso(plan.getCreatedAt()));
+        row.put("updatedAt", iso(plan.getUpdatedAt()));
+        return row;
+    }
+
+    private static Map<String, Object> updateRow(ProgressUpdate update) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("recordType", "progressUpdate");
+        row.put("id", update.getId());
+        row.put("title", update.getTitle());
+        row.put("content", update.getContent());
+        row.put("type", update.getType());
+        row.put("sentiment", update.getSentiment());
+        row.put("rating", update.getRating());
+        row.put("isPublic", update.isPublic());
+        row.put("hoursSpent", update.getHoursSpent());
+        row.put("relatedPlanId", ReferenceResolver.idOf(update.getRelatedPlan()));
+        row.put("learningUnitId", update.getLearningUnitId());
+        row.put("challenges", joined(update.getChallenges()));
+        row.put("achievements", joined(update.getAchievements()));
+        row.put("likeCount", update.getLikeCount());
+        row.put("commentCount", update.getCommentCount());
+        row.put("viewCount", update.getViewCount());
+        row.put("createdAt", iso(update.getCreatedAt()));
+        row.put("updatedAt", iso(update.getUpdatedAt()));
+        return row;
+    }
+
+    private static String iso(Date date) {
+        return date == null ? null : date.toInstant().toString();
+    }
+
+    private static String joined(Collection<String> values) {
+        return values == null || values.isEmpty() ? null : String.join("|", values);
+    }
+
+    // RFC 4180: quote fields containing separators, quotes or line breaks, doubling inner quotes
+    private static void writeCsvLine(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        producers.shutdownNow();
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.CursorPage;
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cursor-paginated public learning-plan feeds. Unlike the Page based variants these never
+ * issue a count query and never skip over earlier rows. Rows are read with a field projection
+ * and returned as summaries, so unit, resource and tag arrays never leave the database.
+ *
+ * Full single-plan and owner reads also go through here so shared forks get their snapshot
+ * content resolved.
+ */
+@Service
+public class LearningPlanFeedService {
+
+    private static final int FACET_LIMIT = 50;
+
+    // Everything LearningPlanSummary reads; learningUnits, resources and tags are left out
+    static final String[] SUMMARY_FIELDS = {
+            "title", "category", "skillLevel", "isPublic", "isCompleted", "updatedAt", "estimatedHours",
+            "completedHours", "owner", "viewCount", "forkCount", "unitCount", "completedUnitCount",
+            "completionPercentage"
+    };
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+
+    @Autowired
+    public LearningPlanFeedService(MongoTemplate mongoTemplate, ReferenceResolver referenceResolver) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+    }
+
+    public LearningPlanDTO.LearningPlanResponse getLearningPlanById(String id) {
+        LearningPlan plan = mongoTemplate.findById(id, LearningPlan.class);
+        if (plan == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Learning plan not found with id: " + id);
+        }
+        return referenceResolver.toLearningPlanResponses(List.of(plan)).get(0);
+    }
+
+    public List<LearningPlanDTO.LearningPlanResponse> getLearningPlansByOwnerId(String ownerId) {
+        Query query = new Query(Criteria.where("owner.$id").is(ReferenceResolver.refId(ownerId)));
+        return referenceResolver.toLearningPlanResponses(mongoTemplate.find(query, LearningPlan.class));
+    }
+
+    // Newest public plans first
+    public CursorPage<LearningPlanDTO.LearningPlanSummary> getPublicLearningPlans(String cursor, int size) {
+        return page(publicPlans(), null, plan -> null, cursor, size);
+    }
+
+    // Most viewed public plans first
+    public CursorPage<LearningPlanDTO.LearningPlanSummary> getMostPopularLearningPlans(String cursor, int size) {
+        return page(publicPlans(), "viewCount", plan -> (long) plan.getViewCount(), cursor, size);
+    }
+
+    // Most forked public plans first
+    public CursorPage<LearningPlanDTO.LearningPlanSummary> getMostForkedLearningPlans(String cursor, int size) {
+        return page(publicPlans(), "forkCount", plan -> (long) plan.getForkCount(), cursor, size);
+    }
+
+    // An owner's unfinished plans closest to completion first, read off the owner_open_completion index
+    public List<LearningPlanDTO.LearningPlanSummary> getNearlyFinishedPlans(String ownerId, double minPercentage,
+                                                                          int size) {
+        Query query = new Query(Criteria.where("owner.$id").is(ReferenceResolver.refId(ownerId))
+                .and("isCompleted").is(false)
+                .and("completionPercentage").gte(minPercentage))
+                .with(Sort.by(Sort.Direction.DESC, "completionPercentage"))
+                .limit(CursorCodec.pageSize(size));
+        query.fields().include(SUMMARY_FIELDS);
+
+        return referenceResolver.toLearningPlanSummaries(mongoTemplate.find(query, LearningPlan.class));
+    }
+
+    /**
+     * Public plans carrying any of the given tags, most viewed first. The first page also
+     * carries tag/category/skillLevel counts for the whole selection from one $facet aggregation.
+     */
+    public LearningPlanDTO.TagBrowseResponse browseByTags(List<String> tags, String cursor, int size) {
+        Criteria selection = Criteria.where("tags").in(tags).and("isPublic").is(true);
+        LearningPlanDTO.TagBrowseResponse response = new LearningPlanDTO.TagBrowseResponse(
+                page(new Query(selection), "viewCount", plan -> (long) plan.getViewCount(), cursor, size));
+
+        if (cursor == null || cursor.isEmpty()) {
+            Aggregation facets = Aggregation.newAggregation(
+                    Aggregation.match(selection),
+                    Aggregation.facet(Aggregation.unwind("tags"), Aggregation.sortByCount("tags"),
+                                    Aggregation.limit(FACET_LIMIT)).as("tags")
+                            .and(Aggregation.sortByCount("category"), Aggregation.limit(FACET_LIMIT)).as("categories")
+                            .and(Aggregation.sortByCount("skillLevel"), Aggregation.limit(FACET_LIMIT)).as("skillLevels"));
+            Document counts = mongoTemplate.aggregate(facets, LearningPlan.class, Document.class).getUniqueMappedResult();
+            if (counts != null) {
+                response.setTags(facetCounts(counts, "tags"));
+                response.setCategories(facetCounts(counts, "categories"));
+                response.setSkillLevels(facetCounts(counts, "skillLevels"));
+            }
+        }
+        return response;
+    }
+
+    // [{_id: value, count: n}, ...] -> {value: n} in descending count order
+    private Map<String, Long> facetCounts(Document counts, String facet) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Document bucket : counts.getList(facet, Document.class, List.of())) {
+            if (bucket.get("_id") != null) {
+                values.put(bucket.get("_id").toString(), ((Number) bucket.get("count")).longValue());
+            }
+        }
+        return values;
+    }
+
+    private Query publicPlans() {
+        return new Query(Criteria.where("isPublic").is(true));
+    }
+
+    private CursorPage<LearningPlanDTO.LearningPlanSummary> page(Query query, String sortField,
+                                                                 Function<LearningPlan, Long> sortValue,
+                                                                 String cursor, int size) {
+        query.fields().include(SUMMARY_FIELDS);
+        CursorPage<LearningPlan> plans = CursorCodec.fetch(mongoTemplate, query, LearningPlan.class,
+                sortField, sortValue, LearningPlan::getId, cursor, size);
+
+        return new CursorPage<>(referenceResolver.toLearningPlanSummaries(plans.getItems()), plans.getNextCursor());
+    }
+}
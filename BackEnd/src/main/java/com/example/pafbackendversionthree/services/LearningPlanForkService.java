@@ -0,0 +1,282 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.PlanContentSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Forks learning plans. app.learning-plans.fork-mode selects how:
+ * "copy" (default) copies the whole plan as before, "shared" stores a constant-size plan that
+ * points at an immutable content snapshot and keeps only the learner's completions. A shared
+ * fork gets its own copy of the content the first time it is edited (see materialize).
+ *
+ * A plan's snapshot id is the hash of its content, computed by its first shared fork and kept on
+ * the plan as forkSnapshotId until the content is edited, so later forks neither hash nor re-store
+ * it. Snapshots no plan points at any more are removed by sweepOrphanedSnapshots.
+ *
+ * The fork, the parent's fork count and LEARNING_PLAN_FORKED commit in one transaction.
+ */
+@Service
+public class LearningPlanForkService {
+
+    private static final Logger log = LoggerFactory.getLogger(LearningPlanForkService.class);
+
+    private static final int MATERIALIZE_ATTEMPTS = 5;
+    private static final int SWEEP_BATCH = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final LearningPlanService learningPlanService;
+    private final DomainEventPublisher domainEventPublisher;
+    private final TransactionOperations transactionOperations;
+    private final boolean sharedForks;
+    private final long orphanGraceMillis;
+
+    @Autowired
+    public LearningPlanForkService(MongoTemplate mongoTemplate,
+                                   ReferenceResolver referenceResolver,
+                                   LearningPlanService learningPlanService,
+                                   DomainEventPublisher domainEventPublisher,
+                                   TransactionOperations transactionOperations,
+                                   @Value("${app.learning-plans.fork-mode:copy}") String forkMode,
+                                   @Value("${app.learning-plans.snapshots.orphan-grace-ms:86400000}") long orphanGraceMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.learningPlanService = learningPlanService;
+        this.domainEventPublisher = domainEventPublisher;
+        this.transactionOperations = transactionOperations;
+        this.sharedForks = "shared".equalsIgnoreCase(forkMode);
+        this.orphanGraceMillis = orphanGraceMillis;
+    }
+
+    public LearningPlanDTO.LearningPlanResponse forkLearningPlan(String planId, String userId) {
+        return Transactions.run(transactionOperations, () -> {
+            LearningPlanDTO.LearningPlanResponse fork = fork(planId, userId);
+            domainEventPublisher.learningPlanForked(planId, fork, userId);
+            return fork;
+        });
+    }
+
+    private LearningPlanDTO.LearningPlanResponse fork(String planId, String userId) {
+        LearningPlan parent = mongoTemplate.findById(planId, LearningPlan.class);
+        if (parent == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Learning plan not found with id: " + planId);
+        }
+        if (sharedForks) {
+            return sharedFork(parent, userId);
+        }
+
+        LearningPlanDTO.LearningPlanResponse response = learningPlanService.forkLearningPlan(planId, userId);
+        // Its LEARNING_PLAN_FORKED event links the parent into the forker's home feed
+        Update update = new Update().set("forkedFromId", planId).set("homeFeedLinkedAt", new Date());
+        if (!parent.hasSharedContent()) {
+            mongoTemplate.updateFirst(byId(response.getId()), update, LearningPlan.class);
+            return response;
+        }
+
+        // The parent's units live in its snapshot: the copy gets its own content, the parent is left as it is
+        PlanContentSnapshot snapshot = mongoTemplate.findById(parent.getContentSnapshotId(), PlanContentSnapshot.class);
+        if (snapshot != null) {
+            List<LearningPlan.LearningUnit> units = new ArrayList<>(snapshot.getLearningUnits().size());
+            snapshot.getLearningUnits().forEach(unit -> units.add(unit.copyContent()));
+            update.set("learningUnits", units)
+                    .set("resources", new ArrayList<>(snapshot.getResources()))
+                    .set("unitCount", units.size());
+        }
+        update.unset("contentSnapshotId").unset("unitCompletions");
+        mongoTemplate.updateFirst(byId(response.getId()), update, LearningPlan.class);
+        return referenceResolver.toLearningPlanResponses(
+                List.of(mongoTemplate.findById(response.getId(), LearningPlan.class))).get(0);
+    }
+
+    /**
+     * Gives a shared fork its own copy of the snapshot content with completions applied, so it can
+     * be edited like any other plan. No-op for plans that already own their content.
+     */
+    public void materialize(String planId) {
+        for (int attempt = 0; attempt < MATERIALIZE_ATTEMPTS; attempt++) {
+            LearningPlan plan = mongoTemplate.findById(planId, LearningPlan.class);
+            if (plan == null || !plan.hasSharedContent()) {
+                return;
+            }
+            referenceResolver.resolveSharedContent(List.of(plan));
+
+            // Guarded on the completion count so a unit completed meanwhile is not lost
+            Query unchanged = byId(planId)
+                    .addCriteria(Criteria.where("contentSnapshotId").is(plan.getContentSnapshotId())
+                            .and("completedUnitCount").is(plan.getCompletedUnitCount()));
+            Update update = new Update()
+                    .set("learningUnits", plan.getLearningUnits())
+                    .set("resources", plan.getResources())
+                    .unset("contentSnapshotId")
+                    .unset("unitCompletions");
+            if (mongoTemplate.updateFirst(unchanged, update, LearningPlan.class).getModifiedCount() > 0) {
+                return;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Learning plan is being modified: " + planId);
+    }
+
+    private LearningPlanDTO.LearningPlanResponse sharedFork(LearningPlan parent, String userId) {
+        AppUser owner = mongoTemplate.findById(userId, AppUser.class);
+        if (owner == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + userId);
+        }
+
+        // A fork of a shared fork shares the same snapshot
+        Update parentUpdate = new Update().inc("forkCount", 1);
+        String snapshotId;
+        if (parent.hasSharedContent()) {
+            snapshotId = parent.getContentSnapshotId();
+            markUsed(snapshotId);
+        } else {
+            snapshotId = parent.getForkSnapshotId();
+            if (snapshotId == null) {
+                snapshotId = contentHash(parent.getLearningUnits(), parent.getResources());
+                parentUpdate.set("forkSnapshotId", snapshotId);
+            }
+            if (!markUsed(snapshotId)) {
+                storeSnapshot(snapshotId, parent.getLearningUnits(), parent.getResources());
+            }
+        }
+
+        LearningPlan fork = new LearningPlan();
+        fork.setTitle(parent.getTitle());
+        fork.setDescription(parent.getDescription());
+        fork.setCategory(parent.getCategory());
+        fork.setSkillLevel(parent.getSkillLevel());
+        fork.setEstimatedHours(parent.getEstimatedHours());
+        fork.setTags(new ArrayList<>(parent.getTags()));
+        fork.setOwner(owner);
+        fork.setForkedFromId(parent.getId());
+        fork.setHomeFeedLinkedAt(new Date());
+        fork.setContentSnapshotId(snapshotId);
+        fork.setUnitCount(parent.hasSharedContent() ? parent.getUnitCount() : parent.getLearningUnits().size());
+        mongoTemplate.insert(fork);
+
+        mongoTemplate.updateFirst(byId(parent.getId()), parentUpdate, LearningPlan.class);
+        return referenceResolver.toLearningPlanResponses(List.of(fork)).get(0);
+    }
+
+    // False when the snapshot is not stored, never was or was swept
+    private boolean markUsed(String snapshotId) {
+        return mongoTemplate.updateFirst(byId(snapshotId), new Update().set("lastUsedAt", new Date()),
+                PlanContentSnapshot.class).getMatchedCount() > 0;
+    }
+
+    // An upsert, so forks storing the same content concurrently end up with one snapshot
+    private void storeSnapshot(String snapshotId, List<LearningPlan.LearningUnit> units, List<String> resources) {
+        List<LearningPlan.LearningUnit> content = new ArrayList<>(units.size());
+        units.forEach(unit -> content.add(unit.copyContent()));
+        Date now = new Date();
+        mongoTemplate.upsert(byId(snapshotId), new Update()
+                .setOnInsert("learningUnits", content)
+                .setOnInsert("resources", new ArrayList<>(resources))
+                .setOnInsert("createdAt", now)
+                .set("lastUsedAt", now), PlanContentSnapshot.class);
+    }
+
+    /**
+     * Deletes the snapshots no plan points at any more, once every fork of them was materialized or
+     * deleted, that no fork has used for app.learning-plans.snapshots.orphan-grace-ms. Plans only
+     * caching a snapshot id in forkSnapshotId do not keep it: a fork that finds its snapshot gone
+     * stores it again, and the delete is guarded on lastUsedAt, so a sweep racing a fork never leaves
+     * the fork pointing at nothing.
+     */
+    @Scheduled(fixedDelayString = "${app.learning-plans.snapshots.sweep-interval-ms:3600000}")
+    public void sweepOrphanedSnapshots() {
+        Date cutoff = new Date(System.currentTimeMillis() - orphanGraceMillis);
+        String after = null;
+        long deleted = 0;
+        while (true) {
+            Criteria unused = Criteria.where("lastUsedAt").not().gte(cutoff);
+            if (after != null) {
+                unused = unused.and("id").gt(after);
+            }
+            Query batch = new Query(unused).with(Sort.by("id")).limit(SWEEP_BATCH);
+            batch.fields().include("id");
+            List<String> ids = mongoTemplate.find(batch, PlanContentSnapshot.class).stream()
+                    .map(PlanContentSnapshot::getId)
+                    .toList();
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            Set<String> referenced = new HashSet<>(mongoTemplate.findDistinct(
+                    new Query(Criteria.where("contentSnapshotId").in(ids)), "contentSnapshotId",
+                    LearningPlan.class, String.class));
+            List<String> orphans = ids.stream().filter(id -> !referenced.contains(id)).toList();
+            if (!orphans.isEmpty()) {
+                deleted += mongoTemplate.remove(new Query(Criteria.where("id").in(orphans)
+                        .and("lastUsedAt").not().gte(cutoff)), PlanContentSnapshot.class).getDeletedCount();
+            }
+            if (ids.size() < SWEEP_BATCH) {
+                break;
+            }
+            after = ids.get(ids.size() - 1);
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} orphaned plan content snapshots", deleted);
+        }
+    }
+
+    // SHA-256 over length-prefixed fields, so different content can never encode to the same bytes
+    private static String contentHash(List<LearningPlan.LearningUnit> units, List<String> resources) {
+        StringBuilder content = new StringBuilder();
+        append(content, String.valueOf(units.size()));
+        for (LearningPlan.LearningUnit unit : units) {
+            append(content, unit.getUnitId());
+            append(content, unit.getTitle());
+            append(content, unit.getDescription());
+            append(content, String.valueOf(unit.getOrderIndex()));
+            append(content, String.valueOf(unit.getEstimatedHours()));
+            // Hashed as copyContent stores it, where missing objectives are empty
+            List<String> objectives = unit.getObjectives() == null ? List.of() : unit.getObjectives();
+            append(content, String.valueOf(objectives.size()));
+            objectives.forEach(objective -> append(content, objective));
+        }
+        append(content, String.valueOf(resources.size()));
+        resources.forEach(resource -> append(content, resource));
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void append(StringBuilder content, String field) {
+        String value = field == null ? "" : field;
+        content.append(field == null ? -1 : value.length()).append(':').append(value);
+    }
+
+    private Query byId(String id) {
+        return new Query(Criteria.where("id").is(id));
+    }
+}
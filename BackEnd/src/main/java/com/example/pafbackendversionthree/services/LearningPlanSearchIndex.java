@@ -0,0 +1,379 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.CursorPage;
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over public learning plans (title, description, tags and unit titles),
+ * ranked with BM25 and filtered by category/skill level. Built once from MongoDB on startup and
+ * kept current by indexById/remove as plans are created, updated, forked and deleted.
+ *
+ * Category and skill level match exactly, like the repository queries. Equal scores are ordered
+ * newest first, which also makes the order a keyset: a cursor holds the score and id of the last
+ * plan returned. Searches without text skip the index and are answered by MongoDB from the
+ * public_*_views indexes, most viewed first.
+ *
+ * Every query term must match and the last one also matches as a prefix. Single characters and
+ * stop words are not indexed, so they are dropped from a query, except a single character typed
+ * last, which still matches as a prefix. A query with text but no term left matches nothing.
+ */
+@Service
+public class LearningPlanSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(LearningPlanSearchIndex.class);
+
+    // Per-field term weights
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float TAG_WEIGHT = 2.5f;
+    private static final float UNIT_TITLE_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into", "is", "it",
+            "of", "on", "or", "the", "to", "with");
+
+    private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Best score first, then newest; ids are ObjectId hex strings, which sort like the ObjectIds
+    private static final Comparator<Ranked> RANK_ORDER = Comparator.comparingDouble(Ranked::score).reversed()
+            .thenComparing(Ranked::id, Comparator.reverseOrder());
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+
+    // term -> (plan id -> weighted term frequency); sorted so the last query term can match as a prefix
+    private final ConcurrentSkipListMap<String, ConcurrentHashMap<String, Float>> postings = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, IndexedPlan> plans = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile double totalLength;
+    private volatile boolean ready;
+
+    private record IndexedPlan(String category, String skillLevel, float length, Set<String> terms) {
+    }
+
+    private record Ranked(String id, double score) {
+    }
+
+    @Autowired
+    public LearningPlanSearchIndex(MongoTemplate mongoTemplate, ReferenceResolver referenceResolver) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        // Batched so shared forks get their snapshot units with one $in per batch
+        List<LearningPlan> batch = new ArrayList<>(REBUILD_BATCH_SIZE);
+        try (Stream<LearningPlan> stream = mongoTemplate.stream(indexedFields(new Query(Criteria.where("isPublic").is(true))),
+                LearningPlan.class)) {
+            stream.forEach(plan -> {
+                batch.add(plan);
+                if (batch.size() == REBUILD_BATCH_SIZE) {
+                    indexBatch(batch);
+                }
+            });
+        }
+        indexBatch(batch);
+        ready = true;
+        log.info("Indexed {} public learning plans ({} terms) in {} ms",
+                plans.size(), postings.size(), System.currentTimeMillis() - started);
+    }
+
+    // Re-reads one plan and (re)indexes it, or drops it when it is gone or no longer public
+    public void indexById(String planId) {
+        LearningPlan plan = mongoTemplate.findOne(
+                indexedFields(new Query(Criteria.where("id").is(planId))), LearningPlan.class);
+        if (plan == null || !plan.isPublic()) {
+            remove(planId);
+        } else {
+            referenceResolver.resolveSharedContent(List.of(plan));
+            index(plan);
+        }
+    }
+
+    private void indexBatch(List<LearningPlan> batch) {
+        referenceResolver.resolveSharedContent(batch);
+        batch.forEach(this::index);
+        batch.clear();
+    }
+
+    public void index(LearningPlan plan) {
+        Map<String, Float> frequencies = new HashMap<>();
+        addTerms(frequencies, plan.getTitle(), TITLE_WEIGHT);
+        addTerms(frequencies, plan.getDescription(), DESCRIPTION_WEIGHT);
+        if (plan.getTags() != null) {
+            plan.getTags().forEach(tag -> addTerms(frequencies, tag, TAG_WEIGHT));
+        }
+        if (plan.getLearningUnits() != null) {
+            plan.getLearningUnits().forEach(unit -> addTerms(frequencies, unit.getTitle(), UNIT_TITLE_WEIGHT));
+        }
+
+        float length = 0;
+        for (float frequency : frequencies.values()) {
+            length += frequency;
+        }
+
+        writeLock.lock();
+        try {
+            removeLocked(plan.getId());
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(plan.getId(), frequency));
+            plans.put(plan.getId(), new IndexedPlan(plan.getCategory(), plan.getSkillLevel(), length,
+                    frequencies.keySet()));
+            totalLength += length;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(String planId) {
+        writeLock.lock();
+        try {
+            removeLocked(planId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Page<LearningPlanDTO.LearningPlanResponse> search(String query, String category, String skillLevel,
+                                                            Pageable pageable) {
+        if (!hasText(query)) {
+            return filterOnly(category, skillLevel, pageable);
+        }
+        List<Ranked> ranked = rank(queryTerms(query), category, skillLevel);
+
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        return new PageImpl<>(load(ranked.subList(from, to)), pageable, ranked.size());
+    }
+
+    // Keyset variant: the ranked path pages in memory, the filter-only path is an index range scan per page
+    public CursorPage<LearningPlanDTO.LearningPlanResponse> search(String query, String category, String skillLevel,
+                                                                  String cursor, int size) {
+        if (!hasText(query)) {
+            CursorPage<LearningPlan> plans = CursorCodec.fetch(mongoTemplate, new Query(filters(category, skillLevel)),
+                    LearningPlan.class, "viewCount", plan -> (long) plan.getViewCount(), LearningPlan::getId,
+                    cursor, size);
+            return new CursorPage<>(referenceResolver.toLearningPlanResponses(plans.getItems()), plans.getNextCursor());
+        }
+
+        Stream<Ranked> ranked = rank(queryTerms(query), category, skillLevel).stream();
+        if (cursor != null && !cursor.isEmpty()) {
+            CursorCodec.Position position = CursorCodec.decode(cursor);
+            if (position.getSortValue() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+            Ranked last = new Ranked(position.getId().toHexString(), Double.longBitsToDouble(position.getSortValue()));
+            ranked = ranked.filter(plan -> RANK_ORDER.compare(plan, last) > 0);
+        }
+        int limit = CursorCodec.pageSize(size);
+        List<Ranked> rows = ranked.limit(limit + 1L).collect(Collectors.toList());
+        if (rows.size() <= limit) {
+            return new CursorPage<>(load(rows), null);
+        }
+
+        List<Ranked> page = rows.subList(0, limit);
+        Ranked last = page.get(limit - 1);
+        // Scores are positive, so their bits order like the scores themselves
+        return new CursorPage<>(load(page), CursorCodec.encode(Double.doubleToLongBits(last.score()), last.id()));
+    }
+
+    // One $in fetch for the page, put back into rank order
+    private List<LearningPlanDTO.LearningPlanResponse> load(List<Ranked> ranked) {
+        List<String> pageIds = ranked.stream().map(Ranked::id).collect(Collectors.toList());
+        Map<String, LearningPlan> loaded = mongoTemplate.find(
+                        new Query(Criteria.where("id").in(pageIds)), LearningPlan.class).stream()
+                .collect(Collectors.toMap(LearningPlan::getId, Function.identity()));
+        List<LearningPlan> page = pageIds.stream()
+                .map(loaded::get)
+                .filter(plan -> plan != null)
+                .collect(Collectors.toList());
+        return referenceResolver.toLearningPlanResponses(page);
+    }
+
+    // No text: most viewed public plans matching the filters. Page numbers need an offset; the
+    // count is skipped when the page itself shows where the results end
+    private Page<LearningPlanDTO.LearningPlanResponse> filterOnly(String category, String skillLevel,
+                                                                 Pageable pageable) {
+        Criteria criteria = filters(category, skillLevel);
+        Query query = new Query(criteria)
+                .with(CursorCodec.sort("viewCount"))
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize());
+        return PageableExecutionUtils.getPage(
+                referenceResolver.toLearningPlanResponses(mongoTemplate.find(query, LearningPlan.class)), pageable,
+                () -> mongoTemplate.count(new Query(criteria), LearningPlan.class));
+    }
+
+    private static Criteria filters(String category, String skillLevel) {
+        Criteria criteria = Criteria.where("isPublic").is(true);
+        if (category != null && !category.isEmpty()) {
+            criteria = criteria.and("category").is(category);
+        }
+        if (skillLevel != null && !skillLevel.isEmpty()) {
+            criteria = criteria.and("skillLevel").is(skillLevel);
+        }
+        return criteria;
+    }
+
+    // Plans matching every query term, best first
+    private List<Ranked> rank(List<String> terms, String category, String skillLevel) {
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        int documentCount = Math.max(plans.size(), 1);
+        double averageLength = Math.max(totalLength / documentCount, 1.0);
+        Map<String, Double> scores = null;
+
+        for (int i = 0; i < terms.size(); i++) {
+            boolean prefix = i == terms.size() - 1;
+            Map<String, Double> termScores = new HashMap<>();
+            for (Map<String, Float> posting : postingsFor(terms.get(i), prefix)) {
+                double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((planId, frequency) -> {
+                    IndexedPlan plan = plans.get(planId);
+                    if (plan == null || !matchesFilters(plan, category, skillLevel)) {
+                        return;
+                    }
+                    double norm = K1 * (1 - B + B * plan.length() / averageLength);
+                    termScores.merge(planId, idf * frequency * (K1 + 1) / (frequency + norm), Math::max);
+                });
+            }
+
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                Map<String, Double> previous = scores;
+                scores = new HashMap<>();
+                for (Map.Entry<String, Double> entry : termScores.entrySet()) {
+                    Double score = previous.get(entry.getKey());
+                    if (score != null) {
+                        scores.put(entry.getKey(), score + entry.getValue());
+                    }
+                }
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        return scores.entrySet().stream()
+                .map(entry -> new Ranked(entry.getKey(), entry.getValue()))
+                .sorted(RANK_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    private Collection<ConcurrentHashMap<String, Float>> postingsFor(String term, boolean prefix) {
+        if (!prefix) {
+            ConcurrentHashMap<String, Float> posting = postings.get(term);
+            return posting == null ? List.of() : List.of(posting);
+        }
+        return postings.subMap(term, true, term + Character.MAX_VALUE, true).values();
+    }
+
+    private boolean matchesFilters(IndexedPlan plan, String category, String skillLevel) {
+        return (category == null || category.isEmpty() || category.equals(plan.category()))
+                && (skillLevel == null || skillLevel.isEmpty() || skillLevel.equals(plan.skillLevel()));
+    }
+
+    private void removeLocked(String planId) {
+        IndexedPlan previous = plans.remove(planId);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous.terms()) {
+            ConcurrentHashMap<String, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(planId);
+                if (posting.isEmpty()) {
+                    postings.remove(term, posting);
+                }
+            }
+        }
+        totalLength -= previous.length();
+    }
+
+    private void addTerms(Map<String, Float> frequencies, String text, float weight) {
+        for (String term : tokenize(text)) {
+            frequencies.merge(term, weight, Float::sum);
+        }
+    }
+
+    private static boolean hasText(String query) {
+        return query != null && TOKEN_SEPARATORS.splitAsStream(query.toLowerCase(Locale.ROOT))
+                .anyMatch(token -> !token.isEmpty());
+    }
+
+    // Terms as indexed, plus a trailing single character kept for prefix matching
+    private static List<String> queryTerms(String query) {
+        List<String> terms = tokenize(query);
+        String[] tokens = TOKEN_SEPARATORS.split(query.toLowerCase(Locale.ROOT));
+        String last = tokens.length == 0 ? "" : tokens[tokens.length - 1];
+        if (last.length() == 1) {
+            terms.add(last);
+        }
+        return terms;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        for (String token : TOKEN_SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    private static Query indexedFields(Query query) {
+        query.fields().include("title", "description", "category", "skillLevel", "isPublic", "tags",
+                "learningUnits.title", "contentSnapshotId");
+        return query;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps the stored completion stats of learning plans populated. Plans written before the stats
+ * existed are backfilled at startup with one pipeline update computed inside the database, in one
+ * transaction with the list version bumps of their owners.
+ */
+@Service
+public class LearningPlanStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(LearningPlanStatsService.class);
+
+    private static final String LEARNING_PLANS = "learning_plans";
+
+    private final MongoTemplate mongoTemplate;
+    private final OwnerListVersions ownerListVersions;
+    private final TransactionOperations transactionOperations;
+
+    @Autowired
+    public LearningPlanStatsService(MongoTemplate mongoTemplate,
+                                    OwnerListVersions ownerListVersions,
+                                    TransactionOperations transactionOperations) {
+        this.mongoTemplate = mongoTemplate;
+        this.ownerListVersions = ownerListVersions;
+        this.transactionOperations = transactionOperations;
+    }
+
+    // completedUnitCount / unitCount * 100 over the fields of the document being updated
+    static Document completionPercentage() {
+        return new Document("$cond", List.of(
+                new Document("$gt", List.of("$unitCount", 0)),
+                new Document("$multiply", List.of(
+                        new Document("$divide", List.of("$completedUnitCount", "$unitCount")), 100)),
+                0.0));
+    }
+
+    // Pipeline stage completing the plan once every unit is, from the counters of the document being updated;
+    // completion is never taken back
+    static Document derivePlanCompletion(Date now) {
+        Document allUnitsCompleted = new Document("$and", List.of(
+                new Document("$gt", List.of("$unitCount", 0)),
+                new Document("$gte", List.of("$completedUnitCount", "$unitCount"))));
+        return new Document("$set", new Document()
+                .append("isCompleted", new Document("$or", List.of(allUnitsCompleted,
+                        new Document("$eq", List.of("$isCompleted", true)))))
+                .append("actualCompletionDate", new Document("$cond", List.of(
+                        new Document("$and", List.of(allUnitsCompleted,
+                                new Document("$ne", List.of("$isCompleted", true)))),
+                        now,
+                        "$actualCompletionDate")))
+                .append("completionPercentage", completionPercentage()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCompletionStats() {
+        Document units = new Document("$ifNull", List.of("$learningUnits", List.of()));
+        Document completedUnits = new Document("$filter", new Document("input", units)
+                .append("as", "unit")
+                .append("cond", new Document("$eq", List.of("$$unit.isCompleted", true))));
+
+        long updated = Transactions.run(transactionOperations, () -> {
+            Query withoutStats = new Query(Criteria.where("completionPercentage").exists(false));
+            withoutStats.fields().include("owner");
+            List<String> ownerIds = new ArrayList<>();
+            for (LearningPlan plan : mongoTemplate.find(withoutStats, LearningPlan.class)) {
+                ownerIds.add(ReferenceResolver.idOf(plan.getOwner()));
+            }
+            if (ownerIds.isEmpty()) {
+                return 0L;
+            }
+            long modified = mongoTemplate.getCollection(LEARNING_PLANS).updateMany(
+                    new Document("completionPercentage", new Document("$exists", false)),
+                    List.of(new Document("$set", new Document("unitCount", new Document("$size", units))
+                                    .append("completedUnitCount", new Document("$size", completedUnits))),
+                            new Document("$set", new Document("completionPercentage", completionPercentage()))))
+                    .getModifiedCount();
+            // The stats show in the owners' plan lists
+            ownerListVersions.learningPlansChanged(ownerIds);
+            return modified;
+        });
+        if (updated > 0) {
+            log.info("Backfilled completion stats on {} learning plans", updated);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.pafbackendversionthree.services;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind learning-plan view counter. Views are summed in memory per plan id, spread over
+ * independent stripes so hot plans do not contend on one map, and written every
+ * app.learning-plans.views.flush-interval-ms as one unordered bulk of $inc updates. The view
+ * count shows in the owners' plan lists, so their list versions are bumped in the same
+ * transaction.
+ *
+ * At most one flush interval of views is lost on a crash; a clean shutdown flushes what is left.
+ */
+@Service
+public class LearningPlanViewCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(LearningPlanViewCounter.class);
+
+    private static final String LEARNING_PLANS = "learning_plans";
+    private static final int STRIPES = 16;
+
+    private final MongoTemplate mongoTemplate;
+    private final OwnerListVersions ownerListVersions;
+    private final TransactionOperations transactionOperations;
+    private final boolean enabled;
+    private final List<ConcurrentHashMap<String, Long>> stripes = new ArrayList<>(STRIPES);
+
+    private final LongAdder recordedViews = new LongAdder();
+    private final LongAdder flushedViews = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final AtomicLong lastFlushPlans = new AtomicLong();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+
+    @Autowired
+    public LearningPlanViewCounter(MongoTemplate mongoTemplate,
+                                   OwnerListVersions ownerListVersions,
+                                   TransactionOperations transactionOperations,
+                                   @Value("${app.learning-plans.views.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.ownerListVersions = ownerListVersions;
+        this.transactionOperations = transactionOperations;
+        this.enabled = enabled;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    public void recordView(String planId) {
+        if (!enabled) {
+            return;
+        }
+        stripe(planId).merge(planId, 1L, Long::sum);
+        recordedViews.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.learning-plans.views.flush-interval-ms:5000}")
+    public void flush() {
+        // remove() hands over each count atomically, so views arriving mid-flush wait for the next one
+        Map<String, Long> views = new HashMap<>();
+        for (ConcurrentHashMap<String, Long> stripe : stripes) {
+            for (String planId : new ArrayList<>(stripe.keySet())) {
+                Long count = stripe.remove(planId);
+                if (count != null && count > 0) {
+                    views.put(planId, count);
+                }
+            }
+        }
+        if (views.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        List<String> ids = new ArrayList<>(views.keySet());
+        List<UpdateOneModel<Document>> writes = new ArrayList<>(ids.size());
+        for (String planId : ids) {
+            writes.add(new UpdateOneModel<>(
+                    Filters.eq("_id", ReferenceResolver.refId(planId)), Updates.inc("viewCount", views.get(planId))));
+        }
+        long total = views.values().stream().mapToLong(Long::longValue).sum();
+        try {
+            // A write error aborts the transaction, so a failed flush never applies part of the burst
+            Transactions.run(transactionOperations, () -> {
+                mongoTemplate.getCollection(LEARNING_PLANS).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                ownerListVersions.learningPlansChangedFor(ids);
+            });
+            flushes.increment();
+            flushedViews.add(total);
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            log.warn("View flush failed for {} learning plans, retrying on next flush", ids.size(), e);
+            views.forEach((planId, count) -> stripe(planId).merge(planId, count, Long::sum));
+            return;
+        }
+        lastFlushPlans.set(ids.size());
+        lastFlushMillis.set((System.nanoTime() - started) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public Map<String, Number> stats() {
+        long pendingPlans = 0;
+        long pendingViews = 0;
+        for (ConcurrentHashMap<String, Long> stripe : stripes) {
+            pendingPlans += stripe.size();
+            for (Long count : stripe.values()) {
+                pendingViews += count;
+            }
+        }
+
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("recordedViews", recordedViews.sum());
+        stats.put("flushedViews", flushedViews.sum());
+        stats.put("pendingViews", pendingViews);
+        stats.put("pendingPlans", pendingPlans);
+        stats.put("flushes", flushes.sum());
+        stats.put("failedFlushes", failedFlushes.sum());
+        stats.put("lastFlushPlans", lastFlushPlans.get());
+        stats.put("lastFlushMillis", lastFlushMillis.get());
+        return stats;
+    }
+
+    private ConcurrentHashMap<String, Long> stripe(String planId) {
+        return stripes.get((planId.hashCode() & Integer.MAX_VALUE) % STRIPES);
+    }
+}
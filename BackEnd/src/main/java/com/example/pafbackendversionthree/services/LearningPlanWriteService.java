@@ -0,0 +1,182 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Creates, edits and deletes learning plans. Each mutation commits in one transaction with the
+ * outbox event describing it, so an event is never lost after a kept change and never recorded
+ * for a change that was rolled back.
+ *
+ * An edit $sets only the fields the request carries and never writes back a loaded plan, so
+ * concurrent view counts, forks and unit completions are kept. Edited units keep the completion
+ * of the stored unit with the same unitId, and the completion stats are recomputed in the same
+ * pipeline update.
+ */
+@Service
+public class LearningPlanWriteService {
+
+    private static final String LEARNING_PLANS = "learning_plans";
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final LearningPlanService learningPlanService;
+    private final LearningPlanForkService learningPlanForkService;
+    private final DomainEventPublisher domainEventPublisher;
+    private final TransactionOperations transactionOperations;
+
+    @Autowired
+    public LearningPlanWriteService(MongoTemplate mongoTemplate,
+                                    ReferenceResolver referenceResolver,
+                                    LearningPlanService learningPlanService,
+                                    LearningPlanForkService learningPlanForkService,
+                                    DomainEventPublisher domainEventPublisher,
+                                    TransactionOperations transactionOperations) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.learningPlanService = learningPlanService;
+        this.learningPlanForkService = learningPlanForkService;
+        this.domainEventPublisher = domainEventPublisher;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public LearningPlanDTO.LearningPlanResponse createLearningPlan(LearningPlanDTO.CreateLearningPlanRequest request) {
+        return Transactions.run(transactionOperations, () -> {
+            LearningPlanDTO.LearningPlanResponse response = learningPlanService.createLearningPlan(request);
+            domainEventPublisher.learningPlanCreated(response);
+            return response;
+        });
+    }
+
+    public LearningPlanDTO.LearningPlanResponse updateLearningPlan(String id,
+                                                                   LearningPlanDTO.UpdateLearningPlanRequest request) {
+        List<Document> pipeline = editPipeline(request, new Date());
+        return Transactions.run(transactionOperations, () -> {
+            learningPlanForkService.materialize(id);
+            Document updated = mongoTemplate.getCollection(LEARNING_PLANS).findOneAndUpdate(
+                    new Document("_id", ReferenceResolver.refId(id)), pipeline,
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+            if (updated == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Learning plan not found with id: " + id);
+            }
+            LearningPlan plan = mongoTemplate.getConverter().read(LearningPlan.class, updated);
+            LearningPlanDTO.LearningPlanResponse response =
+                    referenceResolver.toLearningPlanResponses(List.of(plan)).get(0);
+            domainEventPublisher.learningPlanUpdated(response);
+            return response;
+        });
+    }
+
+    public void deleteLearningPlan(String id) {
+        Transactions.run(transactionOperations, () -> {
+            String ownerId = domainEventPublisher.ownerId(id);
+            learningPlanService.deleteLearningPlan(id);
+            domainEventPublisher.learningPlanDeleted(id, ownerId);
+        });
+    }
+
+    private static List<Document> editPipeline(LearningPlanDTO.UpdateLearningPlanRequest request, Date now) {
+        if (request.getTitle() != null && request.getTitle().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Title is required");
+        }
+        if (request.getEstimatedHours() != null && request.getEstimatedHours() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Estimated hours must not be negative");
+        }
+
+        Document edited = new Document();
+        setIfPresent(edited, "title", request.getTitle());
+        setIfPresent(edited, "description", request.getDescription());
+        setIfPresent(edited, "category", request.getCategory());
+        setIfPresent(edited, "skillLevel", request.getSkillLevel());
+        setIfPresent(edited, "isPublic", request.getIsPublic());
+        setIfPresent(edited, "targetCompletionDate", request.getTargetCompletionDate());
+        setIfPresent(edited, "estimatedHours", request.getEstimatedHours());
+        setIfPresent(edited, "resources", request.getResources());
+        setIfPresent(edited, "tags", request.getTags());
+        if (request.getLearningUnits() != null) {
+            edited.append("learningUnits", keepingCompletion(units(request.getLearningUnits())));
+        }
+        if (request.getLearningUnits() != null || request.getResources() != null) {
+            // The stored snapshot no longer matches the content; the next shared fork stores a new one
+            edited.append("forkSnapshotId", "$$REMOVE");
+        }
+        edited.append("updatedAt", now);
+
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$set", edited));
+        if (request.getLearningUnits() != null) {
+            pipeline.add(recountUnits());
+            pipeline.add(LearningPlanStatsService.derivePlanCompletion(now));
+        }
+        return pipeline;
+    }
+
+    // Literal, so a value such as "$5 course" is not read as a field path
+    private static void setIfPresent(Document set, String field, Object value) {
+        if (value != null) {
+            set.append(field, new Document("$literal", value));
+        }
+    }
+
+    private static List<Document> units(List<LearningPlanDTO.LearningUnitDTO> requested) {
+        List<Document> units = new ArrayList<>(requested.size());
+        for (LearningPlanDTO.LearningUnitDTO unit : requested) {
+            if (unit.getTitle() == null || unit.getTitle().isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Learning unit title is required");
+            }
+            units.add(new Document("unitId", unit.getUnitId() != null ? unit.getUnitId() : UUID.randomUUID().toString())
+                    .append("title", unit.getTitle())
+                    .append("description", unit.getDescription())
+                    .append("orderIndex", unit.getOrderIndex())
+                    .append("estimatedHours", unit.getEstimatedHours())
+                    .append("objectives", unit.getObjectives() == null ? List.of() : unit.getObjectives()));
+        }
+        return units;
+    }
+
+    // Each requested unit takes isCompleted and completedAt from the stored unit with its unitId
+    private static Document keepingCompletion(List<Document> units) {
+        Document stored = new Document("$first", new Document("$filter", new Document()
+                .append("input", new Document("$ifNull", List.of("$learningUnits", List.of())))
+                .append("as", "stored")
+                .append("cond", new Document("$eq", List.of("$$stored.unitId", "$$unit.unitId")))));
+        Document completed = new Document("$eq", List.of("$$stored.isCompleted", true));
+        return new Document("$map", new Document()
+                .append("input", new Document("$literal", units))
+                .append("as", "unit")
+                .append("in", new Document("$let", new Document()
+                        .append("vars", new Document("stored", stored))
+                        .append("in", new Document("$mergeObjects", List.of("$$unit", new Document()
+                                .append("isCompleted", completed)
+                                .append("completedAt", new Document("$cond",
+                                        Arrays.asList(completed, "$$stored.completedAt", null)))))))));
+    }
+
+    private static Document recountUnits() {
+        Document completedUnits = new Document("$filter", new Document("input", "$learningUnits")
+                .append("as", "unit")
+                .append("cond", new Document("$eq", List.of("$$unit.isCompleted", true))));
+        return new Document("$set", new Document()
+                .append("unitCount", new Document("$size", "$learningUnits"))
+                .append("completedUnitCount", new Document("$size", completedUnits))
+                .append("completedHours", new Document("$sum", new Document("$map", new Document()
+                        .append("input", completedUnits)
+                        .append("as", "unit")
+                        .append("in", "$$unit.estimatedHours")))));
+    }
+}
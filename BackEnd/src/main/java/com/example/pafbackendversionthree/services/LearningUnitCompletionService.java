@@ -0,0 +1,170 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.PlanContentSnapshot;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Completes a learning unit with one atomic pipeline update: the unit is flagged in place, the
+ * completed counters and hours are bumped, and plan completion and completionPercentage are
+ * derived from the counters in the same write. The plan is never loaded and saved back, so concurrent completions of
+ * different units cannot overwrite each other and a unit can only be counted once.
+ * Shared forks record the completion in unitCompletions instead of touching the snapshot units.
+ *
+ * LEARNING_UNIT_COMPLETED is published only when one of these writes actually completed the unit,
+ * and commits in the same transaction as that write.
+ */
+@Service
+public class LearningUnitCompletionService {
+
+    private static final String LEARNING_PLANS = "learning_plans";
+    private static final int ATTEMPTS = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final DomainEventPublisher domainEventPublisher;
+    private final TransactionOperations transactionOperations;
+
+    @Autowired
+    public LearningUnitCompletionService(MongoTemplate mongoTemplate, ReferenceResolver referenceResolver,
+                                         DomainEventPublisher domainEventPublisher,
+                                         TransactionOperations transactionOperations) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.domainEventPublisher = domainEventPublisher;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public LearningPlanDTO.LearningPlanResponse completeLearningUnit(String planId, String unitId) {
+        Date now = new Date();
+        // A shared fork can be materialized between any two of these steps, so each miss looks again
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            LearningPlanDTO.LearningPlanResponse response =
+                    Transactions.run(transactionOperations, () -> complete(planId, unitId, now));
+            if (response != null) {
+                return response;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT, "Learning plan is being modified: " + planId);
+    }
+
+    // One try, committed together with its event; null when the plan changed under it and nothing was written
+    private LearningPlanDTO.LearningPlanResponse complete(String planId, String unitId, Date now) {
+        Document updated = completeInPlace(planId, unitId, now);
+        if (updated == null) {
+            LearningPlan plan = mongoTemplate.findById(planId, LearningPlan.class);
+            if (plan == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Learning plan not found with id: " + planId);
+            }
+            if (isCompleted(plan, unitId)) {
+                return referenceResolver.toLearningPlanResponses(List.of(plan)).get(0);
+            }
+            if (plan.hasSharedContent()) {
+                updated = completeSharedUnit(plan, unitId, now);
+            }
+        }
+        if (updated == null) {
+            return null;
+        }
+        LearningPlan plan = mongoTemplate.getConverter().read(LearningPlan.class, updated);
+        LearningPlanDTO.LearningPlanResponse response = referenceResolver.toLearningPlanResponses(List.of(plan)).get(0);
+        domainEventPublisher.learningUnitCompleted(response, unitId);
+        return response;
+    }
+
+    // Only matches a plan that owns its units (not a shared fork) while the unit is still open
+    private Document completeInPlace(String planId, String unitId, Date now) {
+        Document openUnit = new Document("$and", List.of(
+                new Document("$eq", List.of("$$unit.unitId", unitId)),
+                new Document("$ne", List.of("$$unit.isCompleted", true))));
+
+        // Only matches while the unit is still open, which makes the counter bump happen once
+        Document filter = new Document("_id", ReferenceResolver.refId(planId))
+                .append("learningUnits", new Document("$elemMatch", new Document("unitId", unitId)
+                        .append("isCompleted", new Document("$ne", true))));
+
+        Document completeUnit = new Document("$set", new Document()
+                .append("learningUnits", new Document("$map", new Document("input", "$learningUnits")
+                        .append("as", "unit")
+                        .append("in", new Document("$cond", List.of(openUnit,
+                                new Document("$mergeObjects", List.of("$$unit",
+                                        new Document("isCompleted", true).append("completedAt", now))),
+                                "$$unit")))))
+                .append("completedUnitCount", new Document("$add", List.of(counter("completedUnitCount"), 1)))
+                .append("completedHours", new Document("$add", List.of(counter("completedHours"),
+                        new Document("$sum", new Document("$map", new Document("input",
+                                new Document("$filter", new Document("input", "$learningUnits")
+                                        .append("as", "unit")
+                                        .append("cond", openUnit)))
+                                .append("as", "unit")
+                                .append("in", "$$unit.estimatedHours"))))))
+                .append("updatedAt", now));
+
+        return apply(filter, completeUnit, now);
+    }
+
+    // Runs the unit update followed by the stage deriving plan completion from the counters
+    private Document apply(Document filter, Document completeUnit, Date now) {
+        return mongoTemplate.getCollection(LEARNING_PLANS).findOneAndUpdate(filter,
+                List.of(completeUnit, LearningPlanStatsService.derivePlanCompletion(now)),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+    }
+
+    // Nothing was written: true when the unit was completed before, 404 when it does not exist
+    private boolean isCompleted(LearningPlan plan, String unitId) {
+        if (plan.hasSharedContent()) {
+            return plan.getUnitCompletions() != null && plan.getUnitCompletions().containsKey(unitId);
+        }
+        LearningPlan.LearningUnit unit = plan.getLearningUnits().stream()
+                .filter(candidate -> unitId.equals(candidate.getUnitId()))
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Learning unit not found with id: " + unitId));
+        return unit.isCompleted();
+    }
+
+    // Null when the fork was materialized or the unit completed since the plan was read
+    private Document completeSharedUnit(LearningPlan plan, String unitId, Date now) {
+        PlanContentSnapshot snapshot = mongoTemplate.findById(plan.getContentSnapshotId(), PlanContentSnapshot.class);
+        LearningPlan.LearningUnit unit = snapshot == null ? null : snapshot.getLearningUnits().stream()
+                .filter(candidate -> unitId.equals(candidate.getUnitId()))
+                .findFirst()
+                .orElse(null);
+        if (unit == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Learning unit not found with id: " + unitId);
+        }
+        // The unit id becomes a field name under unitCompletions
+        if (unitId.contains(".") || unitId.startsWith("$")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid learning unit id: " + unitId);
+        }
+
+        String completion = "unitCompletions." + unitId;
+        Document filter = new Document("_id", ReferenceResolver.refId(plan.getId()))
+                .append("contentSnapshotId", plan.getContentSnapshotId())
+                .append(completion, new Document("$exists", false));
+        Document completeUnit = new Document("$set", new Document()
+                .append(completion, now)
+                .append("completedUnitCount", new Document("$add", List.of(counter("completedUnitCount"), 1)))
+                .append("completedHours", new Document("$add", List.of(counter("completedHours"),
+                        unit.getEstimatedHours())))
+                .append("updatedAt", now));
+
+        return apply(filter, completeUnit, now);
+    }
+
+    private static Document counter(String field) {
+        return new Document("$ifNull", List.of("$" + field, 0));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcasts outbox events to the local subscribers of every instance. Each instance follows a
+ * change stream of the inserts into outbox_events, so it sees every event once its transaction
+ * has committed, whichever instance recorded it and whichever instance's OutboxDispatcher
+ * delivers it to the MongoDB-side subscribers.
+ *
+ * The stream resumes after errors from the last token seen. When the oplog no longer reaches back
+ * that far, events were missed: the stream restarts from now and the onResync callbacks rebuild
+ * whatever per-instance state they keep.
+ */
+@Service
+public class OutboxChangeStream {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxChangeStream.class);
+
+    private static final String OUTBOX_EVENTS = "outbox_events";
+    private static final long RETRY_DELAY_MS = 1000;
+
+    // ChangeStreamHistoryLost and ChangeStreamFatalError: the resume token is of no use any more
+    private static final List<Integer> HISTORY_LOST = List.of(286, 280);
+
+    private final MongoTemplate mongoTemplate;
+    private final DomainEventBus domainEventBus;
+    private final boolean enabled;
+    private final List<Runnable> resyncs = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread follower;
+    private BsonDocument resumeToken;   // Only touched by the follower thread
+
+    @Autowired
+    public OutboxChangeStream(MongoTemplate mongoTemplate,
+                              DomainEventBus domainEventBus,
+                              @Value("${app.outbox.change-stream.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.domainEventBus = domainEventBus;
+        this.enabled = enabled;
+    }
+
+    // Called when events may have been missed; per-instance state is rebuilt from MongoDB
+    public void onResync(Runnable resync) {
+        resyncs.add(resync);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        follower = new Thread(this::follow, "outbox-change-stream");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (follower != null) {
+            follower.interrupt();
+        }
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                followOnce();
+            } catch (MongoException e) {
+                if (!running) {
+                    return;
+                }
+                if (e instanceof MongoCommandException command && HISTORY_LOST.contains(command.getErrorCode())) {
+                    log.error("Outbox change stream lost its position, resyncing local state", e);
+                    resumeToken = null;
+                    resync();
+                } else {
+                    log.warn("Outbox change stream failed, resuming", e);
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void followOnce() {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(OUTBOX_EVENTS)
+                .watch(List.of(Aggregates.match(Filters.eq("operationType", "insert"))))
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                resumeToken = cursor.getResumeToken();
+                if (change != null && change.getFullDocument() != null) {
+                    broadcast(mongoTemplate.getConverter().read(OutboxEvent.class, change.getFullDocument()));
+                }
+            }
+        }
+    }
+
+    private void broadcast(OutboxEvent event) {
+        domainEventBus.deliverLocal(event).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.warn("Local handling of {} event {} for {} failed",
+                        event.getType(), event.getId(), event.getAggregateId(), error);
+            }
+        });
+    }
+
+    private void resync() {
+        for (Runnable resync : resyncs) {
+            try {
+                resync.run();
+            } catch (RuntimeException e) {
+                log.error("Resync of local state failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Drains outbox_events into the DomainEventBus in batches of app.outbox.batch-size, oldest first.
+ * Every instance runs a dispatcher; each event is delivered by one of them.
+ *
+ * A batch is claimed before it is delivered: in one transaction the dispatcher reads the
+ * aggregates other instances hold a lease on, takes the oldest pending events of all other
+ * aggregates and stamps them with its leaseOwner and a leaseUntil app.outbox.lease-ms ahead. Two
+ * instances claiming overlapping events conflict and one of them retries, so the events of one
+ * aggregate are never split between instances. A lease that is not settled in time (the instance
+ * died) simply expires and the events are claimed again.
+ *
+ * An event is marked dispatched only after every subscriber has handled it; failed events are
+ * released and retried on later passes, up to app.outbox.max-attempts. Delivery is therefore
+ * at least once and subscribers must be idempotent.
+ *
+ * Events of one aggregate are delivered strictly in order: an event is handed to the bus only
+ * after the one before it succeeded, so a failure holds back the rest of that aggregate (only its
+ * delivered prefix is marked) until the failed event is retried or given up on. An aggregate whose
+ * delivery outlives the timeout keeps its lease renewed until that delivery ends, so nothing still
+ * in flight is handed over a second time.
+ *
+ * This only covers subscribers writing to MongoDB; per-instance state is fed by OutboxChangeStream.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final DomainEventBus domainEventBus;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long deliveryTimeoutMs;
+    private final long leaseMs;
+    private final TransactionOperations transactionOperations;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // Aggregates with a delivery still running past app.outbox.delivery-timeout-ms
+    private final Set<String> busyAggregates = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder deliveredEvents = new LongAdder();
+    private final LongAdder failedDeliveries = new LongAdder();
+    private final LongAdder abandonedEvents = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong lastBatchMillis = new AtomicLong();
+
+    @Autowired
+    public OutboxDispatcher(MongoTemplate mongoTemplate,
+                            DomainEventBus domainEventBus,
+                            @Value("${app.outbox.batch-size:500}") int batchSize,
+                            @Value("${app.outbox.max-attempts:10}") int maxAttempts,
+                            @Value("${app.outbox.delivery-timeout-ms:30000}") long deliveryTimeoutMs,
+                            @Value("${app.outbox.lease-ms:120000}") long leaseMs,
+                            TransactionOperations transactionOperations) {
+        this.mongoTemplate = mongoTemplate;
+        this.domainEventBus = domainEventBus;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.deliveryTimeoutMs = deliveryTimeoutMs;
+        this.leaseMs = leaseMs;
+        this.transactionOperations = transactionOperations;
+    }
+
+    // Keeps draining while batches come back full, so a backlog does not wait for the next tick
+    @Scheduled(fixedDelayString = "${app.outbox.dispatch-interval-ms:500}")
+    public void dispatch() {
+        renewBusyLeases();
+        int delivered;
+        do {
+            delivered = dispatchBatch();
+        } while (delivered == batchSize);
+    }
+
+    // Returns the number of events delivered in this batch
+    private int dispatchBatch() {
+        List<OutboxEvent> events = claim();
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        long started = System.nanoTime();
+        Map<String, List<OutboxEvent>> byAggregate = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            byAggregate.computeIfAbsent(event.getAggregateId(), aggregateId -> new ArrayList<>()).add(event);
+        }
+
+        // Each event of an aggregate is handed to the bus only once the one before it was handled
+        Map<String, List<CompletableFuture<Void>>> deliveries = new LinkedHashMap<>();
+        List<CompletableFuture<Void>> lastDeliveries = new ArrayList<>();
+        byAggregate.forEach((aggregateId, aggregateEvents) -> {
+            List<CompletableFuture<Void>> chain = new ArrayList<>(aggregateEvents.size());
+            CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+            for (OutboxEvent event : aggregateEvents) {
+                previous = previous.thenCompose(ignored -> domainEventBus.deliver(event));
+                chain.add(previous);
+            }
+            deliveries.put(aggregateId, chain);
+            lastDeliveries.add(previous);
+        });
+        try {
+            CompletableFuture.allOf(lastDeliveries.toArray(new CompletableFuture[0]))
+                    .get(deliveryTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Handled per aggregate below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+
+        int delivered = 0;
+        for (Map.Entry<String, List<CompletableFuture<Void>>> entry : deliveries.entrySet()) {
+            String aggregateId = entry.getKey();
+            List<OutboxEvent> aggregateEvents = byAggregate.get(aggregateId);
+            List<CompletableFuture<Void>> chain = entry.getValue();
+            CompletableFuture<Void> last = chain.get(chain.size() - 1);
+            if (last.isDone()) {
+                delivered += settle(aggregateEvents, chain);
+                continue;
+            }
+            // Still running past the timeout: its lease is renewed by later passes until it ends
+            busyAggregates.add(aggregateId);
+            last.whenComplete((ignored, error) -> {
+                try {
+                    settle(aggregateEvents, chain);
+                } finally {
+                    busyAggregates.remove(aggregateId);
+                }
+            });
+        }
+
+        batches.increment();
+        lastBatchSize.set(events.size());
+        lastBatchMillis.set((System.nanoTime() - started) / 1_000_000);
+        return delivered;
+    }
+
+    // Reads and leases the next batch in one transaction, see the class comment
+    private List<OutboxEvent> claim() {
+        return Transactions.run(transactionOperations, () -> {
+            Date now = new Date();
+            List<String> leased = mongoTemplate.findDistinct(
+                    new Query(Criteria.where("dispatched").is(false).and("leaseUntil").gt(now)),
+                    "aggregateId", OutboxEvent.class, String.class);
+            Query pending = new Query(Criteria.where("dispatched").is(false).and("aggregateId").nin(leased))
+                    .with(Sort.by(Sort.Direction.ASC, "id"))
+                    .limit(batchSize);
+            List<OutboxEvent> events = mongoTemplate.find(pending, OutboxEvent.class);
+            if (!events.isEmpty()) {
+                List<String> ids = events.stream().map(OutboxEvent::getId).collect(Collectors.toList());
+                mongoTemplate.updateMulti(new Query(Criteria.where("id").in(ids)), new Update()
+                                .set("leaseOwner", instanceId)
+                                .set("leaseUntil", new Date(now.getTime() + leaseMs)),
+                        OutboxEvent.class);
+            }
+            return events;
+        });
+    }
+
+    private void renewBusyLeases() {
+        if (busyAggregates.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(owned(Criteria.where("dispatched").is(false)
+                        .and("aggregateId").in(new ArrayList<>(busyAggregates))),
+                new Update().set("leaseUntil", new Date(System.currentTimeMillis() + leaseMs)), OutboxEvent.class);
+    }
+
+    /**
+     * Marks the delivered prefix of one aggregate's events, records the failure that ended it, if
+     * any, and releases the rest. Only events still leased to this instance are touched.
+     */
+    private int settle(List<OutboxEvent> events, List<CompletableFuture<Void>> chain) {
+        List<String> delivered = new ArrayList<>();
+        int settled = 0;
+        while (settled < events.size() && chain.get(settled).isDone()) {
+            CompletableFuture<Void> delivery = chain.get(settled);
+            OutboxEvent event = events.get(settled++);
+            if (delivery.isCompletedExceptionally()) {
+                Throwable error = delivery.handle((ignored, t) -> t).join();
+                recordFailure(event, error.getCause() != null ? error.getCause() : error);
+                break;
+            }
+            delivered.add(event.getId());
+        }
+
+        if (!delivered.isEmpty()) {
+            mongoTemplate.updateMulti(owned(Criteria.where("id").in(delivered)), new Update()
+                    .set("dispatched", true)
+                    .set("dispatchedAt", new Date())
+                    .unset("leaseUntil"), OutboxEvent.class);
+        }
+        if (settled < events.size()) {
+            List<String> held = events.subList(settled, events.size()).stream()
+                    .map(OutboxEvent::getId)
+                    .collect(Collectors.toList());
+            mongoTemplate.updateMulti(owned(Criteria.where("id").in(held)), new Update().unset("leaseUntil"),
+                    OutboxEvent.class);
+        }
+        deliveredEvents.add(delivered.size());
+        return delivered.size();
+    }
+
+    private void recordFailure(OutboxEvent event, Throwable error) {
+        failedDeliveries.increment();
+        int attempts = event.getAttempts() + 1;
+        Update update = new Update()
+                .set("attempts", attempts)
+                .set("lastError", String.valueOf(error.getMessage()))
+                .unset("leaseUntil");
+        if (attempts >= maxAttempts) {
+            // Given up on; kept with its error until the TTL removes it
+            update.set("dispatched", true).set("dispatchedAt", new Date());
+            abandonedEvents.increment();
+            log.error("Giving up on {} event {} for {} after {} attempts",
+                    event.getType(), event.getId(), event.getAggregateId(), attempts, error);
+        } else {
+            log.warn("Delivery of {} event {} for {} failed, will retry",
+                    event.getType(), event.getId(), event.getAggregateId(), error);
+        }
+        mongoTemplate.updateFirst(owned(Criteria.where("id").is(event.getId())), update, OutboxEvent.class);
+    }
+
+    // A lease that expired may have been claimed by another instance since, which then owns the event
+    private Query owned(Criteria criteria) {
+        return new Query(criteria.and("leaseOwner").is(instanceId));
+    }
+
+    public Map<String, Number> stats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("pendingEvents", mongoTemplate.count(new Query(Criteria.where("dispatched").is(false)), OutboxEvent.class));
+        stats.put("deliveredEvents", deliveredEvents.sum());
+        stats.put("failedDeliveries", failedDeliveries.sum());
+        stats.put("abandonedEvents", abandonedEvents.sum());
+        stats.put("busyAggregates", busyAggregates.size());
+        stats.put("batches", batches.sum());
+        stats.put("lastBatchSize", lastBatchSize.get());
+        stats.put("lastBatchMillis", lastBatchMillis.get());
+        return stats;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Version counters for the per-owner list endpoints (an owner's learning plans, a user's progress
+ * updates), one document per list in owner_list_versions: {_id: "plans:<ownerId>", version}.
+ * Every write that changes what such a list returns bumps its counter with an upserted $inc, so
+ * the list's ETag is one _id lookup no matter how many documents the owner has.
+ *
+ * The bump has to run in the transaction of the write it describes: a bump that can be lost after
+ * its write has committed leaves the old tag on the new list for good.
+ */
+@Service
+public class OwnerListVersions {
+
+    private static final String OWNER_LIST_VERSIONS = "owner_list_versions";
+    private static final String LEARNING_PLANS = "plans:";
+    private static final String PROGRESS_UPDATES = "updates:";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public OwnerListVersions(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public long learningPlans(String ownerId) {
+        return version(LEARNING_PLANS + ownerId);
+    }
+
+    public long progressUpdates(String userId) {
+        return version(PROGRESS_UPDATES + userId);
+    }
+
+    public void learningPlansChanged(Collection<String> ownerIds) {
+        bump(LEARNING_PLANS, ownerIds);
+    }
+
+    public void progressUpdatesChanged(Collection<String> userIds) {
+        bump(PROGRESS_UPDATES, userIds);
+    }
+
+    // For writes that only know the learning plans they touched; their owners are read in one query
+    public void learningPlansChangedFor(Collection<String> planIds) {
+        if (planIds.isEmpty()) {
+            return;
+        }
+        Query query = new Query(Criteria.where("id").in(planIds.stream().map(ReferenceResolver::refId).toList()));
+        query.fields().include("owner");
+        List<String> ownerIds = new ArrayList<>();
+        for (LearningPlan plan : mongoTemplate.find(query, LearningPlan.class)) {
+            ownerIds.add(ReferenceResolver.idOf(plan.getOwner()));
+        }
+        learningPlansChanged(ownerIds);
+    }
+
+    // For writes that only know the progress updates they touched; their users are read in one query
+    public void progressUpdatesChangedFor(Collection<String> progressUpdateIds) {
+        if (progressUpdateIds.isEmpty()) {
+            return;
+        }
+        Query query = new Query(Criteria.where("id").in(progressUpdateIds.stream().map(ReferenceResolver::refId).toList()));
+        query.fields().include("user");
+        List<String> userIds = new ArrayList<>();
+        for (ProgressUpdate update : mongoTemplate.find(query, ProgressUpdate.class)) {
+            userIds.add(ReferenceResolver.idOf(update.getUser()));
+        }
+        progressUpdatesChanged(userIds);
+    }
+
+    private long version(String key) {
+        Document counter = mongoTemplate.getCollection(OWNER_LIST_VERSIONS).find(Filters.eq("_id", key)).first();
+        return counter == null ? 0 : ((Number) counter.get("version")).longValue();
+    }
+
+    private void bump(String prefix, Collection<String> ownerIds) {
+        Set<String> keys = new LinkedHashSet<>();
+        ownerIds.stream().filter(Objects::nonNull).forEach(ownerId -> keys.add(prefix + ownerId));
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<UpdateOneModel<Document>> writes = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            writes.add(new UpdateOneModel<>(Filters.eq("_id", key), Updates.inc("version", 1L),
+                    new UpdateOptions().upsert(true)));
+        }
+        mongoTemplate.getCollection(OWNER_LIST_VERSIONS).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+}
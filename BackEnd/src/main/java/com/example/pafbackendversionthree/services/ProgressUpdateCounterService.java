@@ -0,0 +1,178 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Like counters on progress updates, applied as atomic $inc updates instead of
+ * load/modify/save so concurrent likes are never lost. Decrements keep the non-negative guard
+ * in the update filter. Each write commits in one transaction with the bump of its author's list
+ * version.
+ *
+ * With app.progress-updates.likes.write-behind=true likes are instead buffered per update and
+ * each burst is written as one clamped update on the next flush.
+ */
+@Service
+public class ProgressUpdateCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProgressUpdateCounterService.class);
+
+    private static final String PROGRESS_UPDATES = "progress_updates";
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache;
+    private final OwnerListVersions ownerListVersions;
+    private final TransactionOperations transactionOperations;
+    private final boolean writeBehind;
+
+    // Net like delta per progress update id, not yet written
+    private final ConcurrentHashMap<String, Long> pendingLikes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProgressUpdateCounterService(MongoTemplate mongoTemplate,
+                                        ReferenceResolver referenceResolver,
+                                        EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache,
+                                        OwnerListVersions ownerListVersions,
+                                        TransactionOperations transactionOperations,
+                                        @Value("${app.progress-updates.likes.write-behind:false}") boolean writeBehind) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.progressUpdateCache = progressUpdateCache;
+        this.ownerListVersions = ownerListVersions;
+        this.transactionOperations = transactionOperations;
+        this.writeBehind = writeBehind;
+    }
+
+    public ProgressUpdateDTO.ProgressUpdateResponse likeProgressUpdate(String id) {
+        if (writeBehind) {
+            return bufferLike(id, 1);
+        }
+        ProgressUpdate update = Transactions.run(transactionOperations, () -> {
+            ProgressUpdate liked = mongoTemplate.findAndModify(byId(id), new Update().inc("likeCount", 1),
+                    FindAndModifyOptions.options().returnNew(true), ProgressUpdate.class);
+            listChanged(liked);
+            return liked;
+        });
+        progressUpdateCache.invalidate(id);
+        return toResponse(id, update);
+    }
+
+    public ProgressUpdateDTO.ProgressUpdateResponse unlikeProgressUpdate(String id) {
+        if (writeBehind) {
+            return bufferLike(id, -1);
+        }
+        ProgressUpdate update = Transactions.run(transactionOperations, () -> {
+            ProgressUpdate unliked = mongoTemplate.findAndModify(
+                    byId(id).addCriteria(Criteria.where("likeCount").gt(0)),
+                    new Update().inc("likeCount", -1),
+                    FindAndModifyOptions.options().returnNew(true), ProgressUpdate.class);
+            listChanged(unliked);
+            return unliked;
+        });
+        if (update == null) {
+            // Already at zero, or missing
+            update = mongoTemplate.findById(id, ProgressUpdate.class);
+        }
+        progressUpdateCache.invalidate(id);
+        return toResponse(id, update);
+    }
+
+    private ProgressUpdateDTO.ProgressUpdateResponse bufferLike(String id, long delta) {
+        ProgressUpdate update = mongoTemplate.findById(id, ProgressUpdate.class);
+        ProgressUpdateDTO.ProgressUpdateResponse response = toResponse(id, update);
+
+        long pending = pendingLikes.merge(id, delta, Long::sum);
+        response.setLikeCount((int) Math.max(0, update.getLikeCount() + pending));
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${app.progress-updates.likes.flush-interval-ms:1000}")
+    public void flushPendingLikes() {
+        if (pendingLikes.isEmpty()) {
+            return;
+        }
+
+        // remove() hands over each delta atomically, so likes arriving mid-flush wait for the next one
+        Map<String, Long> deltas = new HashMap<>();
+        for (String id : new ArrayList<>(pendingLikes.keySet())) {
+            Long delta = pendingLikes.remove(id);
+            if (delta != null && delta != 0) {
+                deltas.put(id, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // likeCount = max(0, likeCount + delta), one unordered bulk write for the whole burst
+        List<String> ids = new ArrayList<>(deltas.keySet());
+        List<UpdateOneModel<Document>> writes = new ArrayList<>(ids.size());
+        ids.forEach(id -> writes.add(new UpdateOneModel<>(
+                Filters.eq("_id", ReferenceResolver.refId(id)),
+                List.of(new Document("$set", new Document("likeCount", new Document("$max", List.of(0,
+                        new Document("$add", List.of(new Document("$ifNull", List.of("$likeCount", 0)),
+                                deltas.get(id)))))))))));
+        try {
+            // A write error aborts the transaction, so a failed flush never applies part of the burst
+            Transactions.run(transactionOperations, () -> {
+                mongoTemplate.getCollection(PROGRESS_UPDATES).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                ownerListVersions.progressUpdatesChangedFor(ids);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Like flush failed for {} progress updates, retrying on next flush", ids.size(), e);
+            deltas.forEach((id, delta) -> pendingLikes.merge(id, delta, Long::sum));
+            return;
+        }
+        ids.forEach(progressUpdateCache::invalidate);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushPendingLikes();
+    }
+
+    // The update's like count shows in its author's list too
+    private void listChanged(ProgressUpdate update) {
+        if (update != null) {
+            ownerListVersions.progressUpdatesChanged(Collections.singletonList(ReferenceResolver.idOf(update.getUser())));
+        }
+    }
+
+    private ProgressUpdateDTO.ProgressUpdateResponse toResponse(String id, ProgressUpdate update) {
+        if (update == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Progress update not found with id: " + id);
+        }
+        return referenceResolver.toProgressUpdateResponses(List.of(update)).get(0);
+    }
+
+    private Query byId(String id) {
+        return new Query(Criteria.where("id").is(id));
+    }
+}
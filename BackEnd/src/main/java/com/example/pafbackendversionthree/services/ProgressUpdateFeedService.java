@@ -0,0 +1,126 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.CursorPage;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bounded ways of reading progress-update lists: cursor pages (newest first) and NDJSON
+ * streams read through a MongoDB cursor, so memory use does not depend on result size.
+ */
+@Service
+public class ProgressUpdateFeedService {
+
+    private static final int STREAM_BATCH_SIZE = 200;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ProgressUpdateFeedService(MongoTemplate mongoTemplate, ReferenceResolver referenceResolver,
+                                     ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.objectMapper = objectMapper;
+    }
+
+    // Cursor pages
+    public CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> getAllProgressUpdates(String cursor, int size) {
+        return page(allUpdates(), cursor, size);
+    }
+
+    public CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> getPublicProgressUpdates(String cursor, int size) {
+        return page(publicUpdates(), cursor, size);
+    }
+
+    public CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> getProgressUpdatesByUserId(
+            String userId, String cursor, int size) {
+        return page(updatesByUser(userId), cursor, size);
+    }
+
+    public CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> getProgressUpdatesByPlanId(
+            String planId, String cursor, int size) {
+        return page(updatesByPlan(planId), cursor, size);
+    }
+
+    // NDJSON streams
+    public void streamAllProgressUpdates(OutputStream out) throws IOException {
+        stream(allUpdates(), out);
+    }
+
+    public void streamPublicProgressUpdates(OutputStream out) throws IOException {
+        stream(publicUpdates(), out);
+    }
+
+    public void streamProgressUpdatesByUserId(String userId, OutputStream out) throws IOException {
+        stream(updatesByUser(userId), out);
+    }
+
+    public void streamProgressUpdatesByPlanId(String planId, OutputStream out) throws IOException {
+        stream(updatesByPlan(planId), out);
+    }
+
+    private Query allUpdates() {
+        return new Query();
+    }
+
+    private Query publicUpdates() {
+        return new Query(Criteria.where("isPublic").is(true));
+    }
+
+    private Query updatesByUser(String userId) {
+        return new Query(Criteria.where("user.$id").is(ReferenceResolver.refId(userId)));
+    }
+
+    private Query updatesByPlan(String planId) {
+        return new Query(Criteria.where("relatedPlan.$id").is(ReferenceResolver.refId(planId)));
+    }
+
+    private CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> page(Query query, String cursor, int size) {
+        CursorPage<ProgressUpdate> updates = CursorCodec.fetch(mongoTemplate, query, ProgressUpdate.class,
+                null, update -> null, ProgressUpdate::getId, cursor, size);
+
+        return new CursorPage<>(referenceResolver.toProgressUpdateResponses(updates.getItems()),
+                updates.getNextCursor());
+    }
+
+    private void stream(Query query, OutputStream out) throws IOException {
+        query.with(CursorCodec.sort(null)).cursorBatchSize(STREAM_BATCH_SIZE);
+
+        // References are resolved one cursor batch at a time
+        try (Stream<ProgressUpdate> updates = mongoTemplate.stream(query, ProgressUpdate.class)) {
+            Iterator<ProgressUpdate> iterator = updates.iterator();
+            List<ProgressUpdate> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == STREAM_BATCH_SIZE) {
+                    writeBatch(batch, out);
+                }
+            }
+            writeBatch(batch, out);
+        }
+    }
+
+    private void writeBatch(List<ProgressUpdate> batch, OutputStream out) throws IOException {
+        for (ProgressUpdateDTO.ProgressUpdateResponse response : referenceResolver.toProgressUpdateResponses(batch)) {
+            out.write(objectMapper.writeValueAsBytes(response));
+            out.write('\n');
+        }
+        out.flush();
+        batch.clear();
+    }
+}
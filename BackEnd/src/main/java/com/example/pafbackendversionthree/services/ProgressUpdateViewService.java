@@ -0,0 +1,164 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.example.pafbackendversionthree.models.ProgressUpdateView;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tracks who has viewed a progress update in the progress_update_views collection.
+ * Dedup is a single insert against the composite _id, the update only carries a counter
+ * that is bumped with $inc, and reading an update never touches its viewers. The view, the
+ * counter and the author's list version commit in one transaction.
+ */
+@Service
+public class ProgressUpdateViewService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProgressUpdateViewService.class);
+
+    private static final String PROGRESS_UPDATES = "progress_updates";
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache;
+    private final OwnerListVersions ownerListVersions;
+    private final TransactionOperations transactionOperations;
+
+    @Autowired
+    public ProgressUpdateViewService(MongoTemplate mongoTemplate, ReferenceResolver referenceResolver,
+                                     EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> progressUpdateCache,
+                                     OwnerListVersions ownerListVersions,
+                                     TransactionOperations transactionOperations) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.progressUpdateCache = progressUpdateCache;
+        this.ownerListVersions = ownerListVersions;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public ProgressUpdateDTO.ProgressUpdateResponse markAsViewed(String progressUpdateId, String viewerId) {
+        if (!mongoTemplate.exists(byId(viewerId), AppUser.class)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + viewerId);
+        }
+
+        ProgressUpdate update;
+        try {
+            // A missing update aborts the transaction, which takes the view back with it
+            update = Transactions.run(transactionOperations, () -> {
+                mongoTemplate.insert(new ProgressUpdateView(progressUpdateId, viewerId));
+                ProgressUpdate counted = mongoTemplate.findAndModify(byId(progressUpdateId),
+                        new Update().inc("viewCount", 1), FindAndModifyOptions.options().returnNew(true),
+                        ProgressUpdate.class);
+                if (counted == null) {
+                    throw notFound(progressUpdateId);
+                }
+                ownerListVersions.progressUpdatesChanged(Collections.singletonList(ReferenceResolver.idOf(counted.getUser())));
+                return counted;
+            });
+            progressUpdateCache.invalidate(progressUpdateId);
+        } catch (DuplicateKeyException e) {
+            // This viewer had already been recorded
+            update = mongoTemplate.findById(progressUpdateId, ProgressUpdate.class);
+            if (update == null) {
+                throw notFound(progressUpdateId);
+            }
+        }
+        return referenceResolver.toProgressUpdateResponses(List.of(update)).get(0);
+    }
+
+    public boolean hasViewed(String progressUpdateId, String viewerId) {
+        return mongoTemplate.exists(byId(ProgressUpdateView.idFor(progressUpdateId, viewerId)), ProgressUpdateView.class);
+    }
+
+    // Called when a progress update is deleted
+    public void deleteViews(String progressUpdateId) {
+        mongoTemplate.remove(new Query(Criteria.where("progressUpdateId").is(progressUpdateId)), ProgressUpdateView.class);
+    }
+
+    private static ResponseStatusException notFound(String progressUpdateId) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Progress update not found with id: " + progressUpdateId);
+    }
+
+    /**
+     * Moves viewers out of the old embedded viewedBy DBRef arrays into the view store and
+     * replaces each array with a viewCount. Safe to re-run: views are upserted by _id.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyViewers() {
+        Query legacy = new Query(Criteria.where("viewedBy").exists(true));
+        legacy.fields().include("viewedBy", "user");
+
+        int migrated = 0;
+        try (Stream<Document> documents = mongoTemplate.stream(legacy, Document.class, PROGRESS_UPDATES)) {
+            for (Document document : (Iterable<Document>) documents::iterator) {
+                migrateLegacyViewers(document);
+                migrated++;
+            }
+        }
+        if (migrated > 0) {
+            log.info("Migrated viewers of {} progress updates to the view store", migrated);
+        }
+    }
+
+    private void migrateLegacyViewers(Document document) {
+        Object rawId = document.get("_id");
+        String progressUpdateId = rawId.toString();
+        Set<String> viewerIds = document.getList("viewedBy", Object.class, List.of()).stream()
+                .filter(DBRef.class::isInstance)
+                .map(viewer -> ((DBRef) viewer).getId().toString())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        if (!viewerIds.isEmpty()) {
+            Date now = new Date();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProgressUpdateView.class);
+            for (String viewerId : viewerIds) {
+                bulk.upsert(byId(ProgressUpdateView.idFor(progressUpdateId, viewerId)), new Update()
+                        .setOnInsert("progressUpdateId", progressUpdateId)
+                        .setOnInsert("viewerId", viewerId)
+                        .setOnInsert("viewedAt", now));
+            }
+            bulk.execute();
+        }
+
+        long viewCount = mongoTemplate.count(
+                new Query(Criteria.where("progressUpdateId").is(progressUpdateId)), ProgressUpdateView.class);
+        Object user = document.get("user");
+        Transactions.run(transactionOperations, () -> {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(rawId)),
+                    new Update().set("viewCount", viewCount).unset("viewedBy"), PROGRESS_UPDATES);
+            if (user instanceof DBRef author) {
+                ownerListVersions.progressUpdatesChanged(Collections.singletonList(author.getId().toString()));
+            }
+        });
+    }
+
+    private Query byId(String id) {
+        return new Query(Criteria.where("id").is(id));
+    }
+}
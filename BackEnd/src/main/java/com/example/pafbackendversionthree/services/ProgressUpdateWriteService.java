@@ -0,0 +1,140 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Creates, edits and deletes progress updates. Each mutation commits in one transaction with the
+ * outbox event describing it; a delete takes the update's view records with it.
+ *
+ * An edit $sets only the fields the request carries, so likes and views counted while it runs
+ * are kept.
+ */
+@Service
+public class ProgressUpdateWriteService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final ProgressUpdateService progressUpdateService;
+    private final ProgressUpdateViewService progressUpdateViewService;
+    private final DomainEventPublisher domainEventPublisher;
+    private final TransactionOperations transactionOperations;
+
+    @Autowired
+    public ProgressUpdateWriteService(MongoTemplate mongoTemplate,
+                                      ReferenceResolver referenceResolver,
+                                      ProgressUpdateService progressUpdateService,
+                                      ProgressUpdateViewService progressUpdateViewService,
+                                      DomainEventPublisher domainEventPublisher,
+                                      TransactionOperations transactionOperations) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.progressUpdateService = progressUpdateService;
+        this.progressUpdateViewService = progressUpdateViewService;
+        this.domainEventPublisher = domainEventPublisher;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public ProgressUpdateDTO.ProgressUpdateResponse createProgressUpdate(
+            ProgressUpdateDTO.CreateProgressUpdateRequest request) {
+        return Transactions.run(transactionOperations, () -> {
+            ProgressUpdateDTO.ProgressUpdateResponse response = progressUpdateService.createProgressUpdate(request);
+            domainEventPublisher.progressUpdateCreated(response);
+            return response;
+        });
+    }
+
+    public ProgressUpdateDTO.ProgressUpdateResponse createFromTemplate(String userId, String planId,
+                                                                       String templateType) {
+        return Transactions.run(transactionOperations, () -> {
+            ProgressUpdateDTO.ProgressUpdateResponse response =
+                    progressUpdateService.createFromTemplate(userId, planId, templateType);
+            domainEventPublisher.progressUpdateCreated(response);
+            return response;
+        });
+    }
+
+    public ProgressUpdateDTO.ProgressUpdateResponse updateProgressUpdate(
+            String id, ProgressUpdateDTO.UpdateProgressUpdateRequest request) {
+        Update edit = edit(request);
+        return Transactions.run(transactionOperations, () -> {
+            ProgressUpdate update = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(id)), edit,
+                    FindAndModifyOptions.options().returnNew(true), ProgressUpdate.class);
+            if (update == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Progress update not found with id: " + id);
+            }
+            ProgressUpdateDTO.ProgressUpdateResponse response =
+                    referenceResolver.toProgressUpdateResponses(List.of(update)).get(0);
+            domainEventPublisher.progressUpdateUpdated(response);
+            return response;
+        });
+    }
+
+    public void deleteProgressUpdate(String id) {
+        Transactions.run(transactionOperations, () -> {
+            String userId = domainEventPublisher.userId(id);
+            progressUpdateService.deleteProgressUpdate(id);
+            progressUpdateViewService.deleteViews(id);
+            domainEventPublisher.progressUpdateDeleted(id, userId);
+        });
+    }
+
+    private static Update edit(ProgressUpdateDTO.UpdateProgressUpdateRequest request) {
+        if (request.getTitle() != null && request.getTitle().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Title is required");
+        }
+        if (request.getHoursSpent() != null && request.getHoursSpent() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Hours spent must not be negative");
+        }
+        if (request.getRating() != null && (request.getRating() < 1 || request.getRating() > 5)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Rating must be between 1 and 5");
+        }
+
+        Update update = new Update().set("updatedAt", new Date());
+        setIfPresent(update, "title", request.getTitle());
+        setIfPresent(update, "content", request.getContent());
+        setIfPresent(update, "isPublic", request.getIsPublic());
+        setIfPresent(update, "hoursSpent", request.getHoursSpent());
+        setIfPresent(update, "type", request.getType());
+        setIfPresent(update, "rating", request.getRating());
+        setIfPresent(update, "sentiment", request.getSentiment());
+        setIfPresent(update, "challenges", request.getChallenges());
+        setIfPresent(update, "achievements", request.getAchievements());
+        setIfPresent(update, "learningUnitId", request.getLearningUnitId());
+        if (request.getAttachedMedia() != null) {
+            List<ProgressUpdate.Media> media = new ArrayList<>(request.getAttachedMedia().size());
+            for (ProgressUpdateDTO.MediaDTO requested : request.getAttachedMedia()) {
+                ProgressUpdate.Media attached = new ProgressUpdate.Media();
+                if (requested.getMediaId() != null) {
+                    attached.setMediaId(requested.getMediaId());
+                }
+                attached.setUrl(requested.getUrl());
+                attached.setCaption(requested.getCaption());
+                attached.setType(requested.getType());
+                media.add(attached);
+            }
+            update.set("attachedMedia", media);
+        }
+        return update;
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.PlanContentSnapshot;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds list responses with every @DBRef of a page resolved in batches: the ids are read
+ * straight off the lazy references and each referenced collection is fetched once with $in,
+ * so a page costs a constant number of queries regardless of its size.
+ */
+@Service
+public class ReferenceResolver {
+
+    private final MongoTemplate mongoTemplate;
+    private final DistributionSummary snapshotBatches;
+    private final DistributionSummary userBatches;
+
+    @Autowired
+    public ReferenceResolver(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.snapshotBatches = batchSize(meterRegistry, "PlanContentSnapshot");
+        this.userBatches = batchSize(meterRegistry, "AppUser");
+    }
+
+    // References resolved per $in query; the count is the number of batch lookups
+    private static DistributionSummary batchSize(MeterRegistry meterRegistry, String entity) {
+        return DistributionSummary.builder("references.batch.size")
+                .baseUnit("references")
+                .tag("entity", entity)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // DBRef ids are stored as ObjectId when the referenced id is a valid ObjectId string
+    public static Object refId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    // Id of a referenced entity, read from the DBRef without resolving a lazy proxy
+    public static String idOf(Object reference) {
+        if (reference == null) {
+            return null;
+        }
+        if (reference instanceof LazyLoadingProxy proxy) {
+            Object id = proxy.toDBRef().getId();
+            return id != null ? id.toString() : null;
+        }
+        if (reference instanceof AppUser user) {
+            return user.getId();
+        }
+        if (reference instanceof LearningPlan plan) {
+            return plan.getId();
+        }
+        throw new IllegalArgumentException("Unsupported reference type: " + reference.getClass().getName());
+    }
+
+    public List<LearningPlanDTO.LearningPlanResponse> toLearningPlanResponses(List<LearningPlan> plans) {
+        resolveSharedContent(plans);
+        Map<String, AppUser> owners = findUsers(plans.stream()
+                .map(plan -> idOf(plan.getOwner()))
+                .collect(Collectors.toList()));
+
+        return plans.stream()
+                .map(plan -> new LearningPlanDTO.LearningPlanResponse(plan, owners.get(idOf(plan.getOwner()))))
+                .collect(Collectors.toList());
+    }
+
+    public List<LearningPlanDTO.LearningPlanSummary> toLearningPlanSummaries(List<LearningPlan> plans) {
+        Map<String, AppUser> owners = findUsers(plans.stream()
+                .map(plan -> idOf(plan.getOwner()))
+                .collect(Collectors.toList()));
+
+        return plans.stream()
+                .map(plan -> new LearningPlanDTO.LearningPlanSummary(plan, owners.get(idOf(plan.getOwner()))))
+                .collect(Collectors.toList());
+    }
+
+    public List<ProgressUpdateDTO.ProgressUpdateResponse> toProgressUpdateResponses(List<ProgressUpdate> updates) {
+        Map<String, AppUser> users = findUsers(updates.stream()
+                .map(update -> idOf(update.getUser()))
+                .collect(Collectors.toList()));
+
+        // Only the related plan id is exposed, so plans are never fetched
+        return updates.stream()
+                .map(update -> new ProgressUpdateDTO.ProgressUpdateResponse(
+                        update,
+                        users.get(idOf(update.getUser())),
+                        idOf(update.getRelatedPlan())))
+                .collect(Collectors.toList());
+    }
+
+    // Overlays snapshot content onto shared forks, one $in query for all snapshots of the batch
+    public void resolveSharedContent(List<LearningPlan> plans) {
+        Set<String> snapshotIds = plans.stream()
+                .map(LearningPlan::getContentSnapshotId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (snapshotIds.isEmpty()) {
+            return;
+        }
+        snapshotBatches.record(snapshotIds.size());
+
+        Map<String, PlanContentSnapshot> snapshots = new HashMap<>();
+        for (PlanContentSnapshot snapshot : mongoTemplate.find(
+                new Query(Criteria.where("id").in(snapshotIds)), PlanContentSnapshot.class)) {
+            snapshots.put(snapshot.getId(), snapshot);
+        }
+        for (LearningPlan plan : plans) {
+            PlanContentSnapshot snapshot = plan.hasSharedContent() ? snapshots.get(plan.getContentSnapshotId()) : null;
+            if (snapshot != null) {
+                plan.applySharedContent(snapshot);
+            }
+        }
+    }
+
+    private Map<String, AppUser> findUsers(Collection<String> ids) {
+        Set<Object> refIds = ids.stream()
+                .filter(Objects::nonNull)
+                .map(ReferenceResolver::refId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (refIds.isEmpty()) {
+            // Looked up with null ids of missing references, which Map.of() rejects
+            return Collections.emptyMap();
+        }
+        userBatches.record(refIds.size());
+
+        Map<String, AppUser> users = new HashMap<>();
+        for (AppUser user : mongoTemplate.find(new Query(Criteria.where("id").in(refIds)), AppUser.class)) {
+            users.put(user.getId(), user);
+        }
+        return users;
+    }
+}
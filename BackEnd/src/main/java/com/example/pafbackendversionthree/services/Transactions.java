@@ -0,0 +1,50 @@
+package com.example.pafbackendversionthree.services;
+
+import com.mongodb.MongoException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs work in one MongoDB transaction. A transaction that fails with a transient error (a write
+ * conflict with a concurrent transaction, a primary stepping down) has been aborted as a whole, so
+ * it is run again from the start, up to ATTEMPTS times. The work must therefore not have side
+ * effects outside the database.
+ */
+final class Transactions {
+
+    private static final int ATTEMPTS = 5;
+
+    private Transactions() {
+    }
+
+    static <T> T run(TransactionOperations transactionOperations, Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionOperations.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                if (attempt >= ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    static void run(TransactionOperations transactionOperations, Runnable work) {
+        run(transactionOperations, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // Spring wraps the driver exception, so the label is looked for along the cause chain
+    static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongo
+                    && mongo.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Trending learning plans ranked by exponentially decayed views, forks and unit completions,
+ * shared by every instance.
+ *
+ * Scores use forward decay: an event at time t adds weight * e^((t - landmark) / tau), so a score
+ * only ever grows and older events count for less relative to newer ones without being touched
+ * again. The landmark is the start of the current epoch, EPOCH_TAUS time constants long and the
+ * same on every instance. Each instance buffers its increments and flushes them to trending_scores
+ * as $inc upserts keyed by epoch and plan, so flushes of different instances add up instead of
+ * overwriting each other. The previous epoch is moved onto the current landmark when read; older
+ * epochs no longer move the ranking and expire.
+ *
+ * Views are recorded by the instance serving them, forks and completions once per cluster from the
+ * outbox. The top-K summaries are rebuilt periodically from the merged scores, so the endpoint
+ * never queries MongoDB.
+ */
+@Service
+public class TrendingLearningPlans {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingLearningPlans.class);
+
+    private static final String SCORES = "trending_scores";
+
+    private static final double VIEW_WEIGHT = 1.0;
+    private static final double COMPLETION_WEIGHT = 3.0;
+    private static final double FORK_WEIGHT = 5.0;
+
+    // e^20 keeps the increments of a whole epoch far from double overflow
+    private static final int EPOCH_TAUS = 20;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReferenceResolver referenceResolver;
+    private final double tauMillis;
+    private final long epochMillis;
+    private final int topK;
+
+    // Increments recorded here and not yet flushed
+    private final Map<Key, Double> pending = new ConcurrentHashMap<>();
+
+    private volatile List<LearningPlanDTO.LearningPlanSummary> topSummaries = List.of();
+
+    private record Key(long epoch, String planId) {
+    }
+
+    @Autowired
+    public TrendingLearningPlans(MongoTemplate mongoTemplate,
+                                 ReferenceResolver referenceResolver,
+                                 @Value("${app.trending.half-life-hours:24}") double halfLifeHours,
+                                 @Value("${app.trending.top-k:100}") int topK) {
+        this.mongoTemplate = mongoTemplate;
+        this.referenceResolver = referenceResolver;
+        this.tauMillis = halfLifeHours * 3_600_000 / Math.log(2);
+        this.epochMillis = (long) (EPOCH_TAUS * tauMillis);
+        this.topK = topK;
+    }
+
+    public void recordView(String planId) {
+        record(planId, VIEW_WEIGHT);
+    }
+
+    public void recordCompletion(String planId) {
+        record(planId, COMPLETION_WEIGHT);
+    }
+
+    public void recordFork(String planId) {
+        record(planId, FORK_WEIGHT);
+    }
+
+    public List<LearningPlanDTO.LearningPlanSummary> getTrending(int size) {
+        List<LearningPlanDTO.LearningPlanSummary> top = topSummaries;
+        return top.subList(0, Math.min(CursorCodec.pageSize(size), top.size()));
+    }
+
+    private void record(String planId, double weight) {
+        long now = System.currentTimeMillis();
+        long epoch = now / epochMillis;
+        pending.merge(new Key(epoch, planId), weight * Math.exp((now - epoch * epochMillis) / tauMillis), Double::sum);
+    }
+
+    /**
+     * Adds the buffered increments to the shared scores. Increments whose write failed are put
+     * back and retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${app.trending.flush-interval-ms:5000}")
+    public void flush() {
+        List<Key> keys = new ArrayList<>();
+        List<Double> increments = new ArrayList<>();
+        for (Key key : pending.keySet()) {
+            Double increment = pending.remove(key);
+            if (increment != null) {
+                keys.add(key);
+                increments.add(increment);
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SCORES);
+        for (int i = 0; i < keys.size(); i++) {
+            Key key = keys.get(i);
+            bulk.upsert(Query.query(Criteria.where("_id").is(key.epoch() + ":" + key.planId())),
+                    new Update().inc("score", increments.get(i))
+                            .setOnInsert("planId", key.planId())
+                            .setOnInsert("epoch", key.epoch())
+                            // Still read while it is the previous epoch
+                            .setOnInsert("expiresAt", new Date((key.epoch() + 2) * epochMillis)));
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                pending.merge(keys.get(error.getIndex()), increments.get(error.getIndex()), Double::sum);
+            }
+            log.warn("Failed to flush {} of {} trending increments, retrying on the next flush",
+                    e.getErrors().size(), keys.size(), e);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < keys.size(); i++) {
+                pending.merge(keys.get(i), increments.get(i), Double::sum);
+            }
+            log.warn("Failed to flush {} trending increments, retrying on the next flush", keys.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Rebuilds the served top-K summaries from the shared scores. Plans that are private or gone
+     * drop out here, so a few extra candidates are read to keep the list full.
+     */
+    @Scheduled(fixedDelayString = "${app.trending.refresh-interval-ms:15000}")
+    public void refreshTopSummaries() {
+        flush();
+        long epoch = System.currentTimeMillis() / epochMillis;
+        Map<String, Double> scores = new HashMap<>();
+        addScores(scores, epoch, 1.0);
+        addScores(scores, epoch - 1, Math.exp(-epochMillis / tauMillis));
+
+        List<String> candidates = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(topK * 2L)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            topSummaries = List.of();
+            return;
+        }
+
+        Query query = new Query(Criteria.where("id").in(candidates).and("isPublic").is(true));
+        query.fields().include(LearningPlanFeedService.SUMMARY_FIELDS);
+        Map<String, LearningPlanDTO.LearningPlanSummary> summaries = referenceResolver
+                .toLearningPlanSummaries(mongoTemplate.find(query, LearningPlan.class)).stream()
+                .collect(Collectors.toMap(LearningPlanDTO.LearningPlanSummary::getId, Function.identity()));
+
+        topSummaries = candidates.stream()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
+                .limit(topK)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    // Top scores of one epoch, scaled onto the current landmark
+    private void addScores(Map<String, Double> scores, long epoch, double factor) {
+        Query query = Query.query(Criteria.where("epoch").is(epoch))
+                .with(Sort.by(Sort.Direction.DESC, "score"))
+                .limit(topK * 2);
+        query.fields().include("planId", "score");
+        for (Document entry : mongoTemplate.find(query, Document.class, SCORES)) {
+            scores.merge(entry.getString("planId"), entry.getDouble("score") * factor, Double::sum);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        mongoTemplate.indexOps(SCORES).ensureIndex(new Index()
+                .on("epoch", Sort.Direction.ASC).on("score", Sort.Direction.DESC).named("epoch_score"));
+        mongoTemplate.indexOps(SCORES).ensureIndex(new Index()
+                .on("expiresAt", Sort.Direction.ASC).expire(0).named("expires"));
+        refreshTopSummaries();
+    }
+}
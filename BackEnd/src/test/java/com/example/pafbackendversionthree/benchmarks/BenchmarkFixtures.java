@@ -0,0 +1,109 @@
+package com.example.pafbackendversionthree.benchmarks;
+
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Deterministic entities of a given size, shared by the mapping and serialization benchmarks
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    // Built like Boot's auto-configured mapper, with the same modules and ISO dates
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    // Read from a stored document, as ReferenceResolver's batched owner lookup does
+    static AppUser owner() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        return converter.read(AppUser.class, new Document("_id", "user-1")
+                .append("username", "giulia.cooks")
+                .append("profileImageUrl", "https://cdn.example.com/avatars/user-1.jpg"));
+    }
+
+    static LearningPlan learningPlan(int units) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId("plan-" + units);
+        plan.setOwner(owner());
+        plan.setTitle("Italian cooking from scratch");
+        plan.setDescription("Fresh pasta, sauces and regional classics, one technique at a time.");
+        plan.setCategory("Cooking");
+        plan.setSkillLevel("Intermediate");
+        plan.setPublic(true);
+        plan.setEstimatedHours(units * 2);
+        plan.setViewCount(12_345);
+        plan.setForkCount(321);
+
+        List<LearningPlan.LearningUnit> learningUnits = new ArrayList<>(units);
+        for (int i = 0; i < units; i++) {
+            LearningPlan.LearningUnit unit = new LearningPlan.LearningUnit();
+            unit.setTitle("Unit " + i + ": knife skills and mise en place");
+            unit.setDescription("Practice session " + i + " covering preparation, timing and plating.");
+            unit.setOrderIndex(i);
+            unit.setEstimatedHours(2);
+            unit.setObjectives(new ArrayList<>(List.of("Prepare ingredients", "Follow the recipe", "Taste and adjust")));
+            if (i % 3 == 0) {
+                unit.setCompleted(true);
+                unit.setCompletedAt(new Date());
+            }
+            learningUnits.add(unit);
+        }
+        plan.setLearningUnits(learningUnits);
+        plan.refreshCompletionStats();
+
+        List<String> resources = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            resources.add("https://example.com/resources/" + i);
+            tags.add("tag" + i);
+        }
+        plan.setResources(resources);
+        plan.setTags(tags);
+        return plan;
+    }
+
+    static ProgressUpdate progressUpdate(int media) {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId("update-" + media);
+        update.setUser(owner());
+        update.setTitle("Week 12 progress");
+        update.setContent("Finished the sauces unit and started on fresh pasta. ".repeat(10));
+        update.setPublic(true);
+        update.setHoursSpent(6);
+        update.setType(ProgressUpdate.ProgressType.MILESTONE);
+        update.setRating(4);
+        update.setLearningUnitId("unit-1");
+        update.setLikeCount(87);
+        update.setCommentCount(12);
+        update.setViewCount(4_210);
+
+        for (int i = 0; i < 10; i++) {
+            update.addChallenge("Challenge " + i);
+            update.addAchievement("Achievement " + i);
+        }
+        for (int i = 0; i < media; i++) {
+            ProgressUpdate.Media item = new ProgressUpdate.Media();
+            item.setUrl("https://cdn.example.com/media/" + i + ".jpg");
+            item.setCaption("Step " + i);
+            item.setType(ProgressUpdate.Media.MediaType.IMAGE);
+            update.addMedia(item);
+        }
+        return update;
+    }
+}
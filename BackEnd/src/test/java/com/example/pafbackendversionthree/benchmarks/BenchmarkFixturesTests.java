@@ -0,0 +1,64 @@
+package com.example.pafbackendversionthree.benchmarks;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs in every test build, so the benchmarks cannot silently break between benchmark runs
+class BenchmarkFixturesTests {
+
+    private final ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+
+    @Test
+    void learningPlanHasTheRequestedUnitsAndConsistentStats() {
+        LearningPlan plan = BenchmarkFixtures.learningPlan(100);
+
+        assertThat(plan.getLearningUnits()).hasSize(100);
+        assertThat(plan.getUnitCount()).isEqualTo(100);
+        assertThat(plan.getCompletedUnitCount()).isEqualTo(34);
+        assertThat(plan.getEstimatedHours()).isEqualTo(200);
+    }
+
+    @Test
+    void ownerIsReadFromAStoredDocument() {
+        AppUser owner = BenchmarkFixtures.owner();
+
+        assertThat(owner.getId()).isEqualTo("user-1");
+        assertThat(owner.getUsername()).isEqualTo("giulia.cooks");
+        assertThat(BenchmarkFixtures.learningPlan(10).getOwner()).isNotNull();
+        assertThat(BenchmarkFixtures.progressUpdate(10).getUser()).isNotNull();
+    }
+
+    @Test
+    void learningPlanMappingAndSerializationScaleWithUnits() throws Exception {
+        AppUser owner = BenchmarkFixtures.owner();
+        byte[] small = objectMapper.writeValueAsBytes(
+                new LearningPlanDTO.LearningPlanResponse(BenchmarkFixtures.learningPlan(10), owner));
+        byte[] large = objectMapper.writeValueAsBytes(
+                new LearningPlanDTO.LearningPlanResponse(BenchmarkFixtures.learningPlan(100), owner));
+        byte[] summary = objectMapper.writeValueAsBytes(
+                new LearningPlanDTO.LearningPlanSummary(BenchmarkFixtures.learningPlan(100), owner));
+
+        assertThat(large.length).isGreaterThan(small.length * 5);
+        assertThat(summary.length).isLessThan(small.length);
+        assertThat(new String(small, StandardCharsets.UTF_8)).contains("giulia.cooks");
+    }
+
+    @Test
+    void progressUpdateHasTheRequestedMedia() throws Exception {
+        ProgressUpdate update = BenchmarkFixtures.progressUpdate(100);
+
+        assertThat(update.getAttachedMedia()).hasSize(100);
+        assertThat(objectMapper.writeValueAsString(
+                new ProgressUpdateDTO.ProgressUpdateResponse(update, BenchmarkFixtures.owner(), "plan-1")))
+                .contains("giulia.cooks");
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.pafbackendversionthree.benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Runs the benchmarks from the test classpath: mvn test -Dtest=BenchmarkTests -Dbenchmarks=true,
+ * optionally with -Dbenchmarks.include=regex. Skipped in every other test run.
+ *
+ * The harness is generated by JMH's annotation processor, so the test classpath needs
+ * org.openjdk.jmh:jmh-core and jmh-generator-annprocess; this tree does not declare them.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class BenchmarkTests {
+
+    @Test
+    void runBenchmarks() throws Exception {
+        String include = System.getProperty("benchmarks.include");
+        BenchmarkRunner.main(include == null ? new String[0] : new String[] {include});
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.pafbackendversionthree.benchmarks;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of the learning-plan read path: entity -> response/summary mapping and Jackson
+ * serialization, for plans of 10, 100 and 1000 units. Run with -prof gc for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LearningPlanMappingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int units;
+
+    private final ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+
+    private LearningPlan plan;
+    private AppUser owner;
+    private LearningPlanDTO.LearningPlanResponse response;
+    private LearningPlanDTO.LearningPlanSummary summary;
+
+    @Setup
+    public void setUp() {
+        plan = BenchmarkFixtures.learningPlan(units);
+        owner = BenchmarkFixtures.owner();
+        response = new LearningPlanDTO.LearningPlanResponse(plan, owner);
+        summary = new LearningPlanDTO.LearningPlanSummary(plan, owner);
+    }
+
+    @Benchmark
+    public LearningPlanDTO.LearningPlanResponse mapResponse() {
+        return new LearningPlanDTO.LearningPlanResponse(plan, owner);
+    }
+
+    @Benchmark
+    public LearningPlanDTO.LearningPlanSummary mapSummary() {
+        return new LearningPlanDTO.LearningPlanSummary(plan, owner);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serializeSummary() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summary);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new LearningPlanDTO.LearningPlanResponse(plan, owner));
+    }
+}
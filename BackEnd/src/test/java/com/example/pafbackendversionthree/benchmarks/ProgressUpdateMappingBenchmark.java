@@ -0,0 +1,65 @@
+package com.example.pafbackendversionthree.benchmarks;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of the progress-update read path: entity -> response mapping and Jackson
+ * serialization, for updates carrying 10, 100 and 1000 media items. Viewers are stored outside
+ * the update (progress_update_views), so only the media list scales with the row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProgressUpdateMappingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int media;
+
+    private final ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+
+    private ProgressUpdate update;
+    private AppUser owner;
+    private ProgressUpdateDTO.ProgressUpdateResponse response;
+
+    @Setup
+    public void setUp() {
+        update = BenchmarkFixtures.progressUpdate(media);
+        owner = BenchmarkFixtures.owner();
+        response = new ProgressUpdateDTO.ProgressUpdateResponse(update, owner, "plan-1");
+    }
+
+    @Benchmark
+    public ProgressUpdateDTO.ProgressUpdateResponse mapResponse() {
+        return new ProgressUpdateDTO.ProgressUpdateResponse(update, owner, "plan-1");
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new ProgressUpdateDTO.ProgressUpdateResponse(update, owner, "plan-1"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.pafbackendversionthree.benchmarks;
+
+import com.example.pafbackendversionthree.models.AppUser;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Side-by-side throughput of the two app.threads.mode settings under a slow database. Each trial
+ * boots the application on a random port with that mode and app.mongodb.simulated-latency-ms,
+ * seeds users and public learning plans owned by them, and each operation is a burst of concurrent
+ * GET /api/learning-plans/public?cursor= requests, so every request goes through Tomcat, the
+ * controller, a MongoDB query and the batched owner lookup on the executor under test. The driver's
+ * connection pool is sized to the burst, so the pool never caps concurrency below the executor.
+ * Needs JDK 21 and a MongoDB at -Dbench.mongodb.uri (default localhost); the seeded database is
+ * dropped afterwards.
+ * Set -Dbench.authorization to send an Authorization header where the endpoint is secured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadModeBenchmark {
+
+    private static final String DATABASE = "paf-thread-mode-benchmark";
+    private static final int SEEDED_PLANS = 100;
+    private static final int SEEDED_OWNERS = 20;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    @Param({"1000"})
+    private int concurrentRequests;
+
+    @Param({"20"})
+    private long latencyMillis;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.max-connections=" + Math.max(8192, concurrentRequests * 2),
+                        "app.threads.mode=" + mode,
+                        "app.mongodb.simulated-latency-ms=" + latencyMillis,
+                        "spring.data.mongodb.uri=" + withMaxPoolSize(
+                                System.getProperty("bench.mongodb.uri", "mongodb://localhost:27017"), concurrentRequests),
+                        "spring.data.mongodb.database=" + DATABASE,
+                        "logging.level.org.springframework.data.mongodb.core=WARN")
+                .run();
+        seed(context.getBean(MongoTemplate.class));
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/learning-plans/public?cursor=&size=10")).GET();
+        String authorization = System.getProperty("bench.authorization");
+        if (authorization != null) {
+            builder.header("Authorization", authorization);
+        }
+        request = builder.build();
+
+        // The client never limits the burst: one virtual thread per in-flight request
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(new VirtualThreadTaskExecutor("bench-client-vt-"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.getBean(MongoTemplate.class).getDb().drop();
+            context.close();
+        }
+    }
+
+    // One burst of requests on the real request path; throughput is bursts per second
+    @Benchmark
+    public void slowDatabaseBurst() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            int status = response.join().statusCode();
+            if (status != 200) {
+                throw new IllegalStateException("Benchmark request failed with status " + status);
+            }
+        }
+    }
+
+    // The driver defaults to 100 connections, which would queue most of a larger burst
+    private static String withMaxPoolSize(String uri, int maxPoolSize) {
+        if (uri.contains("?")) {
+            return uri + "&maxPoolSize=" + maxPoolSize;
+        }
+        String hosts = uri.substring(uri.indexOf("://") + 3);
+        return uri + (hosts.contains("/") ? "?" : "/?") + "maxPoolSize=" + maxPoolSize;
+    }
+
+    private static void seed(MongoTemplate mongoTemplate) {
+        // Emptied rather than dropped, so the indexes created at startup stay in place
+        String users = mongoTemplate.getCollectionName(AppUser.class);
+        mongoTemplate.getCollection(users).deleteMany(new Document());
+        mongoTemplate.getCollection("learning_plans").deleteMany(new Document());
+
+        List<Document> owners = new ArrayList<>(SEEDED_OWNERS);
+        for (int i = 0; i < SEEDED_OWNERS; i++) {
+            owners.add(new Document("_id", new ObjectId())
+                    .append("username", "benchmark-user-" + i)
+                    .append("profileImageUrl", "https://example.com/avatars/" + i + ".png"));
+        }
+        mongoTemplate.getCollection(users).insertMany(owners);
+
+        List<Document> plans = new ArrayList<>(SEEDED_PLANS);
+        Date now = new Date();
+        for (int i = 0; i < SEEDED_PLANS; i++) {
+            plans.add(new Document("title", "Benchmark plan " + i)
+                    .append("description", "Seeded for ThreadModeBenchmark")
+                    .append("owner", new DBRef(users, owners.get(i % SEEDED_OWNERS).get("_id")))
+                    .append("isPublic", true)
+                    .append("isCompleted", false)
+                    .append("completionPercentage", 0.0)
+                    .append("viewCount", 0)
+                    .append("forkCount", 0)
+                    .append("createdAt", now)
+                    .append("updatedAt", now));
+        }
+        mongoTemplate.getCollection("learning_plans").insertMany(plans);
+    }
+
+    // The whole application minus the benchmarks themselves
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @ComponentScan(basePackages = "com.example.pafbackendversionthree",
+            excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX,
+                    pattern = "com\\.example\\.pafbackendversionthree\\.benchmarks\\..*"))
+    static class BenchmarkApplication {
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.pafbackendversionthree.config;
+
+import com.example.pafbackendversionthree.repositories.LearningPlanRepository;
+import com.example.pafbackendversionthree.repositories.ProgressUpdateRepository;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class IndexVerifierTests {
+
+    private MongoTemplate mongoTemplate;
+    private final List<Document> explainedFilters = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+    }
+
+    @Test
+    void indexedShapesPass() {
+        explainAs(filter -> plan(stage("LIMIT", stage("FETCH", stage("IXSCAN", null)))));
+
+        assertThatCode(() -> verifier("fail").run(new DefaultApplicationArguments()))
+                .doesNotThrowAnyException();
+        assertThat(explainedFilters).isNotEmpty();
+    }
+
+    @Test
+    void collectionScanFailsStartupInFailMode() {
+        explainAs(filter -> "MILESTONE".equals(filter.get("type")) && filter.size() == 1
+                ? plan(stage("LIMIT", stage("COLLSCAN", null)))
+                : plan(stage("FETCH", stage("IXSCAN", null))));
+
+        assertThatThrownBy(() -> verifier("fail").run(new DefaultApplicationArguments()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("ProgressUpdate.findByType [COLLSCAN]")
+                .hasMessageNotContaining("findByUserIdAndType");
+    }
+
+    @Test
+    void inMemorySortIsFoundInsideSlotBasedPlans() {
+        // SBE explain output nests the classic plan under queryPlan, with input stages in lists
+        explainAs(filter -> filter.isEmpty()
+                ? new Document("queryPlanner", new Document("winningPlan", new Document("queryPlan",
+                        new Document("stage", "OR").append("inputStages", List.of(
+                                stage("IXSCAN", null), stage("SORT", stage("IXSCAN", null)))))))
+                : plan(stage("IXSCAN", null)));
+
+        assertThatThrownBy(() -> verifier("fail").run(new DefaultApplicationArguments()))
+                .hasMessageContaining("[SORT]");
+    }
+
+    @Test
+    void reportModeOnlyLogs() {
+        explainAs(filter -> plan(stage("COLLSCAN", null)));
+
+        assertThatCode(() -> verifier("report").run(new DefaultApplicationArguments()))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void offModeSkipsTheCheck() {
+        verifier("off").run(new DefaultApplicationArguments());
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void keysetContinuationsAreVerified() {
+        explainAs(filter -> plan(stage("IXSCAN", null)));
+
+        verifier("report").run(new DefaultApplicationArguments());
+
+        assertThat(explainedFilters).anySatisfy(filter -> assertThat(filter).containsKey("$or"));
+        assertThat(explainedFilters).anySatisfy(filter ->
+                assertThat(filter.get("_id", Document.class)).containsKey("$lt"));
+    }
+
+    @Test
+    void everyRepositoryQueryMethodIsVerified() {
+        explainAs(filter -> plan(stage("COLLSCAN", null)));
+
+        assertThatThrownBy(() -> verifier("fail").run(new DefaultApplicationArguments()))
+                .satisfies(e -> {
+                    for (Method method : LearningPlanRepository.class.getDeclaredMethods()) {
+                        assertThat(e.getMessage()).contains("LearningPlan." + method.getName() + " ");
+                    }
+                    for (Method method : ProgressUpdateRepository.class.getDeclaredMethods()) {
+                        assertThat(e.getMessage()).contains("ProgressUpdate." + method.getName() + " ");
+                    }
+                });
+    }
+
+    private IndexVerifier verifier(String mode) {
+        return new IndexVerifier(mongoTemplate, mode);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void explainAs(Function<Document, Document> explain) {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection(anyString())).thenReturn(collection);
+        when(collection.find(any(Bson.class))).thenAnswer(invocation -> {
+            Document filter = invocation.getArgument(0);
+            explainedFilters.add(filter);
+            FindIterable<Document> cursor = mock(FindIterable.class);
+            when(cursor.sort(any())).thenReturn(cursor);
+            when(cursor.limit(anyInt())).thenReturn(cursor);
+            when(cursor.explain()).thenReturn(explain.apply(filter));
+            return cursor;
+        });
+    }
+
+    private static Document plan(Document winningPlan) {
+        return new Document("queryPlanner", new Document("winningPlan", winningPlan));
+    }
+
+    private static Document stage(String name, Document input) {
+        Document stage = new Document("stage", name);
+        if (input != null) {
+            stage.append("inputStage", input);
+        }
+        return stage;
+    }
+}
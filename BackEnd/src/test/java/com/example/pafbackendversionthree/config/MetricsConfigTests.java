@@ -0,0 +1,85 @@
+package com.example.pafbackendversionthree.config;
+
+import com.example.pafbackendversionthree.services.EntityCache;
+import com.example.pafbackendversionthree.services.LearningPlanViewCounter;
+import com.example.pafbackendversionthree.services.OutboxDispatcher;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MetricsConfigTests {
+
+    private final MetricsConfig metricsConfig = new MetricsConfig();
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void requestRepositoryAndMongoTimersPublishHistograms() {
+        MeterFilter filter = metricsConfig.percentileHistograms();
+
+        for (String name : List.of("http.server.requests", "spring.data.repository.invocations", "mongodb.driver.commands")) {
+            assertThat(filter.configure(timer(name), DistributionStatisticConfig.DEFAULT).isPercentileHistogram())
+                    .as(name).isTrue();
+        }
+        assertThat(filter.configure(timer("jvm.gc.pause"), DistributionStatisticConfig.DEFAULT))
+                .isSameAs(DistributionStatisticConfig.DEFAULT);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statsAreBoundAsGaugesThatReadTheCurrentValue() {
+        EntityCache<String> cache = new EntityCache<>("learningPlans", 10, 60_000);
+        LearningPlanViewCounter viewCounter = mock(LearningPlanViewCounter.class);
+        when(viewCounter.stats()).thenReturn(Map.of("pendingPlans", 3));
+        OutboxDispatcher outboxDispatcher = mock(OutboxDispatcher.class);
+        when(outboxDispatcher.stats()).thenReturn(Map.of("deliveredEvents", 7L));
+
+        metricsConfig.applicationStats(List.of(cache), viewCounter, outboxDispatcher, mock(ObjectProvider.class))
+                .bindTo(registry);
+        cache.get("plan-1", () -> "Bread");
+        cache.get("plan-1", () -> "Bread");
+
+        cache.invalidate("plan-1");
+
+        assertThat(registry.get("cache.gets").tags("cache", "learningPlans", "result", "hit").functionCounter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("cache.gets").tags("cache", "learningPlans", "result", "miss").functionCounter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("app.cache.invalidations").tag("cache", "learningPlans").gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("app.learning-plan.views.pendingPlans").gauge().value()).isEqualTo(3.0);
+        assertThat(registry.get("app.outbox.deliveredEvents").gauge().value()).isEqualTo(7.0);
+        assertThat(registry.find("app.virtual-threads.pinning.pinnedEvents").gauge()).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statMissingFromALaterReadingIsNotANumber() {
+        OutboxDispatcher outboxDispatcher = mock(OutboxDispatcher.class);
+        when(outboxDispatcher.stats()).thenReturn(Map.of("busyAggregates", 2)).thenReturn(Map.of());
+
+        metricsConfig.applicationStats(List.of(), mock(LearningPlanViewCounter.class), outboxDispatcher,
+                mock(ObjectProvider.class)).bindTo(registry);
+
+        assertThat(registry.get("app.outbox.busyAggregates").gauge().value()).isNaN();
+    }
+
+    private static Meter.Id timer(String name) {
+        return new Meter.Id(name, Tags.empty(), null, null, Meter.Type.TIMER);
+    }
+}
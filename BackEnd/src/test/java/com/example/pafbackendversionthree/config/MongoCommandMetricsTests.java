@@ -0,0 +1,81 @@
+package com.example.pafbackendversionthree.config;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MongoCommandMetricsTests {
+
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    private SimpleMeterRegistry registry;
+    private CommandListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(registry);
+        MongoClientSettings.Builder settings = MongoClientSettings.builder();
+        new MongoCommandMetrics().commandMetrics(provider).customize(settings);
+        listener = settings.build().getCommandListeners().get(0);
+    }
+
+    @Test
+    void singleIdLookupsAreCountedPerCollection() {
+        started(1, "find", "{find: 'learningPlans', filter: {_id: 'plan-1'}}");
+        started(2, "find", "{find: 'learningPlans', filter: {_id: {$in: ['a', 'b']}}}");
+        started(3, "find", "{find: 'learningPlans', filter: {_id: 'plan-1', isPublic: true}}");
+
+        assertThat(registry.get("mongodb.driver.lookups.by-id").tag("collection", "learningPlans").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void documentsReturnedAreRecordedUnderTheStartedCommandsCollection() {
+        started(1, "find", "{find: 'progressUpdates', filter: {}}");
+        succeeded(1, "find", "{cursor: {id: 7, firstBatch: [{}, {}, {}]}}");
+        started(2, "getMore", "{getMore: 7, collection: 'progressUpdates'}");
+        succeeded(2, "getMore", "{cursor: {id: 0, nextBatch: [{}]}}");
+
+        assertThat(registry.get("mongodb.driver.documents").tag("command", "find")
+                .tag("collection", "progressUpdates").summary().totalAmount()).isEqualTo(3.0);
+        assertThat(registry.get("mongodb.driver.documents").tag("command", "getMore")
+                .tag("collection", "progressUpdates").summary().totalAmount()).isEqualTo(1.0);
+    }
+
+    @Test
+    void writesRecordNoDocuments() {
+        started(1, "update", "{update: 'learningPlans', updates: []}");
+        succeeded(1, "update", "{n: 1}");
+
+        assertThat(registry.find("mongodb.driver.documents").summary()).isNull();
+    }
+
+    private void started(int requestId, String name, String command) {
+        listener.commandStarted(new CommandStartedEvent(null, requestId, requestId, CONNECTION, "test", name,
+                BsonDocument.parse(command)));
+    }
+
+    private void succeeded(int requestId, String name, String response) {
+        listener.commandSucceeded(new CommandSucceededEvent(null, requestId, requestId, CONNECTION, "test", name,
+                BsonDocument.parse(response), 1_000));
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.pafbackendversionthree.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PinningDiagnosticsTests {
+
+    @Test
+    void statsReportTheThresholdAndNoPinsBeforeAnyEvent() {
+        PinningDiagnostics diagnostics = new PinningDiagnostics(35);
+
+        assertThat(diagnostics.stats())
+                .containsEntry("pinnedEvents", 0L)
+                .containsEntry("thresholdMillis", 35L);
+    }
+
+    @Test
+    void recordingStartsAndStops() {
+        PinningDiagnostics diagnostics = new PinningDiagnostics(20);
+
+        diagnostics.start();
+        diagnostics.stop();
+
+        assertThat(diagnostics.stats()).containsEntry("pinnedEvents", 0L);
+    }
+
+    @Test
+    void stopWithoutStartIsANoOp() {
+        new PinningDiagnostics(20).stop();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.pafbackendversionthree.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestMetricsFilterTests {
+
+    private SimpleMeterRegistry registry;
+    private RequestMetricsFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        filter = new RequestMetricsFilter(registry);
+    }
+
+    @Test
+    void bytesWrittenToTheStreamAreRecordedUnderTheRoutePattern() throws Exception {
+        MockHttpServletRequest request = request("/api/learning-plans/{id}");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (FilterChain) (req, res) -> {
+            res.getOutputStream().write(new byte[120]);
+            res.getOutputStream().write('\n');
+        });
+
+        DistributionSummary summary = registry.get("http.server.response.bytes")
+                .tag("method", "GET").tag("uri", "/api/learning-plans/{id}").summary();
+        assertThat(summary.count()).isEqualTo(1);
+        assertThat(summary.totalAmount()).isEqualTo(121.0);
+    }
+
+    @Test
+    void writerOutputIsCountedInTheResponseCharset() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        filter.doFilter(request("/api/progress-updates"), response, (FilterChain) (req, res) -> {
+            res.getWriter().write("caf\u00e9");
+            res.getWriter().write('!');
+        });
+
+        assertThat(registry.get("http.server.response.bytes").summary().totalAmount()).isEqualTo(6.0);
+    }
+
+    @Test
+    void unmatchedRequestsShareOneTag() throws Exception {
+        filter.doFilter(request(null), new MockHttpServletResponse(), (FilterChain) (req, res) -> { });
+
+        assertThat(registry.get("http.server.response.bytes").tag("uri", "UNKNOWN").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void asyncResponseIsRecordedWhenItCompletes() throws Exception {
+        MockHttpServletRequest request = request("/api/users/{id}/learning-history");
+        request.setAsyncSupported(true);
+
+        filter.doFilter(request, new MockHttpServletResponse(), (FilterChain) (req, res) -> {
+            req.startAsync();
+            res.getOutputStream().write(new byte[10]);
+        });
+
+        assertThat(registry.find("http.server.response.bytes").summary()).isNull();
+
+        request.getAsyncContext().complete();
+
+        assertThat(registry.get("http.server.response.bytes").summary().totalAmount()).isEqualTo(10.0);
+    }
+
+    private static MockHttpServletRequest request(String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/anything");
+        if (pattern != null) {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.pafbackendversionthree.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThreadModeEnvironmentPostProcessorTests {
+
+    private final ThreadModeEnvironmentPostProcessor postProcessor = new ThreadModeEnvironmentPostProcessor();
+
+    @Test
+    void virtualModeTurnsOnBootsVirtualThreads() {
+        MockEnvironment environment = new MockEnvironment().withProperty("app.threads.mode", "virtual");
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("spring.threads.virtual.enabled")).isEqualTo("true");
+    }
+
+    @Test
+    void platformModeLeavesBootsDefault() {
+        MockEnvironment environment = new MockEnvironment().withProperty("app.threads.mode", "platform");
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.containsProperty("spring.threads.virtual.enabled")).isFalse();
+    }
+
+    @Test
+    void explicitBootPropertyWins() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.threads.mode", "virtual")
+                .withProperty("spring.threads.virtual.enabled", "false");
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("spring.threads.virtual.enabled")).isEqualTo("false");
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.pafbackendversionthree.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LearningPlanTests {
+
+    @Test
+    void statsAreRecountedFromTheUnits() {
+        LearningPlan plan = new LearningPlan();
+        plan.setLearningUnits(new ArrayList<>(List.of(unit("u1", 3, true), unit("u2", 5, false),
+                unit("u3", 2, true), unit("u4", 1, false))));
+
+        plan.refreshCompletionStats();
+
+        assertThat(plan.getUnitCount()).isEqualTo(4);
+        assertThat(plan.getCompletedUnitCount()).isEqualTo(2);
+        assertThat(plan.getCompletedHours()).isEqualTo(5);
+        assertThat(plan.getCompletionPercentage()).isEqualTo(50.0);
+        assertThat(plan.calculateCompletionPercentage()).isEqualTo(50.0);
+    }
+
+    @Test
+    void planWithoutUnitsIsZeroPercentComplete() {
+        LearningPlan plan = new LearningPlan();
+
+        plan.setLearningUnits(null);
+        plan.refreshCompletionStats();
+
+        assertThat(plan.getLearningUnits()).isEmpty();
+        assertThat(plan.getUnitCount()).isZero();
+        assertThat(plan.getCompletionPercentage()).isZero();
+    }
+
+    @Test
+    void completingAUnitBumpsTheStatsOnce() {
+        LearningPlan plan = new LearningPlan();
+        plan.setLearningUnits(new ArrayList<>(List.of(unit("u1", 3, false), unit("u2", 5, false))));
+        plan.refreshCompletionStats();
+
+        plan.completeLearningUnit("u1");
+        plan.completeLearningUnit("u1");
+
+        assertThat(plan.getCompletedUnitCount()).isEqualTo(1);
+        assertThat(plan.getCompletedHours()).isEqualTo(3);
+        assertThat(plan.getCompletionPercentage()).isEqualTo(50.0);
+        assertThat(plan.isCompleted()).isFalse();
+
+        plan.completeLearningUnit("u2");
+
+        assertThat(plan.getCompletionPercentage()).isEqualTo(100.0);
+        assertThat(plan.isCompleted()).isTrue();
+        assertThat(plan.getActualCompletionDate()).isNotNull();
+    }
+
+    @Test
+    void addingAUnitLowersThePercentage() {
+        LearningPlan plan = new LearningPlan();
+        plan.setLearningUnits(new ArrayList<>(List.of(unit("u1", 3, true))));
+        plan.refreshCompletionStats();
+
+        plan.addLearningUnit(unit("u2", 1, false));
+
+        assertThat(plan.getUnitCount()).isEqualTo(2);
+        assertThat(plan.getCompletionPercentage()).isEqualTo(50.0);
+    }
+
+    @Test
+    void settingTheUnitsLeavesTheStoredStatsAlone() {
+        LearningPlan plan = new LearningPlan();
+        plan.setCompletedHours(7);
+        plan.setCompletedUnitCount(1);
+
+        plan.setLearningUnits(new ArrayList<>(List.of(unit("u1", 3, false))));
+
+        assertThat(plan.getCompletedHours()).isEqualTo(7);
+        assertThat(plan.getCompletedUnitCount()).isEqualTo(1);
+    }
+
+    private static LearningPlan.LearningUnit unit(String unitId, int hours, boolean completed) {
+        LearningPlan.LearningUnit unit = new LearningPlan.LearningUnit();
+        unit.setUnitId(unitId);
+        unit.setEstimatedHours(hours);
+        unit.setCompleted(completed);
+        return unit;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.pafbackendversionthree.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProgressUpdateTests {
+
+    @Test
+    @SuppressWarnings("removal")
+    void viewsAreNeverCountedOnTheEntity() {
+        ProgressUpdate update = new ProgressUpdate();
+
+        assertThatThrownBy(() -> update.markAsViewed(null))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(update.getViewCount()).isZero();
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.BulkImportReport;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkImportServiceTests {
+
+    private static final String OWNER_ID = new ObjectId().toHexString();
+    private static final String PLAN_ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private DomainEventPublisher domainEventPublisher;
+    private BulkImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        when(bulk.insert(anyList())).thenReturn(bulk);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class))).thenReturn(bulk);
+        AppUser owner = mock(AppUser.class);
+        when(owner.getId()).thenReturn(OWNER_ID);
+        when(mongoTemplate.find(any(Query.class), eq(AppUser.class))).thenReturn(List.of(owner));
+        LearningPlan plan = new LearningPlan();
+        plan.setId(PLAN_ID);
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(List.of(plan));
+        domainEventPublisher = mock(DomainEventPublisher.class);
+        importService = new BulkImportService(mongoTemplate, new ObjectMapper(), domainEventPublisher,
+                TransactionOperations.withoutTransaction());
+    }
+
+    @Test
+    void everyPlanGetsAResultAndOnlyValidOnesAreInserted() {
+        String unknownOwnerId = new ObjectId().toHexString();
+
+        BulkImportReport report = importService.importLearningPlans(body("["
+                + "{\"title\":\"Bread\",\"ownerId\":\"" + OWNER_ID + "\",\"learningUnits\":[{\"title\":\"Dough\"}]},"
+                + "{\"title\":\" \",\"ownerId\":\"" + OWNER_ID + "\"},"
+                + "{\"title\":\"Pasta\",\"ownerId\":\"" + unknownOwnerId + "\"},"
+                + "{\"title\":\"Sauces\",\"ownerId\":\"" + OWNER_ID + "\",\"estimatedHours\":-1},"
+                + "{\"title\":\"Soup\",\"ownerId\":\"" + OWNER_ID + "\",\"learningUnits\":[{}]}"
+                + "]"));
+
+        assertThat(report.getResults()).extracting(BulkImportReport.ItemResult::getIndex,
+                        BulkImportReport.ItemResult::getStatus)
+                .containsExactly(tuple(0, "CREATED"), tuple(1, "INVALID"), tuple(2, "INVALID"),
+                        tuple(3, "INVALID"), tuple(4, "INVALID"));
+        assertThat(report.getResults()).extracting(BulkImportReport.ItemResult::getMessage)
+                .containsExactly(null, "Title is required", "User not found with id: " + unknownOwnerId,
+                        "Estimated hours must not be negative", "Learning unit title is required");
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(4);
+
+        List<LearningPlan> inserted = insertedPlans();
+        assertThat(inserted).hasSize(1);
+        assertThat(inserted.get(0).getId()).isEqualTo(report.getResults().get(0).getId());
+        assertThat(inserted.get(0).getUnitCount()).isEqualTo(1);
+        verify(domainEventPublisher).learningPlansImported(inserted);
+    }
+
+    @Test
+    void planWhoseUnitsAreAllCompletedIsImportedCompleted() {
+        importService.importLearningPlans(body("["
+                + "{\"title\":\"Bread\",\"ownerId\":\"" + OWNER_ID + "\",\"learningUnits\":["
+                + "{\"title\":\"Dough\",\"completed\":true,\"completedAt\":1700000000000},"
+                + "{\"title\":\"Baking\",\"completed\":true,\"completedAt\":1700086400000}]},"
+                + "{\"title\":\"Pasta\",\"ownerId\":\"" + OWNER_ID + "\",\"learningUnits\":["
+                + "{\"title\":\"Flour\",\"completed\":true},{\"title\":\"Shapes\"}]}]"));
+
+        List<LearningPlan> inserted = insertedPlans();
+        assertThat(inserted.get(0).isCompleted()).isTrue();
+        assertThat(inserted.get(0).getActualCompletionDate()).isEqualTo(new Date(1700086400000L));
+        assertThat(inserted.get(0).getCompletionPercentage()).isEqualTo(100.0);
+        assertThat(inserted.get(1).isCompleted()).isFalse();
+        assertThat(inserted.get(1).getActualCompletionDate()).isNull();
+    }
+
+    @Test
+    void referencedUsersAreCheckedWithOneIdOnlyQuery() {
+        importService.importLearningPlans(body("["
+                + "{\"title\":\"Bread\",\"ownerId\":\"" + OWNER_ID + "\"},"
+                + "{\"title\":\"Pasta\",\"ownerId\":\"" + OWNER_ID + "\"}]"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(query.capture(), eq(AppUser.class));
+        assertThat(query.getValue().getFieldsObject().keySet()).containsExactly("id");
+    }
+
+    @Test
+    void ndjsonBodyIsImported() {
+        BulkImportReport report = importService.importLearningPlans(body(
+                "{\"title\":\"Bread\",\"ownerId\":\"" + OWNER_ID + "\"}\n"
+                        + "{\"title\":\"Pasta\",\"ownerId\":\"" + OWNER_ID + "\"}\n"));
+
+        assertThat(report.getCreated()).isEqualTo(2);
+        assertThat(report.getError()).isNull();
+    }
+
+    @Test
+    void itemsBeforeAMalformedTailAreStillImported() {
+        BulkImportReport report = importService.importLearningPlans(body(
+                "[{\"title\":\"Bread\",\"ownerId\":\"" + OWNER_ID + "\"}, {\"title\": oops"));
+
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getError()).startsWith("Malformed input after item 1");
+    }
+
+    @Test
+    void rowsRejectedByTheServerAreReportedAsFailedAndTheRestIsInsertedAgain() {
+        // The rejection aborts the whole transaction, so the second attempt inserts the other row alone
+        when(bulk.execute()).thenThrow(new BulkOperationException("bulk failed", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of()))).thenReturn(null);
+
+        BulkImportReport report = importService.importLearningPlans(body("["
+                + "{\"title\":\"Bread\",\"ownerId\":\"" + OWNER_ID + "\"},"
+                + "{\"title\":\"\"},"
+                + "{\"title\":\"Pasta\",\"ownerId\":\"" + OWNER_ID + "\"}]"));
+
+        // Batch position 1 is the third item, the second never reached the insert
+        assertThat(report.getResults()).extracting(BulkImportReport.ItemResult::getStatus)
+                .containsExactly("CREATED", "INVALID", "FAILED");
+        assertThat(report.getResults().get(2).getMessage()).isEqualTo("duplicate key");
+        List<List<LearningPlan>> inserts = inserts();
+        assertThat(inserts).hasSize(2);
+        assertThat(inserts.get(1)).extracting(LearningPlan::getTitle).containsExactly("Bread");
+        verify(domainEventPublisher, times(1)).learningPlansImported(anyList());
+        verify(domainEventPublisher).learningPlansImported(inserts.get(1));
+    }
+
+    @Test
+    void writeFailuresWithoutRowErrorsFailTheImport() {
+        when(bulk.execute()).thenThrow(new BulkOperationException("bulk failed", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(), null, new ServerAddress(), Set.of())));
+
+        assertThatThrownBy(() -> importService.importLearningPlans(body(
+                "[{\"title\":\"Bread\",\"ownerId\":\"" + OWNER_ID + "\"}]")))
+                .isInstanceOf(BulkOperationException.class);
+        verify(domainEventPublisher, never()).learningPlansImported(anyList());
+    }
+
+    @Test
+    void progressUpdatesAreValidatedAgainstUsersPlansAndRatings() {
+        BulkImportReport report = importService.importProgressUpdates(body("["
+                + "{\"title\":\"Week 1\",\"userId\":\"" + OWNER_ID + "\",\"relatedPlanId\":\"" + PLAN_ID + "\"},"
+                + "{\"title\":\"Week 2\",\"userId\":\"" + OWNER_ID + "\",\"rating\":6},"
+                + "{\"title\":\"Week 3\",\"userId\":\"" + OWNER_ID + "\",\"hoursSpent\":-2},"
+                + "{\"title\":\"Week 4\",\"userId\":\"" + OWNER_ID + "\",\"relatedPlanId\":\"missing\"}"
+                + "]"));
+
+        assertThat(report.getResults()).extracting(BulkImportReport.ItemResult::getMessage)
+                .containsExactly(null, "Rating must be between 1 and 5", "Hours spent must not be negative",
+                        "Learning plan not found with id: missing");
+        verify(domainEventPublisher).progressUpdatesImported(anyList());
+        verify(domainEventPublisher, never()).learningPlansImported(anyList());
+    }
+
+    @Test
+    void emptyBodyWritesNothing() {
+        BulkImportReport report = importService.importLearningPlans(body("[]"));
+
+        assertThat(report.getResults()).isEmpty();
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+    }
+
+    private List<LearningPlan> insertedPlans() {
+        List<List<LearningPlan>> inserts = inserts();
+        assertThat(inserts).hasSize(1);
+        return inserts.get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<LearningPlan>> inserts() {
+        ArgumentCaptor<List<Object>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulk, atLeastOnce()).insert(inserted.capture());
+        return inserted.getAllValues().stream()
+                .map(batch -> batch.stream().map(LearningPlan.class::cast).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
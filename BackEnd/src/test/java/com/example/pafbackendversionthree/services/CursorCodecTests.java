@@ -0,0 +1,157 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.CursorPage;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CursorCodecTests {
+
+    @Test
+    void cursorRoundTripsSortValueAndId() {
+        String id = new ObjectId().toHexString();
+
+        CursorCodec.Position position = CursorCodec.decode(CursorCodec.encode(42L, id));
+
+        assertThat(position.getSortValue()).isEqualTo(42L);
+        assertThat(position.getId().toHexString()).isEqualTo(id);
+    }
+
+    @Test
+    void cursorWithoutSortValueRoundTrips() {
+        String id = new ObjectId().toHexString();
+
+        CursorCodec.Position position = CursorCodec.decode(CursorCodec.encode(null, id));
+
+        assertThat(position.getSortValue()).isNull();
+        assertThat(position.getId().toHexString()).isEqualTo(id);
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() {
+        assertThatThrownBy(() -> CursorCodec.decode("not a cursor"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    void cursorWithoutSortValueIsRejectedForASortedFeed() {
+        CursorCodec.Position position = new CursorCodec.Position(null, new ObjectId());
+
+        assertThatThrownBy(() -> CursorCodec.after("viewCount", position))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void pageSizeIsDefaultedAndCapped() {
+        assertThat(CursorCodec.pageSize(0)).isEqualTo(CursorCodec.DEFAULT_PAGE_SIZE);
+        assertThat(CursorCodec.pageSize(-5)).isEqualTo(CursorCodec.DEFAULT_PAGE_SIZE);
+        assertThat(CursorCodec.pageSize(25)).isEqualTo(25);
+        assertThat(CursorCodec.pageSize(10_000)).isEqualTo(CursorCodec.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    void afterSeeksPastTheLastRowWithIdAsTieBreaker() {
+        ObjectId id = new ObjectId();
+
+        Document criteria = CursorCodec.after("viewCount", new CursorCodec.Position(7L, id)).getCriteriaObject();
+
+        assertThat(criteria).isEqualTo(new Document("$or", List.of(
+                new Document("viewCount", new Document("$lt", 7L)),
+                new Document("$and", List.of(
+                        new Document("viewCount", 7L),
+                        new Document("id", new Document("$lt", id)))))));
+    }
+
+    @Test
+    void afterOnIdOnlyFeedIsARangeOnId() {
+        ObjectId id = new ObjectId();
+
+        Document criteria = CursorCodec.after(null, new CursorCodec.Position(null, id)).getCriteriaObject();
+
+        assertThat(criteria).isEqualTo(new Document("id", new Document("$lt", id)));
+    }
+
+    @Test
+    void fullPageReturnsCursorOfItsLastRowAndFetchesOneExtra() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        List<LearningPlan> rows = plans(4, 100);
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(rows);
+
+        CursorPage<LearningPlan> page = CursorCodec.fetch(mongoTemplate, new Query(), LearningPlan.class,
+                "viewCount", plan -> (long) plan.getViewCount(), LearningPlan::getId, null, 3);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LearningPlan.class));
+        assertThat(query.getValue().getLimit()).isEqualTo(4);
+        assertThat(query.getValue().getSortObject())
+                .isEqualTo(new Document("viewCount", -1).append("id", -1));
+
+        assertThat(page.getItems()).containsExactlyElementsOf(rows.subList(0, 3));
+        assertThat(page.isHasMore()).isTrue();
+        CursorCodec.Position next = CursorCodec.decode(page.getNextCursor());
+        assertThat(next.getSortValue()).isEqualTo(98L);
+        assertThat(next.getId().toHexString()).isEqualTo(rows.get(2).getId());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        List<LearningPlan> rows = plans(2, 100);
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(rows);
+
+        CursorPage<LearningPlan> page = CursorCodec.fetch(mongoTemplate, new Query(), LearningPlan.class,
+                null, plan -> null, LearningPlan::getId, null, 3);
+
+        assertThat(page.getItems()).containsExactlyElementsOf(rows);
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void cursorNarrowsTheQueryInsteadOfSkipping() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(List.of());
+        ObjectId last = new ObjectId();
+        Query query = new Query(Criteria.where("isPublic").is(true));
+
+        CursorCodec.fetch(mongoTemplate, query, LearningPlan.class, null, plan -> null, LearningPlan::getId,
+                CursorCodec.encode(null, last.toHexString()), 10);
+
+        assertThat(query.getSkip()).isZero();
+        assertThat(query.getQueryObject())
+                .isEqualTo(new Document("isPublic", true).append("id", new Document("$lt", last)));
+        assertThat(CursorCodec.sort(null)).isEqualTo(Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    // Plans in descending viewCount order, as the database would return them
+    private static List<LearningPlan> plans(int count, int topViews) {
+        List<LearningPlan> plans = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LearningPlan plan = new LearningPlan();
+            plan.setId(new ObjectId().toHexString());
+            plan.setViewCount(topViews - i);
+            plans.add(plan);
+        }
+        return plans;
+    }
+}
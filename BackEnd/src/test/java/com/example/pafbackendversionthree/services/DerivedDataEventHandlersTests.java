@@ -0,0 +1,144 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DerivedDataEventHandlersTests {
+
+    private LearningPlanSearchIndex searchIndex;
+    private TrendingLearningPlans trending;
+    private HomeFeedService homeFeed;
+    private OutboxChangeStream changeStream;
+    private Consumer<OutboxEvent> handler;
+    private Consumer<OutboxEvent> localHandler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        DomainEventBus domainEventBus = mock(DomainEventBus.class);
+        searchIndex = mock(LearningPlanSearchIndex.class);
+        trending = mock(TrendingLearningPlans.class);
+        homeFeed = mock(HomeFeedService.class);
+        changeStream = mock(OutboxChangeStream.class);
+        new DerivedDataEventHandlers(domainEventBus, changeStream, searchIndex, trending, homeFeed).register();
+        ArgumentCaptor<Consumer<OutboxEvent>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(domainEventBus).subscribe(subscriber.capture());
+        handler = subscriber.getValue();
+        ArgumentCaptor<Consumer<OutboxEvent>> localSubscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(domainEventBus).subscribeLocal(localSubscriber.capture());
+        localHandler = localSubscriber.getValue();
+    }
+
+    @Test
+    void publicUpdateIsFannedOut() {
+        Date createdAt = new Date();
+
+        handler.accept(event("e1", OutboxEvent.Type.PROGRESS_UPDATE_CREATED, "update-1",
+                Map.of("relatedPlanId", "plan-1", "isPublic", true, "createdAt", createdAt)));
+
+        verify(homeFeed).fanOut("update-1", "plan-1", true, createdAt);
+    }
+
+    @Test
+    void updateMadePrivateLeavesTheFeeds() {
+        handler.accept(event("e1", OutboxEvent.Type.PROGRESS_UPDATE_UPDATED, "update-1",
+                Map.of("relatedPlanId", "plan-1", "isPublic", false)));
+
+        verify(homeFeed).remove("update-1");
+        verify(homeFeed, never()).fanOut(anyString(), anyString(), anyBoolean(), any());
+    }
+
+    @Test
+    void updateMadePublicAgainIsPushedBack() {
+        Date createdAt = new Date();
+
+        handler.accept(event("e1", OutboxEvent.Type.PROGRESS_UPDATE_UPDATED, "update-1",
+                Map.of("relatedPlanId", "plan-1", "isPublic", true, "createdAt", createdAt)));
+
+        verify(homeFeed).fanOut("update-1", "plan-1", true, createdAt);
+        verify(homeFeed, never()).remove(anyString());
+    }
+
+    @Test
+    void deletedUpdateLeavesTheFeeds() {
+        handler.accept(event("e1", OutboxEvent.Type.PROGRESS_UPDATE_DELETED, "update-1", Map.of()));
+
+        verify(homeFeed).remove("update-1");
+    }
+
+    @Test
+    void redeliveredCompletionIsCountedOnce() {
+        OutboxEvent completed = event("e1", OutboxEvent.Type.LEARNING_UNIT_COMPLETED, "plan-1", Map.of("unitId", "u1"));
+
+        handler.accept(completed);
+        handler.accept(completed);
+
+        verify(trending, times(1)).recordCompletion("plan-1");
+    }
+
+    @Test
+    void forkReachesTheFeedAndTrendingOnceAndTheIndexOfThisInstance() {
+        OutboxEvent forked = event("e1", OutboxEvent.Type.LEARNING_PLAN_FORKED, "plan-1",
+                Map.of("userId", "user-1", "forkId", "fork-1"));
+
+        handler.accept(forked);
+        localHandler.accept(forked);
+        localHandler.accept(forked);
+
+        verify(homeFeed, times(1)).onFork("plan-1", "user-1");
+        verify(searchIndex, times(2)).indexById("fork-1");
+        verify(trending, times(1)).recordFork("plan-1");
+    }
+
+    @Test
+    void deletedPlanLeavesTheSearchIndex() {
+        localHandler.accept(event("e1", OutboxEvent.Type.LEARNING_PLAN_DELETED, "plan-1", Map.of()));
+
+        verify(searchIndex).remove("plan-1");
+    }
+
+    @Test
+    void sharedDeliveryLeavesPerInstanceStateAlone() {
+        handler.accept(event("e1", OutboxEvent.Type.LEARNING_PLAN_UPDATED, "plan-1", Map.of()));
+
+        verify(searchIndex, never()).indexById(anyString());
+    }
+
+    @Test
+    void broadcastLeavesSharedScoresAlone() {
+        localHandler.accept(event("e1", OutboxEvent.Type.LEARNING_UNIT_COMPLETED, "plan-1", Map.of("unitId", "u1")));
+
+        verify(trending, never()).recordCompletion(anyString());
+    }
+
+    @Test
+    void lostChangeStreamRebuildsTheSearchIndex() {
+        ArgumentCaptor<Runnable> resync = ArgumentCaptor.forClass(Runnable.class);
+        verify(changeStream).onResync(resync.capture());
+
+        resync.getValue().run();
+
+        verify(searchIndex).rebuild();
+    }
+
+    private static OutboxEvent event(String id, OutboxEvent.Type type, String aggregateId, Map<String, Object> payload) {
+        OutboxEvent event = new OutboxEvent(type, aggregateId, new HashMap<>(payload));
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DomainEventPublisherTests {
+
+    private MongoTemplate mongoTemplate;
+    private OwnerListVersions ownerListVersions;
+    private DomainEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ownerListVersions = mock(OwnerListVersions.class);
+        publisher = new DomainEventPublisher(mongoTemplate, ownerListVersions);
+    }
+
+    @Test
+    void importedPlansAreRecordedWithOneInsertAndEachOwnerBumpedOnce() {
+        LearningPlan first = plan("owner-1");
+        LearningPlan second = plan("owner-2");
+        LearningPlan third = plan("owner-1");
+
+        publisher.learningPlansImported(List.of(first, second, third));
+
+        List<OutboxEvent> events = inserted();
+        assertThat(events).extracting(OutboxEvent::getAggregateId)
+                .containsExactly(first.getId(), second.getId(), third.getId());
+        assertThat(events).extracting(OutboxEvent::getType).containsOnly(OutboxEvent.Type.LEARNING_PLAN_CREATED);
+        assertThat(events.get(1).getString("ownerId")).isEqualTo("owner-2");
+        verify(ownerListVersions).learningPlansChanged(Set.of("owner-1", "owner-2"));
+        verify(ownerListVersions).progressUpdatesChanged(Set.of());
+    }
+
+    @Test
+    void importedUpdatesBumpTheirAuthors() {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(new ObjectId().toHexString());
+        update.setUser(user("author-1"));
+        update.setPublic(true);
+
+        publisher.progressUpdatesImported(List.of(update));
+
+        OutboxEvent event = inserted().get(0);
+        assertThat(event.getType()).isEqualTo(OutboxEvent.Type.PROGRESS_UPDATE_CREATED);
+        assertThat(event.getPayload()).containsEntry("isPublic", true).containsEntry("relatedPlanId", null);
+        verify(ownerListVersions).progressUpdatesChanged(Set.of("author-1"));
+    }
+
+    @Test
+    void emptyImportRecordsNothing() {
+        publisher.learningPlansImported(List.of());
+
+        verify(mongoTemplate, never()).insert(anyCollection(), eq(OutboxEvent.class));
+        verifyNoInteractions(ownerListVersions);
+    }
+
+    @Test
+    void deletionIsKeyedByThePlanAndCarriesTheOwnerReadBeforehand() {
+        publisher.learningPlanDeleted("plan-1", "owner-1");
+
+        OutboxEvent event = inserted().get(0);
+        assertThat(event.getType()).isEqualTo(OutboxEvent.Type.LEARNING_PLAN_DELETED);
+        assertThat(event.getAggregateId()).isEqualTo("plan-1");
+        assertThat(event.isDispatched()).isFalse();
+        verify(ownerListVersions).learningPlansChanged(Set.of("owner-1"));
+    }
+
+    @Test
+    void deletedUpdateBumpsItsAuthor() {
+        publisher.progressUpdateDeleted("update-1", "author-1");
+
+        assertThat(inserted().get(0).getType()).isEqualTo(OutboxEvent.Type.PROGRESS_UPDATE_DELETED);
+        verify(ownerListVersions).progressUpdatesChanged(Set.of("author-1"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<OutboxEvent> inserted() {
+        ArgumentCaptor<Collection<OutboxEvent>> events = ArgumentCaptor.forClass(Collection.class);
+        verify(mongoTemplate).insert(events.capture(), eq(OutboxEvent.class));
+        return new ArrayList<>(events.getValue());
+    }
+
+    private static LearningPlan plan(String ownerId) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setOwner(user(ownerId));
+        return plan;
+    }
+
+    private static AppUser user(String id) {
+        AppUser user = mock(AppUser.class);
+        when(user.getId()).thenReturn(id);
+        return user;
+    }
+}
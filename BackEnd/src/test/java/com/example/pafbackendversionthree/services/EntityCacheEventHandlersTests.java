@@ -0,0 +1,76 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class EntityCacheEventHandlersTests {
+
+    private EntityCache<Object> learningPlanCache;
+    private EntityCache<Object> progressUpdateCache;
+    private Consumer<OutboxEvent> handler;
+    private Runnable resync;
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setUp() {
+        DomainEventBus domainEventBus = mock(DomainEventBus.class);
+        OutboxChangeStream changeStream = mock(OutboxChangeStream.class);
+        learningPlanCache = new EntityCache<>("learningPlans", 10, 60_000);
+        progressUpdateCache = new EntityCache<>("progressUpdates", 10, 60_000);
+        new EntityCacheEventHandlers(domainEventBus, changeStream, (EntityCache) learningPlanCache,
+                (EntityCache) progressUpdateCache).register();
+        ArgumentCaptor<Consumer<OutboxEvent>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(domainEventBus).subscribeLocal(subscriber.capture());
+        handler = subscriber.getValue();
+        ArgumentCaptor<Runnable> onResync = ArgumentCaptor.forClass(Runnable.class);
+        verify(changeStream).onResync(onResync.capture());
+        resync = onResync.getValue();
+    }
+
+    @Test
+    void changeMadeOnAnotherInstanceDropsTheCachedEntity() {
+        learningPlanCache.get("plan-1", () -> "before");
+        progressUpdateCache.get("update-1", () -> "before");
+
+        handler.accept(event(OutboxEvent.Type.LEARNING_UNIT_COMPLETED, "plan-1"));
+        handler.accept(event(OutboxEvent.Type.PROGRESS_UPDATE_UPDATED, "update-1"));
+
+        assertThat(learningPlanCache.get("plan-1", () -> "after")).isEqualTo("after");
+        assertThat(progressUpdateCache.get("update-1", () -> "after")).isEqualTo("after");
+    }
+
+    @Test
+    void forkDropsTheCachedParent() {
+        learningPlanCache.get("parent", () -> "before");
+
+        handler.accept(event(OutboxEvent.Type.LEARNING_PLAN_FORKED, "parent"));
+
+        assertThat(learningPlanCache.get("parent", () -> "after")).isEqualTo("after");
+    }
+
+    @Test
+    void lostBroadcastDropsBothCaches() {
+        learningPlanCache.get("plan-1", () -> "before");
+        progressUpdateCache.get("update-1", () -> "before");
+
+        resync.run();
+
+        assertThat(learningPlanCache.get("plan-1", () -> "after")).isEqualTo("after");
+        assertThat(progressUpdateCache.get("update-1", () -> "after")).isEqualTo("after");
+    }
+
+    private static OutboxEvent event(OutboxEvent.Type type, String aggregateId) {
+        OutboxEvent event = new OutboxEvent();
+        event.setType(type);
+        event.setAggregateId(aggregateId);
+        return event;
+    }
+}
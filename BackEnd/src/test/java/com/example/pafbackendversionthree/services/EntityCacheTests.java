@@ -0,0 +1,172 @@
+package com.example.pafbackendversionthree.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityCacheTests {
+
+    @Test
+    void secondReadIsAHit() {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("a", () -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(cache.get("a", () -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats()).containsEntry("hits", 1L).containsEntry("misses", 1L).containsEntry("size", 1L);
+    }
+
+    @Test
+    void invalidatedKeyIsLoadedAgain() {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 60_000);
+        cache.get("a", () -> "old");
+
+        cache.invalidate("a");
+
+        assertThat(cache.get("a", () -> "new")).isEqualTo("new");
+    }
+
+    @Test
+    void expiredEntryIsLoadedAgain() throws InterruptedException {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 1);
+        cache.get("a", () -> "old");
+        Thread.sleep(5);
+
+        assertThat(cache.get("a", () -> "new")).isEqualTo("new");
+        assertThat(cache.stats()).containsEntry("hits", 0L).containsEntry("misses", 2L);
+    }
+
+    @Test
+    void sizeIsBoundedByMaximumSize() {
+        EntityCache<String> cache = new EntityCache<>("plans", 2, 60_000);
+        for (String key : List.of("a", "b", "c", "d")) {
+            cache.get(key, () -> key);
+        }
+
+        assertThat(cache.stats().get("size")).isEqualTo(2L);
+        assertThat(cache.stats().get("evictions")).isEqualTo(2L);
+    }
+
+    @Test
+    void missingEntityIsNotCached() {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 60_000);
+        cache.get("a", () -> null);
+
+        assertThat(cache.get("a", () -> "created")).isEqualTo("created");
+    }
+
+    @Test
+    void getAllLoadsOnlyTheMissingKeysInOneCall() {
+        EntityCache<String> cache = new EntityCache<>("updates", 10, 60_000);
+        cache.get("a", () -> "cached");
+        List<Set<String>> loads = new ArrayList<>();
+
+        Map<String, String> values = cache.getAll(List.of("a", "b", "gone"), missing -> {
+            loads.add(missing);
+            return Map.of("b", "loaded");
+        });
+
+        assertThat(values).containsOnly(Map.entry("a", "cached"), Map.entry("b", "loaded"));
+        assertThat(loads).containsExactly(Set.of("b", "gone"));
+        assertThat(cache.get("b", () -> "again")).isEqualTo("loaded");
+    }
+
+    @Test
+    void getAllDoesNotStoreAValueInvalidatedWhileLoading() {
+        EntityCache<String> cache = new EntityCache<>("updates", 10, 60_000);
+
+        Map<String, String> values = cache.getAll(List.of("a", "b"), missing -> {
+            cache.invalidate("a");
+            return Map.of("a", "stale", "b", "current");
+        });
+
+        assertThat(values).containsEntry("a", "stale");
+        assertThat(cache.get("a", () -> "fresh")).isEqualTo("fresh");
+        assertThat(cache.get("b", () -> "again")).isEqualTo("current");
+    }
+
+    @Test
+    void loadRacingAnInvalidationIsReturnedButNotStored() {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 60_000);
+
+        String loaded = cache.get("a", () -> {
+            // The write lands while the pre-write value is being read
+            cache.invalidate("a");
+            return "stale";
+        });
+
+        assertThat(loaded).isEqualTo("stale");
+        assertThat(cache.get("a", () -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    void invalidatingAnotherKeyDoesNotDropALoad() {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 60_000);
+
+        cache.get("a", () -> {
+            cache.invalidate("b");
+            return "a";
+        });
+
+        assertThat(cache.get("a", () -> "reloaded")).isEqualTo("a");
+    }
+
+    @Test
+    void invalidateAllDropsInFlightLoads() {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 60_000);
+        cache.get("b", () -> "b");
+
+        cache.get("a", () -> {
+            cache.invalidateAll();
+            return "stale";
+        });
+
+        assertThat(cache.get("a", () -> "fresh")).isEqualTo("fresh");
+        assertThat(cache.get("b", () -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    void invalidationDuringConcurrentLoadsKeepsEveryStaleValueOut() throws Exception {
+        EntityCache<String> cache = new EntityCache<>("plans", 10, 60_000);
+        CountDownLatch loading = new CountDownLatch(2);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.get("a", () -> awaitWrite(loading, invalidated)));
+            Future<String> second = executor.submit(() -> cache.get("a", () -> awaitWrite(loading, invalidated)));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            cache.invalidate("a");
+            invalidated.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("stale");
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("stale");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.get("a", () -> "fresh")).isEqualTo("fresh");
+    }
+
+    private static String awaitWrite(CountDownLatch loading, CountDownLatch invalidated) {
+        loading.countDown();
+        try {
+            invalidated.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "stale";
+    }
+}
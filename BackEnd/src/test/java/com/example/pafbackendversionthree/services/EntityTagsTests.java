@@ -0,0 +1,133 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EntityTagsTests {
+
+    private static final Date UPDATED_AT = new Date(1_760_000_000_000L);
+
+    private MongoTemplate mongoTemplate;
+    private OwnerListVersions ownerListVersions;
+    private EntityTags entityTags;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ownerListVersions = mock(OwnerListVersions.class);
+        entityTags = new EntityTags(mongoTemplate, ownerListVersions);
+    }
+
+    @Test
+    void ifNoneMatchComparesWeakly() {
+        String tag = "W/\"abc\"";
+
+        assertThat(EntityTags.matches("W/\"abc\"", tag)).isTrue();
+        assertThat(EntityTags.matches("\"abc\"", tag)).isTrue();
+        assertThat(EntityTags.matches("W/\"abc\"", "\"abc\"")).isTrue();
+        assertThat(EntityTags.matches("\"other\", W/\"abc\"", tag)).isTrue();
+        assertThat(EntityTags.matches("*", tag)).isTrue();
+        assertThat(EntityTags.matches("\"other\"", tag)).isFalse();
+        assertThat(EntityTags.matches("abc", tag)).isFalse();
+        assertThat(EntityTags.matches(null, tag)).isFalse();
+        assertThat(EntityTags.matches("*", null)).isFalse();
+    }
+
+    @Test
+    void planTagFromTheProjectionMatchesTheTagOfTheResponse() {
+        LearningPlan plan = plan();
+        when(mongoTemplate.findOne(any(Query.class), eq(LearningPlan.class))).thenReturn(plan);
+
+        EntityTags.PlanTag current = entityTags.learningPlan("plan-1");
+
+        assertThat(current.tag()).startsWith("W/\"")
+                .isEqualTo(EntityTags.of(new LearningPlanDTO.LearningPlanResponse(plan, null)));
+        assertThat(current.isPublic()).isTrue();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findOne(query.capture(), eq(LearningPlan.class));
+        assertThat(query.getValue().getFieldsObject().keySet())
+                .containsExactlyInAnyOrder("updatedAt", "forkCount", "completionPercentage", "isPublic");
+    }
+
+    @Test
+    void planTagIgnoresViewsButFollowsCountersBumpedInPlace() {
+        LearningPlan plan = plan();
+        String before = EntityTags.of(new LearningPlanDTO.LearningPlanResponse(plan, null));
+
+        plan.setViewCount(plan.getViewCount() + 1);
+        String viewed = EntityTags.of(new LearningPlanDTO.LearningPlanResponse(plan, null));
+        plan.setForkCount(plan.getForkCount() + 1);
+        String forked = EntityTags.of(new LearningPlanDTO.LearningPlanResponse(plan, null));
+
+        assertThat(viewed).isEqualTo(before);
+        assertThat(forked).isNotEqualTo(before);
+    }
+
+    @Test
+    void updateTagIsStrongAndFollowsItsCounters() {
+        ProgressUpdate update = update();
+        when(mongoTemplate.findOne(any(Query.class), eq(ProgressUpdate.class))).thenReturn(update);
+        String current = entityTags.progressUpdate("update-1");
+
+        update.setLikeCount(update.getLikeCount() + 1);
+
+        assertThat(current).startsWith("\"")
+                .isNotEqualTo(EntityTags.of(new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null)));
+        update.setLikeCount(update.getLikeCount() - 1);
+        assertThat(current).isEqualTo(EntityTags.of(new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null)));
+    }
+
+    @Test
+    void missingDocumentsHaveNoTag() {
+        assertThat(entityTags.learningPlan("plan-1")).isNull();
+        assertThat(entityTags.progressUpdate("update-1")).isNull();
+    }
+
+    @Test
+    void listTagsChangeWithTheOwnersCounterOnly() {
+        when(ownerListVersions.learningPlans("owner-1")).thenReturn(4L).thenReturn(4L).thenReturn(5L);
+
+        String first = entityTags.ownerLearningPlans("owner-1");
+        String same = entityTags.ownerLearningPlans("owner-1");
+        String bumped = entityTags.ownerLearningPlans("owner-1");
+
+        assertThat(first).startsWith("W/").isEqualTo(same).isNotEqualTo(bumped);
+        assertThat(entityTags.userProgressUpdates("owner-1")).isNotEqualTo(first.substring(2));
+    }
+
+    private static LearningPlan plan() {
+        LearningPlan plan = new LearningPlan();
+        plan.setId("plan-1");
+        plan.setUpdatedAt(UPDATED_AT);
+        plan.setForkCount(2);
+        plan.setCompletionPercentage(50.0);
+        plan.setPublic(true);
+        return plan;
+    }
+
+    private static ProgressUpdate update() {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId("update-1");
+        update.setUpdatedAt(UPDATED_AT);
+        update.setLikeCount(3);
+        update.setCommentCount(1);
+        update.setViewCount(9);
+        return update;
+    }
+}
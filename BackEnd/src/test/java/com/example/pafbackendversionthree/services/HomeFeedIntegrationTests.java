@@ -0,0 +1,99 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.HomeFeedBucket;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HomeFeedIntegrationTests extends MongoIntegrationTests {
+
+    private static final int BUCKET_SIZE = 3;
+
+    private HomeFeedService homeFeed;
+    private ObjectId planId;
+
+    @BeforeEach
+    void setUp() {
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenAnswer(invocation -> {
+            List<ProgressUpdate> updates = invocation.getArgument(0);
+            return updates.stream()
+                    .map(update -> new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null))
+                    .collect(Collectors.toList());
+        });
+        homeFeed = new HomeFeedService(mongoTemplate, referenceResolver, new EntityCache<>("updates", 100, 60_000),
+                BUCKET_SIZE, 1000);
+
+        planId = new ObjectId();
+        mongoTemplate.getCollection("learning_plans").insertMany(List.of(
+                new Document("_id", planId).append("owner", new DBRef("users", "owner"))
+                        .append("isPublic", true).append("forkCount", 1),
+                new Document("_id", new ObjectId()).append("owner", new DBRef("users", "forker"))
+                        .append("forkedFromId", planId.toHexString())));
+    }
+
+    @Test
+    void bucketsKeepTheNewestEntriesAndIgnoreRedeliveries() {
+        for (int i = 1; i <= 5; i++) {
+            String updateId = publicUpdate(i);
+            homeFeed.fanOut(updateId, planId.toHexString(), true, new Date(i * 1_000L));
+            // A redelivered event fails the bucket filter and its upsert hits the _id
+            homeFeed.fanOut(updateId, planId.toHexString(), true, new Date(i * 1_000L));
+        }
+
+        for (String userId : List.of("owner", "forker")) {
+            HomeFeedBucket bucket = mongoTemplate.findById(userId, HomeFeedBucket.class);
+            assertThat(bucket.getEntries()).extracting(HomeFeedBucket.Entry::getCreatedAt)
+                    .containsExactly(new Date(5_000), new Date(4_000), new Date(3_000));
+        }
+    }
+
+    @Test
+    void removedUpdateLeavesEveryBucketAndTheFeed() {
+        String kept = publicUpdate(1);
+        String removed = publicUpdate(2);
+        homeFeed.fanOut(kept, planId.toHexString(), true, new Date(1_000));
+        homeFeed.fanOut(removed, planId.toHexString(), true, new Date(2_000));
+
+        homeFeed.remove(removed);
+
+        assertThat(homeFeed.getFeed("forker", 10)).extracting(ProgressUpdateDTO.ProgressUpdateResponse::getId)
+                .containsExactly(kept);
+        assertThat(mongoTemplate.findById("owner", HomeFeedBucket.class).getEntries())
+                .extracting(HomeFeedBucket.Entry::getUpdateId).containsExactly(kept);
+    }
+
+    @Test
+    void forksMadeBeforeTheFeedAreBackfilledOnce() {
+        String earlier = publicUpdate(1);
+
+        homeFeed.backfillForkLinks();
+        homeFeed.backfillForkLinks();
+
+        HomeFeedBucket bucket = mongoTemplate.findById("forker", HomeFeedBucket.class);
+        assertThat(bucket.getForkedPlanIds()).containsExactly(planId.toHexString());
+        assertThat(bucket.getEntries()).extracting(HomeFeedBucket.Entry::getUpdateId).containsExactly(earlier);
+    }
+
+    private String publicUpdate(long createdAt) {
+        ObjectId id = new ObjectId();
+        mongoTemplate.getCollection("progress_updates").insertOne(new Document("_id", id)
+                .append("relatedPlan", new DBRef("learning_plans", planId))
+                .append("isPublic", true)
+                .append("createdAt", new Date(createdAt * 1_000)));
+        return id.toHexString();
+    }
+}
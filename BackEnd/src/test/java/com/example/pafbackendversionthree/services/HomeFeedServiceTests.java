@@ -0,0 +1,302 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.HomeFeedBucket;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HomeFeedServiceTests {
+
+    private static final int FAN_OUT_THRESHOLD = 100;
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private HomeFeedService homeFeed;
+
+    private final List<LearningPlan> forks = new ArrayList<>();
+    private final List<LearningPlan> popularPlans = new ArrayList<>();
+    private final List<ProgressUpdate> stored = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HomeFeedBucket.class)).thenReturn(bulk);
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenAnswer(invocation -> {
+            Document filter = ((Query) invocation.getArgument(0)).getQueryObject();
+            return filter.containsKey("forkCount") ? popularPlans : forks;
+        });
+        // Answers like MongoDB would: stored public updates matching the ids or plans asked for
+        when(mongoTemplate.find(any(Query.class), eq(ProgressUpdate.class))).thenAnswer(invocation -> {
+            Document filter = ((Query) invocation.getArgument(0)).getQueryObject();
+            return stored.stream()
+                    .filter(ProgressUpdate::isPublic)
+                    .filter(update -> matches(filter, update))
+                    .collect(Collectors.toList());
+        });
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenAnswer(invocation -> {
+            List<ProgressUpdate> updates = invocation.getArgument(0);
+            return updates.stream()
+                    .map(update -> new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null))
+                    .collect(Collectors.toList());
+        });
+        homeFeed = new HomeFeedService(mongoTemplate, referenceResolver, new EntityCache<>("updates", 100, 60_000),
+                200, FAN_OUT_THRESHOLD);
+    }
+
+    @Test
+    void publicUpdateIsPushedToTheOwnerAndEveryForker() {
+        LearningPlan plan = plan("owner", 2);
+        forks.add(plan("forker-1", 0));
+        forks.add(plan("forker-2", 0));
+        when(mongoTemplate.findOne(any(Query.class), eq(LearningPlan.class))).thenReturn(plan);
+        String updateId = new ObjectId().toHexString();
+
+        homeFeed.fanOut(updateId, plan.getId(), true, new Date());
+
+        ArgumentCaptor<Query> buckets = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> push = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(3)).upsert(buckets.capture(), push.capture());
+        assertThat(buckets.getAllValues()).extracting(query -> query.getQueryObject().get("_id"))
+                .containsExactly("owner", "forker-1", "forker-2");
+        // A bucket already holding the update does not match, so a redelivery is not pushed twice
+        assertThat(buckets.getValue().getQueryObject().get("entries.updateId"))
+                .isEqualTo(new Document("$ne", updateId));
+        Update.Modifiers each = (Update.Modifiers) push.getValue().getUpdateObject()
+                .get("$push", Document.class).get("entries");
+        assertThat(each.getModifiers()).extracting(Update.Modifier::getKey)
+                .containsExactlyInAnyOrder("$each", "$sort", "$slice");
+        assertThat(each.getModifiers()).filteredOn(modifier -> modifier.getKey().equals("$slice"))
+                .extracting(Update.Modifier::getValue).containsExactly(200);
+        verify(bulk).execute();
+    }
+
+    @Test
+    void privateUpdatesAndUpdatesWithoutAPlanAreNotPushed() {
+        homeFeed.fanOut(new ObjectId().toHexString(), new ObjectId().toHexString(), false, new Date());
+        homeFeed.fanOut(new ObjectId().toHexString(), null, true, new Date());
+
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(HomeFeedBucket.class));
+    }
+
+    @Test
+    void popularPlanOnlyPushesToItsOwner() {
+        LearningPlan plan = plan("owner", FAN_OUT_THRESHOLD + 1);
+        forks.add(plan("forker", 0));
+        when(mongoTemplate.findOne(any(Query.class), eq(LearningPlan.class))).thenReturn(plan);
+
+        homeFeed.fanOut(new ObjectId().toHexString(), plan.getId(), true, new Date());
+
+        ArgumentCaptor<Query> buckets = ArgumentCaptor.forClass(Query.class);
+        verify(bulk).upsert(buckets.capture(), any(Update.class));
+        assertThat(buckets.getValue().getQueryObject().get("_id")).isEqualTo("owner");
+    }
+
+    @Test
+    void repeatedPushIsTolerated() {
+        LearningPlan plan = plan("owner", 0);
+        when(mongoTemplate.findOne(any(Query.class), eq(LearningPlan.class))).thenReturn(plan);
+        when(bulk.execute()).thenThrow(bulkFailure(11000));
+
+        homeFeed.fanOut(new ObjectId().toHexString(), plan.getId(), true, new Date());
+    }
+
+    @Test
+    void otherBulkFailuresPropagate() {
+        LearningPlan plan = plan("owner", 0);
+        when(mongoTemplate.findOne(any(Query.class), eq(LearningPlan.class))).thenReturn(plan);
+        when(bulk.execute()).thenThrow(bulkFailure(2));
+
+        assertThatThrownBy(() -> homeFeed.fanOut(new ObjectId().toHexString(), plan.getId(), true, new Date()))
+                .isInstanceOf(BulkOperationException.class);
+    }
+
+    @Test
+    void feedIsTheBucketNewestFirstWithoutUpdatesMadePrivateSince() {
+        ProgressUpdate older = update(null, 1_000, true);
+        ProgressUpdate newer = update(null, 2_000, true);
+        ProgressUpdate madePrivate = update(null, 3_000, false);
+        HomeFeedBucket bucket = bucket(newer, madePrivate, older);
+        when(mongoTemplate.findById("reader", HomeFeedBucket.class)).thenReturn(bucket);
+
+        List<ProgressUpdateDTO.ProgressUpdateResponse> feed = homeFeed.getFeed("reader", 10);
+
+        assertThat(feed).extracting(ProgressUpdateDTO.ProgressUpdateResponse::getId)
+                .containsExactly(newer.getId(), older.getId());
+    }
+
+    @Test
+    void cachedUpdatesAreServedWithoutAQuery() {
+        ProgressUpdate first = update(null, 1_000, true);
+        when(mongoTemplate.findById("reader", HomeFeedBucket.class)).thenReturn(bucket(first));
+        homeFeed.getFeed("reader", 10);
+
+        ProgressUpdate second = update(null, 2_000, true);
+        when(mongoTemplate.findById("reader", HomeFeedBucket.class)).thenReturn(bucket(second, first));
+        List<ProgressUpdateDTO.ProgressUpdateResponse> feed = homeFeed.getFeed("reader", 10);
+
+        assertThat(feed).extracting(ProgressUpdateDTO.ProgressUpdateResponse::getId)
+                .containsExactly(second.getId(), first.getId());
+        ArgumentCaptor<Query> fetched = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(fetched.capture(), eq(ProgressUpdate.class));
+        assertThat(fetched.getValue().getQueryObject().get("id", Document.class).get("$in", Collection.class))
+                .containsExactly(second.getId());
+    }
+
+    @Test
+    void forksMadeBeforeTheFeedAreLinkedAndSeeded() {
+        LearningPlan parent = plan("owner", 1);
+        LearningPlan fork = plan("forker", 0);
+        fork.setForkedFromId(parent.getId());
+        forks.add(fork);
+        ProgressUpdate onParent = update(parent, 1_000, true);
+
+        homeFeed.backfillForkLinks();
+
+        ArgumentCaptor<Query> bucket = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> link = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).upsert(bucket.capture(), link.capture(), eq(HomeFeedBucket.class));
+        assertThat(bucket.getValue().getQueryObject()).isEqualTo(new Document("_id", "forker"));
+        Document update = link.getValue().getUpdateObject();
+        assertThat(update.get("$addToSet", Document.class).toString()).contains(parent.getId());
+        Update.Modifiers entries = (Update.Modifiers) update.get("$push", Document.class).get("entries");
+        assertThat(entries.getModifiers()).filteredOn(modifier -> modifier.getKey().equals("$each"))
+                .extracting(modifier -> ((Object[]) modifier.getValue())[0])
+                .extracting(entry -> ((HomeFeedBucket.Entry) entry).getUpdateId())
+                .containsExactly(onParent.getId());
+
+        // Marked, so the next startup does not read them again
+        ArgumentCaptor<Query> marked = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> mark = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(marked.capture(), mark.capture(), eq(LearningPlan.class));
+        assertThat(marked.getValue().getQueryObject().get("id", Document.class).get("$in", Collection.class))
+                .containsExactly(fork.getId());
+        assertThat(mark.getValue().getUpdateObject().get("$set", Document.class)).containsKey("homeFeedLinkedAt");
+    }
+
+    @Test
+    void backfillWithEveryForkLinkedWritesNothing() {
+        homeFeed.backfillForkLinks();
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), eq(HomeFeedBucket.class));
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(UpdateDefinition.class), eq(LearningPlan.class));
+    }
+
+    @Test
+    void updatesOnPopularForkedPlansArePulledAtReadTime() {
+        LearningPlan popular = plan("owner", FAN_OUT_THRESHOLD + 1);
+        popularPlans.add(popular);
+        homeFeed.refreshPopularPlans();
+        ProgressUpdate pushed = update(null, 1_000, true);
+        ProgressUpdate pulled = update(popular, 2_000, true);
+        HomeFeedBucket bucket = bucket(pushed);
+        bucket.getForkedPlanIds().add(popular.getId());
+        when(mongoTemplate.findById("reader", HomeFeedBucket.class)).thenReturn(bucket);
+
+        List<ProgressUpdateDTO.ProgressUpdateResponse> feed = homeFeed.getFeed("reader", 10);
+
+        assertThat(feed).extracting(ProgressUpdateDTO.ProgressUpdateResponse::getId)
+                .containsExactly(pulled.getId(), pushed.getId());
+    }
+
+    @Test
+    void userWithoutABucketHasAnEmptyFeed() {
+        assertThat(homeFeed.getFeed("reader", 10)).isEmpty();
+    }
+
+    @Test
+    void removedUpdateIsPulledFromEveryBucket() {
+        String updateId = new ObjectId().toHexString();
+
+        homeFeed.remove(updateId);
+
+        ArgumentCaptor<Query> buckets = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> pull = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(buckets.capture(), pull.capture(), eq(HomeFeedBucket.class));
+        assertThat(buckets.getValue().getQueryObject()).isEqualTo(new Document("entries.updateId", updateId));
+        assertThat(pull.getValue().getUpdateObject()).isEqualTo(new Document("$pull",
+                new Document("entries", new Document("updateId", updateId))));
+    }
+
+    private ProgressUpdate update(LearningPlan relatedPlan, long createdAt, boolean isPublic) {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(new ObjectId().toHexString());
+        update.setRelatedPlan(relatedPlan);
+        update.setCreatedAt(new Date(createdAt));
+        update.setPublic(isPublic);
+        stored.add(update);
+        return update;
+    }
+
+    // Either the visibility check on ids or the pull of updates on popular plans
+    @SuppressWarnings("unchecked")
+    private static boolean matches(Document filter, ProgressUpdate update) {
+        if (filter.containsKey("id")) {
+            return ((Collection<String>) filter.get("id", Document.class).get("$in")).contains(update.getId());
+        }
+        Collection<Object> planIds = (Collection<Object>) filter.get("relatedPlan.$id", Document.class).get("$in");
+        return update.getRelatedPlan() != null && planIds.contains(new ObjectId(update.getRelatedPlan().getId()));
+    }
+
+    private static HomeFeedBucket bucket(ProgressUpdate... updates) {
+        HomeFeedBucket bucket = new HomeFeedBucket();
+        bucket.setId("reader");
+        for (ProgressUpdate update : updates) {
+            bucket.getEntries().add(new HomeFeedBucket.Entry(update.getId(), null, update.getCreatedAt()));
+        }
+        return bucket;
+    }
+
+    private static LearningPlan plan(String ownerId, int forkCount) {
+        AppUser owner = mock(AppUser.class);
+        when(owner.getId()).thenReturn(ownerId);
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setOwner(owner);
+        plan.setPublic(true);
+        plan.setForkCount(forkCount);
+        return plan;
+    }
+
+    private static BulkOperationException bulkFailure(int code) {
+        return new BulkOperationException("bulk failed", new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(code, "write failed", new BsonDocument(), 0)),
+                null, new ServerAddress(), Set.of()));
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningAnalyticsDTO;
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import com.example.pafbackendversionthree.models.ProgressUpdateContribution;
+import com.example.pafbackendversionthree.models.UserLearningStats;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningAnalyticsServiceTests {
+
+    private static final Date CREATED_AT = Date.from(Instant.parse("2026-10-14T10:00:00Z"));
+    private static final String UPDATE_ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private Consumer<OutboxEvent> handler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        DomainEventBus domainEventBus = mock(DomainEventBus.class);
+        new LearningAnalyticsService(mongoTemplate, domainEventBus, 2).register();
+        ArgumentCaptor<Consumer<OutboxEvent>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(domainEventBus).subscribe(subscriber.capture());
+        handler = subscriber.getValue();
+    }
+
+    @Test
+    void createdUpdateAddsToEveryRollup() {
+        previousContribution(null);
+
+        handler.accept(updateEvent(OutboxEvent.Type.PROGRESS_UPDATE_CREATED, 3, "MILESTONE", 4));
+
+        assertThat(increments("user-1")).containsOnly(
+                Map.entry("updateCount", 1L),
+                Map.entry("hoursSpent", 3L),
+                Map.entry("ratingSum", 4L),
+                Map.entry("ratingCount", 1L),
+                Map.entry("byType.MILESTONE", 1L),
+                Map.entry("bySentiment.POSITIVE", 1L),
+                Map.entry("planHoursSpent.plan-1", 3L),
+                Map.entry("daily.2026-10-14.count", 1L),
+                Map.entry("daily.2026-10-14.hours", 3L),
+                Map.entry("weekly.2026-W42.count", 1L),
+                Map.entry("weekly.2026-W42.hours", 3L));
+    }
+
+    @Test
+    void editAppliesOnlyTheDifference() {
+        previousContribution(contribution(3, "MILESTONE", 4));
+
+        handler.accept(updateEvent(OutboxEvent.Type.PROGRESS_UPDATE_UPDATED, 5, "REFLECTION", 4));
+
+        assertThat(increments("user-1")).containsOnly(
+                Map.entry("hoursSpent", 2L),
+                Map.entry("byType.MILESTONE", -1L),
+                Map.entry("byType.REFLECTION", 1L),
+                Map.entry("planHoursSpent.plan-1", 2L),
+                Map.entry("daily.2026-10-14.hours", 2L),
+                Map.entry("weekly.2026-W42.hours", 2L));
+    }
+
+    @Test
+    void editChangingNothingCountedWritesNothing() {
+        previousContribution(contribution(3, "MILESTONE", 4));
+
+        handler.accept(updateEvent(OutboxEvent.Type.PROGRESS_UPDATE_UPDATED, 3, "MILESTONE", 4));
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), eq(UserLearningStats.class));
+    }
+
+    @Test
+    void deletedUpdateSubtractsItsContribution() {
+        previousContribution(contribution(3, "MILESTONE", null));
+
+        handler.accept(event(OutboxEvent.Type.PROGRESS_UPDATE_DELETED, UPDATE_ID, Map.of("userId", "user-1")));
+
+        assertThat(increments("user-1"))
+                .containsEntry("updateCount", -1L)
+                .containsEntry("hoursSpent", -3L)
+                .containsEntry("byType.MILESTONE", -1L)
+                .doesNotContainKeys("ratingSum", "ratingCount");
+        ArgumentCaptor<ProgressUpdateContribution> stored = ArgumentCaptor.forClass(ProgressUpdateContribution.class);
+        verify(mongoTemplate).findAndReplace(any(Query.class), stored.capture(), any(FindAndReplaceOptions.class));
+        assertThat(stored.getValue().isDeleted()).isTrue();
+    }
+
+    @Test
+    void contributionIsOnlySwappedForOlderEvents() {
+        previousContribution(null);
+        OutboxEvent created = updateEvent(OutboxEvent.Type.PROGRESS_UPDATE_CREATED, 3, "MILESTONE", 4);
+
+        handler.accept(created);
+
+        ArgumentCaptor<Query> olderOnly = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndReplace(olderOnly.capture(), any(ProgressUpdateContribution.class),
+                any(FindAndReplaceOptions.class));
+        assertThat(olderOnly.getValue().getQueryObject()).isEqualTo(new Document("id", UPDATE_ID)
+                .append("eventId", new Document("$lt", created.getId())));
+    }
+
+    @Test
+    void redeliveredEventChangesNothing() {
+        when(mongoTemplate.findAndReplace(any(Query.class), any(ProgressUpdateContribution.class),
+                any(FindAndReplaceOptions.class))).thenThrow(new DuplicateKeyException("already counted"));
+
+        handler.accept(updateEvent(OutboxEvent.Type.PROGRESS_UPDATE_CREATED, 3, "MILESTONE", 4));
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), eq(UserLearningStats.class));
+    }
+
+    @Test
+    void valuesThatCannotBeFieldNamesAreLeftOutOfTheBreakdowns() {
+        previousContribution(null);
+
+        handler.accept(updateEvent(OutboxEvent.Type.PROGRESS_UPDATE_CREATED, 1, "$set.x", null));
+
+        assertThat(increments("user-1")).containsEntry("updateCount", 1L)
+                .doesNotContainKeys("byType.$set.x", "ratingCount");
+    }
+
+    @Test
+    void completedUnitSetsThePlansCompletedHours() {
+        handler.accept(event(OutboxEvent.Type.LEARNING_UNIT_COMPLETED, "plan-1",
+                Map.of("ownerId", "owner-1", "completedHours", 6, "unitId", "u1")));
+
+        ArgumentCaptor<Query> stats = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).upsert(stats.capture(), update.capture(), eq(UserLearningStats.class));
+        assertThat(stats.getValue().getQueryObject()).isEqualTo(new Document("_id", "owner-1"));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+                .containsEntry("planCompletedHours.plan-1", 6L);
+    }
+
+    @Test
+    void deletedPlanLeavesTheOwnersRollup() {
+        handler.accept(event(OutboxEvent.Type.LEARNING_PLAN_DELETED, "plan-1", Map.of("ownerId", "owner-1")));
+
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(UserLearningStats.class));
+        assertThat(update.getValue().getUpdateObject())
+                .isEqualTo(new Document("$unset", new Document("planCompletedHours.plan-1", 1)));
+    }
+
+    @Test
+    void dashboardDropsZeroedCountersAndKeepsTheNewestBuckets() {
+        UserLearningStats stats = new UserLearningStats();
+        stats.setRatingSum(9);
+        stats.setRatingCount(2);
+        stats.getByType().put("MILESTONE", 2L);
+        stats.getByType().put("REFLECTION", 0L);
+        stats.getDaily().put("2026-10-12", bucket(1));
+        stats.getDaily().put("2026-10-13", bucket(0));
+        stats.getDaily().put("2026-10-14", bucket(2));
+        stats.getDaily().put("2026-10-11", bucket(3));
+        when(mongoTemplate.findById("user-1", UserLearningStats.class)).thenReturn(stats);
+        LearningAnalyticsService analytics = new LearningAnalyticsService(mongoTemplate, mock(DomainEventBus.class), 2);
+
+        LearningAnalyticsDTO.UserLearningStatsResponse response = analytics.getUserStats("user-1", 2, 4);
+
+        assertThat(response.getAverageRating()).isEqualTo(4.5);
+        assertThat(response.getByType()).containsOnlyKeys("MILESTONE");
+        assertThat(response.getDaily()).containsOnlyKeys("2026-10-12", "2026-10-14");
+    }
+
+    @Test
+    void userWithoutARollupHasAnEmptyDashboard() {
+        LearningAnalyticsService analytics = new LearningAnalyticsService(mongoTemplate, mock(DomainEventBus.class), 2);
+
+        LearningAnalyticsDTO.UserLearningStatsResponse response = analytics.getUserStats("user-1", 7, 4);
+
+        assertThat(response.getUpdateCount()).isZero();
+        assertThat(response.getAverageRating()).isNull();
+        assertThat(response.getDaily()).isEmpty();
+    }
+
+    private void previousContribution(ProgressUpdateContribution previous) {
+        when(mongoTemplate.findAndReplace(any(Query.class), any(ProgressUpdateContribution.class),
+                any(FindAndReplaceOptions.class))).thenReturn(previous);
+    }
+
+    // The $inc of the single rollup upsert for the user
+    private Map<String, Object> increments(String userId) {
+        ArgumentCaptor<Query> stats = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).upsert(stats.capture(), update.capture(), eq(UserLearningStats.class));
+        assertThat(stats.getValue().getQueryObject()).isEqualTo(new Document("_id", userId));
+        Map<String, Object> increments = new HashMap<>();
+        update.getValue().getUpdateObject().get("$inc", Document.class)
+                .forEach((field, delta) -> increments.put(field, ((Number) delta).longValue()));
+        return increments;
+    }
+
+    private static UserLearningStats.Bucket bucket(long count) {
+        UserLearningStats.Bucket bucket = new UserLearningStats.Bucket();
+        bucket.setCount(count);
+        bucket.setHours(count * 2);
+        return bucket;
+    }
+
+    private static ProgressUpdateContribution contribution(long hours, String type, Integer rating) {
+        ProgressUpdateContribution contribution = new ProgressUpdateContribution();
+        contribution.setId(UPDATE_ID);
+        contribution.setUserId("user-1");
+        contribution.setPlanId("plan-1");
+        contribution.setDay("2026-10-14");
+        contribution.setWeek("2026-W42");
+        contribution.setHours(hours);
+        contribution.setType(type);
+        contribution.setSentiment("POSITIVE");
+        contribution.setRating(rating);
+        return contribution;
+    }
+
+    private static OutboxEvent updateEvent(OutboxEvent.Type type, int hoursSpent, String progressType, Integer rating) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("userId", "user-1");
+        payload.put("relatedPlanId", "plan-1");
+        payload.put("createdAt", CREATED_AT);
+        payload.put("hoursSpent", hoursSpent);
+        payload.put("type", progressType);
+        payload.put("sentiment", "POSITIVE");
+        payload.put("rating", rating);
+        return event(type, UPDATE_ID, payload);
+    }
+
+    private static OutboxEvent event(OutboxEvent.Type type, String aggregateId, Map<String, Object> payload) {
+        OutboxEvent event = new OutboxEvent(type, aggregateId, new HashMap<>(payload));
+        event.setId(new ObjectId().toHexString());
+        return event;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningHistoryExportServiceTests {
+
+    private static final String USER_ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<LearningPlan> plans = new ArrayList<>();
+    private final List<ProgressUpdate> updates = new ArrayList<>();
+    private LearningHistoryExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.exists(any(Query.class), eq(AppUser.class))).thenReturn(true);
+        when(mongoTemplate.stream(any(Query.class), eq(LearningPlan.class))).thenAnswer(invocation -> plans.stream());
+        when(mongoTemplate.stream(any(Query.class), eq(ProgressUpdate.class))).thenAnswer(invocation -> updates.stream());
+        exportService = service(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        exportService.shutdown();
+    }
+
+    @Test
+    void ndjsonHasThePlansThenTheUpdates() throws Exception {
+        plans.add(plan("Bread"));
+        updates.add(update("Week 1"));
+        updates.add(update("Week 2"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        exportService.exportLearningHistory(USER_ID, LearningHistoryExportService.Format.NDJSON, response(body));
+
+        String[] lines = gunzip(body).split("\n");
+        assertThat(lines).hasSize(3);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("recordType").asText()).isEqualTo("learningPlan");
+        assertThat(first.get("title").asText()).isEqualTo("Bread");
+        assertThat(objectMapper.readTree(lines[2]).get("title").asText()).isEqualTo("Week 2");
+    }
+
+    @Test
+    void csvQuotesSeparatorsQuotesAndLineBreaks() throws Exception {
+        plans.add(plan("Bread, \"sourdough\"\nand more"));
+        updates.add(update("Plain"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        exportService.exportLearningHistory(USER_ID, LearningHistoryExportService.Format.CSV, response(body));
+
+        String csv = gunzip(body);
+        assertThat(csv).startsWith("recordType,id,title,description,");
+        assertThat(csv).contains("\r\nlearningPlan," + plans.get(0).getId() + ",\"Bread, \"\"sourdough\"\"\nand more\",");
+        assertThat(csv).contains("\r\nprogressUpdate," + updates.get(0).getId() + ",Plain,");
+        assertThat(csv.split("\r\n")).hasSize(3);
+    }
+
+    @Test
+    void unknownUserIsNotFoundBeforeAnythingIsWritten() {
+        when(mongoTemplate.exists(any(Query.class), eq(AppUser.class))).thenReturn(false);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        assertThatThrownBy(() -> exportService.exportLearningHistory(USER_ID,
+                LearningHistoryExportService.Format.CSV, response))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+        verify(response, never()).setContentType(any());
+    }
+
+    @Test
+    void exportsPastTheLimitAreUnavailableUntilASlotIsReleased() throws Exception {
+        exportService.shutdown();
+        exportService = service(1);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(mongoTemplate.stream(any(Query.class), eq(LearningPlan.class))).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return plans.stream();
+        }).thenAnswer(invocation -> plans.stream());
+        CompletableFuture<Void> running = CompletableFuture.runAsync(() -> {
+            try {
+                exportService.exportLearningHistory(USER_ID, LearningHistoryExportService.Format.NDJSON,
+                        response(new ByteArrayOutputStream()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> exportService.exportLearningHistory(USER_ID,
+                LearningHistoryExportService.Format.NDJSON, response(new ByteArrayOutputStream())))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        exportService.exportLearningHistory(USER_ID, LearningHistoryExportService.Format.NDJSON,
+                response(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void failedReadLeavesATruncatedArchiveAndReleasesTheSlot() throws Exception {
+        exportService.shutdown();
+        exportService = service(1);
+        plans.add(plan("Bread"));
+        when(mongoTemplate.stream(any(Query.class), eq(ProgressUpdate.class)))
+                .thenThrow(new IllegalStateException("cursor lost"))
+                .thenAnswer(invocation -> updates.stream());
+        ByteArrayOutputStream failed = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> exportService.exportLearningHistory(USER_ID,
+                LearningHistoryExportService.Format.NDJSON, response(failed)))
+                .isInstanceOf(IOException.class)
+                .hasRootCauseMessage("cursor lost");
+        assertThatThrownBy(() -> gunzip(failed)).isInstanceOf(EOFException.class);
+
+        ByteArrayOutputStream retried = new ByteArrayOutputStream();
+        exportService.exportLearningHistory(USER_ID, LearningHistoryExportService.Format.NDJSON, response(retried));
+        assertThat(gunzip(retried).split("\n")).hasSize(1);
+    }
+
+    @Test
+    void unknownFormatIsABadRequest() {
+        assertThatThrownBy(() -> LearningHistoryExportService.Format.of("xml"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThat(LearningHistoryExportService.Format.of("csv")).isEqualTo(LearningHistoryExportService.Format.CSV);
+    }
+
+    private LearningHistoryExportService service(int maxConcurrent) {
+        return new LearningHistoryExportService(mongoTemplate, objectMapper, 2, maxConcurrent, 60_000);
+    }
+
+    private static LearningPlan plan(String title) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setTitle(title);
+        return plan;
+    }
+
+    private static ProgressUpdate update(String title) {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(new ObjectId().toHexString());
+        update.setTitle(title);
+        return update;
+    }
+
+    private static HttpServletResponse response(ByteArrayOutputStream body) throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+        return response;
+    }
+
+    private static String gunzip(ByteArrayOutputStream body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningPlanFeedServiceTests {
+
+    private MongoTemplate mongoTemplate;
+    private LearningPlanFeedService feedService;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toLearningPlanSummaries(anyList())).thenAnswer(invocation -> {
+            List<LearningPlan> plans = invocation.getArgument(0);
+            return plans.stream()
+                    .map(plan -> new LearningPlanDTO.LearningPlanSummary(plan, null))
+                    .collect(Collectors.toList());
+        });
+        feedService = new LearningPlanFeedService(mongoTemplate, referenceResolver);
+    }
+
+    @Test
+    void firstTagPageCarriesFacetCountsInCountOrder() {
+        List<LearningPlan> rows = plans(3);
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(rows);
+        Document facets = new Document()
+                .append("tags", List.of(bucket("baking", 12), bucket("bread", 4)))
+                .append("categories", List.of(bucket("Cooking", 15), bucket(null, 1)))
+                .append("skillLevels", List.of(bucket("BEGINNER", 9), bucket("ADVANCED", 7)));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(LearningPlan.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(facets), new Document()));
+
+        LearningPlanDTO.TagBrowseResponse response = feedService.browseByTags(List.of("baking", "bread"), null, 2);
+
+        assertThat(response.getPlans().getItems()).hasSize(2);
+        assertThat(response.getPlans().isHasMore()).isTrue();
+        assertThat(response.getTags()).containsExactly(Map.entry("baking", 12L), Map.entry("bread", 4L));
+        assertThat(response.getCategories()).containsExactly(Map.entry("Cooking", 15L));
+        assertThat(response.getSkillLevels()).containsExactly(Map.entry("BEGINNER", 9L), Map.entry("ADVANCED", 7L));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LearningPlan.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("tags",
+                new Document("$in", List.of("baking", "bread"))).append("isPublic", true));
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("viewCount", -1).append("id", -1));
+        assertThat(query.getValue().getLimit()).isEqualTo(3);
+
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(aggregation.capture(), eq(LearningPlan.class), eq(Document.class));
+        List<Document> pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertThat(pipeline).hasSize(2);
+        assertThat(pipeline.get(0).get("$match", Document.class)).isEqualTo(new Document("tags",
+                new Document("$in", List.of("baking", "bread"))).append("isPublic", true));
+        assertThat(pipeline.get(1).get("$facet", Document.class))
+                .containsOnlyKeys("tags", "categories", "skillLevels");
+    }
+
+    @Test
+    void laterTagPagesSkipTheFacets() {
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(plans(1));
+
+        LearningPlanDTO.TagBrowseResponse response = feedService.browseByTags(List.of("baking"),
+                CursorCodec.encode(40L, new ObjectId().toHexString()), 10);
+
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), eq(LearningPlan.class), eq(Document.class));
+        assertThat(response.getTags()).isNullOrEmpty();
+    }
+
+    @Test
+    void feedsReadOnlyTheSummaryFields() {
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(plans(1));
+
+        feedService.getMostPopularLearningPlans(null, 10);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LearningPlan.class));
+        Document fields = query.getValue().getFieldsObject();
+        assertThat(fields.keySet()).containsExactlyInAnyOrder(LearningPlanFeedService.SUMMARY_FIELDS);
+        assertThat(fields).doesNotContainKeys("learningUnits", "resources", "tags", "description");
+    }
+
+    @Test
+    void summaryCarriesStoredCompletionStats() {
+        LearningPlan plan = plans(1).get(0);
+        plan.setUnitCount(8);
+        plan.setCompletedUnitCount(2);
+        plan.setCompletionPercentage(25.0);
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(List.of(plan));
+
+        LearningPlanDTO.LearningPlanSummary summary = feedService.getPublicLearningPlans(null, 10).getItems().get(0);
+
+        assertThat(summary.getUnitCount()).isEqualTo(8);
+        assertThat(summary.getCompletedUnitCount()).isEqualTo(2);
+        assertThat(summary.getCompletionPercentage()).isEqualTo(25.0);
+    }
+
+    @Test
+    void nearlyFinishedPlansAreReadOffTheCompletionIndex() {
+        String ownerId = new ObjectId().toHexString();
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(plans(2));
+
+        feedService.getNearlyFinishedPlans(ownerId, 75.0, 5);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LearningPlan.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("owner.$id", new ObjectId(ownerId))
+                .append("isCompleted", false)
+                .append("completionPercentage", new Document("$gte", 75.0)));
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("completionPercentage", -1));
+        assertThat(query.getValue().getFieldsObject()).doesNotContainKey("learningUnits");
+    }
+
+    private static Document bucket(String value, long count) {
+        return new Document("_id", value).append("count", count);
+    }
+
+    private static List<LearningPlan> plans(int count) {
+        List<LearningPlan> plans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LearningPlan plan = new LearningPlan();
+            plan.setId(new ObjectId().toHexString());
+            plan.setTitle("Plan " + i);
+            plan.setViewCount(100 - i);
+            plans.add(plan);
+        }
+        return plans;
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.PlanContentSnapshot;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningPlanForkServiceTests {
+
+    private static final String USER_ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private ReferenceResolver referenceResolver;
+    private LearningPlanService learningPlanService;
+    private DomainEventPublisher domainEventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toLearningPlanResponses(anyList())).thenAnswer(invocation -> {
+            List<LearningPlan> plans = invocation.getArgument(0);
+            return plans.stream()
+                    .map(plan -> new LearningPlanDTO.LearningPlanResponse(plan, null))
+                    .collect(Collectors.toList());
+        });
+        learningPlanService = mock(LearningPlanService.class);
+        domainEventPublisher = mock(DomainEventPublisher.class);
+        AppUser user = mock(AppUser.class);
+        when(user.getId()).thenReturn(USER_ID);
+        when(mongoTemplate.findById(USER_ID, AppUser.class)).thenReturn(user);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(LearningPlan.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        // No snapshot is stored unless a test says so
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(PlanContentSnapshot.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+    }
+
+    @Test
+    void sharedForkPointsAtASnapshotInsteadOfCopyingUnits() {
+        LearningPlan parent = ownedPlan(unit("u1"), unit("u2"));
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+
+        service("shared").forkLearningPlan(parent.getId(), USER_ID);
+
+        ArgumentCaptor<Query> stored = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> snapshot = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).upsert(stored.capture(), snapshot.capture(), eq(PlanContentSnapshot.class));
+        String snapshotId = stored.getValue().getQueryObject().getString("id");
+        Document content = snapshot.getValue().getUpdateObject().get("$setOnInsert", Document.class);
+        assertThat(content.getList("learningUnits", LearningPlan.LearningUnit.class))
+                .extracting(LearningPlan.LearningUnit::getUnitId)
+                .containsExactly("u1", "u2");
+        assertThat(snapshot.getValue().getUpdateObject().get("$set", Document.class)).containsKey("lastUsedAt");
+
+        LearningPlan fork = insertedFork();
+        assertThat(fork.getContentSnapshotId()).isEqualTo(snapshotId);
+        assertThat(fork.getForkedFromId()).isEqualTo(parent.getId());
+        assertThat(fork.getUnitCount()).isEqualTo(2);
+        assertThat(fork.getLearningUnits()).isEmpty();
+
+        // The parent keeps the snapshot id, so its next fork does not hash its content again
+        ArgumentCaptor<UpdateDefinition> parentUpdate = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), parentUpdate.capture(), eq(LearningPlan.class));
+        assertThat(parentUpdate.getValue().getUpdateObject())
+                .isEqualTo(new Document("$inc", new Document("forkCount", 1))
+                        .append("$set", new Document("forkSnapshotId", snapshotId)));
+    }
+
+    @Test
+    void forkIsPublishedUnderTheParent() {
+        LearningPlan parent = ownedPlan(unit("u1"));
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+
+        LearningPlanDTO.LearningPlanResponse fork = service("shared").forkLearningPlan(parent.getId(), USER_ID);
+
+        verify(domainEventPublisher).learningPlanForked(parent.getId(), fork, USER_ID);
+    }
+
+    @Test
+    void forksOfTheSameContentShareOneSnapshot() {
+        LearningPlan parent = ownedPlan(unit("u1"));
+        LearningPlan twin = ownedPlan(unit("u1"));
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+        when(mongoTemplate.findById(twin.getId(), LearningPlan.class)).thenReturn(twin);
+        LearningPlanForkService forks = service("shared");
+
+        forks.forkLearningPlan(parent.getId(), USER_ID);
+        snapshotIsStored();
+        forks.forkLearningPlan(twin.getId(), USER_ID);
+
+        verify(mongoTemplate, times(1)).upsert(any(Query.class), any(UpdateDefinition.class), eq(PlanContentSnapshot.class));
+        ArgumentCaptor<LearningPlan> inserted = ArgumentCaptor.forClass(LearningPlan.class);
+        verify(mongoTemplate, times(2)).insert(inserted.capture());
+        assertThat(inserted.getAllValues().get(0).getContentSnapshotId())
+                .isEqualTo(inserted.getAllValues().get(1).getContentSnapshotId());
+    }
+
+    @Test
+    void differentContentGetsADifferentSnapshot() {
+        LearningPlan parent = ownedPlan(unit("u1"));
+        LearningPlan edited = ownedPlan(unit("u1"));
+        edited.getLearningUnits().get(0).setTitle("u1 revised");
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+        when(mongoTemplate.findById(edited.getId(), LearningPlan.class)).thenReturn(edited);
+        LearningPlanForkService forks = service("shared");
+
+        forks.forkLearningPlan(parent.getId(), USER_ID);
+        forks.forkLearningPlan(edited.getId(), USER_ID);
+
+        ArgumentCaptor<Query> snapshots = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).upsert(snapshots.capture(), any(UpdateDefinition.class), eq(PlanContentSnapshot.class));
+        assertThat(snapshots.getAllValues().get(0).getQueryObject())
+                .isNotEqualTo(snapshots.getAllValues().get(1).getQueryObject());
+    }
+
+    @Test
+    void storedSnapshotIdIsReusedWithoutHashing() {
+        LearningPlan parent = ownedPlan(unit("u1"));
+        parent.setForkSnapshotId("snapshot-9");
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+        snapshotIsStored();
+
+        service("shared").forkLearningPlan(parent.getId(), USER_ID);
+
+        assertThat(insertedFork().getContentSnapshotId()).isEqualTo("snapshot-9");
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), eq(PlanContentSnapshot.class));
+        ArgumentCaptor<UpdateDefinition> parentUpdate = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), parentUpdate.capture(), eq(LearningPlan.class));
+        assertThat(parentUpdate.getValue().getUpdateObject())
+                .isEqualTo(new Document("$inc", new Document("forkCount", 1)));
+    }
+
+    @Test
+    void sweptSnapshotIsStoredAgainUnderItsId() {
+        LearningPlan parent = ownedPlan(unit("u1"));
+        parent.setForkSnapshotId("snapshot-9");
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+
+        service("shared").forkLearningPlan(parent.getId(), USER_ID);
+
+        ArgumentCaptor<Query> stored = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).upsert(stored.capture(), any(UpdateDefinition.class), eq(PlanContentSnapshot.class));
+        assertThat(stored.getValue().getQueryObject()).isEqualTo(new Document("id", "snapshot-9"));
+        assertThat(insertedFork().getContentSnapshotId()).isEqualTo("snapshot-9");
+    }
+
+    @Test
+    void forkOfASharedForkReusesItsSnapshot() {
+        LearningPlan parent = sharedPlan("snapshot-1", 3);
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+
+        service("shared").forkLearningPlan(parent.getId(), USER_ID);
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(UpdateDefinition.class), eq(PlanContentSnapshot.class));
+        LearningPlan fork = insertedFork();
+        assertThat(fork.getContentSnapshotId()).isEqualTo("snapshot-1");
+        assertThat(fork.getUnitCount()).isEqualTo(3);
+    }
+
+    @Test
+    void copyForkOfASharedForkCopiesTheContentAndLeavesTheParentAlone() {
+        LearningPlan parent = sharedPlan("snapshot-1", 1);
+        when(mongoTemplate.findById(parent.getId(), LearningPlan.class)).thenReturn(parent);
+        when(mongoTemplate.findById("snapshot-1", PlanContentSnapshot.class)).thenReturn(
+                new PlanContentSnapshot("snapshot-1", List.of(unit("u1")), List.of("https://example.com")));
+        LearningPlan copy = ownedPlan();
+        when(learningPlanService.forkLearningPlan(parent.getId(), USER_ID))
+                .thenReturn(new LearningPlanDTO.LearningPlanResponse(copy, null));
+        when(mongoTemplate.findById(copy.getId(), LearningPlan.class)).thenReturn(copy);
+
+        service("copy").forkLearningPlan(parent.getId(), USER_ID);
+
+        ArgumentCaptor<Query> updated = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(updated.capture(), update.capture(), eq(LearningPlan.class));
+        assertThat(updated.getValue().getQueryObject()).isEqualTo(new Document("id", copy.getId()));
+        Document changes = update.getValue().getUpdateObject();
+        assertThat(changes.get("$set", Document.class))
+                .containsEntry("forkedFromId", parent.getId())
+                .containsKeys("learningUnits", "resources", "unitCount");
+        assertThat(changes.get("$unset", Document.class)).containsOnlyKeys("contentSnapshotId", "unitCompletions");
+    }
+
+    @Test
+    void materializeCopiesSnapshotContentWithCompletions() {
+        LearningPlan fork = sharedPlan("snapshot-1", 2);
+        when(mongoTemplate.findById(fork.getId(), LearningPlan.class)).thenReturn(fork);
+        doAnswer(invocation -> {
+            fork.setLearningUnits(new ArrayList<>(List.of(unit("u1"), unit("u2"))));
+            return null;
+        }).when(referenceResolver).resolveSharedContent(List.of(fork));
+
+        service("shared").materialize(fork.getId());
+
+        ArgumentCaptor<Query> guarded = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(guarded.capture(), update.capture(), eq(LearningPlan.class));
+        assertThat(guarded.getValue().getQueryObject())
+                .containsEntry("contentSnapshotId", "snapshot-1")
+                .containsEntry("completedUnitCount", fork.getCompletedUnitCount());
+        assertThat(update.getValue().getUpdateObject().get("$unset", Document.class))
+                .containsOnlyKeys("contentSnapshotId", "unitCompletions");
+    }
+
+    @Test
+    void materializeRetriesWhenAUnitIsCompletedMeanwhile() {
+        LearningPlan fork = sharedPlan("snapshot-1", 2);
+        when(mongoTemplate.findById(fork.getId(), LearningPlan.class)).thenReturn(fork);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(LearningPlan.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        service("shared").materialize(fork.getId());
+
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), any(Update.class), eq(LearningPlan.class));
+    }
+
+    @Test
+    void materializeGivesUpWithAConflict() {
+        LearningPlan fork = sharedPlan("snapshot-1", 2);
+        when(mongoTemplate.findById(fork.getId(), LearningPlan.class)).thenReturn(fork);
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(LearningPlan.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThatThrownBy(() -> service("shared").materialize(fork.getId()))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+    }
+
+    @Test
+    void materializeIsANoOpForPlansOwningTheirContent() {
+        LearningPlan plan = ownedPlan(unit("u1"));
+        when(mongoTemplate.findById(plan.getId(), LearningPlan.class)).thenReturn(plan);
+
+        service("shared").materialize(plan.getId());
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(LearningPlan.class));
+    }
+
+    @Test
+    void sweepDeletesOnlySnapshotsNoPlanPointsAt() {
+        when(mongoTemplate.find(any(Query.class), eq(PlanContentSnapshot.class))).thenReturn(List.of(
+                new PlanContentSnapshot("s1", List.of(), List.of()),
+                new PlanContentSnapshot("s2", List.of(), List.of()),
+                new PlanContentSnapshot("s3", List.of(), List.of())));
+        when(mongoTemplate.findDistinct(any(Query.class), eq("contentSnapshotId"), eq(LearningPlan.class), eq(String.class)))
+                .thenReturn(List.of("s2"));
+        when(mongoTemplate.remove(any(Query.class), eq(PlanContentSnapshot.class))).thenReturn(DeleteResult.acknowledged(2));
+
+        service("shared").sweepOrphanedSnapshots();
+
+        ArgumentCaptor<Query> candidates = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(candidates.capture(), eq(PlanContentSnapshot.class));
+        assertThat(candidates.getValue().getQueryObject()).containsKey("lastUsedAt");
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(PlanContentSnapshot.class));
+        // Guarded on lastUsedAt again, so a snapshot a fork used meanwhile stays
+        assertThat(removed.getValue().getQueryObject())
+                .containsEntry("id", new Document("$in", List.of("s1", "s3")))
+                .containsKey("lastUsedAt");
+    }
+
+    @Test
+    void sweepWithOnlyReferencedSnapshotsDeletesNothing() {
+        when(mongoTemplate.find(any(Query.class), eq(PlanContentSnapshot.class)))
+                .thenReturn(List.of(new PlanContentSnapshot("s1", List.of(), List.of())));
+        when(mongoTemplate.findDistinct(any(Query.class), eq("contentSnapshotId"), eq(LearningPlan.class), eq(String.class)))
+                .thenReturn(List.of("s1"));
+
+        service("shared").sweepOrphanedSnapshots();
+
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(PlanContentSnapshot.class));
+    }
+
+    private void snapshotIsStored() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(PlanContentSnapshot.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    private LearningPlanForkService service(String forkMode) {
+        return new LearningPlanForkService(mongoTemplate, referenceResolver, learningPlanService, domainEventPublisher,
+                TransactionOperations.withoutTransaction(), forkMode, 86_400_000);
+    }
+
+    private LearningPlan insertedFork() {
+        ArgumentCaptor<LearningPlan> fork = ArgumentCaptor.forClass(LearningPlan.class);
+        verify(mongoTemplate).insert(fork.capture());
+        return fork.getValue();
+    }
+
+    private static LearningPlan ownedPlan(LearningPlan.LearningUnit... units) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setTitle("Bread baking");
+        plan.setLearningUnits(new ArrayList<>(List.of(units)));
+        return plan;
+    }
+
+    private static LearningPlan sharedPlan(String snapshotId, int unitCount) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setContentSnapshotId(snapshotId);
+        plan.setUnitCount(unitCount);
+        plan.setCompletedUnitCount(1);
+        plan.setUnitCompletions(Map.of("u1", new Date()));
+        return plan;
+    }
+
+    private static LearningPlan.LearningUnit unit(String unitId) {
+        LearningPlan.LearningUnit unit = new LearningPlan.LearningUnit();
+        unit.setUnitId(unitId);
+        unit.setTitle(unitId);
+        unit.setEstimatedHours(2);
+        return unit;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.CursorPage;
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningPlanSearchIndexTests {
+
+    private final Map<String, LearningPlan> stored = new HashMap<>();
+    private MongoTemplate mongoTemplate;
+    private LearningPlanSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toLearningPlanResponses(anyList())).thenAnswer(invocation -> {
+            List<LearningPlan> plans = invocation.getArgument(0);
+            return plans.stream()
+                    .map(plan -> new LearningPlanDTO.LearningPlanResponse(plan, null))
+                    .collect(Collectors.toList());
+        });
+        // Answers the page fetch ($in on the ranked ids) in an order unrelated to the ranking
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Document id = query.getQueryObject().get("id", Document.class);
+            List<LearningPlan> found = new ArrayList<>();
+            if (id == null) {
+                return found;
+            }
+            for (Object planId : (Collection<?>) id.get("$in")) {
+                if (stored.containsKey(planId)) {
+                    found.add(stored.get(planId));
+                }
+            }
+            Collections.reverse(found);
+            return found;
+        });
+        searchIndex = new LearningPlanSearchIndex(mongoTemplate, referenceResolver);
+    }
+
+    @Test
+    void titleMatchOutranksDescriptionMatch() {
+        LearningPlan inDescription = plan("Backend basics", "Learn kotlin and spring", "Programming", 500);
+        LearningPlan inTitle = plan("Kotlin for beginners", "A gentle start", "Programming", 0);
+
+        assertThat(ids(search("kotlin", null))).containsExactly(inTitle.getId(), inDescription.getId());
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        LearningPlan both = plan("Spring data mongodb", "", "Programming", 0);
+        plan("Spring boot", "", "Programming", 0);
+        plan("Mongodb aggregation", "", "Programming", 0);
+
+        assertThat(ids(search("spring mongodb", null))).containsExactly(both.getId());
+    }
+
+    @Test
+    void lastTermMatchesAsPrefix() {
+        LearningPlan java = plan("Java streams", "", "Programming", 0);
+        LearningPlan javascript = plan("Javascript promises", "", "Programming", 0);
+        plan("Rust ownership", "", "Programming", 0);
+
+        assertThat(ids(search("jav", null))).containsExactlyInAnyOrder(java.getId(), javascript.getId());
+        assertThat(ids(search("jav streams", null))).isEmpty();
+    }
+
+    @Test
+    void stopWordsAndCaseAreIgnored() {
+        LearningPlan plan = plan("The Art of Baking", "", "Cooking", 0);
+
+        assertThat(ids(search("ART OF the baking", null))).containsExactly(plan.getId());
+    }
+
+    @Test
+    void equalScoresAreOrderedNewestFirst() {
+        // Views are not a tie-break: the indexed count would go stale between edits
+        LearningPlan older = plan("Sourdough bread", "", "Cooking", 30);
+        LearningPlan newer = plan("Sourdough bread", "", "Cooking", 3);
+
+        assertThat(ids(search("sourdough", null))).containsExactly(newer.getId(), older.getId());
+    }
+
+    @Test
+    void singleCharacterTypedLastMatchesAsPrefix() {
+        LearningPlan cooking = plan("Cooking basics", "", "Cooking", 0);
+        plan("Knife skills", "", "Cooking", 0);
+
+        assertThat(ids(search("c", null))).containsExactly(cooking.getId());
+        assertThat(ids(search("basics c", null))).containsExactly(cooking.getId());
+    }
+
+    @Test
+    void textWithoutIndexedTermsMatchesNothing() {
+        plan("The Art of Baking", "", "Cooking", 0);
+
+        assertThat(search("the of", null).getTotalElements()).isZero();
+        // Not taken as a search without text, which would list every public plan
+        verify(mongoTemplate, never()).count(any(Query.class), eq(LearningPlan.class));
+    }
+
+    @Test
+    void categoryFilterMatchesExactly() {
+        LearningPlan cooking = plan("Knife skills", "", "Cooking", 0);
+        plan("Knife skills", "", "Cooking basics", 0);
+
+        assertThat(ids(search("knife", "Cooking"))).containsExactly(cooking.getId());
+    }
+
+    @Test
+    void reindexingReplacesOldTermsAndRemoveDropsThePlan() {
+        LearningPlan plan = plan("Python basics", "", "Programming", 0);
+        plan.setTitle("Golang basics");
+        searchIndex.index(plan);
+
+        assertThat(ids(search("python", null))).isEmpty();
+        assertThat(ids(search("golang", null))).containsExactly(plan.getId());
+
+        searchIndex.remove(plan.getId());
+        assertThat(ids(search("golang", null))).isEmpty();
+    }
+
+    @Test
+    void resultsArePagedInRankOrder() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(0, plan("Watercolor painting", "", "Art", 0).getId());
+        }
+
+        Page<LearningPlanDTO.LearningPlanResponse> page =
+                searchIndex.search("watercolor", null, null, PageRequest.of(1, 2));
+
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.getContent()).extracting(LearningPlanDTO.LearningPlanResponse::getId)
+                .containsExactly(expected.get(2), expected.get(3));
+    }
+
+    @Test
+    void cursorPagesFollowRankOrder() {
+        List<String> expected = new ArrayList<>();
+        expected.add(plan("Watercolor", "", "Art", 0).getId());
+        for (int i = 0; i < 4; i++) {
+            expected.add(1, plan("Watercolor painting", "", "Art", 0).getId());
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<LearningPlanDTO.LearningPlanResponse> page = searchIndex.search("watercolor", null, null, cursor, 2);
+            page.getItems().forEach(response -> seen.add(response.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void searchWithoutTextIsPagedByKeyset() {
+        searchIndex.search(null, "Cooking", null, CursorCodec.encode(7L, new ObjectId().toHexString()), 10);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LearningPlan.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("category", "Cooking").containsKey("$or");
+        assertThat(query.getValue().getSkip()).isZero();
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("viewCount", -1).append("id", -1));
+        verify(mongoTemplate, never()).count(any(Query.class), eq(LearningPlan.class));
+    }
+
+    @Test
+    void searchWithoutTextIsAnsweredByMongo() {
+        when(mongoTemplate.count(any(Query.class), eq(LearningPlan.class))).thenReturn(0L);
+
+        searchIndex.search("  ", "Cooking", "BEGINNER", PageRequest.of(0, 10));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LearningPlan.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("isPublic", true)
+                .append("category", "Cooking").append("skillLevel", "BEGINNER"));
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("viewCount", -1).append("id", -1));
+    }
+
+    private Page<LearningPlanDTO.LearningPlanResponse> search(String text, String category) {
+        return searchIndex.search(text, category, null, PageRequest.of(0, 20));
+    }
+
+    private static List<String> ids(Page<LearningPlanDTO.LearningPlanResponse> page) {
+        return page.getContent().stream().map(LearningPlanDTO.LearningPlanResponse::getId).collect(Collectors.toList());
+    }
+
+    private LearningPlan plan(String title, String description, String category, int viewCount) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setTitle(title);
+        plan.setDescription(description);
+        plan.setCategory(category);
+        plan.setPublic(true);
+        plan.setViewCount(viewCount);
+        plan.setLearningUnits(new ArrayList<>());
+        plan.setResources(new ArrayList<>());
+        plan.setTags(new ArrayList<>());
+        stored.put(plan.getId(), plan);
+        searchIndex.index(plan);
+        return plan;
+    }
+}
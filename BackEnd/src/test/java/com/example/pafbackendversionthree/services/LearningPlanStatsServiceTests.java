@@ -0,0 +1,89 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonInt32;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningPlanStatsServiceTests {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void backfillOnlyTouchesPlansWithoutStatsAndComputesThemInTheDatabase() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        MongoCollection<Document> learningPlans = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection("learning_plans")).thenReturn(learningPlans);
+        when(learningPlans.updateMany(any(Bson.class), anyList()))
+                .thenReturn(UpdateResult.acknowledged(3, 3L, new BsonInt32(0)));
+        List<LearningPlan> withoutStats = List.of(ownedBy("owner-1"), ownedBy("owner-2"), ownedBy("owner-1"));
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(withoutStats);
+        OwnerListVersions ownerListVersions = mock(OwnerListVersions.class);
+
+        new LearningPlanStatsService(mongoTemplate, ownerListVersions, TransactionOperations.withoutTransaction())
+                .backfillCompletionStats();
+
+        ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+        ArgumentCaptor<List<Bson>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(learningPlans).updateMany(filter.capture(), pipeline.capture());
+        assertThat(filter.getValue())
+                .isEqualTo(new Document("completionPercentage", new Document("$exists", false)));
+        assertThat(pipeline.getValue()).hasSize(2);
+        assertThat(((Document) pipeline.getValue().get(0)).get("$set", Document.class))
+                .containsOnlyKeys("unitCount", "completedUnitCount");
+        assertThat(((Document) pipeline.getValue().get(1)).get("$set", Document.class))
+                .containsOnlyKeys("completionPercentage");
+        // The stats show in the owners' plan lists
+        verify(ownerListVersions).learningPlansChanged(List.of("owner-1", "owner-2", "owner-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void backfillWithNothingToDoWritesNothing() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        MongoCollection<Document> learningPlans = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection("learning_plans")).thenReturn(learningPlans);
+        OwnerListVersions ownerListVersions = mock(OwnerListVersions.class);
+
+        new LearningPlanStatsService(mongoTemplate, ownerListVersions, TransactionOperations.withoutTransaction())
+                .backfillCompletionStats();
+
+        verify(learningPlans, never()).updateMany(any(Bson.class), anyList());
+        verify(ownerListVersions, never()).learningPlansChanged(anyList());
+    }
+
+    @Test
+    void percentageExpressionGuardsAgainstPlansWithoutUnits() {
+        Document expression = LearningPlanStatsService.completionPercentage();
+
+        List<?> branches = expression.getList("$cond", Object.class);
+        assertThat(branches.get(0)).isEqualTo(new Document("$gt", List.of("$unitCount", 0)));
+        assertThat(branches.get(2)).isEqualTo(0.0);
+    }
+
+    private static LearningPlan ownedBy(String ownerId) {
+        AppUser owner = mock(AppUser.class);
+        when(owner.getId()).thenReturn(ownerId);
+        LearningPlan plan = new LearningPlan();
+        plan.setOwner(owner);
+        return plan;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.pafbackendversionthree.services;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class LearningPlanViewCounterTests {
+
+    private MongoTemplate mongoTemplate;
+    private MongoCollection<Document> learningPlans;
+    private OwnerListVersions ownerListVersions;
+    private TransactionOperations transactionOperations;
+    private boolean inTransaction;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        learningPlans = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection("learning_plans")).thenReturn(learningPlans);
+        ownerListVersions = mock(OwnerListVersions.class);
+        doAnswer(invocation -> {
+            assertThat(inTransaction).as("list version bump runs inside the transaction").isTrue();
+            return null;
+        }).when(ownerListVersions).learningPlansChangedFor(anyCollection());
+        transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(invocation -> {
+            inTransaction = true;
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction = false;
+            }
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void viewsAreSummedPerPlanIntoOneUnorderedBulk() {
+        LearningPlanViewCounter counter = counter(true);
+        String popular = new ObjectId().toHexString();
+        String quiet = new ObjectId().toHexString();
+        for (int i = 0; i < 3; i++) {
+            counter.recordView(popular);
+        }
+        counter.recordView(quiet);
+
+        counter.flush();
+
+        ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+        List<UpdateOneModel<Document>> writes = flushedWrites(1, options);
+        assertThat(options.getValue().isOrdered()).isFalse();
+        assertThat(increments(writes)).containsOnly(Map.entry(popular, 3L), Map.entry(quiet, 1L));
+        assertThat(counter.stats())
+                .containsEntry("recordedViews", 4L)
+                .containsEntry("flushedViews", 4L)
+                .containsEntry("pendingViews", 0L)
+                .containsEntry("flushes", 1L)
+                .containsEntry("lastFlushPlans", 2L);
+        // The counts show in the owners' plan lists
+        ArgumentCaptor<List<String>> changed = ArgumentCaptor.forClass(List.class);
+        verify(ownerListVersions).learningPlansChangedFor(changed.capture());
+        assertThat(changed.getValue()).containsExactlyInAnyOrder(popular, quiet);
+    }
+
+    @Test
+    void emptyFlushWritesNothing() {
+        counter(true).flush();
+
+        verifyNoInteractions(learningPlans);
+    }
+
+    @Test
+    void writeErrorRetriesTheWholeBurstBecauseItsTransactionWasAborted() {
+        LearningPlanViewCounter counter = counter(true);
+        String first = new ObjectId().toHexString();
+        String second = new ObjectId().toHexString();
+        counter.recordView(first);
+        counter.recordView(second);
+        counter.recordView(second);
+        when(learningPlans.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenThrow(bulkFailureAt(0))
+                .thenReturn(BulkWriteResult.unacknowledged());
+
+        counter.flush();
+        assertThat(counter.stats())
+                .containsEntry("failedFlushes", 1L)
+                .containsEntry("flushedViews", 0L)
+                .containsEntry("pendingViews", 3L);
+        verify(ownerListVersions, never()).learningPlansChangedFor(anyCollection());
+
+        counter.flush();
+        List<UpdateOneModel<Document>> retried = flushedWrites(2, ArgumentCaptor.forClass(BulkWriteOptions.class));
+        assertThat(increments(retried)).containsOnly(Map.entry(first, 1L), Map.entry(second, 2L));
+        assertThat(counter.stats()).containsEntry("flushedViews", 3L);
+    }
+
+    @Test
+    void failedFlushRetriesEveryPlanWithViewsArrivedSince() {
+        LearningPlanViewCounter counter = counter(true);
+        String first = new ObjectId().toHexString();
+        String second = new ObjectId().toHexString();
+        counter.recordView(first);
+        counter.recordView(second);
+        when(learningPlans.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenThrow(new MongoSocketReadException("connection reset", new ServerAddress()))
+                .thenReturn(BulkWriteResult.unacknowledged());
+
+        counter.flush();
+        counter.recordView(first);
+        counter.flush();
+
+        List<UpdateOneModel<Document>> retried = flushedWrites(2, ArgumentCaptor.forClass(BulkWriteOptions.class));
+        assertThat(increments(retried)).containsOnly(Map.entry(first, 2L), Map.entry(second, 1L));
+        assertThat(counter.stats()).containsEntry("flushedViews", 3L).containsEntry("failedFlushes", 1L);
+    }
+
+    @Test
+    void disabledCounterRecordsNothing() {
+        LearningPlanViewCounter counter = counter(false);
+
+        counter.recordView(new ObjectId().toHexString());
+        counter.flush();
+
+        verifyNoInteractions(learningPlans);
+        assertThat(counter.stats()).containsEntry("recordedViews", 0L);
+    }
+
+    private LearningPlanViewCounter counter(boolean enabled) {
+        return new LearningPlanViewCounter(mongoTemplate, ownerListVersions, transactionOperations, enabled);
+    }
+
+    // Writes of the last of the given number of flushes
+    @SuppressWarnings("unchecked")
+    private List<UpdateOneModel<Document>> flushedWrites(int flushes, ArgumentCaptor<BulkWriteOptions> options) {
+        ArgumentCaptor<List<UpdateOneModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+        verify(learningPlans, times(flushes)).bulkWrite(writes.capture(), options.capture());
+        return writes.getValue();
+    }
+
+    private static Map<String, Long> increments(List<UpdateOneModel<Document>> writes) {
+        return writes.stream().collect(Collectors.toMap(LearningPlanViewCounterTests::idOf,
+                write -> write.getUpdate().toBsonDocument().getDocument("$inc").getNumber("viewCount").longValue()));
+    }
+
+    private static String idOf(UpdateOneModel<Document> write) {
+        BsonDocument filter = write.getFilter().toBsonDocument();
+        return filter.getObjectId("_id").getValue().toHexString();
+    }
+
+    private static MongoBulkWriteException bulkFailureAt(int index) {
+        return new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "write failed", new BsonDocument(), index)),
+                null, new ServerAddress(), Set.of());
+    }
+}
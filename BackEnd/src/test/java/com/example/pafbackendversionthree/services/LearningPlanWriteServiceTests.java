@@ -0,0 +1,206 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningPlanWriteServiceTests {
+
+    private static final String PLAN_ID = new ObjectId().toHexString();
+
+    private MongoCollection<Document> learningPlans;
+    private MongoConverter converter;
+    private ReferenceResolver referenceResolver;
+    private LearningPlanService learningPlanService;
+    private LearningPlanForkService learningPlanForkService;
+    private DomainEventPublisher domainEventPublisher;
+    private LearningPlanWriteService writeService;
+
+    // What ran inside a transaction, in order
+    private final List<String> transactional = new ArrayList<>();
+    private boolean inTransaction;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        learningPlans = mock(MongoCollection.class);
+        converter = mock(MongoConverter.class);
+        when(mongoTemplate.getCollection("learning_plans")).thenReturn(learningPlans);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        referenceResolver = mock(ReferenceResolver.class);
+        learningPlanService = mock(LearningPlanService.class);
+        learningPlanForkService = mock(LearningPlanForkService.class);
+        domainEventPublisher = mock(DomainEventPublisher.class);
+        TransactionOperations transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(invocation -> {
+            inTransaction = true;
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction = false;
+            }
+        });
+        writeService = new LearningPlanWriteService(mongoTemplate, referenceResolver, learningPlanService,
+                learningPlanForkService, domainEventPublisher, transactionOperations);
+    }
+
+    @Test
+    void createdPlanAndItsEventCommitTogether() {
+        LearningPlanDTO.LearningPlanResponse response = response();
+        when(learningPlanService.createLearningPlan(any())).thenAnswer(invocation -> record("create", response));
+        doAnswer(invocation -> record("publish", null)).when(domainEventPublisher).learningPlanCreated(response);
+
+        assertThat(writeService.createLearningPlan(new LearningPlanDTO.CreateLearningPlanRequest())).isSameAs(response);
+
+        assertThat(transactional).containsExactly("create", "publish");
+    }
+
+    @Test
+    void updatedPlanAndItsEventCommitTogether() {
+        LearningPlanDTO.LearningPlanResponse response = response();
+        doAnswer(invocation -> record("materialize", null)).when(learningPlanForkService).materialize(PLAN_ID);
+        Document updated = new Document("_id", new ObjectId(PLAN_ID));
+        when(learningPlans.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenAnswer(invocation -> record("update", updated));
+        when(converter.read(LearningPlan.class, updated)).thenReturn(new LearningPlan());
+        when(referenceResolver.toLearningPlanResponses(anyList())).thenReturn(List.of(response));
+        doAnswer(invocation -> record("publish", null)).when(domainEventPublisher).learningPlanUpdated(response);
+
+        assertThat(writeService.updateLearningPlan(PLAN_ID, new LearningPlanDTO.UpdateLearningPlanRequest()))
+                .isSameAs(response);
+
+        assertThat(transactional).containsExactly("materialize", "update", "publish");
+    }
+
+    @Test
+    void editSetsOnlyTheFieldsItCarries() {
+        LearningPlanDTO.UpdateLearningPlanRequest request = new LearningPlanDTO.UpdateLearningPlanRequest();
+        request.setTitle("$5 bread");
+        request.setIsPublic(true);
+
+        List<Document> pipeline = edit(request);
+
+        // Completion, counters and views are left as they are
+        assertThat(pipeline).hasSize(1);
+        Document set = pipeline.get(0).get("$set", Document.class);
+        assertThat(set.keySet()).containsExactly("title", "isPublic", "updatedAt");
+        assertThat(set.get("title")).isEqualTo(new Document("$literal", "$5 bread"));
+    }
+
+    @Test
+    void editedUnitsKeepTheirCompletionAndTheStatsAreRecounted() {
+        LearningPlanDTO.LearningUnitDTO unit = new LearningPlanDTO.LearningUnitDTO();
+        unit.setUnitId("u1");
+        unit.setTitle("Starter");
+        unit.setCompleted(false);
+        LearningPlanDTO.UpdateLearningPlanRequest request = new LearningPlanDTO.UpdateLearningPlanRequest();
+        request.setLearningUnits(List.of(unit));
+
+        List<Document> pipeline = edit(request);
+
+        Document units = pipeline.get(0).get("$set", Document.class).get("learningUnits", Document.class);
+        Document map = units.get("$map", Document.class);
+        // The requested flag is not taken; completion comes from the stored unit with the same id
+        assertThat(map.toJson()).contains("$$stored.isCompleted").doesNotContain("\"isCompleted\": false");
+        assertThat(pipeline.get(1).get("$set", Document.class).keySet())
+                .containsExactly("unitCount", "completedUnitCount", "completedHours");
+        assertThat(pipeline.get(2).get("$set", Document.class).keySet())
+                .containsExactly("isCompleted", "actualCompletionDate", "completionPercentage");
+        // The parent's stored fork snapshot no longer matches its content
+        assertThat(pipeline.get(0).get("$set", Document.class)).containsEntry("forkSnapshotId", "$$REMOVE");
+    }
+
+    @Test
+    void blankTitleIsRejectedBeforeAnythingIsWritten() {
+        LearningPlanDTO.UpdateLearningPlanRequest request = new LearningPlanDTO.UpdateLearningPlanRequest();
+        request.setTitle(" ");
+
+        assertThatThrownBy(() -> writeService.updateLearningPlan(PLAN_ID, request))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        verify(learningPlans, never()).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+    }
+
+    @Test
+    void editOfAMissingPlanIsNotFound() {
+        assertThatThrownBy(() -> writeService.updateLearningPlan(PLAN_ID, new LearningPlanDTO.UpdateLearningPlanRequest()))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+        verify(domainEventPublisher, never()).learningPlanUpdated(any());
+    }
+
+    @Test
+    void deleteReadsTheOwnerInTheSameTransaction() {
+        when(domainEventPublisher.ownerId(PLAN_ID)).thenAnswer(invocation -> record("owner", "owner-1"));
+        doAnswer(invocation -> record("delete", null)).when(learningPlanService).deleteLearningPlan(PLAN_ID);
+        doAnswer(invocation -> record("publish", null)).when(domainEventPublisher).learningPlanDeleted(PLAN_ID, "owner-1");
+
+        writeService.deleteLearningPlan(PLAN_ID);
+
+        assertThat(transactional).containsExactly("owner", "delete", "publish");
+    }
+
+    @Test
+    void nothingIsPublishedWhenTheMutationFails() {
+        doThrow(new IllegalStateException("boom")).when(learningPlanService).deleteLearningPlan(PLAN_ID);
+
+        assertThatThrownBy(() -> writeService.deleteLearningPlan(PLAN_ID)).isInstanceOf(IllegalStateException.class);
+        verify(domainEventPublisher, never()).learningPlanDeleted(anyString(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Document> edit(LearningPlanDTO.UpdateLearningPlanRequest request) {
+        Document updated = new Document("_id", new ObjectId(PLAN_ID));
+        when(learningPlans.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(updated);
+        when(converter.read(LearningPlan.class, updated)).thenReturn(new LearningPlan());
+        when(referenceResolver.toLearningPlanResponses(anyList())).thenReturn(List.of(response()));
+
+        writeService.updateLearningPlan(PLAN_ID, request);
+
+        ArgumentCaptor<List<Document>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(learningPlans).findOneAndUpdate(any(Bson.class), pipeline.capture(), any(FindOneAndUpdateOptions.class));
+        return pipeline.getValue();
+    }
+
+    private <T> T record(String step, T result) {
+        assertThat(inTransaction).as(step + " runs inside the transaction").isTrue();
+        transactional.add(step);
+        return result;
+    }
+
+    private static LearningPlanDTO.LearningPlanResponse response() {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(PLAN_ID);
+        return new LearningPlanDTO.LearningPlanResponse(plan, null);
+    }
+}
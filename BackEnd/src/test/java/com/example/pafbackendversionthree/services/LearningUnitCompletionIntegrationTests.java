@@ -0,0 +1,98 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningUnitCompletionIntegrationTests extends MongoIntegrationTests {
+
+    private static final int UNITS = 4;
+
+    private DomainEventPublisher domainEventPublisher;
+    private LearningUnitCompletionService completionService;
+
+    @BeforeEach
+    void setUp() {
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toLearningPlanResponses(anyList())).thenAnswer(invocation -> {
+            List<LearningPlan> plans = invocation.getArgument(0);
+            return plans.stream()
+                    .map(plan -> new LearningPlanDTO.LearningPlanResponse(plan, null))
+                    .collect(Collectors.toList());
+        });
+        domainEventPublisher = mock(DomainEventPublisher.class);
+        completionService = new LearningUnitCompletionService(mongoTemplate, referenceResolver, domainEventPublisher,
+                transactionOperations);
+    }
+
+    @Test
+    void concurrentCompletionsCountEveryUnitOnce() throws Exception {
+        LearningPlan plan = plan();
+        AtomicInteger threads = new AtomicInteger();
+
+        // Every thread completes every unit, each starting at a different one
+        concurrently(UNITS, () -> {
+            int first = threads.getAndIncrement();
+            for (int i = 0; i < UNITS; i++) {
+                completionService.completeLearningUnit(plan.getId(), "u" + (first + i) % UNITS);
+            }
+            return null;
+        });
+
+        LearningPlan stored = mongoTemplate.findById(plan.getId(), LearningPlan.class);
+        assertThat(stored.getLearningUnits()).allMatch(LearningPlan.LearningUnit::isCompleted);
+        assertThat(stored.getCompletedUnitCount()).isEqualTo(UNITS);
+        assertThat(stored.getCompletedHours()).isEqualTo(1 + 2 + 3 + 4);
+        assertThat(stored.getCompletionPercentage()).isEqualTo(100.0);
+        assertThat(stored.isCompleted()).isTrue();
+        for (int i = 0; i < UNITS; i++) {
+            verify(domainEventPublisher, times(1)).learningUnitCompleted(any(), eq("u" + i));
+        }
+    }
+
+    @Test
+    void partialCompletionIsDerivedInTheSameWrite() {
+        LearningPlan plan = plan();
+
+        completionService.completeLearningUnit(plan.getId(), "u3");
+
+        LearningPlan stored = mongoTemplate.findById(plan.getId(), LearningPlan.class);
+        assertThat(stored.getCompletedUnitCount()).isEqualTo(1);
+        assertThat(stored.getCompletedHours()).isEqualTo(4);
+        assertThat(stored.getCompletionPercentage()).isEqualTo(25.0);
+        assertThat(stored.isCompleted()).isFalse();
+    }
+
+    private LearningPlan plan() {
+        List<LearningPlan.LearningUnit> units = new ArrayList<>();
+        for (int i = 0; i < UNITS; i++) {
+            LearningPlan.LearningUnit unit = new LearningPlan.LearningUnit();
+            unit.setUnitId("u" + i);
+            unit.setTitle("Unit " + i);
+            unit.setEstimatedHours(i + 1);
+            units.add(unit);
+        }
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setTitle("Sourdough");
+        plan.setLearningUnits(units);
+        plan.refreshCompletionStats();
+        return mongoTemplate.insert(plan);
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.PlanContentSnapshot;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LearningUnitCompletionServiceTests {
+
+    private static final String PLAN_ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private MongoCollection<Document> learningPlans;
+    private MongoConverter converter;
+    private DomainEventPublisher domainEventPublisher;
+    private LearningUnitCompletionService completionService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        learningPlans = mock(MongoCollection.class);
+        converter = mock(MongoConverter.class);
+        when(mongoTemplate.getCollection("learning_plans")).thenReturn(learningPlans);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toLearningPlanResponses(anyList())).thenAnswer(invocation -> {
+            List<LearningPlan> plans = invocation.getArgument(0);
+            return plans.stream()
+                    .map(plan -> new LearningPlanDTO.LearningPlanResponse(plan, null))
+                    .collect(Collectors.toList());
+        });
+        domainEventPublisher = mock(DomainEventPublisher.class);
+        completionService = new LearningUnitCompletionService(mongoTemplate, referenceResolver, domainEventPublisher,
+                TransactionOperations.withoutTransaction());
+    }
+
+    @Test
+    void openUnitIsCompletedWithOneWriteAndPublishedOnce() {
+        Document updated = new Document("_id", new ObjectId(PLAN_ID));
+        LearningPlan completed = plan(unit("u1", true), unit("u2", false));
+        when(learningPlans.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(updated);
+        when(converter.read(LearningPlan.class, updated)).thenReturn(completed);
+
+        LearningPlanDTO.LearningPlanResponse response = completionService.completeLearningUnit(PLAN_ID, "u1");
+
+        assertThat(response.getId()).isEqualTo(PLAN_ID);
+        verify(domainEventPublisher).learningUnitCompleted(response, "u1");
+        verify(mongoTemplate, never()).save(any());
+        verify(mongoTemplate, never()).findById(anyString(), eq(LearningPlan.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writeOnlyMatchesTheUnitWhileItIsOpenAndDerivesCompletion() {
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(plan(unit("u1", true)));
+
+        completionService.completeLearningUnit(PLAN_ID, "u1");
+
+        ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+        ArgumentCaptor<List<Bson>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(learningPlans).findOneAndUpdate(filter.capture(), pipeline.capture(), any(FindOneAndUpdateOptions.class));
+        assertThat(filter.getValue()).isEqualTo(new Document("_id", new ObjectId(PLAN_ID))
+                .append("learningUnits", new Document("$elemMatch", new Document("unitId", "u1")
+                        .append("isCompleted", new Document("$ne", true)))));
+        assertThat(pipeline.getValue()).hasSize(2);
+        Document unitStage = ((Document) pipeline.getValue().get(0)).get("$set", Document.class);
+        assertThat(unitStage).containsKeys("learningUnits", "completedUnitCount", "completedHours", "updatedAt");
+        Document completionStage = ((Document) pipeline.getValue().get(1)).get("$set", Document.class);
+        assertThat(completionStage).containsOnlyKeys("isCompleted", "actualCompletionDate", "completionPercentage");
+    }
+
+    @Test
+    void completingACompletedUnitWritesNothingAndPublishesNothing() {
+        LearningPlan plan = plan(unit("u1", true));
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(plan);
+
+        LearningPlanDTO.LearningPlanResponse response = completionService.completeLearningUnit(PLAN_ID, "u1");
+
+        assertThat(response.getLearningUnits().get(0).isCompleted()).isTrue();
+        verify(domainEventPublisher, never()).learningUnitCompleted(any(), anyString());
+    }
+
+    @Test
+    void unknownUnitIsNotFound() {
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(plan(unit("u1", false)));
+
+        assertThatThrownBy(() -> completionService.completeLearningUnit(PLAN_ID, "missing"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void unknownPlanIsNotFound() {
+        assertThatThrownBy(() -> completionService.completeLearningUnit(PLAN_ID, "u1"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void unitThatNeverMatchesIsAConflictAfterBoundedRetries() {
+        // Open in the read but never matched by the write, e.g. the units are being rewritten
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(plan(unit("u1", false)));
+
+        assertThatThrownBy(() -> completionService.completeLearningUnit(PLAN_ID, "u1"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+        verify(learningPlans, times(5)).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+        verify(domainEventPublisher, never()).learningUnitCompleted(any(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sharedForkRecordsTheCompletionWithoutTouchingTheSnapshot() {
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(sharedPlan());
+        when(mongoTemplate.findById("snapshot-1", PlanContentSnapshot.class)).thenReturn(
+                new PlanContentSnapshot("snapshot-1", List.of(unit("u1", false), unit("u2", false)), List.of()));
+        Document updated = new Document("_id", new ObjectId(PLAN_ID));
+        when(learningPlans.findOneAndUpdate(eq(sharedFilter("u1")), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(updated);
+        when(converter.read(LearningPlan.class, updated)).thenReturn(sharedPlan());
+
+        LearningPlanDTO.LearningPlanResponse response = completionService.completeLearningUnit(PLAN_ID, "u1");
+
+        verify(domainEventPublisher).learningUnitCompleted(response, "u1");
+        ArgumentCaptor<List<Bson>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(learningPlans).findOneAndUpdate(eq(sharedFilter("u1")), pipeline.capture(), any(FindOneAndUpdateOptions.class));
+        Document unitStage = ((Document) pipeline.getValue().get(0)).get("$set", Document.class);
+        assertThat(unitStage).containsKeys("unitCompletions.u1", "completedUnitCount", "completedHours")
+                .doesNotContainKey("learningUnits");
+    }
+
+    @Test
+    void sharedUnitCompletedBeforeWritesNothing() {
+        LearningPlan plan = sharedPlan();
+        plan.setUnitCompletions(Map.of("u1", new Date()));
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(plan);
+
+        completionService.completeLearningUnit(PLAN_ID, "u1");
+
+        verify(mongoTemplate, never()).findById("snapshot-1", PlanContentSnapshot.class);
+        verify(domainEventPublisher, never()).learningUnitCompleted(any(), anyString());
+    }
+
+    @Test
+    void forkMaterializedMeanwhileIsCompletedInPlaceOnTheNextAttempt() {
+        Document updated = new Document("_id", new ObjectId(PLAN_ID));
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(sharedPlan());
+        when(mongoTemplate.findById("snapshot-1", PlanContentSnapshot.class)).thenReturn(
+                new PlanContentSnapshot("snapshot-1", List.of(unit("u1", false)), List.of()));
+        // Missed as a shared fork, then matched once the units were copied onto the plan
+        when(learningPlans.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(null, null, updated);
+        when(converter.read(LearningPlan.class, updated)).thenReturn(plan(unit("u1", true)));
+
+        completionService.completeLearningUnit(PLAN_ID, "u1");
+
+        verify(learningPlans, times(3)).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+        verify(domainEventPublisher, times(1)).learningUnitCompleted(any(), eq("u1"));
+    }
+
+    @Test
+    void sharedUnitIdThatIsNotAFieldNameIsRejected() {
+        when(mongoTemplate.findById(PLAN_ID, LearningPlan.class)).thenReturn(sharedPlan());
+        when(mongoTemplate.findById("snapshot-1", PlanContentSnapshot.class)).thenReturn(
+                new PlanContentSnapshot("snapshot-1", List.of(unit("a.b", false)), List.of()));
+
+        assertThatThrownBy(() -> completionService.completeLearningUnit(PLAN_ID, "a.b"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static Document sharedFilter(String unitId) {
+        return new Document("_id", new ObjectId(PLAN_ID))
+                .append("contentSnapshotId", "snapshot-1")
+                .append("unitCompletions." + unitId, new Document("$exists", false));
+    }
+
+    private static LearningPlan sharedPlan() {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(PLAN_ID);
+        plan.setContentSnapshotId("snapshot-1");
+        plan.setUnitCount(2);
+        return plan;
+    }
+
+    private static LearningPlan plan(LearningPlan.LearningUnit... units) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(PLAN_ID);
+        plan.setLearningUnits(new ArrayList<>(List.of(units)));
+        return plan;
+    }
+
+    private static LearningPlan.LearningUnit unit(String unitId, boolean completed) {
+        LearningPlan.LearningUnit unit = new LearningPlan.LearningUnit();
+        unit.setUnitId(unitId);
+        unit.setTitle(unitId);
+        unit.setEstimatedHours(2);
+        unit.setCompleted(completed);
+        return unit;
+    }
+}
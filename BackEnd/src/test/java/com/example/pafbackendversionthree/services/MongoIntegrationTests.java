@@ -0,0 +1,69 @@
+package com.example.pafbackendversionthree.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Base of the tests that run the atomic updates against a real MongoDB: a single-node replica set
+ * in a container, so transactions work as in production. Each test starts on an empty database.
+ * Skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+abstract class MongoIntegrationTests {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private MongoClient client;
+    protected MongoTemplate mongoTemplate;
+    protected TransactionOperations transactionOperations;
+
+    @BeforeEach
+    void connect() {
+        client = MongoClients.create(MONGO.getReplicaSetUrl());
+        SimpleMongoClientDatabaseFactory databaseFactory = new SimpleMongoClientDatabaseFactory(client, "paf_it");
+        databaseFactory.getMongoDatabase().drop();
+        mongoTemplate = new MongoTemplate(databaseFactory);
+        transactionOperations = new TransactionTemplate(new MongoTransactionManager(databaseFactory));
+    }
+
+    @AfterEach
+    void disconnect() {
+        client.close();
+    }
+
+    // Runs the task on that many threads at once and returns what each returned
+    protected static <T> List<T> concurrently(int threads, Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(task));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.OutboxEvent;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxDispatcherTests {
+
+    private MongoTemplate mongoTemplate;
+    private DomainEventBus domainEventBus;
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        domainEventBus = new DomainEventBus(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        domainEventBus.shutdown();
+    }
+
+    @Test
+    void eventsOfAnAggregateAreDeliveredInOrderAndMarkedTogether() {
+        domainEventBus.subscribe(event -> handled.add(event.getId()));
+        List<OutboxEvent> events = List.of(event("a1", "a"), event("b1", "b"), event("a2", "a"), event("a3", "a"));
+        pending(events);
+
+        dispatcher(10).dispatch();
+
+        assertThat(handled.stream().filter(id -> id.startsWith("a"))).containsExactly("a1", "a2", "a3");
+        assertThat(markedDispatched()).containsExactlyInAnyOrder("a1", "a2", "a3", "b1");
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(OutboxEvent.class));
+    }
+
+    @Test
+    void batchIsLeasedBeforeDeliveryAndAggregatesLeasedElsewhereAreSkipped() {
+        when(mongoTemplate.findDistinct(any(Query.class), eq("aggregateId"), eq(OutboxEvent.class), eq(String.class)))
+                .thenReturn(List.of("held"));
+        pending(List.of(event("a1", "a")));
+
+        dispatcher(10).dispatch();
+
+        ArgumentCaptor<Query> claimed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(claimed.capture(), eq(OutboxEvent.class));
+        assertThat(claimed.getValue().getQueryObject().get("aggregateId", Document.class))
+                .isEqualTo(new Document("$nin", List.of("held")));
+
+        List<Document> writes = updateMultis().stream().map(write -> write.update().getUpdateObject()).toList();
+        Document lease = writes.get(0).get("$set", Document.class);
+        assertThat(lease.getString("leaseOwner")).isNotBlank();
+        assertThat(lease.get("leaseUntil")).isInstanceOf(Date.class);
+        // Settled only while the lease is still this instance's
+        assertThat(updateMultis().get(1).query().getQueryObject()).containsEntry("leaseOwner", lease.getString("leaseOwner"));
+    }
+
+    @Test
+    void failureHoldsBackTheRestOfItsAggregateOnly() {
+        domainEventBus.subscribe(event -> {
+            if (event.getId().equals("a2")) {
+                throw new IllegalStateException("index unavailable");
+            }
+            handled.add(event.getId());
+        });
+        pending(List.of(event("a1", "a"), event("a2", "a"), event("a3", "a"), event("b1", "b")));
+        OutboxDispatcher dispatcher = dispatcher(10);
+
+        dispatcher.dispatch();
+
+        assertThat(handled).containsExactlyInAnyOrder("a1", "b1");
+        assertThat(markedDispatched()).containsExactlyInAnyOrder("a1", "b1");
+        Document failure = recordedFailure("a2");
+        assertThat(failure.get("$set", Document.class))
+                .containsEntry("attempts", 1)
+                .containsEntry("lastError", "index unavailable")
+                .doesNotContainKey("dispatched");
+        assertThat(failure.get("$unset", Document.class)).containsKey("leaseUntil");
+        assertThat(released()).containsExactly("a3");
+        assertThat(dispatcher.stats()).containsEntry("deliveredEvents", 2L).containsEntry("failedDeliveries", 1L);
+    }
+
+    @Test
+    void eventIsGivenUpOnAfterMaxAttempts() {
+        domainEventBus.subscribe(event -> {
+            throw new IllegalStateException("still failing");
+        });
+        OutboxEvent event = event("a1", "a");
+        event.setAttempts(2);
+        pending(List.of(event));
+        OutboxDispatcher dispatcher = dispatcher(10);
+
+        dispatcher.dispatch();
+
+        assertThat(recordedFailure("a1").get("$set", Document.class))
+                .containsEntry("attempts", 3)
+                .containsEntry("dispatched", true);
+        assertThat(dispatcher.stats()).containsEntry("abandonedEvents", 1L);
+    }
+
+    @Test
+    void aggregateStillInFlightKeepsItsLeaseUntilItsDeliveryEnds() {
+        CountDownLatch release = new CountDownLatch(1);
+        domainEventBus.subscribe(event -> {
+            if (event.getAggregateId().equals("slow")) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            handled.add(event.getId());
+        });
+        pending(List.of(event("slow1", "slow"), event("fast1", "fast")));
+        OutboxDispatcher dispatcher = new OutboxDispatcher(mongoTemplate, domainEventBus, 10, 3, 50, 60_000,
+                TransactionOperations.withoutTransaction());
+
+        dispatcher.dispatch();
+        assertThat(markedDispatched()).containsExactly("fast1");
+        assertThat(dispatcher.stats()).containsEntry("busyAggregates", 1);
+
+        dispatcher.dispatch();
+        Query renewal = updateMultis().get(2).query();
+        assertThat(renewal.getQueryObject().get("aggregateId", Document.class))
+                .isEqualTo(new Document("$in", List.of("slow")));
+
+        release.countDown();
+        verify(mongoTemplate, timeout(5_000).times(4))
+                .updateMulti(any(Query.class), any(UpdateDefinition.class), eq(OutboxEvent.class));
+        assertThat(handled).contains("slow1");
+        assertThat(markedDispatched()).containsExactly("fast1", "slow1");
+    }
+
+    @Test
+    void fullBatchesAreDrainedWithoutWaitingForTheNextTick() {
+        domainEventBus.subscribe(event -> handled.add(event.getId()));
+        when(mongoTemplate.find(any(Query.class), eq(OutboxEvent.class)))
+                .thenReturn(List.of(event("a1", "a"), event("b1", "b")))
+                .thenReturn(List.of(event("c1", "c")));
+
+        dispatcher(2).dispatch();
+
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(OutboxEvent.class));
+        assertThat(handled).containsExactlyInAnyOrder("a1", "b1", "c1");
+    }
+
+    private record Write(Query query, UpdateDefinition update) {
+    }
+
+    private OutboxDispatcher dispatcher(int batchSize) {
+        return new OutboxDispatcher(mongoTemplate, domainEventBus, batchSize, 3, 5_000, 60_000,
+                TransactionOperations.withoutTransaction());
+    }
+
+    private void pending(List<OutboxEvent> events) {
+        when(mongoTemplate.find(any(Query.class), eq(OutboxEvent.class))).thenReturn(events).thenReturn(List.of());
+    }
+
+    private List<Write> updateMultis() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, atLeastOnce()).updateMulti(query.capture(), update.capture(), eq(OutboxEvent.class));
+        List<Write> writes = new ArrayList<>();
+        for (int i = 0; i < query.getAllValues().size(); i++) {
+            writes.add(new Write(query.getAllValues().get(i), update.getAllValues().get(i)));
+        }
+        return writes;
+    }
+
+    // Ids across every updateMulti that marked events dispatched
+    private List<String> markedDispatched() {
+        return ids(write -> {
+            Document set = write.update().getUpdateObject().get("$set", Document.class);
+            return set != null && set.containsKey("dispatched");
+        });
+    }
+
+    // Ids across every updateMulti that only gave a lease back
+    private List<String> released() {
+        return ids(write -> write.update().getUpdateObject().get("$set") == null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> ids(Predicate<Write> selected) {
+        List<String> ids = new ArrayList<>();
+        for (Write write : updateMultis()) {
+            Document id = write.query().getQueryObject().get("id", Document.class);
+            if (id != null && selected.test(write)) {
+                ids.addAll((Collection<String>) id.get("$in"));
+            }
+        }
+        return ids;
+    }
+
+    private Document recordedFailure(String eventId) {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(OutboxEvent.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("id", eventId).containsKey("leaseOwner");
+        return update.getValue().getUpdateObject();
+    }
+
+    private static OutboxEvent event(String id, String aggregateId) {
+        OutboxEvent event = new OutboxEvent(OutboxEvent.Type.LEARNING_PLAN_UPDATED, aggregateId,
+                Map.of("ownerId", new ObjectId().toHexString()));
+        event.setId(id);
+        return event;
+    }
+}
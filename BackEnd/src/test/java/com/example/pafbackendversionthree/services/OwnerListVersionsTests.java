@@ -0,0 +1,142 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OwnerListVersionsTests {
+
+    private MongoTemplate mongoTemplate;
+    private MongoCollection<Document> collection;
+    private FindIterable<Document> found;
+    private OwnerListVersions ownerListVersions;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        collection = mock(MongoCollection.class);
+        found = mock(FindIterable.class);
+        when(mongoTemplate.getCollection("owner_list_versions")).thenReturn(collection);
+        when(collection.find(any(Bson.class))).thenReturn(found);
+        ownerListVersions = new OwnerListVersions(mongoTemplate);
+    }
+
+    @Test
+    void versionIsReadFromTheOwnersCounter() {
+        when(found.first()).thenReturn(new Document("_id", "plans:owner-1").append("version", 7L));
+
+        assertThat(ownerListVersions.learningPlans("owner-1")).isEqualTo(7L);
+
+        ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+        verify(collection).find(filter.capture());
+        assertThat(filter.getValue().toBsonDocument().getString("_id").getValue()).isEqualTo("plans:owner-1");
+    }
+
+    @Test
+    void listThatWasNeverChangedIsAtVersionZero() {
+        assertThat(ownerListVersions.progressUpdates("user-1")).isZero();
+    }
+
+    @Test
+    void eachOwnerIsBumpedOnceInOneUnorderedBulkWrite() {
+        ownerListVersions.learningPlansChanged(Arrays.asList("owner-1", "owner-2", "owner-1", null));
+
+        List<UpdateOneModel<Document>> writes = bumps();
+        assertThat(writes).extracting(write -> write.getFilter().toBsonDocument().getString("_id").getValue())
+                .containsExactly("plans:owner-1", "plans:owner-2");
+        assertThat(writes).allSatisfy(write -> {
+            assertThat(write.getOptions().isUpsert()).isTrue();
+            assertThat(write.getUpdate().toBsonDocument().getDocument("$inc").getInt64("version").getValue())
+                    .isEqualTo(1L);
+        });
+    }
+
+    @Test
+    void nothingToBumpWritesNothing() {
+        ownerListVersions.progressUpdatesChanged(Arrays.asList(null, null));
+        ownerListVersions.progressUpdatesChangedFor(List.of());
+        ownerListVersions.learningPlansChangedFor(List.of());
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void updatesAreResolvedToTheirUsersInOneQuery() {
+        String updateId = new ObjectId().toHexString();
+        ProgressUpdate first = new ProgressUpdate();
+        first.setUser(user("user-1"));
+        ProgressUpdate second = new ProgressUpdate();
+        second.setUser(user("user-1"));
+        when(mongoTemplate.find(any(Query.class), eq(ProgressUpdate.class))).thenReturn(List.of(first, second));
+
+        ownerListVersions.progressUpdatesChangedFor(List.of(updateId, "legacy-id"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(ProgressUpdate.class));
+        assertThat(query.getValue().getQueryObject().get("id", Document.class).get("$in", List.class))
+                .containsExactly(new ObjectId(updateId), "legacy-id");
+        assertThat(query.getValue().getFieldsObject().keySet()).containsExactly("user");
+        assertThat(bumps()).extracting(write -> write.getFilter().toBsonDocument().getString("_id").getValue())
+                .containsExactly("updates:user-1");
+    }
+
+    @Test
+    void plansAreResolvedToTheirOwnersInOneQuery() {
+        String planId = new ObjectId().toHexString();
+        LearningPlan first = new LearningPlan();
+        first.setOwner(user("owner-1"));
+        LearningPlan second = new LearningPlan();
+        second.setOwner(user("owner-2"));
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenReturn(List.of(first, second));
+
+        ownerListVersions.learningPlansChangedFor(List.of(planId));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LearningPlan.class));
+        assertThat(query.getValue().getQueryObject().get("id", Document.class).get("$in", List.class))
+                .containsExactly(new ObjectId(planId));
+        assertThat(query.getValue().getFieldsObject().keySet()).containsExactly("owner");
+        assertThat(bumps()).extracting(write -> write.getFilter().toBsonDocument().getString("_id").getValue())
+                .containsExactly("plans:owner-1", "plans:owner-2");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<UpdateOneModel<Document>> bumps() {
+        ArgumentCaptor<List<WriteModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+        verify(collection).bulkWrite(writes.capture(), options.capture());
+        assertThat(options.getValue().isOrdered()).isFalse();
+        return writes.getValue().stream().map(write -> (UpdateOneModel<Document>) write).toList();
+    }
+
+    private static AppUser user(String id) {
+        AppUser user = mock(AppUser.class);
+        when(user.getId()).thenReturn(id);
+        return user;
+    }
+}
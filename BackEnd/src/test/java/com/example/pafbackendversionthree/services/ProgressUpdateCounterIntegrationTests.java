@@ -0,0 +1,98 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProgressUpdateCounterIntegrationTests extends MongoIntegrationTests {
+
+    private static final int THREADS = 4;
+    private static final int LIKES_PER_THREAD = 10;
+
+    private ReferenceResolver referenceResolver;
+
+    @BeforeEach
+    void setUp() {
+        referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenAnswer(invocation -> {
+            List<ProgressUpdate> updates = invocation.getArgument(0);
+            return updates.stream()
+                    .map(update -> new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null))
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Test
+    void concurrentLikesAreAllCounted() throws Exception {
+        ProgressUpdateCounterService counters = counters(false);
+        String id = update(0);
+
+        concurrently(THREADS, () -> {
+            for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                counters.likeProgressUpdate(id);
+            }
+            return null;
+        });
+
+        assertThat(likeCount(id)).isEqualTo(THREADS * LIKES_PER_THREAD);
+    }
+
+    @Test
+    void concurrentUnlikesStopAtZero() throws Exception {
+        ProgressUpdateCounterService counters = counters(false);
+        String id = update(3);
+
+        concurrently(THREADS, () -> {
+            for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                counters.unlikeProgressUpdate(id);
+            }
+            return null;
+        });
+
+        assertThat(likeCount(id)).isZero();
+    }
+
+    @Test
+    void writeBehindFlushAppliesTheBurstClampedAtZero() {
+        ProgressUpdateCounterService counters = counters(true);
+        String liked = update(1);
+        String unliked = update(1);
+        for (int i = 0; i < 3; i++) {
+            counters.likeProgressUpdate(liked);
+            counters.unlikeProgressUpdate(unliked);
+        }
+
+        counters.flushPendingLikes();
+
+        assertThat(likeCount(liked)).isEqualTo(4);
+        assertThat(likeCount(unliked)).isZero();
+    }
+
+    private ProgressUpdateCounterService counters(boolean writeBehind) {
+        return new ProgressUpdateCounterService(mongoTemplate, referenceResolver,
+                new EntityCache<>("updates", 100, 60_000), new OwnerListVersions(mongoTemplate), transactionOperations,
+                writeBehind);
+    }
+
+    private String update(int likeCount) {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(new ObjectId().toHexString());
+        update.setTitle("Day 1");
+        update.setLikeCount(likeCount);
+        return mongoTemplate.insert(update).getId();
+    }
+
+    private int likeCount(String id) {
+        return mongoTemplate.findById(id, ProgressUpdate.class).getLikeCount();
+    }
+}
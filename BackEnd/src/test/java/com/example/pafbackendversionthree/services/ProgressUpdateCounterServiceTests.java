@@ -0,0 +1,224 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProgressUpdateCounterServiceTests {
+
+    private MongoTemplate mongoTemplate;
+    private MongoCollection<Document> progressUpdates;
+    private OwnerListVersions ownerListVersions;
+    private EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> cache;
+    private ReferenceResolver referenceResolver;
+    private TransactionOperations transactionOperations;
+    private boolean inTransaction;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        progressUpdates = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection("progress_updates")).thenReturn(progressUpdates);
+        ownerListVersions = mock(OwnerListVersions.class);
+        // A list version bump must commit with the counter write it describes
+        doAnswer(invocation -> {
+            assertThat(inTransaction).as("list version bump runs inside the transaction").isTrue();
+            return null;
+        }).when(ownerListVersions).progressUpdatesChanged(anyCollection());
+        doAnswer(invocation -> {
+            assertThat(inTransaction).as("list version bump runs inside the transaction").isTrue();
+            return null;
+        }).when(ownerListVersions).progressUpdatesChangedFor(anyCollection());
+        transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(invocation -> {
+            inTransaction = true;
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction = false;
+            }
+        });
+        cache = new EntityCache<>("progressUpdates", 10, 60_000);
+        referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenAnswer(invocation -> {
+            List<ProgressUpdate> updates = invocation.getArgument(0);
+            return updates.stream()
+                    .map(update -> new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null))
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @Test
+    void likeIsOneAtomicIncrement() {
+        ProgressUpdate liked = update(new ObjectId().toHexString(), 4);
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(ProgressUpdate.class))).thenReturn(liked);
+
+        ProgressUpdateDTO.ProgressUpdateResponse response = service(false).likeProgressUpdate(liked.getId());
+
+        ArgumentCaptor<UpdateDefinition> increment = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), increment.capture(),
+                any(FindAndModifyOptions.class), eq(ProgressUpdate.class));
+        assertThat(increment.getValue().getUpdateObject())
+                .isEqualTo(new Document("$inc", new Document("likeCount", 1)));
+        verify(mongoTemplate, never()).save(any());
+        assertThat(response.getLikeCount()).isEqualTo(4);
+        assertThat(cache.stats().get("invalidations")).isEqualTo(1L);
+        verify(ownerListVersions).progressUpdatesChanged(List.of(liked.getUser().getId()));
+    }
+
+    @Test
+    void unlikeNeverGoesBelowZero() {
+        ProgressUpdate unliked = update(new ObjectId().toHexString(), 0);
+        when(mongoTemplate.findById(unliked.getId(), ProgressUpdate.class)).thenReturn(unliked);
+
+        ProgressUpdateDTO.ProgressUpdateResponse response = service(false).unlikeProgressUpdate(unliked.getId());
+
+        ArgumentCaptor<Query> guarded = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(guarded.capture(), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(ProgressUpdate.class));
+        assertThat(guarded.getValue().getQueryObject())
+                .containsEntry("likeCount", new Document("$gt", 0));
+        assertThat(response.getLikeCount()).isZero();
+        verify(ownerListVersions, never()).progressUpdatesChanged(anyCollection());
+    }
+
+    @Test
+    void bufferedLikesAreWrittenAsOneClampedUpdatePerBurst() {
+        ProgressUpdateCounterService counters = service(true);
+        ProgressUpdate stored = update(new ObjectId().toHexString(), 1);
+        when(mongoTemplate.findById(stored.getId(), ProgressUpdate.class)).thenReturn(stored);
+
+        counters.likeProgressUpdate(stored.getId());
+        counters.likeProgressUpdate(stored.getId());
+        ProgressUpdateDTO.ProgressUpdateResponse response = counters.unlikeProgressUpdate(stored.getId());
+
+        assertThat(response.getLikeCount()).isEqualTo(2);
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(ProgressUpdate.class));
+
+        counters.flushPendingLikes();
+        List<UpdateOneModel<Document>> writes = flushedWrites(1);
+        assertThat(writes).hasSize(1);
+        assertThat(idOf(writes.get(0))).isEqualTo(stored.getId());
+        assertThat(writes.get(0).getUpdatePipeline().get(0).toBsonDocument().toJson())
+                .contains("\"$max\"").contains("\"$add\"");
+        verify(ownerListVersions).progressUpdatesChangedFor(List.of(stored.getId()));
+
+        counters.flushPendingLikes();
+        flushedWrites(1);
+    }
+
+    @Test
+    void writeErrorRetriesTheWholeBurstBecauseItsTransactionWasAborted() {
+        ProgressUpdateCounterService counters = service(true);
+        String first = buffer(counters, 5);
+        String second = buffer(counters, 7);
+        when(progressUpdates.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenThrow(bulkFailureAt(0))
+                .thenReturn(BulkWriteResult.unacknowledged());
+
+        counters.flushPendingLikes();
+        verify(ownerListVersions, never()).progressUpdatesChangedFor(anyCollection());
+
+        counters.flushPendingLikes();
+        assertThat(flushedWrites(2)).extracting(ProgressUpdateCounterServiceTests::idOf)
+                .containsExactlyInAnyOrder(first, second);
+    }
+
+    @Test
+    void failedFlushRetriesTheWholeBurst() {
+        ProgressUpdateCounterService counters = service(true);
+        String first = buffer(counters, 5);
+        String second = buffer(counters, 7);
+        when(progressUpdates.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenThrow(new MongoSocketReadException("connection reset", new ServerAddress()))
+                .thenReturn(BulkWriteResult.unacknowledged());
+
+        counters.flushPendingLikes();
+        verify(ownerListVersions, never()).progressUpdatesChangedFor(anyCollection());
+
+        counters.flushPendingLikes();
+        assertThat(flushedWrites(2)).extracting(ProgressUpdateCounterServiceTests::idOf)
+                .containsExactlyInAnyOrder(first, second);
+    }
+
+    private ProgressUpdateCounterService service(boolean writeBehind) {
+        return new ProgressUpdateCounterService(mongoTemplate, referenceResolver, cache, ownerListVersions,
+                transactionOperations, writeBehind);
+    }
+
+    // Buffers one like of a new update and returns its id
+    private String buffer(ProgressUpdateCounterService counters, int likeCount) {
+        ProgressUpdate stored = update(new ObjectId().toHexString(), likeCount);
+        when(mongoTemplate.findById(stored.getId(), ProgressUpdate.class)).thenReturn(stored);
+        counters.likeProgressUpdate(stored.getId());
+        return stored.getId();
+    }
+
+    // Writes of the last of the given number of flushes
+    @SuppressWarnings("unchecked")
+    private List<UpdateOneModel<Document>> flushedWrites(int flushes) {
+        ArgumentCaptor<List<UpdateOneModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+        verify(progressUpdates, times(flushes)).bulkWrite(writes.capture(), any(BulkWriteOptions.class));
+        return writes.getValue();
+    }
+
+    private static String idOf(UpdateOneModel<Document> write) {
+        BsonDocument filter = write.getFilter().toBsonDocument();
+        return filter.getObjectId("_id").getValue().toHexString();
+    }
+
+    private static MongoBulkWriteException bulkFailureAt(int index) {
+        return new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "write failed", new BsonDocument(), index)),
+                null, new ServerAddress(), Set.of());
+    }
+
+    private static ProgressUpdate update(String id, int likeCount) {
+        AppUser author = mock(AppUser.class);
+        when(author.getId()).thenReturn(new ObjectId().toHexString());
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(id);
+        update.setUser(author);
+        update.setLikeCount(likeCount);
+        return update;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.CursorPage;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProgressUpdateFeedServiceTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MongoTemplate mongoTemplate;
+    private ReferenceResolver referenceResolver;
+    private ProgressUpdateFeedService feedService;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenAnswer(invocation -> {
+            List<ProgressUpdate> updates = invocation.getArgument(0);
+            return updates.stream()
+                    .map(update -> new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null))
+                    .collect(Collectors.toList());
+        });
+        feedService = new ProgressUpdateFeedService(mongoTemplate, referenceResolver, objectMapper);
+    }
+
+    @Test
+    void userPageFiltersOnTheUserReferenceNewestFirst() {
+        String userId = new ObjectId().toHexString();
+        List<ProgressUpdate> rows = updates(3);
+        when(mongoTemplate.find(any(Query.class), eq(ProgressUpdate.class))).thenReturn(rows);
+
+        CursorPage<ProgressUpdateDTO.ProgressUpdateResponse> page =
+                feedService.getProgressUpdatesByUserId(userId, null, 2);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(ProgressUpdate.class));
+        assertThat(query.getValue().getQueryObject())
+                .isEqualTo(new Document("user.$id", new ObjectId(userId)));
+        assertThat(query.getValue().getSortObject()).isEqualTo(new Document("id", -1));
+        assertThat(page.getItems()).extracting(ProgressUpdateDTO.ProgressUpdateResponse::getId)
+                .containsExactly(rows.get(0).getId(), rows.get(1).getId());
+        assertThat(CursorCodec.decode(page.getNextCursor()).getId().toHexString()).isEqualTo(rows.get(1).getId());
+    }
+
+    @Test
+    void streamWritesOneJsonLinePerUpdateResolvingReferencesPerBatch() throws Exception {
+        List<ProgressUpdate> rows = updates(450);
+        when(mongoTemplate.stream(any(Query.class), eq(ProgressUpdate.class))).thenReturn(rows.stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        feedService.streamPublicProgressUpdates(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(450);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode line = objectMapper.readTree(lines[i]);
+            assertThat(line.get("id").asText()).isEqualTo(rows.get(i).getId());
+        }
+
+        // 200 + 200 + 50
+        verify(referenceResolver, times(3)).toProgressUpdateResponses(anyList());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(ProgressUpdate.class));
+        assertThat(query.getValue().getQueryObject()).isEqualTo(new Document("isPublic", true));
+        assertThat(query.getValue().getMeta().getCursorBatchSize()).isEqualTo(200);
+    }
+
+    @Test
+    void emptyStreamWritesNothing() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(ProgressUpdate.class))).thenReturn(List.<ProgressUpdate>of().stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        feedService.streamAllProgressUpdates(out);
+
+        assertThat(out.size()).isZero();
+    }
+
+    private static List<ProgressUpdate> updates(int count) {
+        List<ProgressUpdate> updates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProgressUpdate update = new ProgressUpdate();
+            update.setId(new ObjectId().toHexString());
+            update.setPublic(true);
+            updates.add(update);
+        }
+        return updates;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import com.example.pafbackendversionthree.models.ProgressUpdateView;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProgressUpdateViewServiceTests {
+
+    private static final String UPDATE_ID = new ObjectId().toHexString();
+    private static final String VIEWER_ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private OwnerListVersions ownerListVersions;
+    private EntityCache<ProgressUpdateDTO.ProgressUpdateResponse> cache;
+    private ProgressUpdateViewService viewService;
+
+    // Steps that ran inside a transaction, and whether the last transaction committed
+    private final List<String> transactional = new ArrayList<>();
+    private boolean inTransaction;
+    private boolean committed;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        ownerListVersions = mock(OwnerListVersions.class);
+        cache = new EntityCache<>("progressUpdates", 10, 60_000);
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenAnswer(invocation -> {
+            List<ProgressUpdate> updates = invocation.getArgument(0);
+            return updates.stream()
+                    .map(update -> new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null))
+                    .collect(Collectors.toList());
+        });
+        TransactionOperations transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(invocation -> {
+            inTransaction = true;
+            committed = false;
+            try {
+                Object result = invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+                committed = true;
+                return result;
+            } finally {
+                inTransaction = false;
+            }
+        });
+        viewService = new ProgressUpdateViewService(mongoTemplate, referenceResolver, cache, ownerListVersions,
+                transactionOperations);
+        when(mongoTemplate.exists(any(Query.class), eq(AppUser.class))).thenReturn(true);
+        when(mongoTemplate.insert(any(ProgressUpdateView.class))).thenAnswer(invocation -> record("view", null));
+        doAnswer(invocation -> record("bump", null)).when(ownerListVersions).progressUpdatesChanged(anyCollection());
+    }
+
+    @Test
+    void firstViewInsertsTheViewAndBumpsTheCounter() {
+        ProgressUpdate viewed = update(1);
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(ProgressUpdate.class))).thenAnswer(invocation -> record("count", viewed));
+
+        ProgressUpdateDTO.ProgressUpdateResponse response = viewService.markAsViewed(UPDATE_ID, VIEWER_ID);
+
+        assertThat(transactional).containsExactly("view", "count", "bump");
+        assertThat(committed).isTrue();
+
+        ArgumentCaptor<ProgressUpdateView> view = ArgumentCaptor.forClass(ProgressUpdateView.class);
+        verify(mongoTemplate).insert(view.capture());
+        assertThat(view.getValue().getId()).isEqualTo(UPDATE_ID + ":" + VIEWER_ID);
+
+        ArgumentCaptor<UpdateDefinition> increment = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), increment.capture(),
+                any(FindAndModifyOptions.class), eq(ProgressUpdate.class));
+        assertThat(increment.getValue().getUpdateObject())
+                .isEqualTo(new Document("$inc", new Document("viewCount", 1)));
+        assertThat(response.getViewCount()).isEqualTo(1);
+        assertThat(cache.stats().get("invalidations")).isEqualTo(1L);
+    }
+
+    @Test
+    void repeatViewLeavesTheCounterAlone() {
+        doThrow(new DuplicateKeyException("duplicate")).when(mongoTemplate).insert(any(ProgressUpdateView.class));
+        when(mongoTemplate.findById(UPDATE_ID, ProgressUpdate.class)).thenReturn(update(1));
+
+        ProgressUpdateDTO.ProgressUpdateResponse response = viewService.markAsViewed(UPDATE_ID, VIEWER_ID);
+
+        assertThat(response.getViewCount()).isEqualTo(1);
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(ProgressUpdate.class));
+        verify(ownerListVersions, never()).progressUpdatesChanged(anyList());
+    }
+
+    @Test
+    void viewOfAMissingUpdateIsRolledBack() {
+        assertThatThrownBy(() -> viewService.markAsViewed(UPDATE_ID, VIEWER_ID))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+
+        // The view was inserted in the transaction that the 404 aborted
+        assertThat(transactional).containsExactly("view");
+        assertThat(committed).isFalse();
+        verify(ownerListVersions, never()).progressUpdatesChanged(anyCollection());
+    }
+
+    @Test
+    void unknownViewerIsNotFound() {
+        when(mongoTemplate.exists(any(Query.class), eq(AppUser.class))).thenReturn(false);
+
+        assertThatThrownBy(() -> viewService.markAsViewed(UPDATE_ID, VIEWER_ID))
+                .isInstanceOf(ResponseStatusException.class);
+        verify(mongoTemplate, never()).insert(any(ProgressUpdateView.class));
+    }
+
+    @Test
+    void legacyViewersMoveToTheViewStoreOncePerViewer() {
+        ObjectId rawId = new ObjectId();
+        ObjectId viewer = new ObjectId();
+        ObjectId otherViewer = new ObjectId();
+        ObjectId author = new ObjectId();
+        Document legacy = new Document("_id", rawId).append("user", new DBRef("users", author)).append("viewedBy", List.of(
+                new DBRef("users", viewer), new DBRef("users", otherViewer), new DBRef("users", viewer)));
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("progress_updates")))
+                .thenReturn(Stream.of(legacy));
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProgressUpdateView.class)).thenReturn(bulk);
+        when(mongoTemplate.count(any(Query.class), eq(ProgressUpdateView.class))).thenReturn(2L);
+
+        viewService.migrateLegacyViewers();
+
+        verify(bulk, times(2)).upsert(any(Query.class), any(Update.class));
+        verify(bulk).execute();
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq("progress_updates"));
+        assertThat(update.getValue().getUpdateObject()).isEqualTo(new Document()
+                .append("$set", new Document("viewCount", 2L))
+                .append("$unset", new Document("viewedBy", 1)));
+        // The new count shows in the author's list
+        assertThat(transactional).containsExactly("bump");
+        verify(ownerListVersions).progressUpdatesChanged(List.of(author.toHexString()));
+    }
+
+    private <T> T record(String step, T result) {
+        assertThat(inTransaction).as(step + " runs inside the transaction").isTrue();
+        transactional.add(step);
+        return result;
+    }
+
+    private static ProgressUpdate update(int viewCount) {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(UPDATE_ID);
+        update.setViewCount(viewCount);
+        return update;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProgressUpdateWriteServiceTests {
+
+    private static final String UPDATE_ID = new ObjectId().toHexString();
+
+    private MongoTemplate mongoTemplate;
+    private ReferenceResolver referenceResolver;
+    private ProgressUpdateService progressUpdateService;
+    private ProgressUpdateViewService progressUpdateViewService;
+    private DomainEventPublisher domainEventPublisher;
+    private ProgressUpdateWriteService writeService;
+
+    // What ran inside a transaction, in order
+    private final List<String> transactional = new ArrayList<>();
+    private boolean inTransaction;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        referenceResolver = mock(ReferenceResolver.class);
+        progressUpdateService = mock(ProgressUpdateService.class);
+        progressUpdateViewService = mock(ProgressUpdateViewService.class);
+        domainEventPublisher = mock(DomainEventPublisher.class);
+        TransactionOperations transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(invocation -> {
+            inTransaction = true;
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction = false;
+            }
+        });
+        writeService = new ProgressUpdateWriteService(mongoTemplate, referenceResolver, progressUpdateService,
+                progressUpdateViewService, domainEventPublisher, transactionOperations);
+    }
+
+    @Test
+    void templateUpdateAndItsEventCommitTogether() {
+        ProgressUpdateDTO.ProgressUpdateResponse response = response();
+        when(progressUpdateService.createFromTemplate("user-1", null, "WEEKLY"))
+                .thenAnswer(invocation -> record("create", response));
+        doAnswer(invocation -> record("publish", null)).when(domainEventPublisher).progressUpdateCreated(response);
+
+        writeService.createFromTemplate("user-1", null, "WEEKLY");
+
+        assertThat(transactional).containsExactly("create", "publish");
+    }
+
+    @Test
+    void editAndItsEventCommitTogether() {
+        ProgressUpdateDTO.ProgressUpdateResponse response = response();
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(ProgressUpdate.class))).thenAnswer(invocation -> record("update", new ProgressUpdate()));
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenReturn(List.of(response));
+        doAnswer(invocation -> record("publish", null)).when(domainEventPublisher).progressUpdateUpdated(response);
+
+        writeService.updateProgressUpdate(UPDATE_ID, new ProgressUpdateDTO.UpdateProgressUpdateRequest());
+
+        assertThat(transactional).containsExactly("update", "publish");
+    }
+
+    @Test
+    void editSetsOnlyTheFieldsItCarries() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(ProgressUpdate.class))).thenReturn(new ProgressUpdate());
+        when(referenceResolver.toProgressUpdateResponses(anyList())).thenReturn(List.of(response()));
+        ProgressUpdateDTO.UpdateProgressUpdateRequest request = new ProgressUpdateDTO.UpdateProgressUpdateRequest();
+        request.setTitle("Week 3");
+        request.setIsPublic(false);
+
+        writeService.updateProgressUpdate(UPDATE_ID, request);
+
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class),
+                eq(ProgressUpdate.class));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        // likeCount, viewCount and the rest of the stored update are left as they are
+        assertThat(set.keySet()).containsExactlyInAnyOrder("updatedAt", "title", "isPublic");
+        verify(mongoTemplate, never()).save(any());
+    }
+
+    @Test
+    void editOfAMissingUpdateIsNotFound() {
+        assertThatThrownBy(() -> writeService.updateProgressUpdate(UPDATE_ID,
+                new ProgressUpdateDTO.UpdateProgressUpdateRequest()))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+        verify(domainEventPublisher, never()).progressUpdateUpdated(any());
+    }
+
+    @Test
+    void deleteTakesTheViewsAndTheEventIntoTheSameTransaction() {
+        when(domainEventPublisher.userId(UPDATE_ID)).thenAnswer(invocation -> record("user", "user-1"));
+        doAnswer(invocation -> record("delete", null)).when(progressUpdateService).deleteProgressUpdate(UPDATE_ID);
+        doAnswer(invocation -> record("views", null)).when(progressUpdateViewService).deleteViews(UPDATE_ID);
+        doAnswer(invocation -> record("publish", null)).when(domainEventPublisher)
+                .progressUpdateDeleted(UPDATE_ID, "user-1");
+
+        writeService.deleteProgressUpdate(UPDATE_ID);
+
+        assertThat(transactional).containsExactly("user", "delete", "views", "publish");
+    }
+
+    private <T> T record(String step, T result) {
+        assertThat(inTransaction).as(step + " runs inside the transaction").isTrue();
+        transactional.add(step);
+        return result;
+    }
+
+    private static ProgressUpdateDTO.ProgressUpdateResponse response() {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(UPDATE_ID);
+        return new ProgressUpdateDTO.ProgressUpdateResponse(update, null, null);
+    }
+}
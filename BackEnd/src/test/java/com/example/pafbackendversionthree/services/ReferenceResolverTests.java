@@ -0,0 +1,146 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.dtos.ProgressUpdateDTO;
+import com.example.pafbackendversionthree.models.AppUser;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import com.example.pafbackendversionthree.models.PlanContentSnapshot;
+import com.example.pafbackendversionthree.models.ProgressUpdate;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReferenceResolverTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MongoTemplate mongoTemplate;
+    private ReferenceResolver referenceResolver;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        referenceResolver = new ReferenceResolver(mongoTemplate, meterRegistry);
+    }
+
+    @Test
+    void pageOfUpdatesResolvesEveryUserWithOneQuery() {
+        AppUser alice = user();
+        AppUser bob = user();
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        List<ProgressUpdate> updates = List.of(
+                update(alice, plan), update(bob, null), update(alice, null), update(bob, plan), update(alice, plan));
+        when(mongoTemplate.find(any(Query.class), eq(AppUser.class))).thenReturn(List.of(alice, bob));
+
+        List<ProgressUpdateDTO.ProgressUpdateResponse> responses = referenceResolver.toProgressUpdateResponses(updates);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(AppUser.class));
+        Document ids = query.getValue().getQueryObject().get("id", Document.class);
+        assertThat((Collection<Object>) ids.get("$in"))
+                .containsExactly(new ObjectId(alice.getId()), new ObjectId(bob.getId()));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(LearningPlan.class));
+
+        assertThat(responses).extracting(response -> response.getUser().getId())
+                .containsExactly(alice.getId(), bob.getId(), alice.getId(), bob.getId(), alice.getId());
+        assertThat(responses).extracting(ProgressUpdateDTO.ProgressUpdateResponse::getRelatedPlanId)
+                .containsExactly(plan.getId(), null, null, plan.getId(), plan.getId());
+
+        DistributionSummary batches = meterRegistry.get("references.batch.size").tag("entity", "AppUser").summary();
+        assertThat(batches.count()).isEqualTo(1);
+        assertThat(batches.totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void pageWithoutReferencesIssuesNoQuery() {
+        List<ProgressUpdateDTO.ProgressUpdateResponse> responses =
+                referenceResolver.toProgressUpdateResponses(List.of(update(null, null)));
+
+        assertThat(responses).hasSize(1);
+        assertThat(responses.get(0).getUser()).isNull();
+        verify(mongoTemplate, never()).find(any(Query.class), any(Class.class));
+    }
+
+    @Test
+    void sharedForksReadTheirSnapshotsWithOneQuery() {
+        PlanContentSnapshot snapshot = new PlanContentSnapshot("snapshot", List.of(unit("u1"), unit("u2")),
+                List.of("https://example.com/guide"));
+        LearningPlan first = sharedFork(snapshot.getId(), Map.of("u1", new Date()));
+        LearningPlan second = sharedFork(snapshot.getId(), Map.of());
+        LearningPlan owned = new LearningPlan();
+        owned.setLearningUnits(new ArrayList<>(List.of(unit("own"))));
+        when(mongoTemplate.find(any(Query.class), eq(PlanContentSnapshot.class))).thenReturn(List.of(snapshot));
+
+        List<LearningPlanDTO.LearningPlanResponse> responses =
+                referenceResolver.toLearningPlanResponses(List.of(first, second, owned));
+
+        verify(mongoTemplate).find(any(Query.class), eq(PlanContentSnapshot.class));
+        assertThat(responses.get(0).getLearningUnits()).extracting(LearningPlanDTO.LearningUnitDTO::isCompleted)
+                .containsExactly(true, false);
+        assertThat(responses.get(1).getLearningUnits()).extracting(LearningPlanDTO.LearningUnitDTO::isCompleted)
+                .containsExactly(false, false);
+        assertThat(responses.get(1).getResources()).containsExactly("https://example.com/guide");
+        assertThat(responses.get(2).getLearningUnits()).extracting(LearningPlanDTO.LearningUnitDTO::getUnitId)
+                .containsExactly("own");
+        // Snapshot units are copied, never shared between plans
+        assertThat(snapshot.getLearningUnits()).noneMatch(LearningPlan.LearningUnit::isCompleted);
+    }
+
+    @Test
+    void refIdKeepsNonObjectIdStrings() {
+        String hex = new ObjectId().toHexString();
+
+        assertThat(ReferenceResolver.refId(hex)).isEqualTo(new ObjectId(hex));
+        assertThat(ReferenceResolver.refId("legacy-id")).isEqualTo("legacy-id");
+        assertThat(ReferenceResolver.idOf(null)).isNull();
+    }
+
+    private static AppUser user() {
+        AppUser user = mock(AppUser.class);
+        when(user.getId()).thenReturn(new ObjectId().toHexString());
+        return user;
+    }
+
+    private static ProgressUpdate update(AppUser user, LearningPlan plan) {
+        ProgressUpdate update = new ProgressUpdate();
+        update.setId(new ObjectId().toHexString());
+        update.setUser(user);
+        update.setRelatedPlan(plan);
+        return update;
+    }
+
+    private static LearningPlan sharedFork(String snapshotId, Map<String, Date> completions) {
+        LearningPlan plan = new LearningPlan();
+        plan.setId(new ObjectId().toHexString());
+        plan.setContentSnapshotId(snapshotId);
+        plan.setUnitCompletions(completions);
+        return plan;
+    }
+
+    private static LearningPlan.LearningUnit unit(String unitId) {
+        LearningPlan.LearningUnit unit = new LearningPlan.LearningUnit();
+        unit.setUnitId(unitId);
+        unit.setTitle(unitId);
+        return unit;
+    }
+}
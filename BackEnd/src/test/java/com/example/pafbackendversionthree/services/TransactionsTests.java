@@ -0,0 +1,67 @@
+package com.example.pafbackendversionthree.services;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionsTests {
+
+    @Test
+    void transientFailuresRunTheWholeTransactionAgain() {
+        AtomicInteger runs = new AtomicInteger();
+
+        String result = Transactions.run(TransactionOperations.withoutTransaction(), () -> {
+            if (runs.incrementAndGet() < 3) {
+                throw writeConflict();
+            }
+            return "committed";
+        });
+
+        assertThat(result).isEqualTo("committed");
+        assertThat(runs).hasValue(3);
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> Transactions.run(TransactionOperations.withoutTransaction(), () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("broken");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void retriesAreBounded() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(() -> Transactions.run(TransactionOperations.withoutTransaction(), () -> {
+            runs.incrementAndGet();
+            throw writeConflict();
+        })).isInstanceOf(UncategorizedMongoDbException.class);
+        assertThat(runs).hasValue(5);
+    }
+
+    // What MongoTemplate throws for a write conflict: the driver exception, wrapped
+    private static RuntimeException writeConflict() {
+        BsonDocument response = new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(112))
+                .append("errmsg", new BsonString("WriteConflict"))
+                .append("errorLabels", new BsonArray(List.of(new BsonString("TransientTransactionError"))));
+        return new UncategorizedMongoDbException("WriteConflict",
+                new MongoCommandException(response, new ServerAddress()));
+    }
+}
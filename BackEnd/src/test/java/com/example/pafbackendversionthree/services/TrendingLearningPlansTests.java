@@ -0,0 +1,212 @@
+package com.example.pafbackendversionthree.services;
+
+import com.example.pafbackendversionthree.dtos.LearningPlanDTO;
+import com.example.pafbackendversionthree.models.LearningPlan;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TrendingLearningPlansTests {
+
+    private static final double HALF_LIFE_HOURS = 24;
+    private static final double TAU_MILLIS = HALF_LIFE_HOURS * 3_600_000 / Math.log(2);
+    private static final long EPOCH_MILLIS = (long) (20 * TAU_MILLIS);
+
+    private MongoTemplate mongoTemplate;
+    private final Set<String> hidden = new HashSet<>();
+
+    // trending_scores as MongoDB would keep it, by _id
+    private final Map<String, Document> scores = new HashMap<>();
+    private final List<Document> upserts = new ArrayList<>();
+    private int failingFlushes;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        // Answers like MongoDB would: public plans among the requested ids, in no particular order
+        when(mongoTemplate.find(any(Query.class), eq(LearningPlan.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Collection<String> ids = (Collection<String>) query.getQueryObject().get("id", Document.class).get("$in");
+            List<LearningPlan> plans = new ArrayList<>();
+            for (String id : ids) {
+                if (!hidden.contains(id)) {
+                    LearningPlan plan = new LearningPlan();
+                    plan.setId(id);
+                    plans.add(0, plan);
+                }
+            }
+            return plans;
+        });
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("trending_scores"))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Object epoch = query.getQueryObject().get("epoch");
+            return scores.values().stream()
+                    .filter(entry -> entry.get("epoch").equals(epoch))
+                    .sorted(Comparator.comparingDouble((Document entry) -> entry.getDouble("score")).reversed())
+                    .limit(query.getLimit())
+                    .collect(Collectors.toList());
+        });
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "trending_scores")).thenReturn(bulk);
+        when(bulk.upsert(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            UpdateDefinition update = invocation.getArgument(1);
+            upserts.add(new Document("_id", query.getQueryObject().get("_id")).append("update", update.getUpdateObject()));
+            return bulk;
+        });
+        when(bulk.execute()).thenAnswer(invocation -> {
+            List<Document> batch = new ArrayList<>(upserts);
+            upserts.clear();
+            if (failingFlushes > 0) {
+                failingFlushes--;
+                throw new DataAccessResourceFailureException("primary stepped down");
+            }
+            batch.forEach(this::apply);
+            return null;
+        });
+    }
+
+    @Test
+    void forksOutweighCompletionsWhichOutweighViews() {
+        TrendingLearningPlans trending = trending(10);
+        trending.recordView("viewed");
+        trending.recordView("viewed");
+        trending.recordCompletion("completed");
+        trending.recordFork("forked");
+
+        trending.refreshTopSummaries();
+
+        assertThat(ids(trending.getTrending(10))).containsExactly("forked", "completed", "viewed");
+    }
+
+    @Test
+    void trendingIsServedWithoutQueryingMongo() {
+        TrendingLearningPlans trending = trending(10);
+        trending.recordView("a");
+        trending.refreshTopSummaries();
+
+        trending.getTrending(10);
+        trending.getTrending(10);
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(LearningPlan.class));
+    }
+
+    @Test
+    void privateOrDeletedPlansDropOutAndTheNextOnesMoveUp() {
+        TrendingLearningPlans trending = trending(2);
+        trending.recordFork("top");
+        trending.recordCompletion("second");
+        trending.recordView("third");
+        hidden.add("second");
+
+        trending.refreshTopSummaries();
+
+        assertThat(ids(trending.getTrending(10))).containsExactly("top", "third");
+    }
+
+    @Test
+    void scoresFlushedByEveryInstanceAddUp() {
+        TrendingLearningPlans first = trending(10);
+        TrendingLearningPlans second = trending(10);
+        first.recordView("shared");
+        first.recordView("shared");
+        second.recordView("shared");
+        second.recordView("shared");
+        second.recordCompletion("local");
+
+        first.flush();
+        second.refreshTopSummaries();
+
+        // Alone, the second instance would rank "local" (3) above "shared" (2)
+        assertThat(ids(second.getTrending(10))).containsExactly("shared", "local");
+        assertThat(scores).hasSize(2);
+    }
+
+    @Test
+    void previousEpochIsMovedOntoTheCurrentLandmark() {
+        long epoch = System.currentTimeMillis() / EPOCH_MILLIS;
+        // A fork at the very end of the previous epoch, a completion right after, and a long-expired burst
+        stored(epoch - 1, "recent", 5.0 * Math.exp(EPOCH_MILLIS / TAU_MILLIS));
+        stored(epoch, "now", 3.0);
+        stored(epoch - 2, "ancient", 1e12);
+        TrendingLearningPlans trending = trending(10);
+
+        trending.refreshTopSummaries();
+
+        assertThat(ids(trending.getTrending(10))).containsExactly("recent", "now");
+    }
+
+    @Test
+    void failedFlushIsRetriedWithoutLosingIncrements() {
+        TrendingLearningPlans trending = trending(10);
+        trending.recordFork("a");
+        failingFlushes = 1;
+
+        trending.flush();
+        assertThat(scores).isEmpty();
+        trending.flush();
+
+        long epoch = System.currentTimeMillis() / EPOCH_MILLIS;
+        double offset = Math.exp((System.currentTimeMillis() - epoch * EPOCH_MILLIS) / TAU_MILLIS);
+        assertThat(scores.values()).singleElement()
+                .satisfies(entry -> assertThat(entry.getDouble("score")).isCloseTo(5.0 * offset, withinPercentage(0.01)));
+    }
+
+    private TrendingLearningPlans trending(int topK) {
+        ReferenceResolver referenceResolver = mock(ReferenceResolver.class);
+        when(referenceResolver.toLearningPlanSummaries(anyList())).thenAnswer(invocation -> {
+            List<LearningPlan> plans = invocation.getArgument(0);
+            return plans.stream()
+                    .map(plan -> new LearningPlanDTO.LearningPlanSummary(plan, null))
+                    .collect(Collectors.toList());
+        });
+        return new TrendingLearningPlans(mongoTemplate, referenceResolver, HALF_LIFE_HOURS, topK);
+    }
+
+    private void stored(long epoch, String planId, double score) {
+        scores.put(epoch + ":" + planId, new Document("_id", epoch + ":" + planId)
+                .append("planId", planId).append("epoch", epoch).append("score", score));
+    }
+
+    // $inc of the score, $setOnInsert of the rest
+    private void apply(Document upsert) {
+        Document update = upsert.get("update", Document.class);
+        Document entry = scores.computeIfAbsent(upsert.getString("_id"), id -> {
+            Document inserted = new Document("_id", id).append("score", 0.0);
+            inserted.putAll(update.get("$setOnInsert", Document.class));
+            return inserted;
+        });
+        entry.put("score", entry.getDouble("score") + update.get("$inc", Document.class).getDouble("score"));
+    }
+
+    private static List<String> ids(List<LearningPlanDTO.LearningPlanSummary> summaries) {
+        return summaries.stream().map(LearningPlanDTO.LearningPlanSummary::getId).collect(Collectors.toList());
+    }
+}